@@ -194,17 +194,67 @@ public class HighFlipClient implements AutoCloseable {
      * @return
      */
     public String createJob(String name, String description, HighflipMeta.GraphProto dag) {
+        return createJob(name, description, dag, false);
+    }
+
+    /**
+     * @param name
+     * @param description
+     * @param dag
+     * @param async return once the job is stored, follow it with checkJob or watchJob
+     * @return
+     */
+    public String createJob(String name, String description, HighflipMeta.GraphProto dag, boolean async) {
+        Highflip.JobCreateRequest request = Highflip.JobCreateRequest
+                .newBuilder()
+                .setName(name)
+                .setDescription(description)
+                .setDag(dag)
+                .setAsync(async)
+                .build();
+
+        Highflip.JobId response = getBlockingStub().createJob(request);
+        return response.getJobId();
+    }
+
+    /**
+     * @param name
+     * @param description
+     * @param dag
+     * @param owner    partner or user the job is admitted for
+     * @param priority higher is admitted first among the jobs of the owner
+     * @return
+     */
+    public String createJob(String name, String description, HighflipMeta.GraphProto dag,
+                            String owner, int priority) {
         Highflip.JobCreateRequest request = Highflip.JobCreateRequest
                 .newBuilder()
                 .setName(name)
                 .setDescription(description)
                 .setDag(dag)
+                .setOwner(owner)
+                .setPriority(priority)
                 .build();
 
         Highflip.JobId response = getBlockingStub().createJob(request);
         return response.getJobId();
     }
 
+    /**
+     * Results come back in completion order, see JobBatchCreateResponse.index.
+     *
+     * @param requests
+     * @return
+     */
+    public Iterator<Highflip.JobBatchCreateResponse> createJobs(List<Highflip.JobCreateRequest> requests) {
+        Highflip.JobBatchCreateRequest request = Highflip.JobBatchCreateRequest
+                .newBuilder()
+                .addAllJobs(requests)
+                .build();
+
+        return getBlockingStub().createJobs(request);
+    }
+
     /**
      * @param jobId
      */
@@ -241,6 +291,59 @@ public class HighFlipClient implements AutoCloseable {
         return response.getStatus().toString();
     }
 
+    /**
+     * @param jobId
+     * @return position in the admission queue, 1 is admitted next, 0 if not waiting
+     */
+    public int getQueuePosition(String jobId) {
+        Highflip.JobId request = Highflip.JobId
+                .newBuilder()
+                .setJobId(jobId)
+                .build();
+
+        Highflip.JobCheckResponse response = getBlockingStub().checkJob(request);
+        return response.hasQueuePosition() ? response.getQueuePosition() : 0;
+    }
+
+    /**
+     * @param jobIds
+     * @return the known jobs, each once
+     */
+    public Iterator<Highflip.JobGetResponse> batchGetJobs(List<String> jobIds) {
+        Highflip.JobBatchGetRequest request = Highflip.JobBatchGetRequest
+                .newBuilder()
+                .addAllJobIds(jobIds)
+                .build();
+
+        return getBlockingStub().batchGetJobs(request);
+    }
+
+    /**
+     * @param jobIds
+     * @return status of the known jobs, each once
+     */
+    public Iterator<Highflip.JobCheckResponse> batchCheckJobs(List<String> jobIds) {
+        Highflip.JobBatchGetRequest request = Highflip.JobBatchGetRequest
+                .newBuilder()
+                .addAllJobIds(jobIds)
+                .build();
+
+        return getBlockingStub().batchCheckJobs(request);
+    }
+
+    /**
+     * @param jobId
+     * @return status of the job now and after every change, ends when the job finishes
+     */
+    public Iterator<Highflip.JobCheckResponse> watchJob(String jobId) {
+        Highflip.JobId request = Highflip.JobId
+                .newBuilder()
+                .setJobId(jobId)
+                .build();
+
+        return getBlockingStub().watchJob(request);
+    }
+
     public Iterable<String> listJob(int offset, int limit) {
         Highflip.JobListRequest request = Highflip.JobListRequest
                 .newBuilder()
@@ -256,6 +359,23 @@ public class HighFlipClient implements AutoCloseable {
                 .iterator();
     }
 
+    /**
+     * Lists from the page token of the last entry received, empty to start
+     * at the first.
+     */
+    public Iterable<Highflip.JobListResponse> listJob(String pageToken, int limit) {
+        Highflip.JobListRequest request = Highflip.JobListRequest
+                .newBuilder()
+                .setPageToken(pageToken)
+                .setLimit(limit)
+                .build();
+
+        Iterator<Highflip.JobListResponse> response = getBlockingStub()
+                .listJob(request);
+
+        return () -> response;
+    }
+
     public Highflip.JobGetResponse getJob(String jobId) {
         Highflip.JobId request = Highflip.JobId
                 .newBuilder()
@@ -274,10 +394,27 @@ public class HighFlipClient implements AutoCloseable {
      * @return
      */
     public Iterable<String> getJobLog(String jobId){
-        Highflip.JobLogRequest request = Highflip.JobLogRequest
+        return getJobLog(jobId, 0, 0, false);
+    }
+
+    /**
+     *
+     * @param jobId
+     * @param offset first line to read
+     * @param limit  number of lines, 0 for all
+     * @param follow keep reading new lines until the job finishes
+     * @return
+     */
+    public Iterable<String> getJobLog(String jobId, long offset, long limit, boolean follow){
+        Highflip.JobLogRequest.Builder builder = Highflip.JobLogRequest
                 .newBuilder()
                 .setJobId(jobId)
-                .build();
+                .setOffset(offset)
+                .setFollow(follow);
+        if (limit > 0) {
+            builder.setLimit(limit);
+        }
+        Highflip.JobLogRequest request = builder.build();
 
         Iterator<Highflip.JobLogResponse> response = getBlockingStub()
                 .getJobLog(request);
@@ -310,6 +447,24 @@ public class HighFlipClient implements AutoCloseable {
                 .iterator();
     }
 
+    /**
+     * Lists from the page token of the last entry received, empty to start
+     * at the first.
+     */
+    public Iterable<Highflip.TaskListResponse> listTasks(String jobId, String pageToken, int limit) {
+        Highflip.TaskListRequest request = Highflip.TaskListRequest
+                .newBuilder()
+                .setJobId(jobId)
+                .setPageToken(pageToken)
+                .setLimit(limit)
+                .build();
+
+        Iterator<Highflip.TaskListResponse> response = getBlockingStub()
+                .listTask(request);
+
+        return () -> response;
+    }
+
     /**
      *
      * @param taskId
@@ -361,15 +516,44 @@ public class HighFlipClient implements AutoCloseable {
     }
 
     /**
-     *
+     * @param taskIds
+     * @return the known tasks, each once
+     */
+    public Iterator<Highflip.TaskGetResponse> batchGetTasks(List<String> taskIds) {
+        Highflip.TaskBatchGetRequest request = Highflip.TaskBatchGetRequest
+                .newBuilder()
+                .addAllTaskIds(taskIds)
+                .build();
+
+        return getBlockingStub().batchGetTasks(request);
+    }
+
+    /**
      * @param taskId
      * @return
      */
     public Iterable<String> getTaskLog(String taskId){
-        Highflip.TaskLogRequest request = Highflip.TaskLogRequest
+        return getTaskLog(taskId, 0, 0, false);
+    }
+
+    /**
+     *
+     * @param taskId
+     * @param offset first line to read
+     * @param limit  number of lines, 0 for all
+     * @param follow keep reading new lines until the task finishes
+     * @return
+     */
+    public Iterable<String> getTaskLog(String taskId, long offset, long limit, boolean follow){
+        Highflip.TaskLogRequest.Builder builder = Highflip.TaskLogRequest
                 .newBuilder()
                 .setTaskId(taskId)
-                .build();
+                .setOffset(offset)
+                .setFollow(follow);
+        if (limit > 0) {
+            builder.setLimit(limit);
+        }
+        Highflip.TaskLogRequest request = builder.build();
 
         Iterator<Highflip.TaskLogResponse> response = getBlockingStub()
                 .getTaskLog(request);
@@ -399,6 +583,23 @@ public class HighFlipClient implements AutoCloseable {
                 .iterator();
     }
 
+    /**
+     * Lists from the page token of the last entry received, empty to start
+     * at the first.
+     */
+    public Iterable<Highflip.DataListResponse> listData(String pageToken, int limit) {
+        Highflip.DataListRequest request = Highflip.DataListRequest
+                .newBuilder()
+                .setPageToken(pageToken)
+                .setLimit(limit)
+                .build();
+
+        Iterator<Highflip.DataListResponse> response = getBlockingStub()
+                .listData(request);
+
+        return () -> response;
+    }
+
     public Highflip.DataGetResponse getData(String dataId) {
         Highflip.DataId request = Highflip.DataId
                 .newBuilder()
@@ -410,6 +611,19 @@ public class HighFlipClient implements AutoCloseable {
         return response;
     }
 
+    /**
+     * @param dataIds
+     * @return the known data, each once
+     */
+    public Iterator<Highflip.DataGetResponse> batchGetData(List<String> dataIds) {
+        Highflip.DataBatchGetRequest request = Highflip.DataBatchGetRequest
+                .newBuilder()
+                .addAllDataIds(dataIds)
+                .build();
+
+        return getBlockingStub().batchGetData(request);
+    }
+
     public void deleteData(String dataId) {
         Highflip.DataId request = Highflip.DataId
                 .newBuilder()
@@ -520,6 +734,23 @@ public class HighFlipClient implements AutoCloseable {
                 .iterator();
     }
 
+    /**
+     * Lists from the page token of the last entry received, empty to start
+     * at the first.
+     */
+    public Iterable<Highflip.OperatorListResponse> listOperators(String pageToken, int limit) {
+        Highflip.OperatorListRequest request = Highflip.OperatorListRequest
+                .newBuilder()
+                .setPageToken(pageToken)
+                .setLimit(limit)
+                .build();
+
+        Iterator<Highflip.OperatorListResponse> response = getBlockingStub()
+                .listOperator(request);
+
+        return () -> response;
+    }
+
     public Highflip.OperatorGetResponse getOperator(String operatorId){
         Highflip.OperatorId request = Highflip.OperatorId
                 .newBuilder()
@@ -553,6 +784,23 @@ public class HighFlipClient implements AutoCloseable {
                 .iterator();
     }
 
+    /**
+     * Lists from the page token of the last entry received, empty to start
+     * at the first.
+     */
+    public Iterable<Highflip.PartnerListResponse> listPartners(String pageToken, int limit) {
+        Highflip.PartnerListRequest request = Highflip.PartnerListRequest
+                .newBuilder()
+                .setPageToken(pageToken)
+                .setLimit(limit)
+                .build();
+
+        Iterator<Highflip.PartnerListResponse> response = getBlockingStub()
+                .listPartner(request);
+
+        return () -> response;
+    }
+
     /**
      *
      * @param partnerId
@@ -588,4 +836,22 @@ public class HighFlipClient implements AutoCloseable {
 
         return response.getPartnerId();
     }
+
+    /**
+     * @param fromSeq changes after this sequence number, 0 for all
+     * @return every change after the sequence number, then new ones as they happen
+     */
+    public Iterator<Highflip.ChangeEvent> subscribeChanges(long fromSeq) {
+        Highflip.ChangeSubscribeRequest request = Highflip.ChangeSubscribeRequest
+                .newBuilder()
+                .setFromSeq(fromSeq)
+                .build();
+
+        Iterator<Highflip.ChangeSubscribeResponse> response = getBlockingStub()
+                .subscribeChanges(request);
+
+        return Streams.of(response)
+                .flatMap(r -> r.getChangesList().stream())
+                .iterator();
+    }
 }
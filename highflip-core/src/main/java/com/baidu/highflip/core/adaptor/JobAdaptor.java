@@ -6,6 +6,7 @@ import com.baidu.highflip.core.entity.runtime.Task;
 import com.baidu.highflip.core.entity.runtime.basic.Action;
 import com.baidu.highflip.core.entity.runtime.basic.Status;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
@@ -17,6 +18,28 @@ public interface JobAdaptor {
     // Job Basic
     Job createJob(Job job);
 
+    /**
+     * Translate a job into the request of the backend, without side effects,
+     * so that many jobs can be translated in parallel before submitJob.
+     *
+     * @param job
+     * @return the translated request, or null if createJob does everything
+     */
+    default Object translateJob(Job job) {
+        return null;
+    }
+
+    /**
+     * Submit a job translated by translateJob and bind it to the backend job.
+     *
+     * @param job
+     * @param translated
+     * @return
+     */
+    default Job submitJob(Job job, Object translated) {
+        return createJob(job);
+    }
+
     Job updateJob(Job job);
 
     boolean hasJob(Job job);
@@ -32,6 +55,23 @@ public interface JobAdaptor {
 
     Job getJobByIndex(int index, Job job);
 
+    /**
+     * Fetch a page of jobs, most recently created first.
+     * Adaptors backed by a paged listing should override this with a single request.
+     *
+     * @param offset
+     * @param limit
+     * @return
+     */
+    default List<Job> getJobPage(int offset, int limit) {
+        int end = Math.min(getJobCount(), offset + limit);
+        List<Job> jobs = new ArrayList<>(Math.max(end - offset, 0));
+        for (int i = offset; i < end; i++) {
+            jobs.add(getJobByIndex(i, new Job()));
+        }
+        return jobs;
+    }
+
     Optional<Job> moreJob(Job job, HighFlipRuntime runtime);
 
     // Tasks
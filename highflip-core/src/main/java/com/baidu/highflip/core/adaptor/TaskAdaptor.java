@@ -4,7 +4,9 @@ import com.baidu.highflip.core.entity.runtime.Task;
 import com.baidu.highflip.core.entity.runtime.basic.Action;
 import com.baidu.highflip.core.entity.runtime.basic.Status;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 public interface TaskAdaptor {
@@ -23,8 +25,34 @@ public interface TaskAdaptor {
 
     Task getTaskByIndex(int index, Task task);
 
+    /**
+     * Fetch a page of tasks, most recently created first. The job id of a returned
+     * task holds the binding id of its job in the backend.
+     *
+     * @param offset
+     * @param limit
+     * @return
+     */
+    default List<Task> getTaskPage(int offset, int limit) {
+        int end = Math.min(getTaskCount(), offset + limit);
+        List<Task> tasks = new ArrayList<>(Math.max(end - offset, 0));
+        for (int i = offset; i < end; i++) {
+            tasks.add(getTaskByIndex(i, new Task()));
+        }
+        return tasks;
+    }
+
     void invokeTask(Task task);
 
+    /**
+     * Whether {@link #invokeTask(Task)} runs a single task, whose status then
+     * can be read with {@link #getTaskStatus(Task)}, as the native scheduler
+     * of the server needs.
+     */
+    default boolean canInvokeTask() {
+        return false;
+    }
+
     int getTaskLogCount(Task task);
 
     Iterator<String> getTaskLog(Task task, int offset, int limit);
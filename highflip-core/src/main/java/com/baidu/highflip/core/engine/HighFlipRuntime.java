@@ -33,4 +33,6 @@ public interface HighFlipRuntime {
     Iterable<Task> listTask(String jobId);
 
     void updateTask(Task task);
+
+    void updateTasks(Iterable<Task> tasks);
 }
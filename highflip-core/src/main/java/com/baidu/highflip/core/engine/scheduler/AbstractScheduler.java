@@ -1,10 +1,17 @@
 package com.baidu.highflip.core.engine.scheduler;
 
 import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
 
 public abstract class AbstractScheduler {
 
+    /**
+     * Start running the job, returns without waiting for it.
+     */
     public abstract void dispatch(Job job);
 
-    public abstract void status();
+    /**
+     * @return the status of the job as seen by the scheduler
+     */
+    public abstract Status status(Job job);
 }
@@ -0,0 +1,40 @@
+package com.baidu.highflip.core.entity.runtime;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.joda.time.DateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * A finished job moved out of hf_job, its columns kept as compressed JSON.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "hf_job_archive", indexes = {
+        @Index(name = "job_archive_binding_id_index", columnList = "binding_id")
+})
+public class ArchivedJob {
+
+    public static final int MAX_CONTENT_LENGTH = 16 * 1024 * 1024;
+
+    @Id
+    @Column(name = "job_id", length = 36)
+    String jobId;
+
+    @Column(name = "binding_id")
+    String bindingId;
+
+    @Column(name = "archive_time")
+    DateTime archiveTime;
+
+    @ToString.Exclude
+    @Column(name = "content", length = MAX_CONTENT_LENGTH)
+    byte[] content;
+}
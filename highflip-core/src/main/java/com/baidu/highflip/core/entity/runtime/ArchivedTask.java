@@ -0,0 +1,44 @@
+package com.baidu.highflip.core.entity.runtime;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.joda.time.DateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * A task of an {@link ArchivedJob}, its columns kept as compressed JSON.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "hf_task_archive", indexes = {
+        @Index(name = "task_archive_job_id_index", columnList = "job_id, task_id"),
+        @Index(name = "task_archive_binding_id_index", columnList = "binding_id")
+})
+public class ArchivedTask {
+
+    public static final int MAX_CONTENT_LENGTH = 1024 * 1024;
+
+    @Id
+    @Column(name = "task_id", length = 36)
+    String taskId;
+
+    @Column(name = "job_id", length = 36)
+    String jobId;
+
+    @Column(name = "binding_id")
+    String bindingId;
+
+    @Column(name = "archive_time")
+    DateTime archiveTime;
+
+    @ToString.Exclude
+    @Column(name = "content", length = MAX_CONTENT_LENGTH)
+    byte[] content;
+}
@@ -0,0 +1,61 @@
+package com.baidu.highflip.core.entity.runtime;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.joda.time.DateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * One change of a job or task in the change journal. Records are only
+ * appended, in the order their transactions committed.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "hf_change_journal")
+public class ChangeRecord {
+
+    public static final String ENTITY_JOB = "JOB";
+
+    public static final String ENTITY_TASK = "TASK";
+
+    public static final String OPERATION_CREATE = "CREATE";
+
+    public static final String OPERATION_UPDATE = "UPDATE";
+
+    public static final String OPERATION_DELETE = "DELETE";
+
+    /**
+     * Moved out of the job and task tables, still found by id.
+     */
+    public static final String OPERATION_ARCHIVE = "ARCHIVE";
+
+    @Id
+    @Column(name = "seq")
+    Long seq;
+
+    @Column(name = "entity_type", length = 16)
+    String entityType;
+
+    @Column(name = "entity_id", length = 36)
+    String entityId;
+
+    /**
+     * Job id of a task.
+     */
+    @Column(name = "job_id", length = 36)
+    String jobId;
+
+    @Column(name = "operation", length = 16)
+    String operation;
+
+    @Column(name = "status", length = 16)
+    String status;
+
+    @Column(name = "change_time")
+    DateTime changeTime;
+}
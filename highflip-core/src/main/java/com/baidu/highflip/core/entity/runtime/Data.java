@@ -1,16 +1,19 @@
 package com.baidu.highflip.core.entity.runtime;
 
+import com.baidu.highflip.core.entity.runtime.basic.ColumnStats;
 import com.baidu.highflip.core.entity.runtime.basic.DataCategory;
 import com.baidu.highflip.core.entity.runtime.basic.DataMode;
-import com.vladmihalcea.hibernate.type.json.JsonStringType;
+import com.baidu.highflip.core.utils.LazyJson;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
 import org.hibernate.annotations.GenericGenerator;
-import org.hibernate.annotations.Type;
-import org.hibernate.annotations.TypeDef;
 import org.joda.time.DateTime;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import javax.persistence.Access;
+import javax.persistence.AccessType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EntityListeners;
@@ -18,6 +21,7 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Index;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -26,11 +30,27 @@ import java.util.Map;
 @Entity
 @EntityListeners(AuditingEntityListener.class)
 @Table(name = "hf_data", indexes = {
-        @Index(name = "binding_id_index", columnList = "binding_id", unique = true)
+        @Index(name = "data_binding_id_index", columnList = "binding_id", unique = true),
+        @Index(name = "data_category_index", columnList = "category"),
+        // recency listing
+        @Index(name = "data_create_time_index", columnList = "create_time")
 })
-@TypeDef(name = "json", typeClass = JsonStringType.class)
 public class Data {
 
+    public static final int MAX_STATISTICS_LENGTH = 1024 * 1024;
+
+    static final JavaType LONG_LIST = LazyJson.typeOf(new TypeReference<List<Long>>() {
+    });
+
+    static final JavaType COLUMN_LIST = LazyJson.typeOf(new TypeReference<List<com.baidu.highflip.core.entity.runtime.basic.Column>>() {
+    });
+
+    static final JavaType COLUMN_STATS_LIST = LazyJson.typeOf(new TypeReference<List<ColumnStats>>() {
+    });
+
+    static final JavaType OBJECT_MAP = LazyJson.typeOf(new TypeReference<Map<String, Object>>() {
+    });
+
     @Id
     @Column(name = "data_id", length = 36)
     @GenericGenerator(name = "id_gen", strategy = "com.baidu.highflip.core.utils.CustomUuidGenerator")
@@ -63,18 +83,93 @@ public class Data {
     @Column(name = "raw_size")
     Long rawSize;
 
-    @Type(type = "json")
-    @Column(name = "dimension")
-    List<Long> dimension;
+    @Transient
+    LazyJson<List<Long>> dimension = LazyJson.of(LONG_LIST);
 
-    @Type(type = "json")
-    @Column(name = "columns")
-    List<com.baidu.highflip.core.entity.runtime.basic.Column> columns = new LinkedList<>();
+    @Transient
+    LazyJson<List<com.baidu.highflip.core.entity.runtime.basic.Column>> columns = LazyJson.of(COLUMN_LIST, new LinkedList<>());
+
+    /**
+     * Column statistics, filled once the data is pushed.
+     */
+    @Transient
+    LazyJson<List<ColumnStats>> statistics = LazyJson.of(COLUMN_STATS_LIST);
 
     @Column(name = "binding_id")
     String bingingId;
 
-    @Type(type = "json")
+    @Transient
+    LazyJson<Map<String, Object>> binding = LazyJson.of(OBJECT_MAP);
+
+    @Access(AccessType.PROPERTY)
+    @Column(name = "dimension")
+    protected String getDimensionJson() {
+        return dimension.getJson();
+    }
+
+    protected void setDimensionJson(String json) {
+        dimension.setJson(json);
+    }
+
+    public List<Long> getDimension() {
+        return dimension.get();
+    }
+
+    public void setDimension(List<Long> dimension) {
+        this.dimension.set(dimension);
+    }
+
+    @Access(AccessType.PROPERTY)
+    @Column(name = "columns")
+    protected String getColumnsJson() {
+        return columns.getJson();
+    }
+
+    protected void setColumnsJson(String json) {
+        columns.setJson(json);
+    }
+
+    public List<com.baidu.highflip.core.entity.runtime.basic.Column> getColumns() {
+        return columns.get();
+    }
+
+    public void setColumns(List<com.baidu.highflip.core.entity.runtime.basic.Column> columns) {
+        this.columns.set(columns);
+    }
+
+    @Access(AccessType.PROPERTY)
+    @Column(name = "statistics", length = MAX_STATISTICS_LENGTH)
+    protected String getStatisticsJson() {
+        return statistics.getJson();
+    }
+
+    protected void setStatisticsJson(String json) {
+        statistics.setJson(json);
+    }
+
+    public List<ColumnStats> getStatistics() {
+        return statistics.get();
+    }
+
+    public void setStatistics(List<ColumnStats> statistics) {
+        this.statistics.set(statistics);
+    }
+
+    @Access(AccessType.PROPERTY)
     @Column(name = "binding")
-    Map<String, Object> binding;
+    protected String getBindingJson() {
+        return binding.getJson();
+    }
+
+    protected void setBindingJson(String json) {
+        binding.setJson(json);
+    }
+
+    public Map<String, Object> getBinding() {
+        return binding.get();
+    }
+
+    public void setBinding(Map<String, Object> binding) {
+        this.binding.set(binding);
+    }
 }
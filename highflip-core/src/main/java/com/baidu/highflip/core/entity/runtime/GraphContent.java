@@ -0,0 +1,37 @@
+package com.baidu.highflip.core.entity.runtime;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.joda.time.DateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * The compressed bytes of a job graph, keyed by their hash and shared by
+ * every job with an equal graph. Rows are never updated.
+ *
+ * @see com.baidu.highflip.core.utils.GraphCodec
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "hf_graph")
+public class GraphContent {
+
+    public static final int MAX_CONTENT_LENGTH = 16 * 1024 * 1024;
+
+    @Id
+    @Column(name = "graph_hash", length = 64)
+    String hash;
+
+    @ToString.Exclude
+    @Column(name = "content", length = MAX_CONTENT_LENGTH)
+    byte[] content;
+
+    @Column(name = "create_time")
+    DateTime createTime;
+}
@@ -2,18 +2,24 @@ package com.baidu.highflip.core.entity.runtime;
 
 import com.baidu.highflip.core.entity.dag.Graph;
 import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.core.utils.GraphCodec;
 import com.baidu.highflip.core.utils.IdGenerator;
-import com.vladmihalcea.hibernate.type.json.JsonStringType;
+import com.baidu.highflip.core.utils.LazyJson;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.GenericGenerator;
-import org.hibernate.annotations.Type;
-import org.hibernate.annotations.TypeDef;
 import org.joda.time.DateTime;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import javax.persistence.Access;
+import javax.persistence.AccessType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EntityListeners;
@@ -21,20 +27,32 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Index;
 import javax.persistence.Table;
+import javax.persistence.Transient;
+import javax.persistence.Version;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 @Data
 @NoArgsConstructor
 @Entity
 @EntityListeners(AuditingEntityListener.class)
 @Table(name = "hf_job", indexes = {
-        @Index(name = "binding_id_index", columnList = "binding_id", unique = true)
+        @Index(name = "binding_id_index", columnList = "binding_id", unique = true),
+        // status scans, with the id for their keyset paging
+        @Index(name = "job_status_index", columnList = "status, job_id"),
+        // recency listing
+        @Index(name = "job_create_time_index", columnList = "create_time")
 })
-@TypeDef(name = "json", typeClass = JsonStringType.class)
 public class Job {
 
+    static final JavaType STRING_LIST = LazyJson.typeOf(new TypeReference<List<String>>() {
+    });
+
+    static final JavaType STRING_MAP = LazyJson.typeOf(new TypeReference<Map<String, String>>() {
+    });
+
     @Id
     @Column(name = "job_id", length = 36)
     @GenericGenerator(name = "id_gen", strategy = "com.baidu.highflip.core.utils.CustomUuidGenerator")
@@ -58,10 +76,34 @@ public class Job {
     @Column(name = "finish_time")
     DateTime finishTime;
 
-    @Type(type = "json")
-    @Column(name = "graph", length = 10240)
+    /**
+     * Hash of the graph in {@link GraphContent}.
+     */
+    @Column(name = "graph_hash", length = 64)
+    String graphHash;
+
+    /**
+     * Loaded on first access, so jobs can be listed and updated without
+     * reading their graphs.
+     */
+    @Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     Graph graph;
 
+    /**
+     * Compressed graph set on this object, stored along with the job.
+     */
+    @Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    byte[] graphContent;
+
+    @Transient
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    Function<String, Graph> graphLoader;
+
     @Column(name = "status")
     Status status;
 
@@ -71,20 +113,56 @@ public class Job {
     @Column(name = "is_deleted")
     Boolean isDeleted = false;
 
-    @Type(type = "json")
-    @Column(name = "inputs")
-    List<String> inputTasks = new LinkedList<>();
+    @Transient
+    LazyJson<List<String>> inputTasks = LazyJson.of(STRING_LIST, new LinkedList<>());
 
-    @Type(type = "json")
-    @Column(name = "outputs")
-    List<String> outputTasks = new LinkedList<>();
+    @Transient
+    LazyJson<List<String>> outputTasks = LazyJson.of(STRING_LIST, new LinkedList<>());
 
     @Column(name = "binding_id")
     String bingingId;
 
-    @Type(type = "json")
-    @Column(name = "binding")
-    Map<String, String> binding;
+    /**
+     * Incremented by every update, saving an older copy fails.
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    Long version;
+
+    @Transient
+    LazyJson<Map<String, String>> binding = LazyJson.of(STRING_MAP);
+
+    public Graph getGraph() {
+        if (graph == null && graphHash != null && graphLoader != null) {
+            graph = graphLoader.apply(graphHash);
+        }
+        return graph;
+    }
+
+    public void setGraph(Graph graph) {
+        this.graph = graph;
+        if (graph == null) {
+            this.graphContent = null;
+            this.graphHash = null;
+            return;
+        }
+        byte[] bytes = GraphCodec.toBytes(graph);
+        this.graphContent = GraphCodec.compress(bytes);
+        this.graphHash = GraphCodec.hash(bytes);
+    }
+
+    /**
+     * Carries the graph over to a copy of this job, e.g. the one a detached
+     * job is merged into.
+     */
+    public void copyGraphTo(Job other) {
+        other.graph = graph;
+        other.graphContent = graphContent;
+        if (other.graphLoader == null) {
+            other.graphLoader = graphLoader;
+        }
+    }
 
     public void bindJobId() {
         this.jobId = IdGenerator.fromStrings(this.getBingingId());
@@ -100,4 +178,58 @@ public class Job {
                 return false;
         }
     }
+
+    @Access(AccessType.PROPERTY)
+    @Column(name = "inputs")
+    protected String getInputTasksJson() {
+        return inputTasks.getJson();
+    }
+
+    protected void setInputTasksJson(String json) {
+        inputTasks.setJson(json);
+    }
+
+    public List<String> getInputTasks() {
+        return inputTasks.get();
+    }
+
+    public void setInputTasks(List<String> inputTasks) {
+        this.inputTasks.set(inputTasks);
+    }
+
+    @Access(AccessType.PROPERTY)
+    @Column(name = "outputs")
+    protected String getOutputTasksJson() {
+        return outputTasks.getJson();
+    }
+
+    protected void setOutputTasksJson(String json) {
+        outputTasks.setJson(json);
+    }
+
+    public List<String> getOutputTasks() {
+        return outputTasks.get();
+    }
+
+    public void setOutputTasks(List<String> outputTasks) {
+        this.outputTasks.set(outputTasks);
+    }
+
+    @Access(AccessType.PROPERTY)
+    @Column(name = "binding")
+    protected String getBindingJson() {
+        return binding.getJson();
+    }
+
+    protected void setBindingJson(String json) {
+        binding.setJson(json);
+    }
+
+    public Map<String, String> getBinding() {
+        return binding.get();
+    }
+
+    public void setBinding(Map<String, String> binding) {
+        this.binding.set(binding);
+    }
 }
@@ -0,0 +1,45 @@
+package com.baidu.highflip.core.entity.runtime;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.joda.time.DateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A job waiting for admission to the backend, or admitted and not finished yet.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "hf_job_queue")
+public class QueuedJob {
+
+    @Id
+    @Column(name = "job_id", length = 36)
+    String jobId;
+
+    /**
+     * Partner or user the job is shared out to.
+     */
+    @Column(name = "owner")
+    String owner;
+
+    /**
+     * Higher goes first among the jobs of the same owner.
+     */
+    @Column(name = "priority")
+    Integer priority = 0;
+
+    @Column(name = "queue_time")
+    DateTime queueTime;
+
+    /**
+     * Null while the job waits.
+     */
+    @Column(name = "admit_time")
+    DateTime admitTime;
+}
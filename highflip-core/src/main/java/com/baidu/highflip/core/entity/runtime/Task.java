@@ -1,15 +1,18 @@
 package com.baidu.highflip.core.entity.runtime;
 
-import com.vladmihalcea.hibernate.type.json.JsonStringType;
+import com.baidu.highflip.core.utils.LazyJson;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.GenericGenerator;
-import org.hibernate.annotations.Type;
-import org.hibernate.annotations.TypeDef;
 import org.joda.time.DateTime;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import javax.persistence.Access;
+import javax.persistence.AccessType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EntityListeners;
@@ -17,6 +20,8 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Index;
 import javax.persistence.Table;
+import javax.persistence.Transient;
+import javax.persistence.Version;
 import java.util.List;
 import java.util.Map;
 
@@ -24,11 +29,18 @@ import java.util.Map;
 @Entity
 @EntityListeners(AuditingEntityListener.class)
 @Table(name = "hf_task", indexes = {
-        @Index(name = "binding_id_index", columnList = "binding_id", unique = true)
+        @Index(name = "task_binding_id_index", columnList = "binding_id", unique = true),
+        // the tasks of a job, with the id for their keyset paging
+        @Index(name = "task_job_id_index", columnList = "job_id, task_id")
 })
-@TypeDef(name = "json", typeClass = JsonStringType.class)
 public class Task {
 
+    static final JavaType STRING_LIST = LazyJson.typeOf(new TypeReference<List<String>>() {
+    });
+
+    static final JavaType OBJECT_MAP = LazyJson.typeOf(new TypeReference<Map<String, Object>>() {
+    });
+
     @Id
     @Column(name = "task_id", length = 36)
     @GenericGenerator(name = "id_gen", strategy = "com.baidu.highflip.core.utils.CustomUuidGenerator")
@@ -71,23 +83,98 @@ public class Task {
     @Column(name = "is_deleted")
     Boolean isDeleted = false;
 
-    @Type(type = "json")
-    @Column(name = "previous")
-    List<String> previous;
+    @Transient
+    LazyJson<List<String>> previous = LazyJson.of(STRING_LIST);
 
-    @Type(type = "json")
-    @Column(name = "next")
-    List<String> next;
+    @Transient
+    LazyJson<List<String>> next = LazyJson.of(STRING_LIST);
 
     @Column(name = "binding_id")
     String bingingId;
 
-    @Type(type = "json")
+    /**
+     * Incremented by every update, saving an older copy fails.
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(name = "version", nullable = false)
+    Long version;
+
+    @Transient
+    LazyJson<Map<String, Object>> binding = LazyJson.of(OBJECT_MAP);
+
+    @Transient
+    LazyJson<List<String>> outputData = LazyJson.of(STRING_LIST);
+
+    @Access(AccessType.PROPERTY)
+    @Column(name = "previous")
+    protected String getPreviousJson() {
+        return previous.getJson();
+    }
+
+    protected void setPreviousJson(String json) {
+        previous.setJson(json);
+    }
+
+    public List<String> getPrevious() {
+        return previous.get();
+    }
+
+    public void setPrevious(List<String> previous) {
+        this.previous.set(previous);
+    }
+
+    @Access(AccessType.PROPERTY)
+    @Column(name = "next")
+    protected String getNextJson() {
+        return next.getJson();
+    }
+
+    protected void setNextJson(String json) {
+        next.setJson(json);
+    }
+
+    public List<String> getNext() {
+        return next.get();
+    }
+
+    public void setNext(List<String> next) {
+        this.next.set(next);
+    }
+
+    @Access(AccessType.PROPERTY)
     @Column(name = "binding")
-    Map<String, Object> binding;
+    protected String getBindingJson() {
+        return binding.getJson();
+    }
+
+    protected void setBindingJson(String json) {
+        binding.setJson(json);
+    }
+
+    public Map<String, Object> getBinding() {
+        return binding.get();
+    }
 
-    @Type(type = "json")
+    public void setBinding(Map<String, Object> binding) {
+        this.binding.set(binding);
+    }
+
+    @Access(AccessType.PROPERTY)
     @Column(name = "output_data")
-    List<String> outputData;
+    protected String getOutputDataJson() {
+        return outputData.getJson();
+    }
+
+    protected void setOutputDataJson(String json) {
+        outputData.setJson(json);
+    }
+
+    public List<String> getOutputData() {
+        return outputData.get();
+    }
 
+    public void setOutputData(List<String> outputData) {
+        this.outputData.set(outputData);
+    }
 }
@@ -0,0 +1,29 @@
+package com.baidu.highflip.core.entity.runtime.basic;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Statistics of a data column, collected while the data was pushed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ColumnStats {
+
+    int index;
+
+    String name;
+
+    long nullCount;
+
+    String min;
+
+    String max;
+
+    /**
+     * Approximate number of distinct values.
+     */
+    long distinctCount;
+}
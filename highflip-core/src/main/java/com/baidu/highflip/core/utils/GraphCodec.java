@@ -0,0 +1,84 @@
+package com.baidu.highflip.core.utils;
+
+import com.baidu.highflip.core.entity.dag.Graph;
+import com.google.protobuf.CodedOutputStream;
+import highflip.HighflipMeta;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores graphs as compressed {@link HighflipMeta.GraphProto} bytes.
+ * <p>
+ * Graphs are serialized deterministically, so equal graphs have equal bytes
+ * and the hash of the bytes can be used to share their storage.
+ */
+public class GraphCodec {
+
+    private GraphCodec() {
+    }
+
+    public static byte[] toBytes(Graph graph) {
+        HighflipMeta.GraphProto proto = Graph.toProto(graph);
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(proto.getSerializedSize());
+            CodedOutputStream output = CodedOutputStream.newInstance(buffer);
+            output.useDeterministicSerialization();
+            proto.writeTo(output);
+            output.flush();
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Graph fromBytes(byte[] bytes) {
+        try {
+            return Graph.fromProto(HighflipMeta.GraphProto.parseFrom(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static byte[] compress(byte[] bytes) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream output = new GZIPOutputStream(buffer)) {
+            output.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    public static byte[] decompress(byte[] bytes) {
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return input.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the hex SHA-256 of the uncompressed bytes
+     */
+    public static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16))
+                        .append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
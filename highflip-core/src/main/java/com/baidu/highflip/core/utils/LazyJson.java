@@ -0,0 +1,109 @@
+package com.baidu.highflip.core.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vladmihalcea.hibernate.type.util.ObjectMapperWrapper;
+
+import java.util.Objects;
+
+/**
+ * A JSON column that is only parsed when its value is read.
+ * <p>
+ * Entities map the column to {@link #getJson()} with property access, so
+ * loading a row only copies the string. Once the value was read or set, the
+ * JSON is written from the value again, which keeps changes made to it in
+ * place visible to dirty checking. Uses the object mapper of the json type
+ * of hibernate-types, so the stored JSON is the same.
+ */
+public final class LazyJson<T> {
+
+    private static final ObjectMapper MAPPER = ObjectMapperWrapper.INSTANCE.getObjectMapper();
+
+    private final JavaType type;
+
+    private String json;
+
+    private T value;
+
+    private boolean parsed;
+
+    private LazyJson(JavaType type) {
+        this.type = type;
+    }
+
+    public static JavaType typeOf(TypeReference<?> reference) {
+        return MAPPER.getTypeFactory().constructType(reference);
+    }
+
+    public static <T> LazyJson<T> of(JavaType type) {
+        return new LazyJson<>(type);
+    }
+
+    public static <T> LazyJson<T> of(JavaType type, T value) {
+        LazyJson<T> json = new LazyJson<>(type);
+        json.set(value);
+        return json;
+    }
+
+    public T get() {
+        if (!parsed) {
+            try {
+                value = json == null ? null : MAPPER.readValue(json, type);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Failed to parse " + type + " from JSON.", e);
+            }
+            parsed = true;
+        }
+        return value;
+    }
+
+    public void set(T value) {
+        this.value = value;
+        this.parsed = true;
+    }
+
+    public String getJson() {
+        if (!parsed) {
+            return json;
+        }
+        try {
+            json = value == null ? null : MAPPER.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to write " + type + " as JSON.", e);
+        }
+        return json;
+    }
+
+    public void setJson(String json) {
+        this.json = json;
+        this.value = null;
+        this.parsed = false;
+    }
+
+    public boolean isParsed() {
+        return parsed;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LazyJson)) {
+            return false;
+        }
+        return Objects.equals(get(), ((LazyJson<?>) o).get());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(get());
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(getJson());
+    }
+}
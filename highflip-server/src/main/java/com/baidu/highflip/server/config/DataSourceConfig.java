@@ -0,0 +1,78 @@
+package com.baidu.highflip.server.config;
+
+import com.baidu.highflip.server.respository.routing.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Replaces the data source of spring.datasource by one that sends reads to
+ * the replicas, when there are any.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty("highflip.server.datasource.replicas")
+public class DataSourceConfig {
+
+    @Value("${highflip.server.datasource.replicas}")
+    String[] replicas;
+
+    @Value("${highflip.server.datasource.replica.username:${spring.datasource.username:}}")
+    String username;
+
+    @Value("${highflip.server.datasource.replica.password:${spring.datasource.password:}}")
+    String password;
+
+    @Value("${highflip.server.datasource.max-staleness-ms:5000}")
+    long maxStaleness;
+
+    @Value("${highflip.server.datasource.heartbeat-interval-ms:1000}")
+    long heartbeatInterval;
+
+    @Bean
+    ReplicaRoutingDataSource getRoutingDataSource(DataSourceProperties properties) {
+        DataSource primary = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+
+        Map<String, DataSource> targets = new LinkedHashMap<>();
+        for (String url : replicas) {
+            if (url.isBlank()) {
+                continue;
+            }
+            String name = "replica-" + targets.size();
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            replica.setPoolName(name);
+            replica.setReadOnly(true);
+            targets.put(name, replica);
+        }
+        log.info("Route reads to {} replicas within {} ms.", targets.size(), maxStaleness);
+        return new ReplicaRoutingDataSource(primary, targets, maxStaleness, heartbeatInterval);
+    }
+
+    /**
+     * Takes connections on the first statement, once the transaction is
+     * known to be read-only or not.
+     */
+    @Bean
+    @Primary
+    DataSource getDataSource(ReplicaRoutingDataSource routing) {
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
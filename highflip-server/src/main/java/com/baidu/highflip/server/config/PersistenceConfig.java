@@ -0,0 +1,35 @@
+package com.baidu.highflip.server.config;
+
+import com.baidu.highflip.server.engine.binding.BindingIdIndex;
+import com.baidu.highflip.server.engine.binding.BindingIdInterceptor;
+import com.baidu.highflip.server.engine.graph.GraphStore;
+import com.baidu.highflip.server.engine.graph.GraphStoreIntegrator;
+import com.baidu.highflip.server.engine.journal.ChangeJournalIntegrator;
+import com.baidu.highflip.server.engine.journal.ChangeRecorder;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Slf4j
+@Configuration
+public class PersistenceConfig {
+
+    @Bean
+    HibernatePropertiesCustomizer getBindingIdInterceptor(BindingIdIndex index) {
+        return properties -> properties.put(AvailableSettings.INTERCEPTOR, new BindingIdInterceptor(index));
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer getIntegrators(ChangeRecorder recorder, GraphStore graphs) {
+        return properties -> properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> List.of(
+                        new ChangeJournalIntegrator(recorder),
+                        new GraphStoreIntegrator(graphs)));
+    }
+}
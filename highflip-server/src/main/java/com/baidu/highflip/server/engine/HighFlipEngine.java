@@ -2,6 +2,7 @@ package com.baidu.highflip.server.engine;
 
 import com.baidu.highflip.core.adaptor.JobAdaptor;
 import com.baidu.highflip.core.adaptor.PlatformAdaptor;
+import com.baidu.highflip.core.adaptor.TaskAdaptor;
 import com.baidu.highflip.core.entity.dag.Graph;
 import com.baidu.highflip.core.entity.runtime.Config;
 import com.baidu.highflip.core.entity.runtime.Data;
@@ -18,18 +19,40 @@ import com.baidu.highflip.core.entity.runtime.basic.KeyPair;
 import com.baidu.highflip.core.entity.runtime.basic.Status;
 import com.baidu.highflip.core.entity.runtime.version.CompatibleVersion;
 import com.baidu.highflip.core.entity.runtime.version.PlatformVersion;
+import com.baidu.highflip.server.engine.admission.JobAdmissionQueue;
+import com.baidu.highflip.server.engine.archive.JobArchiver;
+import com.baidu.highflip.server.engine.batch.AsyncJobSubmitter;
+import com.baidu.highflip.server.engine.binding.BindingIdIndex;
+import com.baidu.highflip.server.engine.batch.JobBatchCreator;
+import com.baidu.highflip.server.engine.batch.TaskUpdateBuffer;
 import com.baidu.highflip.server.engine.common.ConfigurationList;
+import com.baidu.highflip.server.engine.common.KeysetPager;
 import com.baidu.highflip.server.engine.component.HighFlipConfiguration;
 import com.baidu.highflip.server.engine.component.HighFlipContext;
 import com.baidu.highflip.server.engine.component.HighFlipRuntime;
 import com.baidu.highflip.server.engine.dataio.PushContext;
+import com.baidu.highflip.server.engine.graph.GraphStore;
+import com.baidu.highflip.server.engine.journal.ChangeJournal;
+import com.baidu.highflip.server.engine.log.LogCache;
+import com.baidu.highflip.server.engine.log.LogSource;
+import com.baidu.highflip.server.engine.log.LogTailer;
+import com.baidu.highflip.server.engine.scheduler.DAGScheduler;
+import com.baidu.highflip.server.engine.scheduler.TaskExecutor;
+import com.baidu.highflip.server.engine.sync.IncrementalSynchronizer;
+import com.baidu.highflip.server.engine.sync.ParallelLoader;
+import com.baidu.highflip.server.engine.tracker.JobStatusTracker;
+import com.baidu.highflip.server.respository.JobStatusView;
+import com.baidu.highflip.server.respository.TaskStatusView;
+import com.baidu.highflip.server.respository.routing.ReadReplica;
+import com.baidu.highflip.server.respository.routing.ReplicaRoutingDataSource;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Streams;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.core.task.AsyncTaskExecutor;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
@@ -41,12 +64,21 @@ import javax.annotation.PreDestroy;
 import javax.transaction.Transactional;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -65,11 +97,70 @@ public class HighFlipEngine {
     @Autowired
     PlatformTransactionManager transactionManager;
 
-    ConcurrentMap<String, Job> activeJobs = new ConcurrentHashMap<>();
-
     @Autowired
     AsyncTaskExecutor executor;
 
+    @Autowired
+    IncrementalSynchronizer synchronizer;
+
+    @Autowired
+    JobBatchCreator batchCreator;
+
+    @Autowired
+    JobStatusTracker tracker;
+
+    @Autowired
+    ParallelLoader loader;
+
+    @Autowired
+    AsyncJobSubmitter submitter;
+
+    @Autowired
+    BindingIdIndex bindings;
+
+    @Autowired
+    LogTailer tailer;
+
+    @Autowired
+    LogCache logs;
+
+    @Autowired
+    DAGScheduler scheduler;
+
+    @Autowired
+    TaskExecutor taskExecutor;
+
+    @Autowired
+    JobAdmissionQueue admission;
+
+    @Autowired
+    ChangeJournal journal;
+
+    @Autowired
+    GraphStore graphs;
+
+    @Autowired
+    JobArchiver archive;
+
+    @Autowired
+    TaskUpdateBuffer updates;
+
+    @Value("${highflip.server.scheduler.native:false}")
+    boolean nativeScheduling;
+
+    @Value("${highflip.server.batch-get.chunk-size:1000}")
+    int batchGetChunkSize;
+
+    @Value("${highflip.server.list.page-size:500}")
+    int listPageSize;
+
+    @Value("${highflip.server.sync.interval-ms:10000}")
+    long syncInterval;
+
+    volatile boolean backfilled = false;
+
+    ScheduledExecutorService sync;
+
     /******************************************************************************
      * COMMON
      ******************************************************************************/
@@ -84,28 +175,81 @@ public class HighFlipEngine {
 
     @PostConstruct
     public void initialize() {
+        if (nativeScheduling && !getContext().getTaskAdaptor().canInvokeTask()) {
+            throw new IllegalStateException(
+                    "highflip.server.scheduler.native is set, but the task adaptor cannot invoke single tasks.");
+        }
+
+        // graphs of jobs resumed below are read from the graph store
+        graphs.migrate();
+
         new TransactionTemplate(transactionManager).execute(
                 new TransactionCallbackWithoutResult() {
                     @Override
                     protected void doInTransactionWithoutResult(TransactionStatus status) {
                         initPlatform();
-
-                        initializePartners();
                     }
                 });
+
+        admission.recover();
+        submitter.recover(job -> !admission.isQueued(job.getJobId()));
+        scheduler.recover();
+        tracker.recover(this::isTrackable);
+
+        // serve what is stored already while the rest is pulled from the adaptors
+        executor.execute(this::backfill);
+    }
+
+    /**
+     * Loads partners, operators, data, jobs and tasks that are not stored yet.
+     * Every step runs on its own, a failed step is retried on the next start.
+     */
+    public void backfill() {
+        long start = System.currentTimeMillis();
+        runStep("binding ids", runtime::loadBindingIds);
+        runStep("partners", this::initializePartners);
+        runStep("operators", this::initializeOperator);
+        runStep("data", this::initializeData);
+        runStep("jobs", this::initializeJobs);
+        runStep("tasks", this::initializeTasks);
+        tracker.recover(this::isTrackable);
+
+        backfilled = true;
+        log.info("Finish backfill in {} ms.", System.currentTimeMillis() - start);
+
+        sync = Executors.newSingleThreadScheduledExecutor();
+        sync.scheduleWithFixedDelay(this::synchronizeJobs, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+    }
+
+    void runStep(String name, Runnable step) {
+        try {
+            step.run();
+        } catch (RuntimeException e) {
+            log.error("Failed to initialize {}.", name, e);
+        }
+    }
+
+    public boolean isBackfilled() {
+        return backfilled;
+    }
+
+    public List<ParallelLoader.Progress> getBackfillProgress() {
+        return loader.getProgress();
     }
 
     @PreDestroy
     public void destroy() {
-
+        if (sync != null) {
+            sync.shutdownNow();
+        }
     }
 
     /******************************************************************************
      * CONFIG
      ******************************************************************************/
-     public Iterable<String> listConfig(){
+     public Iterable<String> listConfig(String pageToken, long offset, long limit){
          return getConfiguration()
-                 .listKeys();
+                 .listKeys(pageToken, offset, limit);
      }
 
     public void setConfig(String key, String value){
@@ -199,47 +343,20 @@ public class HighFlipEngine {
     /******************************************************************************
      * JOB
      ******************************************************************************/
-    @Transactional
+    /**
+     * Runs on every start, jobs created while the server was down are past the
+     * watermark of the last run.
+     */
     public void initializeJobs() {
-        Boolean isInitialized = getConfiguration().getBoolean(
-                ConfigurationList.CONFIG_HIGHFLIP_JOB_IS_INITIALIZED,
-                ConfigurationList.CONFIG_HIGHFLIP_JOB_IS_INITIALIZED_DEFAULT);
-
-        if (isInitialized) {
-            return;
-        }
-
         loadJobs();
-
-        getConfiguration().setBoolean(
-                ConfigurationList.CONFIG_HIGHFLIP_JOB_IS_INITIALIZED,
-                Boolean.TRUE);
     }
 
     /**
-     *
+     * Pull new or changed jobs since the last synchronization watermark.
      */
-    @Transactional
     public void loadJobs(){
-        log.info("Delete old job information.");
-        getContext().getJobRepository()
-                .deleteAll();
-
-        int jobCount = getContext()
-                .getJobAdaptor()
-                .getJobCount();
-
-        for (int i = 0; i < jobCount; i++) {
-            Job job = new Job();
-
-            Job newJob = getContext().getJobAdaptor()
-                    .getJobByIndex(i, job);
-
-            getContext().getJobRepository()
-                    .save(newJob);
-
-            log.info("Load a job information.");
-        }
+        int count = synchronizer.synchronizeJobs();
+        log.info("Load {} new or changed jobs.", count);
     }
 
     @Transactional
@@ -254,6 +371,7 @@ public class HighFlipEngine {
         if (runtime.hasJobByBindId(job.getBingingId())) {
             log.error("Detected and skipped duplicated Binding Id {} in jobs synchronization.",
                     job.getBingingId());
+            return job;
         }
 
         Job savedJob = getContext().getJobRepository()
@@ -262,15 +380,19 @@ public class HighFlipEngine {
         return savedJob;
     }
 
-    @Scheduled(fixedDelayString = "10s")
+    /**
+     * Runs periodically once the backfill is done, never together with it.
+     */
     public void synchronizeJobs() {
         try {
             Job job = null;
             do {
                 job = synchronizeJob();
             } while (job != null);
-        } catch (Exception e) {
 
+            loadJobs();
+        } catch (Exception e) {
+            log.error("Failed to synchronize jobs.", e);
         }
     }
 
@@ -284,6 +406,10 @@ public class HighFlipEngine {
     @Transactional
     @CachePut("jobs")
     public Job createJob(String name, String description, Graph graph) {
+        if (nativeScheduling) {
+            return createNativeJob(name, description, graph);
+        }
+
         Job job = new Job();
         job.setJobName(name);
         job.setDescription(description);
@@ -314,41 +440,226 @@ public class HighFlipEngine {
             getContext().getTaskRepository()
                     .saveAll(news);
         }
-        activeJobs.putIfAbsent(job.getJobId(), job);
+        tracker.track(job);
         return job;
     }
 
-    // @Scheduled
-    public void updateJob() {
+    /**
+     * Persists the job as CREATED and returns at once, the backend submission
+     * and the tasks follow in the background. Progress is visible through
+     * {@link #checkJob(String)}, a job whose submission keeps failing ends
+     * up FAILED with the error as message.
+     */
+    @Transactional
+    public Job createJobAsync(String name, String description, Graph graph) {
+        if (nativeScheduling) {
+            // the native scheduler never blocks on the backend
+            return createNativeJob(name, description, graph);
+        }
 
-        JobAdaptor adaptor = getContext().getJobAdaptor();
+        Job job = new Job();
+        job.setJobName(name);
+        job.setDescription(description);
+        job.setGraph(graph);
+        job.setStatus(Status.CREATED);
+
+        job = getContext().getJobRepository()
+                .save(job);
+
+        submitter.submit(job.getJobId());
+        return job;
+    }
+
+    /**
+     * Runs the graph nodes as tasks with the {@link DAGScheduler} instead of
+     * submitting the graph to the backend as one job. Only enabled with a
+     * task adaptor that can invoke single tasks, which is checked on start.
+     */
+    @Transactional
+    public Job createNativeJob(String name, String description, Graph graph) {
+        Job job = new Job();
+        job.setJobName(name);
+        job.setDescription(description);
+        job.setGraph(graph);
+        job.setStatus(Status.RUNNING);
+        job.setBinding(new HashMap<>(Map.of(
+                DAGScheduler.BINDING_SCHEDULER, DAGScheduler.SCHEDULER_NATIVE)));
 
-        activeJobs.forEach((job_id, job) -> {
-            Status status = adaptor.getJobStatus(job);
-            if (status != job.getStatus()) {
-                job.setStatus(status);
-                getContext().getJobRepository().save(job);
-                getContext().getJobAdaptor().updateJob(job);
+        job = getContext().getJobRepository()
+                .save(job);
+
+        scheduler.dispatch(job);
+        tracker.track(job);
+        return job;
+    }
+
+    /**
+     * Stores the job as CREATED and queues it for admission to the backend,
+     * see {@link JobAdmissionQueue}.
+     *
+     * @param owner    partner or user the job is admitted for
+     * @param priority higher is admitted first among the jobs of the owner
+     */
+    @Transactional
+    public Job enqueueJob(String name, String description, Graph graph, String owner, int priority) {
+        if (nativeScheduling) {
+            return createNativeJob(name, description, graph);
+        }
+
+        Job job = new Job();
+        job.setJobName(name);
+        job.setDescription(description);
+        job.setGraph(graph);
+        job.setStatus(Status.CREATED);
+
+        job = getContext().getJobRepository()
+                .save(job);
+
+        admission.enqueue(job.getJobId(), owner, priority);
+        return job;
+    }
+
+    public boolean isAdmissionEnabled() {
+        return admission.isEnabled();
+    }
+
+    /**
+     * @return 1 for the job admitted next, 0 if the job is not waiting
+     */
+    public int getQueuePosition(String jobId) {
+        return admission.getPosition(jobId);
+    }
+
+    /**
+     * Jobs waiting for admission or in submission are tracked once they are
+     * bound to the backend.
+     */
+    boolean isTrackable(Job job) {
+        return !submitter.isPending(job.getJobId())
+                && !admission.isQueued(job.getJobId());
+    }
+
+    /**
+     * Create many jobs concurrently, reporting each one as it is persisted or fails.
+     *
+     * @param jobs jobs with name, description and graph set
+     * @param listener called on the calling thread
+     */
+    public void createJobs(List<Job> jobs, JobBatchCreator.Listener listener) {
+        batchCreator.createJobs(jobs, new JobBatchCreator.Listener() {
+            @Override
+            public void onCreated(int index, Job job) {
+                tracker.track(job);
+                listener.onCreated(index, job);
             }
-            if (status == Status.SUCCEEDED || status == Status.FAILED) {
-                activeJobs.remove(job.getJobId());
+
+            @Override
+            public void onFailed(int index, Throwable error) {
+                listener.onFailed(index, error);
             }
         });
     }
 
+    /**
+     * @return the job with its tracked status, the adaptor is not called
+     */
+    @ReadReplica
+    public Job checkJob(String jobId) {
+        Job job = tracker.getJob(jobId);
+        if (job != null) {
+            return job;
+        }
+        job = getJob(jobId);
+        if (isTrackable(job)) {
+            tracker.track(job);
+        }
+        return job;
+    }
+
+    /**
+     * Send the job to the listener now and on every status change until it finishes.
+     */
+    public void watchJob(String jobId, JobStatusTracker.Listener listener) {
+        Job job = tracker.getJob(jobId);
+        if (job == null) {
+            job = getJob(jobId);
+        }
+        tracker.watch(job, listener);
+    }
+
+    public void unwatchJob(String jobId, JobStatusTracker.Listener listener) {
+        tracker.unwatch(jobId, listener);
+    }
+
     @Cacheable("jobs")
     public Job getJob(String jobid) {
         Job job = getContext().getJobRepository().findById(jobid)
+                .or(() -> archive.findJob(jobid))
                 .orElseThrow();
 
         return job;
     }
 
-    public Iterator<String> listJobIds() {
-        return getContext().getJobRepository().findAll()
+    /**
+     * Reads the status of a stored job without loading the job.
+     */
+    @ReadReplica
+    public JobStatusView getJobStatus(String jobId) {
+        return ReplicaRoutingDataSource.find(() -> getContext().getJobRepository()
+                        .findStatusByJobId(jobId))
+                .or(() -> archive.findJob(jobId).map(JobStatusView::of))
+                .orElseThrow();
+    }
+
+    /**
+     * Loads the jobs with few queries, unknown ids are skipped.
+     *
+     * @return jobs in the order of the distinct ids
+     */
+    @ReadReplica
+    public List<Job> getJobs(Collection<String> jobIds) {
+        return findAllById(jobIds,
+                ids -> archive.withArchived(ids, getContext().getJobRepository().findAllById(ids)),
+                Job::getJobId);
+    }
+
+    /**
+     * Like {@link #checkJob(String)} for many jobs: tracked jobs come from the
+     * tracker, the others are loaded together and tracked from now on.
+     *
+     * @return jobs in the order of the distinct ids
+     */
+    @ReadReplica
+    public List<Job> checkJobs(Collection<String> jobIds) {
+        Map<String, Job> jobs = new LinkedHashMap<>();
+        List<String> untracked = new ArrayList<>();
+        for (String jobId : new LinkedHashSet<>(jobIds)) {
+            Job job = tracker.getJob(jobId);
+            jobs.put(jobId, job);
+            if (job == null) {
+                untracked.add(jobId);
+            }
+        }
+
+        for (Job job : getJobs(untracked)) {
+            jobs.put(job.getJobId(), job);
+            if (isTrackable(job)) {
+                tracker.track(job);
+            }
+        }
+        return jobs.values()
                 .stream()
-                .map(job -> job.getJobId())
-                .iterator();
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Lists job ids in ascending order, reading one page of ids at a time.
+     */
+    public Iterable<String> listJobIds(String pageToken, long offset, long limit) {
+        return KeysetPager.list(pageToken, offset, limit, listPageSize,
+                (after, page) -> ReplicaRoutingDataSource.read(() ->
+                        getContext().getJobRepository().findJobIdsAfter(after, page)));
     }
 
     @Transactional
@@ -358,72 +669,119 @@ public class HighFlipEngine {
         getContext().getJobAdaptor()
                 .deleteJob(job);
 
-        getContext().getJobRepository().delete(job);
+        // the job may be a cached copy, older than the stored version
+        getContext().getJobRepository().findById(jobId)
+                .ifPresent(getContext().getJobRepository()::delete);
+        archive.delete(jobId);
+        bindings.getJobs().evict(job.getBingingId());
+        tracker.untrack(jobId);
+        admission.release(jobId);
+        logs.evict("job:" + jobId);
     }
 
     public void controlJob(String jobId, Action action, Map<String, String> config) {
         Job job = getJob(jobId);
 
+        if (DAGScheduler.isNative(job)) {
+            if (action == Action.STOP) {
+                scheduler.cancel(jobId);
+            }
+            return;
+        }
+
         getContext().getJobAdaptor()
                 .controlJob(job, action);
     }
 
-    public Iterable<String> getJobLog(String jobId) {
+    /**
+     * Send the lines of the job log from the offset to the sink in batches.
+     *
+     * @param limit  number of lines, 0 for all
+     * @param follow keep sending new lines until the job finishes
+     */
+    public void tailJobLog(String jobId, long offset, long limit, boolean follow, LogTailer.Sink sink) {
         Job job = getJob(jobId);
+        JobAdaptor adaptor = getContext().getJobAdaptor();
 
-        int count = getContext().getJobAdaptor()
-                .getJobLogCount(job);
-
-        new Iterator<String>() {
-
-            int current = 0;
-
+        LogSource source = new LogSource() {
             @Override
-            public boolean hasNext() {
-                return current < count;
+            public int count() {
+                return adaptor.getJobLogCount(job);
             }
 
             @Override
-            public String next() {
-                getContext().getJobAdaptor()
-                        .getJobLog(job, 0, 0);
-                return null;
+            public Iterator<String> read(int offset, int limit) {
+                Iterator<String> lines = adaptor.getJobLog(job, offset, limit);
+                return lines == null ? Collections.emptyIterator() : lines;
             }
         };
-        return null;
+        tailer.tail("job:" + jobId, source, offset, limit, follow,
+                () -> JobStatusTracker.isTerminal(checkJob(jobId).getStatus()), sink);
+    }
+
+    /**
+     * Loads entities by id in chunks, so a long id list never turns into a
+     * single huge IN clause. Inside a read the ids a replica misses are
+     * looked up once more on the primary.
+     */
+    <T> List<T> findAllById(Collection<String> ids,
+                            Function<List<String>, List<T>> finder,
+                            Function<T, String> idOf) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<String, T> found = new HashMap<>(distinct.size());
+        for (List<String> chunk : Lists.partition(distinct, batchGetChunkSize)) {
+            finder.apply(chunk).forEach(e -> found.put(idOf.apply(e), e));
+        }
+        if (found.size() < distinct.size() && ReplicaRoutingDataSource.isReading()) {
+            List<String> missing = distinct.stream()
+                    .filter(id -> !found.containsKey(id))
+                    .collect(Collectors.toList());
+            ReplicaRoutingDataSource.primary(() -> {
+                for (List<String> chunk : Lists.partition(missing, batchGetChunkSize)) {
+                    finder.apply(chunk).forEach(e -> found.put(idOf.apply(e), e));
+                }
+                return null;
+            });
+        }
+        return distinct.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     /******************************************************************************
      * TASK
      ******************************************************************************/
-    @Transactional
     public void initializeTasks() {
-        getContext().getTaskRepository()
-                .deleteAll();
-
-        int taskCount = getContext()
-                .getTaskAdaptor()
-                .getTaskCount();
-
-        for (int i = 0; i < taskCount; i++) {
-            Task task = new Task();
-
-            Task newTask = getContext().getTaskAdaptor()
-                    .getTaskByIndex(i, task);
-
-            getContext().getTaskRepository()
-                    .save(newTask);
-        }
+        int count = synchronizer.synchronizeTasks();
+        log.info("Load {} new or changed tasks.", count);
     }
 
     // @Scheduled
     public void updateTask(Task task) {
-        getContext().getTaskRepository().save(task);
+        updates.update(task);
     }
 
+    /**
+     * Lists the task ids of a job in ascending order, reading one page of ids at a time.
+     * A job is archived with all its tasks, so they are all read from either place.
+     */
+    public Iterable<String> listTaskIds(String jobid, String pageToken, long offset, long limit) {
+        return KeysetPager.list(pageToken, offset, limit, listPageSize, (after, page) ->
+                ReplicaRoutingDataSource.read(() -> {
+                    List<String> ids = getContext().getTaskRepository().findTaskIdsAfter(jobid, after, page);
+                    return ids.isEmpty() ? archive.findTaskIdsAfter(jobid, after, page) : ids;
+                }));
+    }
+
+    @ReadReplica
     public Iterable<Task> listTask(String jobid) {
-        final List<Task> tasks = getContext().getTaskRepository()
+        List<Task> tasks = getContext().getTaskRepository()
                                                   .findAllByJobid(jobid);
+        if (tasks.isEmpty()) {
+            tasks = archive.findTasksOfJob(jobid);
+        }
+        tasks = updates.overlay(tasks);
         log.info("tasks size: {}", tasks.size());
         return tasks;
     }
@@ -431,12 +789,40 @@ public class HighFlipEngine {
     @Cacheable(value = "tasks")
     public Task getTask(String taskId) {
 
-        return getContext()
-                .getTaskRepository()
-                .findById(taskId)
+        return updates.find(taskId)
+                .or(() -> getContext().getTaskRepository().findById(taskId))
+                .or(() -> archive.findTask(taskId))
+                .orElseThrow();
+    }
+
+    /**
+     * Reads the status of a stored task without loading the task. Unlike the
+     * cached one of {@link #getTask(String)} it is at most as stale as the
+     * lag budget of the replicas.
+     */
+    @ReadReplica
+    public TaskStatusView checkTask(String taskId) {
+        return updates.find(taskId)
+                .map(TaskStatusView::of)
+                .or(() -> ReplicaRoutingDataSource.find(() ->
+                        getContext().getTaskRepository().findStatusByTaskid(taskId)))
+                .or(() -> archive.findTask(taskId).map(TaskStatusView::of))
                 .orElseThrow();
     }
 
+    /**
+     * Loads the tasks with few queries, unknown ids are skipped.
+     *
+     * @return tasks in the order of the distinct ids
+     */
+    @ReadReplica
+    public List<Task> getTasks(Collection<String> taskIds) {
+        return findAllById(taskIds,
+                ids -> updates.overlay(
+                        archive.withArchivedTasks(ids, getContext().getTaskRepository().findAllById(ids))),
+                Task::getTaskid);
+    }
+
     public void controlTask(String taskId, Action action, Map<String, String> config) {
         Task task = getTask(taskId);
 
@@ -444,21 +830,52 @@ public class HighFlipEngine {
                 .controlTask(task, action, config);
     }
 
-    public Iterator<String> getTaskLog(String taskid) {
-        Task task = getTask(taskid);
-        return getContext()
-                .getTaskAdaptor()
-                .getTaskLog(task, 0, 0);
+    /**
+     * Send the lines of the task log from the offset to the sink in batches.
+     *
+     * @param limit  number of lines, 0 for all
+     * @param follow keep sending new lines until the task or its job finishes
+     */
+    public void tailTaskLog(String taskId, long offset, long limit, boolean follow, LogTailer.Sink sink) {
+        Task task = getTask(taskId);
+        TaskAdaptor adaptor = getContext().getTaskAdaptor();
+
+        LogSource source = new LogSource() {
+            @Override
+            public int count() {
+                return adaptor.getTaskLogCount(task);
+            }
+
+            @Override
+            public Iterator<String> read(int offset, int limit) {
+                Iterator<String> lines = adaptor.getTaskLog(task, offset, limit);
+                return lines == null ? Collections.emptyIterator() : lines;
+            }
+        };
+        tailer.tail("task:" + taskId, source, offset, limit, follow, () -> {
+            // read again, the task was loaded when the tail started
+            String status = checkTask(taskId).getStatus();
+            if (Status.SUCCEEDED.name().equals(status)
+                    || Status.FAILED.name().equals(status)) {
+                return true;
+            }
+            // the task log can not grow once its job finished
+            return JobStatusTracker.isTerminal(checkJob(task.getJobid()).getStatus());
+        }, sink);
     }
 
-    public void invokeTask(String taskid) {
-        throw new UnsupportedOperationException();
+    /**
+     * Run a single task on the scheduler workers.
+     *
+     * @return completes with the terminal status of the task
+     */
+    public CompletableFuture<Status> invokeTask(String taskid) {
+        return taskExecutor.execute(getTask(taskid));
     }
 
     /******************************************************************************
      * DATA
      ******************************************************************************/
-    @Transactional
     protected void initializeData() {
         Boolean isInitialized = getConfiguration().getBoolean(
                 ConfigurationList.CONFIG_HIGHFLIP_DATA_IS_INITIALIZED,
@@ -468,19 +885,11 @@ public class HighFlipEngine {
             return;
         }
 
-        int count = getContext().getDataAdaptor()
-                .getDataCount();
-
-        for (int i = 0; i < count; i++) {
-            Data data = new Data();
-            Data retData = getContext().getDataAdaptor()
-                    .getDataByIndex(i, data);
-
-            Data saveData = getContext().getDataRepository()
-                    .save(retData);
-
-            log.info("Initialize a data {}", saveData.getDataId());
-        }
+        int count = loader.loadByIndex("data",
+                getContext().getDataAdaptor().getDataCount(),
+                i -> getContext().getDataAdaptor().getDataByIndex(i, new Data()),
+                page -> getContext().getDataRepository().saveAll(page).size());
+        log.info("Initialize {} data.", count);
 
         getConfiguration().setBoolean(
                 ConfigurationList.CONFIG_HIGHFLIP_DATA_IS_INITIALIZED,
@@ -490,13 +899,10 @@ public class HighFlipEngine {
     /**
      * @return
      */
-    public Iterable<String> listData() {
-        return () -> getContext()
-                .getDataRepository()
-                .findAll()
-                .stream()
-                .map(d -> d.getDataId())
-                .iterator();
+    public Iterable<String> listData(String pageToken, long offset, long limit) {
+        return KeysetPager.list(pageToken, offset, limit, listPageSize,
+                (after, page) -> ReplicaRoutingDataSource.read(() ->
+                        getContext().getDataRepository().findDataIdsAfter(after, page)));
     }
 
     /**
@@ -511,6 +917,16 @@ public class HighFlipEngine {
                 .orElseThrow();
     }
 
+    /**
+     * Loads the data with few queries, unknown ids are skipped.
+     *
+     * @return data in the order of the distinct ids
+     */
+    @ReadReplica
+    public List<Data> getDataList(Collection<String> dataIds) {
+        return findAllById(dataIds, getContext().getDataRepository()::findAllById, Data::getDataId);
+    }
+
     @Transactional
     public void deleteData(String dataid) {
         Data data = getData(dataid);
@@ -521,6 +937,7 @@ public class HighFlipEngine {
         getContext()
                 .getDataRepository()
                 .delete(data);
+        bindings.getData().evict(data.getBingingId());
     }
 
     public PushContext pushData(
@@ -536,18 +953,25 @@ public class HighFlipEngine {
         data.setFormat(format);
         getContext().getDataRepository().save(data);
 
+        PushContext context;
         switch (format) {
             case DENSE:
-                return PushContext.createDense(
+                context = PushContext.createDense(
                         getContext().getDataAdaptor(), data);
+                break;
             case SPARSE:
-                return PushContext.createSparse(
+                context = PushContext.createSparse(
                         getContext().getDataAdaptor(), data);
+                break;
             default:
             case RAW:
-                return PushContext.createRaw(
+                context = PushContext.createRaw(
                         getContext().getDataAdaptor(), data);
+                break;
         }
+        // keeps the statistics collected during the push
+        context.onClose(getContext().getDataRepository()::save);
+        return context;
     }
 
     public InputStream pullDataRaw(String dataid, long offset, long size) {
@@ -575,7 +999,6 @@ public class HighFlipEngine {
     /******************************************************************************
      * OPERATOR
      ******************************************************************************/
-    @Transactional
     protected void initializeOperator() {
         Boolean isInitialized = getConfiguration().getBoolean(
                 ConfigurationList.CONFIG_HIGHFLIP_OPERATOR_IS_INITIALIZED,
@@ -585,49 +1008,34 @@ public class HighFlipEngine {
             return;
         }
 
-        int count = getContext()
-                .getOperatorAdaptor()
-                .getOperatorCount();
-
-        for (int i = 0; i < count; i++) {
-            Operator oper = new Operator();
-
-            oper = getContext()
-                    .getOperatorAdaptor()
-                    .getOperatorByIndex(i, oper);
-
-            oper = getContext()
-                    .getOperatorRepository()
-                    .save(oper);
-
-            log.info("Initialize an operator {}", oper.getOperatorId());
-        }
+        int count = loader.loadByIndex("operators",
+                getContext().getOperatorAdaptor().getOperatorCount(),
+                i -> getContext().getOperatorAdaptor().getOperatorByIndex(i, new Operator()),
+                page -> getContext().getOperatorRepository().saveAll(page).size());
+        log.info("Initialize {} operators.", count);
 
         getConfiguration().setBoolean(
                 ConfigurationList.CONFIG_HIGHFLIP_OPERATOR_IS_INITIALIZED,
                 Boolean.TRUE);
     }
 
-    public Iterator<String> listOperator() {
-        return getContext()
-                .getOperatorRepository()
-                .findAll()
-                .stream()
-                .map(a -> a.getOperatorId())
-                .iterator();
+    public Iterable<String> listOperator(String pageToken, long offset, long limit) {
+        return KeysetPager.list(pageToken, offset, limit, listPageSize,
+                (after, page) -> ReplicaRoutingDataSource.read(() ->
+                        getContext().getOperatorRepository().findOperatorIdsAfter(after, page)));
     }
 
+    @ReadReplica
     public Operator getOperator(String operatorId) {
-        return getContext()
-                .getOperatorRepository()
-                .findById(operatorId)
+        return ReplicaRoutingDataSource.find(() -> getContext()
+                        .getOperatorRepository()
+                        .findById(operatorId))
                 .orElseThrow();
     }
 
     /******************************************************************************
      * PARTNER
      ******************************************************************************/
-    @Transactional
     protected void initializePartners() {
         Boolean isInitialized = getConfiguration().getBoolean(
                 ConfigurationList.CONFIG_HIGHFLIP_PARTNER_IS_INITIALIZED,
@@ -645,23 +1053,11 @@ public class HighFlipEngine {
     }
 
     public void loadPartners(){
-        int count = getContext()
-                .getPartnerAdaptor()
-                .getPartnerCount();
-
-        for (int i = 0; i < count; i++) {
-            Partner partner = new Partner();
-
-            partner = getContext()
-                    .getPartnerAdaptor()
-                    .getPartnerByIndex(i, partner);
-
-            partner = getContext()
-                    .getPartnerRepository()
-                    .save(partner);
-
-            log.info("Load a partner {}", partner.getPartnerId());
-        }
+        int count = loader.loadByIndex("partners",
+                getContext().getPartnerAdaptor().getPartnerCount(),
+                i -> getContext().getPartnerAdaptor().getPartnerByIndex(i, new Partner()),
+                page -> getContext().getPartnerRepository().saveAll(page).size());
+        log.info("Load {} partners.", count);
     }
 
     /**
@@ -696,20 +1092,18 @@ public class HighFlipEngine {
                 .delete(partner);
     }
 
+    @ReadReplica
     public Partner getPartner(String partnerId) {
-        return getContext()
-                .getPartnerRepository()
-                .findById(partnerId)
+        return ReplicaRoutingDataSource.find(() -> getContext()
+                        .getPartnerRepository()
+                        .findById(partnerId))
                 .orElseThrow();
     }
 
-    public Iterable<String> listPartner(int offset, int limit) {
-        return () -> getContext()
-                .getPartnerRepository()
-                .findAll()
-                .stream()
-                .map(Partner::getPartnerId)
-                .iterator();
+    public Iterable<String> listPartner(String pageToken, long offset, long limit) {
+        return KeysetPager.list(pageToken, offset, limit, listPageSize,
+                (after, page) -> ReplicaRoutingDataSource.read(() ->
+                        getContext().getPartnerRepository().findPartnerIdsAfter(after, page)));
     }
 
     /******************************************************************************
@@ -751,12 +1145,21 @@ public class HighFlipEngine {
         return true;
     }
 
-    public Iterable<String> listUser(){
-        return () -> getContext()
-                .getUserRepository()
-                .findAll()
-                .stream()
-                .map(User::getUserId)
-                .iterator();
+    public Iterable<String> listUser(String pageToken, long offset, long limit){
+        return KeysetPager.list(pageToken, offset, limit, listPageSize,
+                (after, page) -> ReplicaRoutingDataSource.read(() ->
+                        getContext().getUserRepository().findUserIdsAfter(after, page)));
+    }
+
+    /******************************************************************************
+     * CHANGE
+     ******************************************************************************/
+
+    /**
+     * Send the job and task changes after the sequence number, then every
+     * new change, until the sink is cancelled.
+     */
+    public void subscribeChanges(long fromSeq, ChangeJournal.Sink sink) {
+        journal.subscribe(fromSeq, sink);
     }
 }
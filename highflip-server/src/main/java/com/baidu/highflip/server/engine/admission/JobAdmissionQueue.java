@@ -0,0 +1,449 @@
+package com.baidu.highflip.server.engine.admission;
+
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.QueuedJob;
+import com.baidu.highflip.server.engine.batch.AsyncJobSubmitter;
+import com.baidu.highflip.server.engine.common.ConfigurationList;
+import com.baidu.highflip.server.engine.component.HighFlipConfiguration;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import com.baidu.highflip.server.engine.tracker.JobStatusTracker;
+import com.baidu.highflip.server.respository.JobQueueRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Admits jobs to the backend with a bounded number in flight.
+ * <p>
+ * Queued jobs are stored as CREATED jobs and handed to the
+ * {@link AsyncJobSubmitter} once admitted. A free slot goes to the owner
+ * (partner or user) with the lowest number of admitted jobs per weight,
+ * so a large sweep of one owner does not starve the others; among the jobs
+ * of an owner, higher priority and then earlier jobs go first. Weights are
+ * read from the configuration under
+ * {@link ConfigurationList#CONFIG_HIGHFLIP_ADMISSION_WEIGHT_PREFIX} and
+ * default to 1.
+ * <p>
+ * The queue is persisted, so waiting and admitted jobs survive a restart. A
+ * slot is released when the tracker reports the job finished, and a periodic
+ * pass over the admitted jobs releases the ones that failed or were deleted
+ * without it.
+ */
+@Slf4j
+@Component
+public class JobAdmissionQueue {
+
+    public static final String DEFAULT_OWNER = "default";
+
+    static class Entry {
+
+        final String jobId;
+
+        final String owner;
+
+        final int priority;
+
+        final long time;
+
+        Entry(String jobId, String owner, int priority, long time) {
+            this.jobId = jobId;
+            this.owner = owner;
+            this.priority = priority;
+            this.time = time;
+        }
+    }
+
+    static class Owner {
+
+        final String name;
+
+        final int weight;
+
+        final TreeSet<Entry> waiting = new TreeSet<>(ORDER);
+
+        int inFlight = 0;
+
+        Owner(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+
+        boolean isIdle() {
+            return inFlight == 0 && waiting.isEmpty();
+        }
+    }
+
+    static final Comparator<Entry> ORDER = Comparator
+            .comparingInt((Entry e) -> -e.priority)
+            .thenComparingLong(e -> e.time)
+            .thenComparing(e -> e.jobId);
+
+    @Autowired
+    HighFlipContext context;
+
+    @Autowired
+    HighFlipConfiguration configuration;
+
+    @Autowired
+    JobQueueRepository repository;
+
+    @Autowired
+    AsyncJobSubmitter submitter;
+
+    @Autowired
+    JobStatusTracker tracker;
+
+    @Value("${highflip.server.admission.enabled:false}")
+    boolean enabled;
+
+    @Value("${highflip.server.admission.max-in-flight:16}")
+    int maxInFlight;
+
+    @Value("${highflip.server.admission.reconcile-ms:10000}")
+    long reconcileInterval;
+
+    final Map<String, Owner> owners = new HashMap<>();
+
+    final Map<String, Entry> waiting = new HashMap<>();
+
+    /**
+     * Owner of every admitted job.
+     */
+    final Map<String, String> admitted = new HashMap<>();
+
+    /**
+     * Positions of the waiting jobs, null once stale.
+     */
+    Map<String, Integer> positions = null;
+
+    /**
+     * Admissions and releases run on this thread, outside of any transaction.
+     */
+    ScheduledExecutorService timer;
+
+    public HighFlipContext getContext() {
+        return context;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        timer = Executors.newSingleThreadScheduledExecutor();
+        if (!enabled) {
+            return;
+        }
+        tracker.addListener(job -> {
+            if (JobStatusTracker.isTerminal(job.getStatus())) {
+                release(job.getJobId());
+            }
+        });
+        timer.scheduleWithFixedDelay(this::reconcile,
+                reconcileInterval, reconcileInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        timer.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Loads the waiting and admitted jobs of the stored queue.
+     *
+     * @return number of jobs loaded
+     */
+    public int recover() {
+        if (!enabled) {
+            return 0;
+        }
+        List<QueuedJob> rows = repository.findAll();
+        synchronized (this) {
+            for (QueuedJob row : rows) {
+                Entry entry = toEntry(row);
+                if (row.getAdmitTime() != null) {
+                    admitted.put(entry.jobId, entry.owner);
+                    owner(entry.owner).inFlight++;
+                } else {
+                    owner(entry.owner).waiting.add(entry);
+                    waiting.put(entry.jobId, entry);
+                }
+            }
+            positions = null;
+            log.info("Recovered {} waiting and {} admitted jobs.", waiting.size(), admitted.size());
+        }
+        timer.execute(this::pump);
+        return rows.size();
+    }
+
+    /**
+     * Queues a stored job. Inside a transaction, the job joins the queue once
+     * the transaction commits.
+     *
+     * @param owner    partner or user the job counts for, the default owner if null
+     * @param priority higher goes first among the jobs of the owner
+     */
+    public void enqueue(String jobId, String owner, int priority) {
+        QueuedJob row = new QueuedJob();
+        row.setJobId(jobId);
+        row.setOwner(owner == null || owner.isEmpty() ? DEFAULT_OWNER : owner);
+        row.setPriority(priority);
+        row.setQueueTime(DateTime.now());
+        repository.save(row);
+
+        Entry entry = toEntry(row);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(entry);
+                }
+            });
+            return;
+        }
+        add(entry);
+    }
+
+    /**
+     * @return true while the job waits for admission
+     */
+    public synchronized boolean isQueued(String jobId) {
+        return waiting.containsKey(jobId);
+    }
+
+    public synchronized int getInFlight() {
+        return admitted.size();
+    }
+
+    /**
+     * The position is estimated from the current shares, as if no admitted
+     * job finished before the job is admitted.
+     *
+     * @return 1 for the next job to be admitted, 0 if the job is not waiting
+     */
+    public synchronized int getPosition(String jobId) {
+        if (!waiting.containsKey(jobId)) {
+            return 0;
+        }
+        if (positions == null) {
+            positions = order();
+        }
+        return positions.getOrDefault(jobId, 0);
+    }
+
+    /**
+     * Frees the slot of a finished job, or drops a waiting job.
+     */
+    public void release(String jobId) {
+        synchronized (this) {
+            String owner = admitted.remove(jobId);
+            if (owner != null) {
+                owners.get(owner).inFlight--;
+                drop(owner);
+            }
+            Entry entry = waiting.remove(jobId);
+            if (entry != null) {
+                owners.get(entry.owner).waiting.remove(entry);
+                drop(entry.owner);
+            }
+            if (owner == null && entry == null) {
+                return;
+            }
+            positions = null;
+        }
+        timer.execute(() -> {
+            try {
+                repository.deleteById(jobId);
+            } catch (EmptyResultDataAccessException e) {
+                // released twice
+            } catch (RuntimeException e) {
+                log.warn("Failed to remove job {} from the queue.", jobId, e);
+            }
+            pump();
+        });
+    }
+
+    void add(Entry entry) {
+        synchronized (this) {
+            owner(entry.owner).waiting.add(entry);
+            waiting.put(entry.jobId, entry);
+            positions = null;
+        }
+        timer.execute(this::pump);
+    }
+
+    /**
+     * Runs on the timer thread.
+     */
+    void pump() {
+        List<Entry> admits = new ArrayList<>();
+        synchronized (this) {
+            while (admitted.size() < maxInFlight && !waiting.isEmpty()) {
+                Owner owner = owners.values()
+                        .stream()
+                        .filter(o -> !o.waiting.isEmpty())
+                        .min(Comparator.comparingDouble(JobAdmissionQueue::share)
+                                .thenComparing(o -> o.waiting.first(), ORDER))
+                        .orElseThrow();
+
+                Entry entry = owner.waiting.pollFirst();
+                waiting.remove(entry.jobId);
+                admitted.put(entry.jobId, entry.owner);
+                owner.inFlight++;
+                admits.add(entry);
+            }
+            if (!admits.isEmpty()) {
+                positions = null;
+            }
+        }
+
+        for (Entry entry : admits) {
+            try {
+                repository.findById(entry.jobId).ifPresent(row -> {
+                    row.setAdmitTime(DateTime.now());
+                    repository.save(row);
+                });
+            } catch (RuntimeException e) {
+                // the job is admitted again after a restart, its submission is idempotent
+                log.warn("Failed to store admission of job {}.", entry.jobId, e);
+            }
+            log.info("Admitted job {} of {}.", entry.jobId, entry.owner);
+            submitter.submit(entry.jobId);
+        }
+    }
+
+    /**
+     * Releases queued jobs that finished or were deleted without the tracker
+     * noticing, e.g. because their submission failed. Runs on the timer thread.
+     */
+    void reconcile() {
+        try {
+            List<String> ids;
+            synchronized (this) {
+                ids = new ArrayList<>(admitted.keySet());
+                ids.addAll(waiting.keySet());
+            }
+            if (ids.isEmpty()) {
+                return;
+            }
+
+            Map<String, Job> jobs = getContext().getJobRepository()
+                    .findAllById(ids)
+                    .stream()
+                    .collect(Collectors.toMap(Job::getJobId, Function.identity()));
+
+            for (String id : ids) {
+                Job job = jobs.get(id);
+                if (job == null || JobStatusTracker.isTerminal(job.getStatus())) {
+                    release(id);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to reconcile the job queue.", e);
+        }
+    }
+
+    /**
+     * Simulates the admissions of all waiting jobs.
+     */
+    Map<String, Integer> order() {
+        class Cursor {
+
+            final Owner owner;
+
+            final Iterator<Entry> entries;
+
+            Entry head;
+
+            int inFlight;
+
+            Cursor(Owner owner) {
+                this.owner = owner;
+                this.entries = owner.waiting.iterator();
+                this.head = entries.next();
+                this.inFlight = owner.inFlight;
+            }
+        }
+
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator
+                .comparingDouble((Cursor c) -> (double) c.inFlight / c.owner.weight)
+                .thenComparing(c -> c.head, ORDER));
+        owners.values()
+                .stream()
+                .filter(o -> !o.waiting.isEmpty())
+                .forEach(o -> cursors.add(new Cursor(o)));
+
+        Map<String, Integer> order = new HashMap<>();
+        while (!cursors.isEmpty()) {
+            Cursor cursor = cursors.poll();
+            order.put(cursor.head.jobId, order.size() + 1);
+            cursor.inFlight++;
+            if (cursor.entries.hasNext()) {
+                cursor.head = cursor.entries.next();
+                cursors.add(cursor);
+            }
+        }
+        return order;
+    }
+
+    static double share(Owner owner) {
+        return (double) owner.inFlight / owner.weight;
+    }
+
+    Owner owner(String name) {
+        return owners.computeIfAbsent(name, n -> new Owner(n, weightOf(n)));
+    }
+
+    /**
+     * Forgets an owner with nothing queued, its weight is read again next time.
+     */
+    void drop(String name) {
+        Owner owner = owners.get(name);
+        if (owner != null && owner.isIdle()) {
+            owners.remove(name);
+        }
+    }
+
+    int weightOf(String owner) {
+        String value = configuration.getString(
+                ConfigurationList.CONFIG_HIGHFLIP_ADMISSION_WEIGHT_PREFIX + owner, null);
+        if (value == null) {
+            return ConfigurationList.CONFIG_HIGHFLIP_ADMISSION_WEIGHT_DEFAULT;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Ignored invalid admission weight {} of {}.", value, owner);
+            return ConfigurationList.CONFIG_HIGHFLIP_ADMISSION_WEIGHT_DEFAULT;
+        }
+    }
+
+    static Entry toEntry(QueuedJob row) {
+        return new Entry(row.getJobId(),
+                row.getOwner() == null ? DEFAULT_OWNER : row.getOwner(),
+                row.getPriority() == null ? 0 : row.getPriority(),
+                row.getQueueTime() == null ? 0 : row.getQueueTime().getMillis());
+    }
+}
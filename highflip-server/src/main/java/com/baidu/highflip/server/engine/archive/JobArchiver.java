@@ -0,0 +1,314 @@
+package com.baidu.highflip.server.engine.archive;
+
+import com.baidu.highflip.core.entity.runtime.ArchivedJob;
+import com.baidu.highflip.core.entity.runtime.ArchivedTask;
+import com.baidu.highflip.core.entity.runtime.ChangeRecord;
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.Task;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.core.utils.GraphCodec;
+import com.baidu.highflip.server.engine.batch.TaskUpdateBuffer;
+import com.baidu.highflip.server.engine.graph.GraphStore;
+import com.baidu.highflip.server.engine.journal.ChangeRecorder;
+import com.baidu.highflip.server.respository.JobArchiveRepository;
+import com.baidu.highflip.server.respository.JobRepository;
+import com.baidu.highflip.server.respository.TaskArchiveRepository;
+import com.baidu.highflip.server.respository.TaskRepository;
+import com.baidu.highflip.server.respository.log.RowCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Moves finished jobs and their tasks out of hf_job and hf_task once they
+ * were not updated for a while, so the tables that are scanned and listed
+ * only hold recent history.
+ * <p>
+ * Archived rows keep all columns as compressed JSON and are only read by id,
+ * which is what the engine falls back to when a job or task is not found.
+ * A job and its tasks are moved in the same transaction, with bulk deletes
+ * that Hibernate does not see, so the moves are recorded in the change
+ * journal as archived, not deleted. Their graphs stay in the graph store.
+ * <p>
+ * Archival is off with the metadata log, which keeps no graph store and is
+ * compacted in place.
+ */
+@Slf4j
+@Component
+public class JobArchiver {
+
+    static final List<Status> FINISHED = List.of(Status.SUCCEEDED, Status.FAILED);
+
+    @Autowired
+    JobRepository jobs;
+
+    @Autowired
+    TaskRepository tasks;
+
+    @Autowired
+    JobArchiveRepository archivedJobs;
+
+    @Autowired
+    TaskArchiveRepository archivedTasks;
+
+    @Autowired
+    GraphStore graphs;
+
+    @Autowired
+    TaskUpdateBuffer updates;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ChangeRecorder recorder;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Value("${highflip.server.archive.enabled:false}")
+    boolean enabled;
+
+    @Value("${highflip.server.archive.max-age-days:30}")
+    int maxAgeDays;
+
+    @Value("${highflip.server.archive.interval-ms:3600000}")
+    long interval;
+
+    @Value("${highflip.server.archive.batch-size:100}")
+    int batchSize;
+
+    @Value("${highflip.server.metadata.store:database}")
+    String metadataStore;
+
+    final RowCodec<Job> jobCodec = new RowCodec<>(Job.class);
+
+    final RowCodec<Task> taskCodec = new RowCodec<>(Task.class);
+
+    ScheduledExecutorService pool;
+
+    @PostConstruct
+    public void initialize() {
+        if (!enabled) {
+            return;
+        }
+        if ("log".equals(metadataStore)) {
+            log.info("Archival is off with the metadata log.");
+            return;
+        }
+        pool = Executors.newSingleThreadScheduledExecutor();
+        pool.scheduleWithFixedDelay(this::run, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    void run() {
+        try {
+            int count = archive();
+            if (count > 0) {
+                log.info("Archive {} finished jobs.", count);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to archive finished jobs.", e);
+        }
+    }
+
+    /**
+     * Moves the finished jobs not updated within the maximum age, with their
+     * tasks, one batch per transaction.
+     *
+     * @return number of jobs archived
+     */
+    public int archive() {
+        // a buffered update written after its task was moved would bring it back
+        updates.flush();
+        DateTime before = DateTime.now().minusDays(maxAgeDays);
+        Pageable page = PageRequest.of(0, Math.max(1, batchSize));
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        int count = 0;
+        String after = "";
+        while (true) {
+            String from = after;
+            List<Job> batch = transaction.execute(status -> {
+                List<Job> found = jobs.findAllByStatusInUpdatedBefore(from, FINISHED, before, page);
+                if (!found.isEmpty()) {
+                    move(found);
+                }
+                return found;
+            });
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            count += batch.size();
+            after = batch.get(batch.size() - 1).getJobId();
+            if (batch.size() < page.getPageSize()) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    void move(List<Job> batch) {
+        List<String> jobIds = batch.stream()
+                .map(Job::getJobId)
+                .collect(Collectors.toList());
+        DateTime now = DateTime.now();
+
+        List<ArchivedJob> jobRows = new ArrayList<>(batch.size());
+        for (Job job : batch) {
+            ArchivedJob row = new ArchivedJob();
+            row.setJobId(job.getJobId());
+            row.setBindingId(job.getBingingId());
+            row.setArchiveTime(now);
+            row.setContent(GraphCodec.compress(jobCodec.encode(job)));
+            jobRows.add(row);
+        }
+
+        List<Task> moved = tasks.findAllByJobidIn(jobIds);
+        List<ArchivedTask> taskRows = new ArrayList<>(moved.size());
+        for (Task task : moved) {
+            ArchivedTask row = new ArchivedTask();
+            row.setTaskId(task.getTaskid());
+            row.setJobId(task.getJobid());
+            row.setBindingId(task.getBingingId());
+            row.setArchiveTime(now);
+            row.setContent(GraphCodec.compress(taskCodec.encode(task)));
+            taskRows.add(row);
+        }
+
+        archivedJobs.saveAll(jobRows);
+        archivedTasks.saveAll(taskRows);
+        tasks.deleteAllByJobidIn(jobIds);
+        jobs.deleteAllByJobIdIn(jobIds);
+
+        moved.forEach(task -> recorder.record(entityManager, task, ChangeRecord.OPERATION_ARCHIVE));
+        batch.forEach(job -> recorder.record(entityManager, job, ChangeRecord.OPERATION_ARCHIVE));
+    }
+
+    public Optional<Job> findJob(String jobId) {
+        return archivedJobs.findById(jobId).map(this::toJob);
+    }
+
+    public Optional<Task> findTask(String taskId) {
+        return archivedTasks.findById(taskId).map(this::toTask);
+    }
+
+    public List<Job> findJobs(Collection<String> jobIds) {
+        return archivedJobs.findAllById(jobIds)
+                .stream()
+                .map(this::toJob)
+                .collect(Collectors.toList());
+    }
+
+    public List<Task> findTasks(Collection<String> taskIds) {
+        return archivedTasks.findAllById(taskIds)
+                .stream()
+                .map(this::toTask)
+                .collect(Collectors.toList());
+    }
+
+    public List<Task> findTasksOfJob(String jobId) {
+        return archivedTasks.findAllByJobId(jobId)
+                .stream()
+                .map(this::toTask)
+                .collect(Collectors.toList());
+    }
+
+    public List<String> findTaskIdsAfter(String jobId, String after, Pageable pageable) {
+        return archivedTasks.findTaskIdsAfter(jobId, after, pageable);
+    }
+
+    /**
+     * @return the binding ids of archived jobs among the given ones
+     */
+    public Set<String> findJobBindingIds(Collection<String> bindingIds) {
+        return bindingIds.isEmpty() ? Set.of() : new HashSet<>(archivedJobs.findBindingIdsIn(bindingIds));
+    }
+
+    /**
+     * @return the binding ids of archived tasks among the given ones
+     */
+    public Set<String> findTaskBindingIds(Collection<String> bindingIds) {
+        return bindingIds.isEmpty() ? Set.of() : new HashSet<>(archivedTasks.findBindingIdsIn(bindingIds));
+    }
+
+    /**
+     * Removes a job and its tasks from the archive.
+     */
+    public void delete(String jobId) {
+        if (archivedJobs.existsById(jobId)) {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                archivedTasks.deleteAllByJobId(jobId);
+                archivedJobs.deleteById(jobId);
+            });
+        }
+    }
+
+    /**
+     * Appends the archived ones of the ids not found among the loaded jobs.
+     */
+    public List<Job> withArchived(Collection<String> jobIds, List<Job> loaded) {
+        return withArchived(jobIds, loaded, Job::getJobId, this::findJobs);
+    }
+
+    /**
+     * Appends the archived ones of the ids not found among the loaded tasks.
+     */
+    public List<Task> withArchivedTasks(Collection<String> taskIds, List<Task> loaded) {
+        return withArchived(taskIds, loaded, Task::getTaskid, this::findTasks);
+    }
+
+    static <T> List<T> withArchived(Collection<String> ids, List<T> loaded,
+                                    Function<T, String> idOf,
+                                    Function<Collection<String>, List<T>> finder) {
+        if (loaded.size() >= ids.size()) {
+            return loaded;
+        }
+        Set<String> missing = new HashSet<>(ids);
+        loaded.forEach(e -> missing.remove(idOf.apply(e)));
+        if (missing.isEmpty()) {
+            return loaded;
+        }
+        List<T> all = new ArrayList<>(loaded);
+        all.addAll(finder.apply(missing));
+        return all;
+    }
+
+    Job toJob(ArchivedJob row) {
+        Job job = jobCodec.decode(GraphCodec.decompress(row.getContent()));
+        job.setGraphLoader(graphs::load);
+        return job;
+    }
+
+    Task toTask(ArchivedTask row) {
+        return taskCodec.decode(GraphCodec.decompress(row.getContent()));
+    }
+}
@@ -0,0 +1,247 @@
+package com.baidu.highflip.server.engine.batch;
+
+import com.baidu.highflip.core.adaptor.JobAdaptor;
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.Task;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.server.engine.common.StatusMerger;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import com.baidu.highflip.server.engine.tracker.JobStatusTracker;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Submits jobs that were persisted as CREATED to the backend in the
+ * background.
+ * <p>
+ * A submission translates and submits the graph, stores the binding id, then
+ * materializes the tasks. Each step is skipped when a previous attempt already
+ * completed it, so a retry never submits a job to the backend twice, even when
+ * storing its binding failed. Failed attempts are retried with exponential
+ * backoff; once attempts run out the job is marked FAILED with the error as
+ * message. Submitted jobs are handed to the status tracker.
+ */
+@Slf4j
+@Component
+public class AsyncJobSubmitter {
+
+    @Autowired
+    HighFlipContext context;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    JobStatusTracker tracker;
+
+    @Autowired
+    StatusMerger merger;
+
+    @Value("${highflip.server.job.async.threads:4}")
+    int threads;
+
+    @Value("${highflip.server.job.async.max-attempts:5}")
+    int maxAttempts;
+
+    @Value("${highflip.server.job.async.retry-delay-ms:1000}")
+    long retryDelay;
+
+    final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Jobs submitted to the backend whose binding is not stored yet. A retry
+     * stores the binding again instead of submitting the job twice.
+     */
+    final ConcurrentMap<String, Job> submitted = new ConcurrentHashMap<>();
+
+    ScheduledExecutorService pool;
+
+    public HighFlipContext getContext() {
+        return context;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        pool = Executors.newScheduledThreadPool(Math.max(1, threads));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * @return true while the job waits for or is in submission
+     */
+    public boolean isPending(String jobId) {
+        return pending.contains(jobId);
+    }
+
+    /**
+     * Queues a persisted job. Inside a transaction, the submission starts once
+     * the transaction commits.
+     */
+    public void submit(String jobId) {
+        if (!pending.add(jobId)) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        schedule(jobId, 1, 0);
+                    } else {
+                        pending.remove(jobId);
+                    }
+                }
+            });
+            return;
+        }
+        schedule(jobId, 1, 0);
+    }
+
+    /**
+     * Queues the CREATED jobs that were never bound to a backend job, e.g.
+     * because the server stopped before they were submitted. Bound jobs are
+     * submitted already, they are left to the status tracker.
+     *
+     * @return number of jobs queued
+     */
+    public int recover() {
+        return recover(job -> true);
+    }
+
+    /**
+     * @param filter jobs to queue among the unbound ones
+     */
+    public int recover(Predicate<Job> filter) {
+        List<Job> jobs = getContext().getJobRepository()
+                .findAllByStatusAndBingingIdIsNull(Status.CREATED)
+                .stream()
+                .filter(filter)
+                .collect(Collectors.toList());
+        jobs.forEach(job -> submit(job.getJobId()));
+        if (!jobs.isEmpty()) {
+            log.info("Resume submission of {} jobs.", jobs.size());
+        }
+        return jobs.size();
+    }
+
+    void schedule(String jobId, int attempt, long delay) {
+        pool.schedule(() -> attempt(jobId, attempt), delay, TimeUnit.MILLISECONDS);
+    }
+
+    void attempt(String jobId, int attempt) {
+        try {
+            Job job = process(jobId);
+            pending.remove(jobId);
+            if (job != null) {
+                tracker.retrack(job);
+                log.info("Submitted job {} in {} attempt(s).", jobId, attempt);
+            }
+        } catch (RuntimeException e) {
+            if (attempt < maxAttempts) {
+                long delay = retryDelay << Math.min(attempt - 1, 16);
+                log.warn("Failed to submit job {} (attempt {} of {}), retry in {} ms.",
+                        jobId, attempt, maxAttempts, delay, e);
+                schedule(jobId, attempt + 1, delay);
+                return;
+            }
+            Job bound = submitted.remove(jobId);
+            if (bound != null) {
+                log.error("Failed to store the binding {} of job {} submitted to the backend.",
+                        bound.getBingingId(), jobId);
+            }
+            log.error("Failed to submit job {} after {} attempts.", jobId, attempt, e);
+            fail(jobId, e);
+            pending.remove(jobId);
+            tracker.untrack(jobId);
+        }
+    }
+
+    /**
+     * @return the submitted job, null if it is gone
+     */
+    Job process(String jobId) {
+        Job job = getContext().getJobRepository()
+                .findById(jobId)
+                .orElse(null);
+        if (job == null) {
+            log.warn("Skipped submission of deleted job {}.", jobId);
+            return null;
+        }
+
+        JobAdaptor adaptor = getContext().getJobAdaptor();
+        if (job.getBingingId() == null) {
+            Job bound = submitted.get(jobId);
+            if (bound == null) {
+                Object translated = adaptor.translateJob(job);
+                bound = translated == null
+                        ? adaptor.createJob(job)
+                        : adaptor.submitJob(job, translated);
+                submitted.put(jobId, bound);
+            } else {
+                job.setBingingId(bound.getBingingId());
+                job.setBinding(bound.getBinding());
+                bound = job;
+            }
+            // keep the binding before anything else can fail
+            job = merger.saveJob(bound);
+            submitted.remove(jobId);
+        }
+
+        if (getContext().getTaskRepository().existsByJobid(jobId)) {
+            return job;
+        }
+
+        int taskCount = adaptor.getTaskCount(job);
+        if (taskCount <= 0) {
+            return job;
+        }
+
+        List<Task> tasks = new ArrayList<>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            tasks.add(new Task());
+        }
+        List<Task> news = adaptor.getTaskList(job, tasks);
+        news.forEach(task -> task.setJobid(jobId));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                getContext().getTaskRepository().saveAll(news));
+        return job;
+    }
+
+    void fail(String jobId, Throwable error) {
+        try {
+            getContext().getJobRepository().findById(jobId).ifPresent(job -> {
+                job.setStatus(Status.FAILED);
+                job.setMessage(String.valueOf(error.getMessage()));
+                job.setFinishTime(DateTime.now());
+                merger.saveJob(job);
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to mark job {} as failed.", jobId, e);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.baidu.highflip.server.engine.batch;
+
+import com.baidu.highflip.core.adaptor.JobAdaptor;
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.Task;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates many jobs at once.
+ * <p>
+ * Graphs are translated in parallel, submitted to the backend with a bounded
+ * number of requests in flight, and persisted together with their tasks in
+ * batched transactions. Results are reported on the calling thread as soon
+ * as each job is persisted or has failed, in completion order. The jobs of a
+ * batch that fails to persist are deleted from the backend again, so none is
+ * left there without a local job.
+ */
+@Slf4j
+@Component
+public class JobBatchCreator {
+
+    public interface Listener {
+
+        void onCreated(int index, Job job);
+
+        void onFailed(int index, Throwable error);
+    }
+
+    static class Outcome {
+
+        final int index;
+
+        final Job job;
+
+        final List<Task> tasks;
+
+        final Throwable error;
+
+        Outcome(int index, Job job, List<Task> tasks, Throwable error) {
+            this.index = index;
+            this.job = job;
+            this.tasks = tasks;
+            this.error = error;
+        }
+    }
+
+    @Autowired
+    HighFlipContext context;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Value("${highflip.server.job.batch.translate-threads:0}")
+    int translateThreads;
+
+    @Value("${highflip.server.job.batch.submit-concurrency:8}")
+    int submitConcurrency;
+
+    @Value("${highflip.server.job.batch.persist-size:50}")
+    int persistSize;
+
+    @Value("${highflip.server.job.batch.persist-wait-ms:100}")
+    long persistWait;
+
+    ExecutorService translatePool;
+
+    ExecutorService submitPool;
+
+    public HighFlipContext getContext() {
+        return context;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        int threads = translateThreads > 0 ? translateThreads : Runtime.getRuntime().availableProcessors();
+        translatePool = Executors.newFixedThreadPool(threads);
+        submitPool = Executors.newFixedThreadPool(Math.max(1, submitConcurrency));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        translatePool.shutdownNow();
+        submitPool.shutdownNow();
+    }
+
+    /**
+     * Blocks until every job has been reported to the listener.
+     *
+     * @param jobs jobs with name, description and graph set
+     */
+    public void createJobs(List<Job> jobs, Listener listener) {
+        BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<>();
+        JobAdaptor adaptor = getContext().getJobAdaptor();
+
+        for (int i = 0; i < jobs.size(); i++) {
+            final int index = i;
+            final Job job = jobs.get(i);
+            CompletableFuture
+                    .supplyAsync(() -> adaptor.translateJob(job), translatePool)
+                    .thenApplyAsync(translated -> submit(index, adaptor, job, translated), submitPool)
+                    .whenComplete((outcome, error) -> outcomes.add(error == null
+                            ? outcome
+                            : new Outcome(index, job, null, unwrap(error))));
+        }
+
+        List<Outcome> pending = new ArrayList<>(persistSize);
+        int reported = 0;
+        try {
+            while (reported + pending.size() < jobs.size()) {
+                Outcome outcome = pending.isEmpty()
+                        ? outcomes.take()
+                        : outcomes.poll(persistWait, TimeUnit.MILLISECONDS);
+
+                if (outcome != null && outcome.error != null) {
+                    log.warn("Failed to create job {} of batch.", outcome.index, outcome.error);
+                    listener.onFailed(outcome.index, outcome.error);
+                    reported++;
+                    continue;
+                }
+                if (outcome != null) {
+                    pending.add(outcome);
+                }
+                // flush when the batch is full or the queue went quiet
+                if (outcome == null || pending.size() >= persistSize) {
+                    reported += persist(pending, listener);
+                }
+            }
+            reported += persist(pending, listener);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while creating jobs.", e);
+        }
+        log.info("Finished batch of {} jobs.", reported);
+    }
+
+    /**
+     * Runs on the submit pool: the backend job and its tasks are fetched
+     * before anything is written, so transactions never wait on the backend.
+     *
+     * @return the job returned by the adaptor, with its binding, and its tasks
+     */
+    Outcome submit(int index, JobAdaptor adaptor, Job job, Object translated) {
+        Job submitted = translated == null
+                ? adaptor.createJob(job)
+                : adaptor.submitJob(job, translated);
+
+        int taskCount = adaptor.getTaskCount(submitted);
+        if (taskCount <= 0) {
+            return new Outcome(index, submitted, List.of(), null);
+        }
+
+        List<Task> tasks = new ArrayList<>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            tasks.add(new Task());
+        }
+        return new Outcome(index, submitted, adaptor.getTaskList(submitted, tasks), null);
+    }
+
+    int persist(List<Outcome> pending, Listener listener) {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                List<Job> jobs = new ArrayList<>(pending.size());
+                pending.forEach(o -> jobs.add(o.job));
+                getContext().getJobRepository().saveAll(jobs);
+
+                // job ids are only known once the jobs are saved
+                List<Task> tasks = new ArrayList<>();
+                for (Outcome outcome : pending) {
+                    for (Task task : outcome.tasks) {
+                        task.setJobid(outcome.job.getJobId());
+                        tasks.add(task);
+                    }
+                }
+                getContext().getTaskRepository().saveAll(tasks);
+            });
+            pending.forEach(o -> listener.onCreated(o.index, o.job));
+        } catch (RuntimeException e) {
+            log.error("Failed to persist batch of {} jobs.", pending.size(), e);
+            pending.forEach(o -> {
+                discard(o.job);
+                listener.onFailed(o.index, e);
+            });
+        }
+
+        int count = pending.size();
+        pending.clear();
+        return count;
+    }
+
+    /**
+     * Deletes a job that was submitted but not persisted from the backend.
+     */
+    void discard(Job job) {
+        try {
+            getContext().getJobAdaptor().deleteJob(job);
+        } catch (RuntimeException e) {
+            log.error("Failed to delete job {} from the backend, it is left without a local job.",
+                    job.getBingingId(), e);
+        }
+    }
+
+    static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,221 @@
+package com.baidu.highflip.server.engine.batch;
+
+import com.baidu.highflip.core.entity.runtime.Task;
+import com.baidu.highflip.server.engine.common.StatusMerger;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import com.google.common.collect.Lists;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Buffers the task updates reported by the adaptors and writes them behind,
+ * so a burst of status changes costs a few batched transactions instead of
+ * one save per change.
+ * <p>
+ * Only the latest update of a task is kept. The buffer is flushed every
+ * interval, as soon as it holds a batch, and on shutdown. Until a task is
+ * written, readers get the buffered one through {@link #find(String)} and
+ * {@link #overlay(List)}. Writers that read tasks from the repository and
+ * save them back must {@link #flush()} first, or an older buffered update
+ * would overwrite theirs.
+ */
+@Slf4j
+@Component
+public class TaskUpdateBuffer {
+
+    @Autowired
+    HighFlipContext context;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    StatusMerger merger;
+
+    @Value("${highflip.server.task.write-behind.enabled:true}")
+    boolean enabled;
+
+    @Value("${highflip.server.task.write-behind.batch-size:500}")
+    int batchSize;
+
+    @Value("${highflip.server.task.write-behind.flush-interval-ms:500}")
+    long flushInterval;
+
+    /**
+     * Latest update of each task not yet being written.
+     */
+    final Map<String, Task> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Updates taken by the running flush, until they are written.
+     */
+    final Map<String, Task> flushing = new ConcurrentHashMap<>();
+
+    final AtomicBoolean triggered = new AtomicBoolean();
+
+    volatile boolean closed;
+
+    ScheduledExecutorService pool;
+
+    public HighFlipContext getContext() {
+        return context;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (!enabled) {
+            return;
+        }
+        pool = Executors.newSingleThreadScheduledExecutor();
+        pool.scheduleWithFixedDelay(this::run, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        closed = true;
+        if (pool == null) {
+            return;
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int count = flush();
+        if (count > 0) {
+            log.info("Flushed {} buffered task updates on shutdown.", count);
+        }
+    }
+
+    /**
+     * Queues the update of a stored task. New tasks and updates once the
+     * buffer is closed are written at once.
+     */
+    public void update(Task task) {
+        if (pool == null || closed || task.getTaskid() == null) {
+            write(List.of(task));
+            return;
+        }
+        pending.put(task.getTaskid(), task);
+        if (pending.size() >= batchSize && triggered.compareAndSet(false, true)) {
+            pool.execute(() -> {
+                triggered.set(false);
+                run();
+            });
+        }
+    }
+
+    public void updateAll(Iterable<Task> tasks) {
+        if (pool == null || closed) {
+            List<Task> all = new ArrayList<>();
+            tasks.forEach(all::add);
+            write(all);
+            return;
+        }
+        tasks.forEach(this::update);
+    }
+
+    /**
+     * @return the buffered update of the task, if it is not written yet
+     */
+    public Optional<Task> find(String taskId) {
+        Task task = pending.get(taskId);
+        if (task == null) {
+            task = flushing.get(taskId);
+        }
+        return Optional.ofNullable(task);
+    }
+
+    /**
+     * Replaces the loaded tasks that have a buffered update.
+     */
+    public List<Task> overlay(List<Task> tasks) {
+        if (pending.isEmpty() && flushing.isEmpty()) {
+            return tasks;
+        }
+        return tasks.stream()
+                .map(task -> find(task.getTaskid()).orElse(task))
+                .collect(Collectors.toList());
+    }
+
+    void run() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush buffered task updates.", e);
+        }
+    }
+
+    /**
+     * Writes the buffered updates, one transaction per batch. A batch that
+     * fails is written task by task, and the updates that still fail are
+     * dropped, as a failed save would have been.
+     *
+     * @return number of tasks written
+     */
+    public synchronized int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        List<Task> taken = new ArrayList<>(pending.size());
+        for (String taskId : List.copyOf(pending.keySet())) {
+            Task task = pending.get(taskId);
+            if (task == null) {
+                continue;
+            }
+            // visible in either map at any time, a newer update stays pending
+            flushing.put(taskId, task);
+            pending.remove(taskId, task);
+            taken.add(task);
+        }
+
+        int count = 0;
+        for (List<Task> batch : Lists.partition(taken, Math.max(1, batchSize))) {
+            try {
+                write(batch);
+                count += batch.size();
+            } catch (RuntimeException e) {
+                log.warn("Failed to write {} task updates, retry one by one.", batch.size(), e);
+                for (Task task : batch) {
+                    try {
+                        write(List.of(task));
+                        count++;
+                    } catch (RuntimeException error) {
+                        log.error("Dropped the update of task {}.", task.getTaskid(), error);
+                    }
+                }
+            }
+            batch.forEach(task -> flushing.remove(task.getTaskid(), task));
+        }
+        return count;
+    }
+
+    void write(List<Task> tasks) {
+        if (tasks.size() == 1) {
+            // alone, an update older than the stored task is merged into it
+            merger.saveTask(tasks.get(0));
+            return;
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                getContext().getTaskRepository().saveAll(tasks));
+    }
+}
@@ -0,0 +1,108 @@
+package com.baidu.highflip.server.engine.binding;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Answers whether a binding id is stored, in front of an indexed lookup.
+ * <p>
+ * A bloom filter holding every stored binding id rules out unknown ids
+ * without touching the database; ids it may contain are looked up once and
+ * remembered in a small LRU. Ids are only ever added, so deleted entities
+ * merely cost an extra lookup. Until {@link #ready()} is called every query
+ * goes to the lookup.
+ */
+public class BindingIdFilter {
+
+    private final BloomFilter<CharSequence> bloom;
+
+    private final Map<String, Boolean> recent;
+
+    private volatile boolean ready = false;
+
+    public BindingIdFilter(long expectedInsertions, double falsePositiveRate, int cacheSize) {
+        this.bloom = BloomFilter.create(
+                Funnels.stringFunnel(StandardCharsets.UTF_8), expectedInsertions, falsePositiveRate);
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public void put(String bindId) {
+        if (bindId == null) {
+            return;
+        }
+        synchronized (bloom) {
+            bloom.put(bindId);
+        }
+    }
+
+    /**
+     * Called once every stored id has been put.
+     */
+    public void ready() {
+        this.ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return false without a lookup if the id was never put
+     */
+    public boolean mightContain(String bindId) {
+        if (bindId == null) {
+            return false;
+        }
+        if (!ready) {
+            return true;
+        }
+        synchronized (bloom) {
+            return bloom.mightContain(bindId);
+        }
+    }
+
+    /**
+     * @param lookup indexed query of the id, only called when the filter
+     *               cannot tell
+     */
+    public boolean contains(String bindId, Predicate<String> lookup) {
+        if (!mightContain(bindId)) {
+            return false;
+        }
+        synchronized (recent) {
+            if (recent.get(bindId) != null) {
+                return true;
+            }
+        }
+
+        boolean found = lookup.test(bindId);
+        if (found) {
+            synchronized (recent) {
+                recent.put(bindId, Boolean.TRUE);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Forgets a cached hit, e.g. after the entity was deleted.
+     */
+    public void evict(String bindId) {
+        if (bindId == null) {
+            return;
+        }
+        synchronized (recent) {
+            recent.remove(bindId);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.baidu.highflip.server.engine.binding;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * The binding id filters of jobs and data.
+ * <p>
+ * Kept free of repository dependencies so Hibernate can feed it from
+ * {@link BindingIdInterceptor} while the persistence unit is being built.
+ */
+@Component
+public class BindingIdIndex {
+
+    @Value("${highflip.server.binding.expected-ids:1000000}")
+    long expectedIds;
+
+    @Value("${highflip.server.binding.false-positive-rate:0.01}")
+    double falsePositiveRate;
+
+    @Value("${highflip.server.binding.cache-size:10000}")
+    int cacheSize;
+
+    BindingIdFilter jobs;
+
+    BindingIdFilter data;
+
+    @PostConstruct
+    public void initialize() {
+        jobs = new BindingIdFilter(expectedIds, falsePositiveRate, cacheSize);
+        data = new BindingIdFilter(expectedIds, falsePositiveRate, cacheSize);
+    }
+
+    public BindingIdFilter getJobs() {
+        return jobs;
+    }
+
+    public BindingIdFilter getData() {
+        return data;
+    }
+}
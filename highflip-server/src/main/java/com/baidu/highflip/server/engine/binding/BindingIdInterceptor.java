@@ -0,0 +1,44 @@
+package com.baidu.highflip.server.engine.binding;
+
+import com.baidu.highflip.core.entity.runtime.Data;
+import com.baidu.highflip.core.entity.runtime.Job;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+
+/**
+ * Puts the binding id of every job and data written through Hibernate into
+ * the filters, whichever code path saves them. Ids of rolled back writes
+ * stay in the filters, which only costs a lookup later.
+ */
+public class BindingIdInterceptor extends EmptyInterceptor {
+
+    private final BindingIdIndex index;
+
+    public BindingIdInterceptor(BindingIdIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public boolean onSave(Object entity, Serializable id, Object[] state,
+                          String[] propertyNames, Type[] types) {
+        record(entity);
+        return false;
+    }
+
+    @Override
+    public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState,
+                                Object[] previousState, String[] propertyNames, Type[] types) {
+        record(entity);
+        return false;
+    }
+
+    void record(Object entity) {
+        if (entity instanceof Job) {
+            index.getJobs().put(((Job) entity).getBingingId());
+        } else if (entity instanceof Data) {
+            index.getData().put(((Data) entity).getBingingId());
+        }
+    }
+}
@@ -21,4 +21,12 @@ public class ConfigurationList {
     public static final String CONFIG_HIGHFLIP_PARTNER_IS_INITIALIZED = "highflip.partner.is.initialized";
 
     public static final Boolean CONFIG_HIGHFLIP_PARTNER_IS_INITIALIZED_DEFAULT = Boolean.FALSE;
+
+    public static final String CONFIG_HIGHFLIP_JOB_SYNC_WATERMARK = "highflip.job.sync.watermark";
+
+    public static final String CONFIG_HIGHFLIP_TASK_SYNC_WATERMARK = "highflip.task.sync.watermark";
+
+    public static final String CONFIG_HIGHFLIP_ADMISSION_WEIGHT_PREFIX = "highflip.admission.weight.";
+
+    public static final int CONFIG_HIGHFLIP_ADMISSION_WEIGHT_DEFAULT = 1;
 }
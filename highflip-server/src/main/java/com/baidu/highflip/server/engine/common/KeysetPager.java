@@ -0,0 +1,118 @@
+package com.baidu.highflip.server.engine.common;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+
+/**
+ * Iterates ids in ascending order by seeking past the last id of the previous
+ * page, so each page costs one index range scan however deep the listing is.
+ * <p>
+ * Pages are only fetched as the iterator advances, which lets a listing be
+ * streamed to the client without holding the whole table in memory.
+ */
+public class KeysetPager implements Iterator<String> {
+
+    final BiFunction<String, Pageable, List<String>> pager;
+
+    final int pageSize;
+
+    String after;
+
+    long remaining;
+
+    List<String> page = List.of();
+
+    int position = 0;
+
+    boolean exhausted = false;
+
+    /**
+     * @param after    the ids up to and including this one are skipped, empty to start at the first
+     * @param limit    the most ids to return, zero or less for all
+     * @param pageSize the most ids fetched per query
+     * @param pager    returns the ids greater than its first argument, in ascending order
+     */
+    public KeysetPager(String after, long limit, int pageSize,
+                       BiFunction<String, Pageable, List<String>> pager) {
+        this.after = after == null ? "" : after;
+        this.remaining = limit > 0 ? limit : Long.MAX_VALUE;
+        this.pageSize = Math.max(1, pageSize);
+        this.pager = pager;
+    }
+
+    /**
+     * Lists from a page token, skipping up to offset ids first.
+     * <p>
+     * The offset is kept for older clients. Skipped ids are read through the
+     * id projection too, but a page token is cheaper to resume from.
+     */
+    public static Iterable<String> list(String pageToken, long offset, long limit, int pageSize,
+                                        BiFunction<String, Pageable, List<String>> pager) {
+        return () -> {
+            String after = decode(pageToken);
+            if (offset > 0) {
+                KeysetPager skipped = new KeysetPager(after, offset, pageSize, pager);
+                while (skipped.hasNext()) {
+                    after = skipped.next();
+                }
+            }
+            return new KeysetPager(after, limit, pageSize, pager);
+        };
+    }
+
+    /**
+     * @return an opaque token that resumes a listing after the id
+     */
+    public static String encode(String id) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the id the token resumes after, empty for no token
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static String decode(String pageToken) {
+        if (pageToken == null || pageToken.isEmpty()) {
+            return "";
+        }
+        return new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (remaining <= 0) {
+            return false;
+        }
+        if (position < page.size()) {
+            return true;
+        }
+        if (exhausted) {
+            return false;
+        }
+
+        int size = (int) Math.min(pageSize, remaining);
+        page = pager.apply(after, PageRequest.of(0, size));
+        position = 0;
+        exhausted = page.size() < size;
+        return !page.isEmpty();
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        after = page.get(position++);
+        remaining--;
+        return after;
+    }
+}
@@ -0,0 +1,169 @@
+package com.baidu.highflip.server.engine.common;
+
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.Task;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import com.baidu.highflip.server.engine.tracker.JobStatusTracker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Saves status changes of jobs and tasks read some time before.
+ * <p>
+ * Jobs and tasks are versioned, so saving an outdated copy fails instead of
+ * overwriting a newer change. The status change of the copy is then merged
+ * into the stored row, which is saved again, up to max-attempts times. A
+ * finished status is final, a merge never moves a finished job or task to
+ * another status, and only binds a job that is not bound yet.
+ * <p>
+ * Saves must not run in a surrounding transaction, which a failed attempt
+ * marks for rollback.
+ */
+@Slf4j
+@Component
+public class StatusMerger {
+
+    @Autowired
+    HighFlipContext context;
+
+    @Value("${highflip.server.update.max-attempts:5}")
+    int maxAttempts;
+
+    public HighFlipContext getContext() {
+        return context;
+    }
+
+    public Job saveJob(Job job) {
+        return save(job, Job::getJobId, Job::getVersion,
+                getContext().getJobRepository(), StatusMerger::mergeJob);
+    }
+
+    public Task saveTask(Task task) {
+        return save(task, Task::getTaskid, Task::getVersion,
+                getContext().getTaskRepository(), StatusMerger::mergeTask);
+    }
+
+    /**
+     * Runs an attempt again while it fails on a version conflict, for
+     * attempts that read the stored rows before they change them.
+     */
+    public <T> T retry(Supplier<T> attempt) {
+        for (int i = 1; ; i++) {
+            try {
+                return attempt.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (i >= maxAttempts) {
+                    throw e;
+                }
+                log.debug("Retry after a version conflict, attempt {}.", i, e);
+            }
+        }
+    }
+
+    <T> T save(T change, Function<T, String> idOf, Function<T, Long> versionOf,
+               JpaRepository<T, String> repository, BiPredicate<T, T> merge) {
+        String id = idOf.apply(change);
+        T saving = change;
+        if (id != null && versionOf.apply(change) == null) {
+            // a copy made without the version, e.g. by an adaptor
+            Optional<T> stored = repository.findById(id);
+            if (stored.isPresent()) {
+                saving = stored.get();
+                if (!merge.test(saving, change)) {
+                    return saving;
+                }
+            }
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return repository.save(saving);
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts || id == null) {
+                    throw e;
+                }
+                T stored = repository.findById(id).orElseThrow(() -> e);
+                log.debug("Merge the change of {} into version {}, attempt {}.",
+                        id, versionOf.apply(stored), attempt);
+                if (!merge.test(stored, change)) {
+                    return stored;
+                }
+                saving = stored;
+            }
+        }
+    }
+
+    /**
+     * @return whether the stored job changed
+     */
+    static boolean mergeJob(Job stored, Job change) {
+        boolean changed = false;
+        if (canMove(stored.getStatus(), change.getStatus())) {
+            stored.setStatus(change.getStatus());
+            changed = true;
+        }
+        if (change.getMessage() != null && !change.getMessage().equals(stored.getMessage())) {
+            stored.setMessage(change.getMessage());
+            changed = true;
+        }
+        if (change.getFinishTime() != null && stored.getFinishTime() == null) {
+            stored.setFinishTime(change.getFinishTime());
+            changed = true;
+        }
+        if (change.getBingingId() != null && stored.getBingingId() == null) {
+            stored.setBingingId(change.getBingingId());
+            stored.setBinding(change.getBinding());
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * @return whether the stored task changed
+     */
+    static boolean mergeTask(Task stored, Task change) {
+        boolean changed = false;
+        if (change.getStatus() != null && canMove(toStatus(stored.getStatus()), toStatus(change.getStatus()))) {
+            stored.setStatus(change.getStatus());
+            changed = true;
+        }
+        if (change.getMessage() != null && !change.getMessage().equals(stored.getMessage())) {
+            stored.setMessage(change.getMessage());
+            changed = true;
+        }
+        if (change.getFinishTime() != null && stored.getFinishTime() == null) {
+            stored.setFinishTime(change.getFinishTime());
+            changed = true;
+        }
+        return changed;
+    }
+
+    static boolean canMove(Status from, Status to) {
+        if (to == null || Objects.equals(from, to)) {
+            return false;
+        }
+        return from == null || !JobStatusTracker.isTerminal(from);
+    }
+
+    static Status toStatus(String status) {
+        if (status == null) {
+            return null;
+        }
+        try {
+            return Status.valueOf(status);
+        } catch (IllegalArgumentException e) {
+            return Status.UNKNOWN;
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.baidu.highflip.server.engine.component;
 
 import com.baidu.highflip.core.engine.Configuration;
 import com.baidu.highflip.core.entity.runtime.Config;
+import com.baidu.highflip.server.engine.common.KeysetPager;
 import com.baidu.highflip.server.respository.ConfigurationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.transaction.Transactional;
@@ -16,6 +18,9 @@ public class HighFlipConfiguration implements Configuration {
     @Autowired
     ConfigurationRepository configs;
 
+    @Value("${highflip.server.list.page-size:500}")
+    int listPageSize;
+
     public Config getEntry(String key) {
         return configs.findById(key)
                 .orElse(null);
@@ -41,13 +46,20 @@ public class HighFlipConfiguration implements Configuration {
     }
 
     /**
-     * @return
+     * @return all keys in ascending order, read one page at a time
      */
     public Iterable<String> listKeys() {
-        return () -> configs.findAll()
-                .stream()
-                .map(c -> c.getKey())
-                .iterator();
+        return listKeys(null, 0, 0);
+    }
+
+    /**
+     * @param pageToken resumes after the key it was returned with, empty to start at the first
+     * @param offset    keys to skip
+     * @param limit     the most keys to return, zero for all
+     * @return
+     */
+    public Iterable<String> listKeys(String pageToken, long offset, long limit) {
+        return KeysetPager.list(pageToken, offset, limit, listPageSize, configs::findKeysAfter);
     }
 
     /**
@@ -9,10 +9,20 @@ import com.baidu.highflip.core.entity.runtime.Task;
 import com.baidu.highflip.core.entity.runtime.User;
 import com.baidu.highflip.core.entity.runtime.basic.Status;
 
+import com.baidu.highflip.server.engine.archive.JobArchiver;
+import com.baidu.highflip.server.engine.batch.TaskUpdateBuffer;
+import com.baidu.highflip.server.engine.binding.BindingIdFilter;
+import com.baidu.highflip.server.engine.binding.BindingIdIndex;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.function.BiFunction;
+
 @Slf4j
 @Component
 public class HighFlipRuntime implements com.baidu.highflip.core.engine.HighFlipRuntime {
@@ -23,10 +33,50 @@ public class HighFlipRuntime implements com.baidu.highflip.core.engine.HighFlipR
     @Autowired
     HighFlipConfiguration configuration;
 
+    @Autowired
+    BindingIdIndex bindings;
+
+    @Autowired
+    JobArchiver archive;
+
+    @Autowired
+    TaskUpdateBuffer updates;
+
+    @Value("${highflip.server.binding.load-page-size:10000}")
+    int loadPageSize;
+
     HighFlipContext getContext() {
         return context;
     }
 
+    /**
+     * Fills the binding id filters with the stored ids. Ids written meanwhile
+     * reach the filters through Hibernate, so this may run in the background.
+     */
+    public void loadBindingIds() {
+        int jobs = loadBindingIds(bindings.getJobs(),
+                (after, page) -> getContext().getJobRepository().findBindingIdsAfter(after, page));
+        int data = loadBindingIds(bindings.getData(),
+                (after, page) -> getContext().getDataRepository().findBindingIdsAfter(after, page));
+        log.info("Load binding ids of {} jobs and {} data.", jobs, data);
+    }
+
+    int loadBindingIds(BindingIdFilter filter, BiFunction<String, Pageable, List<String>> pager) {
+        int count = 0;
+        String after = "";
+        while (true) {
+            List<String> ids = pager.apply(after, PageRequest.of(0, loadPageSize));
+            ids.forEach(filter::put);
+            count += ids.size();
+            if (ids.size() < loadPageSize) {
+                break;
+            }
+            after = ids.get(ids.size() - 1);
+        }
+        filter.ready();
+        return count;
+    }
+
     @Override
     public Configuration getConfiguration() {
         return configuration;
@@ -37,12 +87,14 @@ public class HighFlipRuntime implements com.baidu.highflip.core.engine.HighFlipR
         return getContext()
                 .getJobRepository()
                 .findById(jobId)
+                .or(() -> archive.findJob(jobId))
                 .orElse(null);
     }
 
     @Override
     public Boolean hasJobByBindId(String bindId) {
-        return null;
+        return bindings.getJobs().contains(bindId,
+                id -> getContext().getJobRepository().existsByBingingId(id));
     }
 
     @Override
@@ -57,7 +109,8 @@ public class HighFlipRuntime implements com.baidu.highflip.core.engine.HighFlipR
 
     @Override
     public Boolean hasDataByBindId(String bindId) {
-        return null;
+        return bindings.getData().contains(bindId,
+                id -> getContext().getDataRepository().existsByBingingId(id));
     }
 
     @Override
@@ -83,12 +136,17 @@ public class HighFlipRuntime implements com.baidu.highflip.core.engine.HighFlipR
 
     @Override
     public Iterable<Task> listTask(String jobId) {
-        return getContext().getTaskRepository()
-                           .findAllByJobid(jobId);
+        return updates.overlay(getContext().getTaskRepository()
+                           .findAllByJobid(jobId));
     }
 
     @Override
     public void updateTask(Task task) {
-        getContext().getTaskRepository().save(task);
+        updates.update(task);
+    }
+
+    @Override
+    public void updateTasks(Iterable<Task> tasks) {
+        updates.updateAll(tasks);
     }
 }
@@ -0,0 +1,254 @@
+package com.baidu.highflip.server.engine.dataio;
+
+import com.baidu.highflip.core.entity.runtime.Data;
+import com.baidu.highflip.core.entity.runtime.basic.Column;
+import com.baidu.highflip.core.entity.runtime.basic.ColumnStats;
+import com.baidu.highflip.core.entity.runtime.basic.KeyPair;
+import com.google.common.base.Utf8;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Statistics of pushed data, collected row by row without keeping any:
+ * rows, bytes, and the nulls, min, max and approximate distinct values of
+ * every column.
+ * <p>
+ * Dense values belong to the column whose index is their position, sparse
+ * ones to the column named by their key, or indexed by it if the key is a
+ * number; other keys only count as bytes. The width is one more than the
+ * largest index seen or declared. Empty values are null. Min and max compare
+ * as numbers while all values of the column are finite decimal numbers, else
+ * as strings. Bytes are the UTF-8 length of the values, and of
+ * the keys of sparse rows. Raw data only has bytes, and lines as rows.
+ */
+public class DataStatistics {
+
+    static final int PRECISION = 12;
+
+    /**
+     * Plain decimal numbers, without the hexadecimal, infinite and type
+     * suffixed ones {@link Double#parseDouble(String)} takes as well.
+     */
+    static final Pattern DECIMAL = Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+
+    final int declared;
+
+    final NavigableMap<Integer, ColumnCollector> byIndex = new TreeMap<>();
+
+    final Map<String, ColumnCollector> byName = new HashMap<>();
+
+    long rows;
+
+    long bytes;
+
+    int width;
+
+    boolean raw;
+
+    /**
+     * The last raw byte was not a line end.
+     */
+    boolean openLine;
+
+    public DataStatistics(List<Column> columns) {
+        List<Column> schema = columns == null ? List.of() : columns;
+        for (Column column : schema) {
+            ColumnCollector collector = new ColumnCollector(column.getIndex(), column.getName());
+            byIndex.put(column.getIndex(), collector);
+            if (column.getName() != null) {
+                byName.put(column.getName(), collector);
+            }
+        }
+        this.declared = byIndex.isEmpty() ? 0 : byIndex.lastKey() + 1;
+    }
+
+    public void addDense(List<Object> row) {
+        rows++;
+        width = Math.max(width, row.size());
+        for (int i = 0; i < row.size(); i++) {
+            String value = toString(row.get(i));
+            if (value != null && !value.isEmpty()) {
+                bytes += Utf8.encodedLength(value);
+                column(i).add(value);
+            }
+        }
+    }
+
+    public void addSparse(List<KeyPair> row) {
+        rows++;
+        for (KeyPair pair : row) {
+            String key = pair.getKey();
+            String value = toString(pair.getValue());
+            ColumnCollector collector = null;
+            if (key != null) {
+                bytes += Utf8.encodedLength(key);
+                collector = sparseColumn(key);
+            }
+            if (value != null && !value.isEmpty()) {
+                bytes += Utf8.encodedLength(value);
+                if (collector != null) {
+                    collector.add(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the declared column of the key, null if there is none
+     */
+    ColumnCollector sparseColumn(String key) {
+        ColumnCollector collector = byName.get(key);
+        if (collector != null) {
+            width = Math.max(width, collector.index + 1);
+            return collector;
+        }
+        int index = toIndex(key);
+        if (index < 0) {
+            return null;
+        }
+        width = Math.max(width, index + 1);
+        return byIndex.get(index);
+    }
+
+    /**
+     * @return the index a key names, -1 if it is not one
+     */
+    static int toIndex(String key) {
+        if (key.isEmpty() || key.length() > 9) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = 0; i < key.length(); i++) {
+            int digit = key.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            index = index * 10 + digit;
+        }
+        return index;
+    }
+
+    public void addRaw(byte[] chunk) {
+        raw = true;
+        bytes += chunk.length;
+        for (byte b : chunk) {
+            if (b == '\n') {
+                rows++;
+            }
+        }
+        if (chunk.length > 0) {
+            openLine = chunk[chunk.length - 1] != '\n';
+        }
+    }
+
+    public long getRows() {
+        return rows + (openLine ? 1 : 0);
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Sets the size, the dimension and the column statistics of the data.
+     */
+    public void apply(Data data) {
+        long count = getRows();
+        data.setRawSize(bytes);
+        if (raw) {
+            data.setDimension(List.of(count));
+            return;
+        }
+        data.setDimension(List.of(count, (long) Math.max(width, declared)));
+        data.setStatistics(byIndex.values().stream()
+                .map(collector -> collector.toStats(count))
+                .collect(Collectors.toList()));
+    }
+
+    ColumnCollector column(int position) {
+        return byIndex.computeIfAbsent(position, index -> new ColumnCollector(index, null));
+    }
+
+    static String toString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    static class ColumnCollector {
+
+        final int index;
+
+        final String name;
+
+        final HyperLogLog distinct = new HyperLogLog(PRECISION);
+
+        long count;
+
+        String min;
+
+        String max;
+
+        boolean numeric = true;
+
+        double minNumber;
+
+        double maxNumber;
+
+        String minOfNumbers;
+
+        String maxOfNumbers;
+
+        ColumnCollector(int index, String name) {
+            this.index = index;
+            this.name = name;
+        }
+
+        void add(String value) {
+            count++;
+            distinct.add(value);
+            if (min == null || value.compareTo(min) < 0) {
+                min = value;
+            }
+            if (max == null || value.compareTo(max) > 0) {
+                max = value;
+            }
+            if (numeric) {
+                addNumber(value);
+            }
+        }
+
+        void addNumber(String value) {
+            if (!DECIMAL.matcher(value).matches()) {
+                numeric = false;
+                return;
+            }
+            // out of range values parse as infinite
+            double number = Double.parseDouble(value);
+            if (!Double.isFinite(number)) {
+                numeric = false;
+                return;
+            }
+            if (minOfNumbers == null || number < minNumber) {
+                minNumber = number;
+                minOfNumbers = value;
+            }
+            if (maxOfNumbers == null || number > maxNumber) {
+                maxNumber = number;
+                maxOfNumbers = value;
+            }
+        }
+
+        ColumnStats toStats(long rows) {
+            return new ColumnStats(index, name,
+                    Math.max(0, rows - count),
+                    numeric ? minOfNumbers : min,
+                    numeric ? maxOfNumbers : max,
+                    count == 0 ? 0 : distinct.estimate());
+        }
+    }
+}
@@ -13,6 +13,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Slf4j
 public class PushContext implements Closeable {
@@ -29,6 +30,10 @@ public class PushContext implements Closeable {
 
     Exception exception = null;
 
+    DataStatistics statistics;
+
+    Consumer<Data> closeListener;
+
     protected PushContext() {
 
     }
@@ -37,6 +42,7 @@ public class PushContext implements Closeable {
         PushContext context = new PushContext();
         context.data = data;
         context.adaptor = adaptor;
+        context.statistics = new DataStatistics(data.getColumns());
 
 
         context.thread = new Thread(new ContextWriter(context) {
@@ -58,6 +64,7 @@ public class PushContext implements Closeable {
         PushContext context = new PushContext();
         context.data = data;
         context.adaptor = adaptor;
+        context.statistics = new DataStatistics(data.getColumns());
         context.thread = new Thread(new ContextWriter(context) {
             @Override
             public void run() {
@@ -77,6 +84,7 @@ public class PushContext implements Closeable {
         PushContext context = new PushContext();
         context.data = data;
         context.adaptor = adaptor;
+        context.statistics = new DataStatistics(data.getColumns());
         context.thread = new Thread(new ContextWriter(context) {
             @Override
             public void run() {
@@ -111,6 +119,17 @@ public class PushContext implements Closeable {
         return data;
     }
 
+    public DataStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @param listener called with the data and its statistics once closed
+     */
+    public void onClose(Consumer<Data> listener) {
+        this.closeListener = listener;
+    }
+
     public boolean isDone() {
         return thread.isAlive();
     }
@@ -126,17 +145,24 @@ public class PushContext implements Closeable {
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
+        statistics.apply(data);
+        if (closeListener != null) {
+            closeListener.accept(data);
+        }
     }
 
     public void pushRaw(byte[] row) throws InterruptedException {
+        statistics.addRaw(row);
         queue.put(row);
     }
 
     public void pushDense(List<Object> row) throws InterruptedException {
+        statistics.addDense(row);
         queue.put(row);
     }
 
     public void pushSparse(List<KeyPair> row) throws InterruptedException {
+        statistics.addSparse(row);
         queue.put(row);
     }
 
@@ -0,0 +1,95 @@
+package com.baidu.highflip.server.engine.graph;
+
+import com.baidu.highflip.core.entity.runtime.Job;
+import org.hibernate.HibernateException;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.MergeEvent;
+import org.hibernate.event.spi.MergeEventListener;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.event.spi.PreInsertEvent;
+import org.hibernate.event.spi.PreInsertEventListener;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps job graphs in the {@link GraphStore} instead of the job row.
+ * <p>
+ * A graph set on a job is written before the job is inserted, or updated to
+ * point to it. Loaded jobs get a loader that reads their graph on first
+ * access. Merging a detached job carries its graph over to the managed copy.
+ */
+public class GraphListener implements PreInsertEventListener, PreUpdateEventListener,
+        PostLoadEventListener, MergeEventListener {
+
+    private static final long serialVersionUID = 0x85710201L;
+
+    static final String PROPERTY_GRAPH_HASH = "graphHash";
+
+    private final transient GraphStore store;
+
+    public GraphListener(GraphStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public boolean onPreInsert(PreInsertEvent event) {
+        if (event.getEntity() instanceof Job) {
+            store(event.getSession(), (Job) event.getEntity());
+        }
+        return false;
+    }
+
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        if (!(event.getEntity() instanceof Job) || event.getOldState() == null) {
+            return false;
+        }
+
+        int index = Arrays.asList(event.getPersister().getPropertyNames()).indexOf(PROPERTY_GRAPH_HASH);
+        if (index >= 0 && !Objects.equals(event.getOldState()[index], event.getState()[index])) {
+            store(event.getSession(), (Job) event.getEntity());
+        }
+        return false;
+    }
+
+    void store(EventSource session, Job job) {
+        if (job.getGraphHash() == null || job.getGraphContent() == null) {
+            return;
+        }
+        try {
+            session.doWork(connection -> store.store(connection, job.getGraphHash(), job.getGraphContent()));
+        } catch (RuntimeException e) {
+            throw new HibernateException("Failed to store graph of job " + job.getJobId(), e);
+        }
+    }
+
+    @Override
+    public void onPostLoad(PostLoadEvent event) {
+        if (event.getEntity() instanceof Job) {
+            ((Job) event.getEntity()).setGraphLoader(store::load);
+        }
+    }
+
+    @Override
+    public void onMerge(MergeEvent event) {
+        carry(event);
+    }
+
+    @Override
+    public void onMerge(MergeEvent event, Map copiedAlready) {
+        carry(event);
+    }
+
+    void carry(MergeEvent event) {
+        Object original = event.getOriginal();
+        Object result = event.getResult();
+        if (original instanceof Job && result instanceof Job && original != result) {
+            ((Job) original).copyGraphTo((Job) result);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.baidu.highflip.server.engine.graph;
+
+import com.baidu.highflip.core.entity.dag.Graph;
+import com.baidu.highflip.core.utils.GraphCodec;
+import com.vladmihalcea.hibernate.type.util.ObjectMapperWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes job graphs in hf_graph, where equal graphs share one row.
+ * <p>
+ * Graphs are written by the {@link GraphListener} on the connection of the
+ * session that flushes the job, and read on first access through plain JDBC,
+ * so a job detached from its session can still load its graph. Rows are not
+ * removed with their jobs, since other jobs may share them.
+ * <p>
+ * Kept free of repository dependencies so Hibernate can use it while the
+ * persistence unit is being built.
+ */
+@Slf4j
+@Component
+public class GraphStore {
+
+    static final String SELECT_EXISTS = "SELECT 1 FROM hf_graph WHERE graph_hash = ?";
+
+    static final String SELECT_CONTENT = "SELECT content FROM hf_graph WHERE graph_hash = ?";
+
+    static final String INSERT = "INSERT INTO hf_graph (graph_hash, content, create_time) VALUES (?, ?, ?)";
+
+    static final String INSERT_IF_ABSENT = INSERT + " ON CONFLICT (graph_hash) DO NOTHING";
+
+    static final String SELECT_LEGACY = "SELECT job_id, graph FROM hf_job"
+            + " WHERE job_id > ? AND graph IS NOT NULL ORDER BY job_id";
+
+    static final String UPDATE_LEGACY = "UPDATE hf_job SET graph_hash = ?, graph = NULL WHERE job_id = ?";
+
+    @Autowired
+    DataSource dataSource;
+
+    @Value("${highflip.server.graph.migrate-page-size:100}")
+    int migratePageSize;
+
+    JdbcTemplate jdbc;
+
+    @PostConstruct
+    public void initialize() {
+        jdbc = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Writes the content unless a graph with the hash is stored already.
+     * <p>
+     * Jobs with the same graph may be saved at the same time, both finding
+     * the graph absent. PostgreSQL skips the second insert, elsewhere its
+     * duplicate key error is ignored, rolled back to a savepoint so the
+     * transaction of the job goes on.
+     */
+    public void store(Connection connection, String hash, byte[] content) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_EXISTS)) {
+            statement.setString(1, hash);
+            try (ResultSet result = statement.executeQuery()) {
+                if (result.next()) {
+                    return;
+                }
+            }
+        }
+
+        if ("PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+            insert(connection, INSERT_IF_ABSENT, hash, content);
+            return;
+        }
+
+        Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+        try {
+            insert(connection, INSERT, hash, content);
+        } catch (SQLException e) {
+            if (!isDuplicateKey(e)) {
+                throw e;
+            }
+            if (savepoint != null) {
+                connection.rollback(savepoint);
+            }
+            log.debug("Graph {} is stored concurrently.", hash);
+            return;
+        }
+        if (savepoint != null) {
+            connection.releaseSavepoint(savepoint);
+        }
+    }
+
+    static void insert(Connection connection, String sql, String hash, byte[] content) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, hash);
+            statement.setBytes(2, content);
+            statement.setTimestamp(3, new Timestamp(DateTime.now().getMillis()));
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Integrity constraint violations, of the unique key here, have SQL
+     * state class 23.
+     */
+    static boolean isDuplicateKey(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("23");
+    }
+
+    /**
+     * @return the graph with the hash, null if none is stored
+     */
+    public Graph load(String hash) {
+        List<byte[]> contents = jdbc.query(SELECT_CONTENT, (rs, i) -> rs.getBytes(1), hash);
+        if (contents.isEmpty()) {
+            log.warn("Graph {} is not stored.", hash);
+            return null;
+        }
+        return GraphCodec.fromBytes(GraphCodec.decompress(contents.get(0)));
+    }
+
+    /**
+     * Moves graphs stored as JSON in the former graph column of hf_job to
+     * hf_graph. Graphs that fail to convert are left in place.
+     *
+     * @return number of jobs converted
+     */
+    public int migrate() {
+        if (!hasLegacyColumn()) {
+            return 0;
+        }
+
+        JdbcTemplate pager = new JdbcTemplate(dataSource);
+        pager.setMaxRows(Math.max(1, migratePageSize));
+
+        int count = 0;
+        String after = "";
+        while (true) {
+            List<Map<String, Object>> rows = pager.queryForList(SELECT_LEGACY, after);
+            for (Map<String, Object> row : rows) {
+                after = (String) row.get("job_id");
+                count += migrate(after, String.valueOf(row.get("graph")));
+            }
+            if (rows.size() < migratePageSize) {
+                break;
+            }
+        }
+
+        if (count > 0) {
+            log.info("Migrate graphs of {} jobs to hf_graph.", count);
+        }
+        return count;
+    }
+
+    int migrate(String jobId, String json) {
+        try {
+            byte[] bytes = GraphCodec.toBytes(ObjectMapperWrapper.INSTANCE.fromString(json, Graph.class));
+            String hash = GraphCodec.hash(bytes);
+            byte[] content = GraphCodec.compress(bytes);
+            jdbc.execute((ConnectionCallback<Void>) connection -> {
+                store(connection, hash, content);
+                return null;
+            });
+            jdbc.update(UPDATE_LEGACY, hash, jobId);
+            return 1;
+        } catch (RuntimeException e) {
+            log.warn("Failed to migrate graph of job {}.", jobId, e);
+            return 0;
+        }
+    }
+
+    boolean hasLegacyColumn() {
+        Boolean found = jdbc.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metadata = connection.getMetaData();
+            for (String[] names : new String[][]{{"hf_job", "graph"}, {"HF_JOB", "GRAPH"}}) {
+                try (ResultSet columns = metadata.getColumns(null, null, names[0], names[1])) {
+                    if (columns.next()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(found);
+    }
+}
@@ -0,0 +1,38 @@
+package com.baidu.highflip.server.engine.graph;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Registers the {@link GraphListener} with the session factory.
+ */
+public class GraphStoreIntegrator implements Integrator {
+
+    private final GraphStore store;
+
+    public GraphStoreIntegrator(GraphStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void integrate(Metadata metadata,
+                          SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        GraphListener listener = new GraphListener(store);
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.PRE_INSERT, listener);
+        registry.appendListeners(EventType.PRE_UPDATE, listener);
+        registry.appendListeners(EventType.POST_LOAD, listener);
+        // after the default listener, which creates the managed copy
+        registry.appendListeners(EventType.MERGE, listener);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory,
+                             SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,128 @@
+package com.baidu.highflip.server.engine.journal;
+
+import com.baidu.highflip.core.entity.runtime.ChangeRecord;
+import com.baidu.highflip.server.respository.ChangeRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the change journal to subscribers.
+ * <p>
+ * A subscriber first catches up page by page from its sequence number, then
+ * waits without holding a thread until the {@link ChangeRecorder} reports a
+ * commit. Waiting subscribers are also woken on a fixed interval, in case
+ * records were appended by another server.
+ */
+@Slf4j
+@Component
+public class ChangeJournal {
+
+    public interface Sink {
+
+        boolean isCancelled();
+
+        void onChanges(List<ChangeRecord> changes);
+
+        void onError(Throwable error);
+    }
+
+    static class Subscription {
+
+        final Sink sink;
+
+        volatile long seq;
+
+        Subscription(Sink sink, long seq) {
+            this.sink = sink;
+            this.seq = seq;
+        }
+    }
+
+    @Autowired
+    ChangeRecordRepository repository;
+
+    @Autowired
+    ChangeRecorder recorder;
+
+    @Value("${highflip.server.journal.page-size:500}")
+    int pageSize;
+
+    @Value("${highflip.server.journal.threads:2}")
+    int threads;
+
+    @Value("${highflip.server.journal.wake-interval-ms:5000}")
+    long wakeInterval;
+
+    final Set<Subscription> waiting = ConcurrentHashMap.newKeySet();
+
+    ScheduledExecutorService pool;
+
+    @PostConstruct
+    public void initialize() {
+        pool = Executors.newScheduledThreadPool(Math.max(1, threads));
+        pool.scheduleWithFixedDelay(this::wakeAll, wakeInterval, wakeInterval, TimeUnit.MILLISECONDS);
+        recorder.addListener(seq -> wakeAll());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Sends every change after the sequence number, then the new ones as they
+     * are committed, until the sink is cancelled.
+     */
+    public void subscribe(long fromSeq, Sink sink) {
+        Subscription subscription = new Subscription(sink, Math.max(0, fromSeq));
+        pool.execute(() -> step(subscription));
+    }
+
+    void step(Subscription subscription) {
+        if (subscription.sink.isCancelled()) {
+            return;
+        }
+        try {
+            List<ChangeRecord> changes = repository.findAllBySeqGreaterThanOrderBySeq(
+                    subscription.seq, PageRequest.of(0, pageSize));
+
+            if (!changes.isEmpty()) {
+                subscription.sink.onChanges(changes);
+                subscription.seq = changes.get(changes.size() - 1).getSeq();
+                pool.execute(() -> step(subscription));
+                return;
+            }
+
+            waiting.add(subscription);
+            // a commit may have happened between the read and the registration
+            if (recorder.getSequence() > subscription.seq) {
+                wake(subscription);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to read the change journal after {}.", subscription.seq, e);
+            subscription.sink.onError(e);
+        }
+    }
+
+    void wakeAll() {
+        waiting.forEach(this::wake);
+    }
+
+    void wake(Subscription subscription) {
+        if (waiting.remove(subscription)) {
+            pool.execute(() -> step(subscription));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.baidu.highflip.server.engine.journal;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Registers the {@link ChangeListener} with the session factory.
+ */
+public class ChangeJournalIntegrator implements Integrator {
+
+    private final ChangeRecorder recorder;
+
+    public ChangeJournalIntegrator(ChangeRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void integrate(Metadata metadata,
+                          SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        ChangeListener listener = new ChangeListener(recorder);
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, listener);
+        registry.appendListeners(EventType.POST_UPDATE, listener);
+        registry.appendListeners(EventType.POST_DELETE, listener);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory,
+                             SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,44 @@
+package com.baidu.highflip.server.engine.journal;
+
+import com.baidu.highflip.core.entity.runtime.ChangeRecord;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Hands every job and task write flushed by Hibernate to the {@link ChangeRecorder}.
+ */
+public class ChangeListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final long serialVersionUID = 0x85710101L;
+
+    private final transient ChangeRecorder recorder;
+
+    public ChangeListener(ChangeRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        recorder.record(event.getSession(), event.getEntity(), ChangeRecord.OPERATION_CREATE);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        recorder.record(event.getSession(), event.getEntity(), ChangeRecord.OPERATION_UPDATE);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        recorder.record(event.getSession(), event.getEntity(), ChangeRecord.OPERATION_DELETE);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+}
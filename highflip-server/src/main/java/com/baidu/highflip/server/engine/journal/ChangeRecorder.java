@@ -0,0 +1,230 @@
+package com.baidu.highflip.server.engine.journal;
+
+import com.baidu.highflip.core.entity.runtime.ChangeRecord;
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.Task;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.HibernateException;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.spi.EventSource;
+import org.joda.time.DateTime;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Appends the job and task changes of a transaction to the change journal
+ * right before it commits, on the same connection.
+ * <p>
+ * Sequence numbers are taken under a lock that is held until the transaction
+ * completes, so records become visible in sequence order and a reader that
+ * saw a sequence number never misses a lower one later. This serializes the
+ * commits of transactions that change jobs or tasks, within one server: each
+ * waits for the journal insert and the commit of the one before it, so their
+ * rate is bounded by the commit latency of the database. Transactions without
+ * job or task changes do not take the lock.
+ * <p>
+ * The last sequence number is read from the journal on every append, as other
+ * servers and the metadata log append too. Two servers appending at once
+ * collide on the primary key and one of the transactions rolls back.
+ * <p>
+ * Kept free of repository dependencies so Hibernate can use it while the
+ * persistence unit is being built.
+ */
+@Slf4j
+@Component
+public class ChangeRecorder {
+
+    static final String INSERT = "INSERT INTO hf_change_journal"
+            + " (seq, entity_type, entity_id, job_id, operation, status, change_time)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    static final String SELECT_LAST = "SELECT MAX(seq) FROM hf_change_journal";
+
+    /**
+     * The changes of one transaction.
+     */
+    class Batch implements BeforeTransactionCompletionProcess, AfterTransactionCompletionProcess {
+
+        final SharedSessionContractImplementor session;
+
+        final List<ChangeRecord> records = new ArrayList<>();
+
+        boolean locked = false;
+
+        long last = 0;
+
+        Batch(SharedSessionContractImplementor session) {
+            this.session = session;
+        }
+
+        @Override
+        public void doBeforeTransactionCompletion(SessionImplementor session) {
+            if (records.isEmpty()) {
+                return;
+            }
+            lock.lock();
+            locked = true;
+            try {
+                session.doWork(this::append);
+            } catch (RuntimeException e) {
+                // the transaction rolls back and completes without it
+                throw new HibernateException("Failed to append to the change journal.", e);
+            }
+        }
+
+        void append(Connection connection) throws SQLException {
+            long seq;
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_LAST);
+                 ResultSet result = statement.executeQuery()) {
+                seq = result.next() ? result.getLong(1) : 0;
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                for (ChangeRecord record : records) {
+                    statement.setLong(1, ++seq);
+                    statement.setString(2, record.getEntityType());
+                    statement.setString(3, record.getEntityId());
+                    statement.setString(4, record.getJobId());
+                    statement.setString(5, record.getOperation());
+                    statement.setString(6, record.getStatus());
+                    statement.setTimestamp(7, new Timestamp(record.getChangeTime().getMillis()));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            last = seq;
+        }
+
+        @Override
+        public void doAfterTransactionCompletion(boolean success, SharedSessionContractImplementor session) {
+            batches.remove(this.session, this);
+            if (!locked) {
+                return;
+            }
+            long committed = 0;
+            if (success && last > 0) {
+                sequence = last;
+                committed = last;
+            }
+            lock.unlock();
+
+            if (committed > 0) {
+                publish(committed);
+            }
+        }
+    }
+
+    final ReentrantLock lock = new ReentrantLock();
+
+    final Map<SharedSessionContractImplementor, Batch> batches = new ConcurrentHashMap<>();
+
+    final List<LongConsumer> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Last sequence number committed by this server, negative until the first.
+     * Only changed while holding the lock.
+     */
+    volatile long sequence = -1;
+
+    /**
+     * @return the last committed sequence number, negative if not known yet
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Called with the last sequence number after each commit that appended
+     * to the journal.
+     */
+    public void addListener(LongConsumer listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Appends to the journal outside of Hibernate, e.g. to the metadata log.
+     * The append is called under the lock with the last sequence number,
+     * negative if not known yet, and returns the new last one.
+     */
+    public void append(LongUnaryOperator append) {
+        long committed;
+        lock.lock();
+        try {
+            committed = append.applyAsLong(sequence);
+            sequence = committed;
+        } finally {
+            lock.unlock();
+        }
+        publish(committed);
+    }
+
+    void publish(long committed) {
+        for (LongConsumer listener : listeners) {
+            try {
+                listener.accept(committed);
+            } catch (RuntimeException e) {
+                log.warn("Failed to notify journal listener.", e);
+            }
+        }
+    }
+
+    /**
+     * Records a change Hibernate does not see, e.g. by a bulk delete, in the
+     * transaction of the entity manager.
+     */
+    public void record(EntityManager entityManager, Object entity, String operation) {
+        record(entityManager.unwrap(EventSource.class), entity, operation);
+    }
+
+    void record(EventSource session, Object entity, String operation) {
+        ChangeRecord record = toRecord(entity, operation);
+        if (record == null) {
+            return;
+        }
+        batches.computeIfAbsent(session, s -> {
+            Batch batch = new Batch(s);
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) batch);
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) batch);
+            return batch;
+        }).records.add(record);
+    }
+
+    public static ChangeRecord toRecord(Object entity, String operation) {
+        ChangeRecord record = new ChangeRecord();
+        if (entity instanceof Job) {
+            Job job = (Job) entity;
+            record.setEntityType(ChangeRecord.ENTITY_JOB);
+            record.setEntityId(job.getJobId());
+            record.setJobId(job.getJobId());
+            record.setStatus(job.getStatus() == null ? null : job.getStatus().name());
+        } else if (entity instanceof Task) {
+            Task task = (Task) entity;
+            record.setEntityType(ChangeRecord.ENTITY_TASK);
+            record.setEntityId(task.getTaskid());
+            record.setJobId(task.getJobid());
+            record.setStatus(task.getStatus());
+        } else {
+            return null;
+        }
+        record.setOperation(operation);
+        record.setChangeTime(DateTime.now());
+        return record;
+    }
+}
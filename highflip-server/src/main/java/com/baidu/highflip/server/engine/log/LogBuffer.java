@@ -0,0 +1,63 @@
+package com.baidu.highflip.server.engine.log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Ring buffer of the most recent lines of one log, addressed by absolute
+ * line number. Not thread safe, {@link LogCache} locks it.
+ */
+class LogBuffer {
+
+    private final String[] ring;
+
+    /**
+     * Absolute number of the oldest line kept.
+     */
+    private long start = 0;
+
+    /**
+     * Absolute number after the newest line kept, the lines fetched so far.
+     */
+    private long end = 0;
+
+    /**
+     * Upstream size when last asked.
+     */
+    long count = 0;
+
+    long countTime = 0;
+
+    LogBuffer(int capacity) {
+        this.ring = new String[capacity];
+    }
+
+    long getStart() {
+        return start;
+    }
+
+    long getEnd() {
+        return end;
+    }
+
+    void append(Iterator<String> lines) {
+        while (lines.hasNext()) {
+            ring[(int) (end % ring.length)] = lines.next();
+            end++;
+        }
+        start = Math.max(start, end - ring.length);
+    }
+
+    /**
+     * @param offset not before {@link #getStart()}
+     */
+    List<String> get(long offset, int limit) {
+        long to = Math.min(end, offset + limit);
+        List<String> lines = new ArrayList<>((int) Math.max(0, to - offset));
+        for (long i = offset; i < to; i++) {
+            lines.add(ring[(int) (i % ring.length)]);
+        }
+        return lines;
+    }
+}
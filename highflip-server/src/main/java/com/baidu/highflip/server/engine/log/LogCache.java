@@ -0,0 +1,112 @@
+package com.baidu.highflip.server.engine.log;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recent lines of job and task logs, shared by all readers of a log.
+ * <p>
+ * Each log keeps its newest lines in a bounded ring buffer. Readers that
+ * reach the end of the buffer fetch the new upstream lines once for all of
+ * them while holding the buffer lock, so concurrent readers wait for that
+ * fetch instead of repeating it. A reader ahead of the buffer has it filled
+ * up to its lines, or reads upstream when too far ahead. At the end of the
+ * log, the upstream size is asked at most once per refresh interval. Lines
+ * older than the buffer are read from upstream without caching. The least recently read logs are
+ * dropped beyond the configured number of logs.
+ */
+@Slf4j
+@Component
+public class LogCache {
+
+    @Value("${highflip.server.log.buffer-lines:10000}")
+    int bufferLines;
+
+    @Value("${highflip.server.log.max-logs:1000}")
+    int maxLogs;
+
+    @Value("${highflip.server.log.refresh-ms:1000}")
+    long refreshInterval;
+
+    @Value("${highflip.server.log.fetch-lines:1000}")
+    int fetchLines;
+
+    final Map<String, LogBuffer> buffers = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LogBuffer> eldest) {
+            return size() > maxLogs;
+        }
+    };
+
+    LogBuffer getBuffer(String key) {
+        synchronized (buffers) {
+            return buffers.computeIfAbsent(key, k -> new LogBuffer(bufferLines));
+        }
+    }
+
+    /**
+     * @return up to limit lines from offset, fewer at the current end of the log
+     */
+    public List<String> read(String key, LogSource source, long offset, int limit) {
+        LogBuffer buffer = getBuffer(key);
+        synchronized (buffer) {
+            if (offset < buffer.getStart()) {
+                return readUpstream(source, offset, limit);
+            }
+
+            if (offset - buffer.getEnd() > bufferLines) {
+                // too far ahead to keep the lines before it
+                return readUpstream(source, offset, limit);
+            }
+
+            if (offset + limit > buffer.getEnd()) {
+                // only ask for the size again once the known lines are all fetched
+                long now = System.currentTimeMillis();
+                if (buffer.getEnd() >= buffer.count && now - buffer.countTime >= refreshInterval) {
+                    buffer.countTime = now;
+                    buffer.count = source.count();
+                }
+                // fill up to the requested lines, a reader ahead of the buffer is not at the end
+                long want = Math.min(buffer.count, offset + limit);
+                while (buffer.getEnd() < want) {
+                    long end = buffer.getEnd();
+                    int size = (int) Math.min(buffer.count - end, Math.max(fetchLines, limit));
+                    Iterator<String> lines = source.read((int) end, size);
+                    if (lines == null) {
+                        break;
+                    }
+                    buffer.append(lines);
+                    if (buffer.getEnd() == end) {
+                        break;
+                    }
+                }
+            }
+            if (offset < buffer.getStart()) {
+                return readUpstream(source, offset, limit);
+            }
+            return buffer.get(offset, limit);
+        }
+    }
+
+    List<String> readUpstream(LogSource source, long offset, int limit) {
+        List<String> lines = new ArrayList<>();
+        Iterator<String> iter = source.read((int) offset, limit);
+        while (iter != null && iter.hasNext() && lines.size() < limit) {
+            lines.add(iter.next());
+        }
+        return lines;
+    }
+
+    public void evict(String key) {
+        synchronized (buffers) {
+            buffers.remove(key);
+        }
+    }
+}
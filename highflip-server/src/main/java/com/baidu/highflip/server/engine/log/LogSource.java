@@ -0,0 +1,13 @@
+package com.baidu.highflip.server.engine.log;
+
+import java.util.Iterator;
+
+/**
+ * Upstream lines of one job or task log.
+ */
+public interface LogSource {
+
+    int count();
+
+    Iterator<String> read(int offset, int limit);
+}
@@ -0,0 +1,102 @@
+package com.baidu.highflip.server.engine.log;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Streams log lines in batches through the {@link LogCache}.
+ * <p>
+ * Without follow, the stream ends at the current end of the log. With follow,
+ * it waits for new lines until the owner of the log has finished and every
+ * line has been sent. Waiting streams hold no thread.
+ */
+@Slf4j
+@Component
+public class LogTailer {
+
+    public interface Sink {
+
+        boolean isCancelled();
+
+        void onLines(List<String> lines);
+
+        void onCompleted();
+
+        void onError(Throwable error);
+    }
+
+    @Autowired
+    LogCache cache;
+
+    @Value("${highflip.server.log.batch-lines:100}")
+    int batchLines;
+
+    @Value("${highflip.server.log.follow-interval-ms:1000}")
+    long followInterval;
+
+    @Value("${highflip.server.log.threads:4}")
+    int threads;
+
+    ScheduledExecutorService pool;
+
+    @PostConstruct
+    public void initialize() {
+        pool = Executors.newScheduledThreadPool(Math.max(1, threads));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * @param limit    number of lines to send, 0 for no limit
+     * @param finished tells whether the log can still grow
+     */
+    public void tail(String key, LogSource source, long offset, long limit,
+                     boolean follow, BooleanSupplier finished, Sink sink) {
+        pool.execute(() -> step(key, source, offset, limit <= 0 ? Long.MAX_VALUE : limit, follow, finished, sink));
+    }
+
+    void step(String key, LogSource source, long offset, long remaining,
+              boolean follow, BooleanSupplier finished, Sink sink) {
+        if (sink.isCancelled()) {
+            return;
+        }
+        try {
+            // checked before reading, so no line written before the end is missed
+            boolean done = !follow || finished.getAsBoolean();
+            List<String> lines = cache.read(key, source, offset, (int) Math.min(batchLines, remaining));
+
+            if (!lines.isEmpty()) {
+                sink.onLines(lines);
+                long left = remaining - lines.size();
+                if (left <= 0) {
+                    sink.onCompleted();
+                    return;
+                }
+                pool.execute(() -> step(key, source, offset + lines.size(), left, follow, finished, sink));
+                return;
+            }
+            if (done) {
+                sink.onCompleted();
+                return;
+            }
+            pool.schedule(() -> step(key, source, offset, remaining, true, finished, sink),
+                    followInterval, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            log.warn("Failed to read log {} at line {}.", key, offset, e);
+            sink.onError(e);
+        }
+    }
+}
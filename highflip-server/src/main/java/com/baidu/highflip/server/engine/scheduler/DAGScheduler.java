@@ -1,8 +1,382 @@
 package com.baidu.highflip.server.engine.scheduler;
 
+import com.baidu.highflip.core.engine.scheduler.AbstractScheduler;
 import com.baidu.highflip.core.entity.dag.Graph;
+import com.baidu.highflip.core.entity.dag.Node;
+import com.baidu.highflip.core.entity.dag.common.NodeInputRef;
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.Task;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.server.engine.common.StatusMerger;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-public abstract class DAGScheduler {
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
-    public abstract void dispatch(Graph graph);
+/**
+ * Runs the nodes of a job graph as tasks, without handing the graph to the
+ * backend.
+ * <p>
+ * Each node becomes one task. Nodes whose predecessors have all succeeded
+ * form the ready set and are dispatched together to the {@link TaskExecutor},
+ * so independent branches run concurrently up to the size of its pool. The
+ * completion of a task immediately dispatches the successors it unblocks.
+ * After a task fails nothing new is dispatched, and the job fails once the
+ * tasks in flight are done. Cancelling a job also stops its tasks in flight.
+ * <p>
+ * Jobs run by this scheduler are marked in their binding, and the ones left
+ * RUNNING by a restart are resumed: succeeded tasks are kept and running
+ * tasks are waited for instead of invoked again.
+ */
+@Slf4j
+@Component
+public class DAGScheduler extends AbstractScheduler {
+
+    public static final String BINDING_SCHEDULER = "scheduler";
+
+    public static final String SCHEDULER_NATIVE = "native";
+
+    static class Run {
+
+        final String jobId;
+
+        final Map<String, Task> tasks;
+
+        final Map<String, List<String>> successors;
+
+        /**
+         * Number of predecessors not yet succeeded, by node.
+         */
+        final Map<String, Integer> waiting = new HashMap<>();
+
+        int inFlight = 0;
+
+        int succeeded = 0;
+
+        String failure = null;
+
+        Run(String jobId, Map<String, Task> tasks, Map<String, List<String>> successors) {
+            this.jobId = jobId;
+            this.tasks = tasks;
+            this.successors = successors;
+        }
+    }
+
+    @Autowired
+    HighFlipContext context;
+
+    @Autowired
+    TaskExecutor executor;
+
+    @Autowired
+    StatusMerger merger;
+
+    final ConcurrentMap<String, Run> runs = new ConcurrentHashMap<>();
+
+    public HighFlipContext getContext() {
+        return context;
+    }
+
+    public static boolean isNative(Job job) {
+        return job.getBinding() != null
+                && SCHEDULER_NATIVE.equals(job.getBinding().get(BINDING_SCHEDULER));
+    }
+
+    /**
+     * @return the node names each node depends on, for nodes of the graph only
+     */
+    public static Map<String, List<String>> predecessors(Graph graph) {
+        Map<String, List<String>> predecessors = new LinkedHashMap<>();
+        for (Node node : graph.getNodes().values()) {
+            predecessors.put(node.getName(), node.getInputs()
+                    .values()
+                    .stream()
+                    .map(NodeInputRef::getFromNode)
+                    .filter(Objects::nonNull)
+                    .filter(name -> !name.equals(node.getName()))
+                    .filter(name -> graph.getNodes().containsKey(name))
+                    .distinct()
+                    .collect(Collectors.toList()));
+        }
+        return predecessors;
+    }
+
+    public static Map<String, List<String>> successors(Map<String, List<String>> predecessors) {
+        Map<String, List<String>> successors = new LinkedHashMap<>();
+        predecessors.keySet().forEach(name -> successors.put(name, new ArrayList<>()));
+        predecessors.forEach((name, previous) ->
+                previous.forEach(p -> successors.get(p).add(name)));
+        return successors;
+    }
+
+    /**
+     * @return the node names in an order where every node follows its predecessors
+     * @throws IllegalArgumentException if the graph has a cycle
+     */
+    public static List<String> sort(Map<String, List<String>> predecessors) {
+        Map<String, List<String>> successors = successors(predecessors);
+        Map<String, Integer> waiting = new HashMap<>();
+        Deque<String> ready = new ArrayDeque<>();
+        predecessors.forEach((name, previous) -> {
+            waiting.put(name, previous.size());
+            if (previous.isEmpty()) {
+                ready.add(name);
+            }
+        });
+
+        List<String> sorted = new ArrayList<>(predecessors.size());
+        while (!ready.isEmpty()) {
+            String name = ready.poll();
+            sorted.add(name);
+            for (String next : successors.get(name)) {
+                if (waiting.merge(next, -1, Integer::sum) == 0) {
+                    ready.add(next);
+                }
+            }
+        }
+
+        if (sorted.size() < predecessors.size()) {
+            List<String> cycle = predecessors.keySet()
+                    .stream()
+                    .filter(name -> waiting.get(name) > 0)
+                    .collect(Collectors.toList());
+            throw new IllegalArgumentException("Graph has a cycle among nodes " + cycle);
+        }
+        return sorted;
+    }
+
+    public boolean isRunning(String jobId) {
+        return runs.containsKey(jobId);
+    }
+
+    /**
+     * Creates the tasks of the job, or reuses the ones of a previous run, and
+     * starts the nodes that are ready. Inside a transaction, the nodes start
+     * once the transaction commits.
+     */
+    @Override
+    public void dispatch(Job job) {
+        Graph graph = job.getGraph();
+        if (graph == null || graph.getNodes() == null) {
+            throw new IllegalArgumentException("Job " + job.getJobId() + " has no graph.");
+        }
+
+        Map<String, List<String>> predecessors = predecessors(graph);
+        Map<String, List<String>> successors = successors(predecessors);
+        List<String> sorted = sort(predecessors);
+
+        Map<String, Task> existing = getContext().getTaskRepository()
+                .findAllByJobid(job.getJobId())
+                .stream()
+                .filter(t -> t.getNodeName() != null)
+                .collect(Collectors.toMap(Task::getNodeName, t -> t, (a, b) -> a));
+
+        List<Task> created = new ArrayList<>();
+        Map<String, Task> tasks = new LinkedHashMap<>();
+        for (String name : sorted) {
+            Task task = existing.get(name);
+            if (task == null) {
+                Node node = graph.getNode(name);
+                task = new Task();
+                task.setJobid(job.getJobId());
+                task.setName(name);
+                task.setNodeName(name);
+                task.setDescription(node.getDescription());
+                task.setStatus(Status.CREATED.name());
+                task.setPrevious(predecessors.get(name));
+                task.setNext(successors.get(name));
+                created.add(task);
+            }
+            tasks.put(name, task);
+        }
+        if (!created.isEmpty()) {
+            getContext().getTaskRepository().saveAll(created)
+                    .forEach(task -> tasks.put(task.getNodeName(), task));
+        }
+
+        Run run = new Run(job.getJobId(), tasks, successors);
+        if (runs.putIfAbsent(job.getJobId(), run) != null) {
+            log.warn("Job {} is already running.", job.getJobId());
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        start(run, predecessors);
+                    } else {
+                        runs.remove(run.jobId, run);
+                    }
+                }
+            });
+            return;
+        }
+        start(run, predecessors);
+    }
+
+    /**
+     * Resumes the jobs of this scheduler left RUNNING, e.g. by a restart.
+     *
+     * @return number of jobs resumed
+     */
+    public int recover() {
+        int count = 0;
+        for (Job job : getContext().getJobRepository().findAllByStatusAndBingingIdIsNull(Status.RUNNING)) {
+            if (!isNative(job) || isRunning(job.getJobId())) {
+                continue;
+            }
+            try {
+                dispatch(job);
+                count++;
+            } catch (RuntimeException e) {
+                log.error("Failed to resume job {}.", job.getJobId(), e);
+                finish(job.getJobId(), Status.FAILED, String.valueOf(e.getMessage()));
+            }
+        }
+        if (count > 0) {
+            log.info("Resumed {} jobs of the native scheduler.", count);
+        }
+        return count;
+    }
+
+    @Override
+    public Status status(Job job) {
+        return isRunning(job.getJobId()) ? Status.RUNNING : job.getStatus();
+    }
+
+    /**
+     * Dispatches nothing new for the job and stops the tasks in flight, the
+     * job fails once they completed.
+     */
+    public void cancel(String jobId) {
+        Run run = runs.get(jobId);
+        if (run == null) {
+            return;
+        }
+        synchronized (run) {
+            if (run.failure == null) {
+                run.failure = "Cancelled.";
+            }
+        }
+        // tasks not in flight are ignored by the executor
+        run.tasks.values().forEach(executor::cancel);
+    }
+
+    void start(Run run, Map<String, List<String>> predecessors) {
+        List<Task> ready = new ArrayList<>();
+        synchronized (run) {
+            predecessors.forEach((name, previous) -> run.waiting.put(name, (int) previous
+                    .stream()
+                    .filter(p -> !isSucceeded(run.tasks.get(p)))
+                    .count()));
+
+            for (Task task : run.tasks.values()) {
+                if (isSucceeded(task)) {
+                    run.succeeded++;
+                } else if (run.waiting.get(task.getNodeName()) == 0) {
+                    run.inFlight++;
+                    ready.add(task);
+                }
+            }
+        }
+
+        log.info("Start job {} with {} of {} tasks ready.", run.jobId, ready.size(), run.tasks.size());
+        mark(run.jobId);
+        if (ready.isEmpty()) {
+            complete(run);
+            return;
+        }
+        ready.forEach(task -> submit(run, task));
+    }
+
+    void submit(Run run, Task task) {
+        boolean invoked = Status.RUNNING.name().equals(task.getStatus());
+        (invoked ? executor.resume(task) : executor.execute(task))
+                .whenComplete((status, error) -> onComplete(run, task,
+                        error == null ? status : Status.FAILED));
+    }
+
+    void onComplete(Run run, Task task, Status status) {
+        String name = task.getNodeName();
+        List<Task> ready = new ArrayList<>();
+        boolean done;
+        synchronized (run) {
+            run.inFlight--;
+            if (status == Status.SUCCEEDED) {
+                run.succeeded++;
+                if (run.failure == null) {
+                    for (String next : run.successors.get(name)) {
+                        if (run.waiting.merge(next, -1, Integer::sum) == 0) {
+                            run.inFlight++;
+                            ready.add(run.tasks.get(next));
+                        }
+                    }
+                }
+            } else if (run.failure == null) {
+                run.failure = String.format("Task %s of node %s failed.", task.getTaskid(), name);
+            }
+            done = run.inFlight == 0;
+        }
+
+        ready.forEach(t -> submit(run, t));
+        if (done) {
+            complete(run);
+        }
+    }
+
+    void complete(Run run) {
+        Status status;
+        String message;
+        synchronized (run) {
+            boolean succeeded = run.failure == null && run.succeeded == run.tasks.size();
+            status = succeeded ? Status.SUCCEEDED : Status.FAILED;
+            message = run.failure;
+        }
+        finish(run.jobId, status, message);
+        runs.remove(run.jobId, run);
+        log.info("Job {} finished as {}.", run.jobId, status);
+    }
+
+    void mark(String jobId) {
+        getContext().getJobRepository().findById(jobId).ifPresent(job -> {
+            if (job.getStatus() != Status.RUNNING) {
+                job.setStatus(Status.RUNNING);
+                merger.saveJob(job);
+            }
+        });
+    }
+
+    void finish(String jobId, Status status, String message) {
+        try {
+            getContext().getJobRepository().findById(jobId).ifPresent(job -> {
+                job.setStatus(status);
+                job.setMessage(message);
+                job.setFinishTime(DateTime.now());
+                merger.saveJob(job);
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to finish job {}.", jobId, e);
+        }
+    }
+
+    static boolean isSucceeded(Task task) {
+        return task != null && Status.SUCCEEDED.name().equals(task.getStatus());
+    }
 }
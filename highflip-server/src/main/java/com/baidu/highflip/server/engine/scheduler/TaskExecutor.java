@@ -1,4 +1,199 @@
 package com.baidu.highflip.server.engine.scheduler;
 
+import com.baidu.highflip.core.adaptor.TaskAdaptor;
+import com.baidu.highflip.core.entity.runtime.Task;
+import com.baidu.highflip.core.entity.runtime.basic.Action;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.server.engine.common.StatusMerger;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs single tasks through {@link TaskAdaptor#invokeTask(Task)} on a
+ * bounded pool of workers.
+ * <p>
+ * After the invocation the task status is polled until it is terminal,
+ * without holding a worker between polls. A status that cannot be read, none,
+ * UNKNOWN or an error, does not finish the task; once it stays so for the
+ * unknown-status timeout the task fails. Status changes are saved on the
+ * task. A cancelled task is stopped in the backend and fails at once.
+ */
+@Slf4j
+// not taskExecutor, Spring Boot aliases that name to its applicationTaskExecutor
+@Component("dagTaskExecutor")
 public class TaskExecutor {
+
+    @Autowired
+    HighFlipContext context;
+
+    @Autowired
+    StatusMerger merger;
+
+    @Value("${highflip.server.scheduler.threads:8}")
+    int threads;
+
+    @Value("${highflip.server.scheduler.poll-interval-ms:1000}")
+    long pollInterval;
+
+    @Value("${highflip.server.scheduler.unknown-status-timeout-ms:600000}")
+    long unknownStatusTimeout;
+
+    ExecutorService workers;
+
+    ScheduledExecutorService timer;
+
+    /**
+     * Tasks not completed yet, by identity since their fields change.
+     */
+    final Map<Task, CompletableFuture<Status>> active = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    public HighFlipContext getContext() {
+        return context;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        workers = Executors.newFixedThreadPool(Math.max(1, threads));
+        timer = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    public static boolean isTerminal(Status status) {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+
+    /**
+     * Invokes the task once a worker is free.
+     *
+     * @return completes with the terminal status of the task
+     */
+    public CompletableFuture<Status> execute(Task task) {
+        CompletableFuture<Status> future = new CompletableFuture<>();
+        active.put(task, future);
+        workers.execute(() -> invoke(task, future));
+        return future;
+    }
+
+    /**
+     * Waits for a task that was invoked before, e.g. before a restart.
+     */
+    public CompletableFuture<Status> resume(Task task) {
+        CompletableFuture<Status> future = new CompletableFuture<>();
+        active.put(task, future);
+        workers.execute(() -> check(task, future, 0));
+        return future;
+    }
+
+    /**
+     * Stops the task in the backend, unless it completed already, and
+     * completes it as FAILED.
+     */
+    public void cancel(Task task) {
+        CompletableFuture<Status> future = active.get(task);
+        if (future == null) {
+            return;
+        }
+        try {
+            getContext().getTaskAdaptor().controlTask(task, Action.STOP, Map.of());
+        } catch (RuntimeException e) {
+            log.warn("Failed to stop task {}.", task.getTaskid(), e);
+        }
+        complete(task, Status.FAILED, "Cancelled.", future);
+    }
+
+    void invoke(Task task, CompletableFuture<Status> future) {
+        if (future.isDone()) {
+            return;
+        }
+        TaskAdaptor adaptor = getContext().getTaskAdaptor();
+        try {
+            update(task, Status.RUNNING, null);
+            adaptor.invokeTask(task);
+        } catch (RuntimeException e) {
+            log.error("Failed to invoke task {}.", task.getTaskid(), e);
+            complete(task, Status.FAILED, String.valueOf(e.getMessage()), future);
+            return;
+        }
+        check(task, future, 0);
+    }
+
+    /**
+     * @param unknownSince time the status became unreadable, 0 if it was read
+     */
+    void check(Task task, CompletableFuture<Status> future, long unknownSince) {
+        if (future.isDone()) {
+            return;
+        }
+        Status status;
+        try {
+            status = getContext().getTaskAdaptor().getTaskStatus(task);
+        } catch (RuntimeException e) {
+            log.warn("Failed to get status of task {}.", task.getTaskid(), e);
+            status = null;
+        }
+
+        long since = 0;
+        if (status == null || status == Status.UNKNOWN) {
+            long now = System.currentTimeMillis();
+            since = unknownSince == 0 ? now : unknownSince;
+            if (now - since >= unknownStatusTimeout) {
+                complete(task, Status.FAILED, String.format(
+                        "Status of task is unknown for %d ms.", now - since), future);
+                return;
+            }
+        } else if (isTerminal(status)) {
+            complete(task, status, null, future);
+            return;
+        }
+
+        final long next = since;
+        timer.schedule(() -> workers.execute(() -> check(task, future, next)),
+                pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    void complete(Task task, Status status, String message, CompletableFuture<Status> future) {
+        // completed once, by the last check or by a cancel
+        if (!active.remove(task, future)) {
+            return;
+        }
+        try {
+            update(task, status, message);
+        } catch (RuntimeException e) {
+            log.error("Failed to update task {}.", task.getTaskid(), e);
+        }
+        future.complete(status);
+    }
+
+    void update(Task task, Status status, String message) {
+        task.setStatus(status.name());
+        if (message != null) {
+            task.setMessage(message);
+        }
+        if (isTerminal(status)) {
+            task.setFinishTime(DateTime.now());
+        }
+        // the task is held until it finishes, so it must carry the saved version
+        Task saved = merger.saveTask(task);
+        task.setVersion(saved.getVersion());
+    }
 }
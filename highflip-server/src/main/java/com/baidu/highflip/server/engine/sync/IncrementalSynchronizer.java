@@ -0,0 +1,283 @@
+package com.baidu.highflip.server.engine.sync;
+
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.Task;
+import com.baidu.highflip.server.engine.archive.JobArchiver;
+import com.baidu.highflip.server.engine.batch.TaskUpdateBuffer;
+import com.baidu.highflip.server.engine.binding.BindingIdIndex;
+import com.baidu.highflip.server.engine.common.ConfigurationList;
+import com.baidu.highflip.server.engine.common.StatusMerger;
+import com.baidu.highflip.server.engine.component.HighFlipConfiguration;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Pulls jobs and tasks from the adaptors page by page and only persists the
+ * entities updated after the stored watermark.
+ * <p>
+ * Pages are returned newest first, so a page without any change ends the run.
+ * The first run, without a watermark, loads every page in parallel.
+ * Status changes of older, still running jobs are picked up by job status
+ * tracking instead of by this synchronizer.
+ */
+@Slf4j
+@Component
+public class IncrementalSynchronizer {
+
+    @Autowired
+    HighFlipContext context;
+
+    @Autowired
+    HighFlipConfiguration configuration;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ParallelLoader loader;
+
+    @Autowired
+    BindingIdIndex bindings;
+
+    @Autowired
+    JobArchiver archive;
+
+    @Autowired
+    TaskUpdateBuffer updates;
+
+    @Autowired
+    StatusMerger merger;
+
+    /**
+     * Page size of the runs with a watermark, the first run loads with the
+     * page size of the {@link ParallelLoader}.
+     */
+    @Value("${highflip.server.sync.page-size:500}")
+    int pageSize;
+
+    public HighFlipContext getContext() {
+        return context;
+    }
+
+    /**
+     * @return number of jobs created or updated
+     */
+    public int synchronizeJobs() {
+        return synchronize(
+                "jobs",
+                ConfigurationList.CONFIG_HIGHFLIP_JOB_SYNC_WATERMARK,
+                () -> getContext().getJobAdaptor().getJobCount(),
+                (offset, limit) -> getContext().getJobAdaptor().getJobPage(offset, limit),
+                Job::getUpdateTime,
+                this::saveJobs);
+    }
+
+    /**
+     * @return number of tasks created or updated
+     */
+    public int synchronizeTasks() {
+        return synchronize(
+                "tasks",
+                ConfigurationList.CONFIG_HIGHFLIP_TASK_SYNC_WATERMARK,
+                () -> getContext().getTaskAdaptor().getTaskCount(),
+                (offset, limit) -> getContext().getTaskAdaptor().getTaskPage(offset, limit),
+                Task::getUpdateTime,
+                this::saveTasks);
+    }
+
+    <T> int synchronize(String name,
+                        String watermarkKey,
+                        IntSupplier counter,
+                        BiFunction<Integer, Integer, List<T>> pager,
+                        Function<T, DateTime> updateTime,
+                        Function<List<T>, Integer> saver) {
+
+        final DateTime watermark = getWatermark(watermarkKey);
+        if (watermark == null) {
+            return backfill(name, watermarkKey, counter.getAsInt(), pager, updateTime, saver);
+        }
+        DateTime newest = watermark;
+
+        int total = 0;
+        int offset = 0;
+        while (true) {
+            List<T> page = pager.apply(offset, pageSize);
+            if (page == null || page.isEmpty()) {
+                break;
+            }
+
+            List<T> changed = new ArrayList<>(page.size());
+            for (T item : page) {
+                DateTime time = updateTime.apply(item);
+                if (watermark == null || time == null || time.isAfter(watermark)) {
+                    changed.add(item);
+                }
+                if (time != null && (newest == null || time.isAfter(newest))) {
+                    newest = time;
+                }
+            }
+
+            if (!changed.isEmpty()) {
+                // a conflict rolls the page back, which is read and saved again
+                total += merger.retry(() -> new TransactionTemplate(transactionManager)
+                        .execute(status -> saver.apply(changed)));
+            }
+
+            log.info("Synchronized page at offset {}, {} of {} changed.",
+                    offset, changed.size(), page.size());
+
+            if (changed.isEmpty() || page.size() < pageSize) {
+                break;
+            }
+            offset += pageSize;
+        }
+
+        if (newest != null && !newest.equals(watermark)) {
+            configuration.setString(watermarkKey, newest.toString());
+        }
+        return total;
+    }
+
+    /**
+     * Without a watermark everything is new, so all pages are loaded in
+     * parallel and the watermark is set to the newest entity seen.
+     */
+    <T> int backfill(String name,
+                     String watermarkKey,
+                     int count,
+                     BiFunction<Integer, Integer, List<T>> pager,
+                     Function<T, DateTime> updateTime,
+                     Function<List<T>, Integer> saver) {
+
+        AtomicReference<DateTime> newest = new AtomicReference<>();
+        int total = loader.load(name, count, pager, page -> {
+            for (T item : page) {
+                DateTime time = updateTime.apply(item);
+                if (time != null) {
+                    newest.accumulateAndGet(time, (a, b) -> a == null || b.isAfter(a) ? b : a);
+                }
+            }
+            return saver.apply(page);
+        });
+
+        if (newest.get() != null) {
+            configuration.setString(watermarkKey, newest.get().toString());
+        }
+        return total;
+    }
+
+    DateTime getWatermark(String key) {
+        String value = configuration.getString(key, null);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return DateTime.parse(value);
+    }
+
+    int saveJobs(List<Job> jobs) {
+        Map<String, Job> incoming = jobs.stream()
+                .collect(Collectors.toMap(Job::getBingingId, j -> j, (a, b) -> a, LinkedHashMap::new));
+
+        // ids the filter has never seen are new, no need to look them up
+        List<String> known = incoming.keySet()
+                .stream()
+                .filter(bindings.getJobs()::mightContain)
+                .collect(Collectors.toList());
+
+        Map<String, Job> existing = known.isEmpty()
+                ? Map.of()
+                : getContext().getJobRepository()
+                .findAllByBingingIdIn(known)
+                .stream()
+                .collect(Collectors.toMap(Job::getBingingId, j -> j, (a, b) -> a));
+
+        // archived jobs are finished, they must not come back as new ones
+        Set<String> archived = archive.findJobBindingIds(missing(incoming.keySet(), existing));
+
+        List<Job> saving = new ArrayList<>(incoming.size());
+        for (Job job : incoming.values()) {
+            Job stored = existing.get(job.getBingingId());
+            if (archived.contains(job.getBingingId())) {
+                continue;
+            }
+            if (stored == null) {
+                job.bindJobId();
+                saving.add(job);
+            } else {
+                stored.setStatus(job.getStatus());
+                stored.setFinishTime(job.getFinishTime());
+                stored.setUpdateTime(job.getUpdateTime());
+                saving.add(stored);
+            }
+        }
+
+        getContext().getJobRepository().saveAll(saving);
+        return saving.size();
+    }
+
+    int saveTasks(List<Task> tasks) {
+        Map<String, Task> incoming = tasks.stream()
+                .collect(Collectors.toMap(Task::getBingingId, t -> t, (a, b) -> a, LinkedHashMap::new));
+
+        // the adaptor reports the binding id of the job, rebind it to the local one
+        Map<String, String> jobIds = getContext().getJobRepository()
+                .findAllByBingingIdIn(incoming.values()
+                        .stream()
+                        .map(Task::getJobid)
+                        .collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Job::getBingingId, Job::getJobId, (a, b) -> a));
+
+        // the stored tasks are saved back, they must not be older than the buffered ones
+        updates.flush();
+        Map<String, Task> existing = getContext().getTaskRepository()
+                .findAllByBingingIdIn(incoming.keySet())
+                .stream()
+                .collect(Collectors.toMap(Task::getBingingId, t -> t, (a, b) -> a));
+
+        Set<String> archived = archive.findTaskBindingIds(missing(incoming.keySet(), existing));
+
+        List<Task> saving = new ArrayList<>(incoming.size());
+        for (Task task : incoming.values()) {
+            Task stored = existing.get(task.getBingingId());
+            if (archived.contains(task.getBingingId())) {
+                continue;
+            }
+            if (stored == null) {
+                task.setJobid(jobIds.getOrDefault(task.getJobid(), task.getJobid()));
+                saving.add(task);
+            } else {
+                stored.setStatus(task.getStatus());
+                stored.setFinishTime(task.getFinishTime());
+                stored.setUpdateTime(task.getUpdateTime());
+                saving.add(stored);
+            }
+        }
+
+        getContext().getTaskRepository().saveAll(saving);
+        return saving.size();
+    }
+
+    static List<String> missing(Set<String> bindingIds, Map<String, ?> existing) {
+        return bindingIds.stream()
+                .filter(id -> !existing.containsKey(id))
+                .collect(Collectors.toList());
+    }
+}
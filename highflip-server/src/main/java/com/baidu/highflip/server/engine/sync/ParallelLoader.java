@@ -0,0 +1,169 @@
+package com.baidu.highflip.server.engine.sync;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Loads a known number of entities from an adaptor in pages fetched in
+ * parallel, each page persisted in its own transaction with saveAll so
+ * Hibernate can batch the inserts.
+ * <p>
+ * Progress of every load is kept by name until the next load of that name.
+ */
+@Slf4j
+@Component
+public class ParallelLoader {
+
+    @Getter
+    public static class Progress {
+
+        final String name;
+
+        final int total;
+
+        final AtomicInteger loaded = new AtomicInteger();
+
+        final AtomicInteger failed = new AtomicInteger();
+
+        volatile boolean finished = false;
+
+        Progress(String name, int total) {
+            this.name = name;
+            this.total = total;
+        }
+
+        public int getLoaded() {
+            return loaded.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+    }
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Value("${highflip.server.load.page-size:500}")
+    int pageSize;
+
+    @Value("${highflip.server.load.threads:8}")
+    int threads;
+
+    final Map<String, Progress> progresses = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    ExecutorService pool;
+
+    @PostConstruct
+    public void initialize() {
+        pool = Executors.newFixedThreadPool(Math.max(1, threads));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    public List<Progress> getProgress() {
+        synchronized (progresses) {
+            return new ArrayList<>(progresses.values());
+        }
+    }
+
+    /**
+     * Loads entities by index, one page of indexes per call.
+     */
+    public <T> int loadByIndex(String name,
+                               int count,
+                               IntFunction<T> fetcher,
+                               Function<List<T>, Integer> saver) {
+        return load(name, count, (offset, limit) -> {
+            List<T> page = new ArrayList<>(limit);
+            for (int i = offset; i < Math.min(offset + limit, count); i++) {
+                T item = fetcher.apply(i);
+                if (item != null) {
+                    page.add(item);
+                }
+            }
+            return page;
+        }, saver);
+    }
+
+    /**
+     * Blocks until every page is persisted or has failed.
+     * <p>
+     * Every page is requested with the full page size, also the last one, as
+     * adaptors page by number, offset / limit. Entities beyond the count are
+     * dropped, they are left to the next synchronization.
+     *
+     * @param count  number of entities the adaptor reports
+     * @param pager  fetches the entities of (offset, limit), called concurrently
+     * @param saver  persists one page, called inside a transaction
+     * @return number of entities persisted
+     * @throws IllegalStateException if any page failed, after all others are done
+     */
+    public <T> int load(String name,
+                        int count,
+                        BiFunction<Integer, Integer, List<T>> pager,
+                        Function<List<T>, Integer> saver) {
+
+        Progress progress = new Progress(name, count);
+        progresses.put(name, progress);
+        log.info("Begin to load {} {}.", count, name);
+
+        List<CompletableFuture<Void>> pages = new ArrayList<>();
+        for (int offset = 0; offset < count; offset += pageSize) {
+            final int pageOffset = offset;
+            final int pageLimit = Math.min(pageSize, count - offset);
+            pages.add(CompletableFuture.runAsync(() -> {
+                try {
+                    List<T> fetched = pager.apply(pageOffset, pageSize);
+                    List<T> page = fetched == null || fetched.size() <= pageLimit
+                            ? fetched
+                            : fetched.subList(0, pageLimit);
+                    if (page != null && !page.isEmpty()) {
+                        Integer saved = new TransactionTemplate(transactionManager)
+                                .execute(status -> saver.apply(page));
+                        progress.loaded.addAndGet(saved == null ? 0 : saved);
+                    }
+                } catch (RuntimeException e) {
+                    progress.failed.addAndGet(pageLimit);
+                    log.error("Failed to load {} at offset {}.", name, pageOffset, e);
+                    throw e;
+                }
+                log.info("Loaded {} of {} {}.", progress.getLoaded(), count, name);
+            }, pool));
+        }
+
+        try {
+            CompletableFuture.allOf(pages.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException(String.format(
+                    "Failed to load %d of %d %s.", progress.getFailed(), count, name), e.getCause());
+        } finally {
+            progress.finished = true;
+        }
+        return progress.getLoaded();
+    }
+}
@@ -0,0 +1,504 @@
+package com.baidu.highflip.server.engine.tracker;
+
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.server.engine.common.StatusMerger;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import com.baidu.highflip.server.engine.scheduler.DAGScheduler;
+import com.baidu.highflip.server.respository.JobStatusView;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the status of unfinished jobs up to date in the background.
+ * <p>
+ * Every job is polled on its own interval: a job that just changed is polled
+ * again after the minimal interval, each poll without a change multiplies
+ * the interval by the backoff factor up to the maximal interval. Concurrent
+ * requests for the same job share one adaptor call. Jobs are evicted once
+ * they reach a terminal status.
+ * <p>
+ * Jobs are partitioned by id hash over a fixed number of shards. Each shard
+ * owns one thread and one timing wheel, so the cost of a tick does not grow
+ * with the number of jobs waiting. The polls run on a bounded pool of
+ * workers, so a slow backend never delays the ticks, and hand the next poll
+ * back to the shard thread. Polls of a job never overlap.
+ * Unfinished jobs are recovered from the repository on startup.
+ * <p>
+ * Readers get the tracked status without calling the adaptor, and watchers
+ * are notified of every status transition.
+ * Jobs run by the native scheduler are polled from the repository instead.
+ */
+@Slf4j
+@Component
+public class JobStatusTracker {
+
+    public interface Listener {
+
+        /**
+         * Called with the current job on watch, then on each status change.
+         * Calls for the same job are never concurrent.
+         */
+        void onChange(Job job);
+    }
+
+    static class Tracked {
+
+        final String jobId;
+
+        final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+        volatile Job job;
+
+        volatile long interval;
+
+        CompletableFuture<Job> inFlight = null;
+
+        /**
+         * Position in the wheel of the owning shard, only touched by its thread.
+         */
+        int slot = TimingWheel.UNSCHEDULED;
+
+        long rounds = 0;
+
+        Tracked(Job job, long interval) {
+            this.jobId = job.getJobId();
+            this.job = job;
+            this.interval = interval;
+        }
+    }
+
+    static class Shard {
+
+        final ScheduledExecutorService executor;
+
+        final TimingWheel wheel;
+
+        Shard(int wheelSize, long tick) {
+            this.executor = Executors.newSingleThreadScheduledExecutor();
+            this.wheel = new TimingWheel(wheelSize, tick);
+        }
+    }
+
+    static final List<Status> TERMINAL_STATUSES = List.of(Status.SUCCEEDED, Status.FAILED);
+
+    @Autowired
+    HighFlipContext context;
+
+    @Autowired
+    StatusMerger merger;
+
+    @Value("${highflip.server.tracker.tick-ms:500}")
+    long tick;
+
+    @Value("${highflip.server.tracker.wheel-size:512}")
+    int wheelSize;
+
+    @Value("${highflip.server.tracker.min-interval-ms:1000}")
+    long minInterval;
+
+    @Value("${highflip.server.tracker.max-interval-ms:60000}")
+    long maxInterval;
+
+    @Value("${highflip.server.tracker.backoff:2.0}")
+    double backoff;
+
+    @Value("${highflip.server.tracker.threads:4}")
+    int threads;
+
+    @Value("${highflip.server.tracker.fetch-threads:16}")
+    int fetchThreads;
+
+    @Value("${highflip.server.tracker.recover-page-size:1000}")
+    int recoverPageSize;
+
+    @Value("${highflip.server.tracker.recover-spread-ms:10000}")
+    long recoverSpread;
+
+    final ConcurrentMap<String, Tracked> tracked = new ConcurrentHashMap<>();
+
+    final List<Listener> globalListeners = new CopyOnWriteArrayList<>();
+
+    Shard[] shards;
+
+    ExecutorService workers;
+
+    public HighFlipContext getContext() {
+        return context;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        workers = Executors.newFixedThreadPool(Math.max(1, fetchThreads));
+        shards = new Shard[Math.max(1, threads)];
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = new Shard(wheelSize, tick);
+            shard.executor.scheduleAtFixedRate(() -> tick(shard), tick, tick, TimeUnit.MILLISECONDS);
+            shards[i] = shard;
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        for (Shard shard : shards) {
+            shard.executor.shutdownNow();
+        }
+        workers.shutdownNow();
+    }
+
+    public static boolean isTerminal(Status status) {
+        return TERMINAL_STATUSES.contains(status);
+    }
+
+    Shard shardOf(String jobId) {
+        return shards[Math.floorMod(jobId.hashCode(), shards.length)];
+    }
+
+    /**
+     * Tracks every unfinished job of the repository. First polls are spread
+     * over a short period so a restart does not hit the backend all at once.
+     *
+     * @return number of jobs recovered
+     */
+    public int recover() {
+        return recover(job -> true);
+    }
+
+    /**
+     * @param filter jobs to track among the unfinished ones
+     */
+    public int recover(Predicate<Job> filter) {
+        int count = 0;
+        String after = "";
+        while (true) {
+            List<Job> page = getContext().getJobRepository()
+                    .findAllByStatusNotInAfter(after, TERMINAL_STATUSES, PageRequest.of(0, recoverPageSize));
+
+            for (Job job : page) {
+                if (!filter.test(job)) {
+                    continue;
+                }
+                count++;
+                long delay = recoverSpread > 0
+                        ? Math.floorMod(job.getJobId().hashCode() * 31L, recoverSpread)
+                        : 0;
+                startTracking(job, delay);
+            }
+
+            if (page.size() < recoverPageSize) {
+                break;
+            }
+            after = page.get(page.size() - 1).getJobId();
+        }
+        log.info("Recovered {} unfinished jobs for tracking.", count);
+        return count;
+    }
+
+    /**
+     * Start tracking a job, unless it is finished or already tracked.
+     * Inside a transaction, tracking starts once the transaction commits.
+     */
+    public void track(Job job) {
+        if (job == null || isTerminal(job.getStatus())) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    startTracking(job, 0);
+                }
+            });
+            return;
+        }
+        startTracking(job, 0);
+    }
+
+    /**
+     * Like {@link #track(Job)}, but a tracked copy of the job is replaced,
+     * e.g. once the job got bound to the backend.
+     */
+    public void retrack(Job job) {
+        Tracked t = tracked.get(job.getJobId());
+        if (t != null) {
+            t.job = job;
+        }
+        track(job);
+    }
+
+    void startTracking(Job job, long delay) {
+        Tracked created = new Tracked(job, minInterval);
+        if (tracked.putIfAbsent(job.getJobId(), created) != null) {
+            return;
+        }
+        Shard shard = shardOf(job.getJobId());
+        shard.executor.execute(() -> {
+            if (tracked.get(created.jobId) == created) {
+                shard.wheel.schedule(created, delay);
+            }
+        });
+    }
+
+    /**
+     * Stops tracking a job, e.g. once it has been deleted.
+     */
+    public void untrack(String jobId) {
+        Tracked t = tracked.remove(jobId);
+        if (t != null) {
+            Shard shard = shardOf(jobId);
+            shard.executor.execute(() -> shard.wheel.cancel(t));
+        }
+    }
+
+    public boolean isTracked(String jobId) {
+        return tracked.containsKey(jobId);
+    }
+
+    public int getTrackedCount() {
+        return tracked.size();
+    }
+
+    /**
+     * @return the tracked job, or null if the job is not tracked
+     */
+    public Job getJob(String jobId) {
+        Tracked t = tracked.get(jobId);
+        return t == null ? null : t.job;
+    }
+
+    /**
+     * Polls the job now, joining a poll already in flight.
+     *
+     * @return the refreshed job, or null if the job is not tracked
+     */
+    public CompletableFuture<Job> refresh(String jobId) {
+        Tracked t = tracked.get(jobId);
+        return t == null ? CompletableFuture.completedFuture(null) : poll(t);
+    }
+
+    /**
+     * Sends the current job to the listener, then every status change until
+     * the job finishes. Jobs that are not finished are tracked from now on.
+     */
+    public void watch(Job job, Listener listener) {
+        if (!isTerminal(job.getStatus())) {
+            startTracking(job, 0);
+        }
+        Tracked t = tracked.get(job.getJobId());
+        if (t == null) {
+            listener.onChange(job);
+            return;
+        }
+        synchronized (t) {
+            t.listeners.add(listener);
+            listener.onChange(t.job);
+        }
+        // the job may have finished before the listener was added
+        if (!tracked.containsKey(job.getJobId())) {
+            unwatch(job.getJobId(), listener);
+        }
+    }
+
+    /**
+     * Notifies the listener of the status changes of every tracked job.
+     */
+    public void addListener(Listener listener) {
+        globalListeners.add(listener);
+    }
+
+    public void unwatch(String jobId, Listener listener) {
+        Tracked t = tracked.get(jobId);
+        if (t != null) {
+            t.listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Runs on the shard thread.
+     */
+    void tick(Shard shard) {
+        try {
+            for (Tracked t : shard.wheel.advance()) {
+                if (tracked.get(t.jobId) == t) {
+                    poll(t);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to schedule job status polls.", e);
+        }
+    }
+
+    CompletableFuture<Job> poll(Tracked t) {
+        synchronized (t) {
+            if (t.inFlight == null) {
+                CompletableFuture<Job> future = CompletableFuture.supplyAsync(
+                        () -> fetch(t), workers);
+                Status before = t.job.getStatus();
+                t.inFlight = future;
+                future.whenComplete((job, error) -> {
+                    synchronized (t) {
+                        t.inFlight = null;
+                    }
+                    // only once the poll is over, a tick meanwhile joined it and scheduled nothing
+                    if (tracked.get(t.jobId) == t) {
+                        schedule(t, job != null && job.getStatus() != before);
+                    }
+                });
+            }
+            return t.inFlight;
+        }
+    }
+
+    /**
+     * Runs on a worker, the next poll is scheduled once it completes.
+     */
+    Job fetch(Tracked t) {
+        Job job = t.job;
+        if (tracked.get(t.jobId) != t) {
+            return job;
+        }
+
+        if (DAGScheduler.isNative(job)) {
+            return fetchStored(t);
+        }
+
+        Status status;
+        try {
+            status = getContext().getJobAdaptor().getJobStatus(job);
+        } catch (RuntimeException e) {
+            log.warn("Failed to get status of job {}.", t.jobId, e);
+            return job;
+        }
+
+        if (status == job.getStatus()) {
+            return job;
+        }
+
+        log.info("Job {} changed from {} to {}.", t.jobId, job.getStatus(), status);
+        // the tracked job is read by other threads, it is replaced and never changed
+        Job changed = copyOf(job);
+        changed.setStatus(status);
+        if (isTerminal(status)) {
+            changed.setFinishTime(DateTime.now());
+        }
+        try {
+            changed = merger.saveJob(changed);
+            getContext().getJobAdaptor().updateJob(changed);
+        } catch (RuntimeException e) {
+            log.error("Failed to update job {}.", t.jobId, e);
+        }
+        t.job = changed;
+
+        if (isTerminal(status)) {
+            finish(t);
+        }
+        notify(t);
+        return changed;
+    }
+
+    static Job copyOf(Job job) {
+        Job copy = new Job();
+        // the graph is carried over as is, not loaded to be copied
+        BeanUtils.copyProperties(job, copy, "graph");
+        job.copyGraphTo(copy);
+        return copy;
+    }
+
+    /**
+     * Jobs of the native scheduler are not known by the backend, their
+     * status is read back from the repository the scheduler writes to.
+     * Runs on a worker.
+     */
+    Job fetchStored(Tracked t) {
+        Job job;
+        try {
+            // the whole job is only read once its status changed
+            JobStatusView view = getContext().getJobRepository().findStatusByJobId(t.jobId).orElse(null);
+            if (view == null) {
+                untrack(t.jobId);
+                return t.job;
+            }
+            if (view.getStatus() == t.job.getStatus()) {
+                return t.job;
+            }
+            job = getContext().getJobRepository().findById(t.jobId).orElse(null);
+        } catch (RuntimeException e) {
+            log.warn("Failed to reload job {}.", t.jobId, e);
+            return t.job;
+        }
+        if (job == null) {
+            untrack(t.jobId);
+            return t.job;
+        }
+
+        t.job = job;
+        if (isTerminal(job.getStatus())) {
+            finish(t);
+        }
+        notify(t);
+        return job;
+    }
+
+    /**
+     * Schedules the next poll on the shard thread, unless the job has been
+     * untracked meanwhile. Never called while a poll of the job is in flight.
+     */
+    void schedule(Tracked t, boolean changed) {
+        long interval = changed
+                ? minInterval
+                : Math.min(maxInterval, (long) (t.interval * backoff));
+        t.interval = Math.max(minInterval, interval);
+        Shard shard = shardOf(t.jobId);
+        shard.executor.execute(() -> {
+            if (tracked.get(t.jobId) == t) {
+                shard.wheel.schedule(t, t.interval);
+            }
+        });
+    }
+
+    void finish(Tracked t) {
+        tracked.remove(t.jobId, t);
+        Shard shard = shardOf(t.jobId);
+        shard.executor.execute(() -> shard.wheel.cancel(t));
+    }
+
+    void notify(Tracked t) {
+        for (Listener listener : globalListeners) {
+            try {
+                listener.onChange(t.job);
+            } catch (RuntimeException e) {
+                log.warn("Failed to notify change of job {}.", t.jobId, e);
+            }
+        }
+        synchronized (t) {
+            for (Listener listener : t.listeners) {
+                try {
+                    listener.onChange(t.job);
+                } catch (RuntimeException e) {
+                    log.warn("Dropped watcher of job {}.", t.jobId, e);
+                    t.listeners.remove(listener);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.baidu.highflip.server.engine.tracker;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hashed timing wheel of tracked jobs.
+ * <p>
+ * Scheduling, cancelling and advancing by one tick are O(1) per job no matter
+ * how many jobs are waiting; delays longer than one turn of the wheel wait
+ * for the remaining rounds in their slot. Not thread safe, each shard owns
+ * its wheel and only touches it from its own thread.
+ */
+class TimingWheel {
+
+    static final int UNSCHEDULED = -1;
+
+    private final List<Set<JobStatusTracker.Tracked>> slots;
+
+    private final long tick;
+
+    private long cursor = 0;
+
+    private int size = 0;
+
+    TimingWheel(int wheelSize, long tick) {
+        this.slots = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            this.slots.add(new LinkedHashSet<>());
+        }
+        this.tick = tick;
+    }
+
+    /**
+     * Schedules the job to come due after the delay, replacing its previous
+     * schedule. Delays are rounded up to whole ticks, at least one.
+     */
+    void schedule(JobStatusTracker.Tracked t, long delay) {
+        cancel(t);
+
+        long ticks = Math.max(1, (delay + tick - 1) / tick);
+        int slot = (int) ((cursor + ticks) % slots.size());
+        t.slot = slot;
+        t.rounds = (ticks - 1) / slots.size();
+        slots.get(slot).add(t);
+        size++;
+    }
+
+    void cancel(JobStatusTracker.Tracked t) {
+        if (t.slot != UNSCHEDULED && slots.get(t.slot).remove(t)) {
+            size--;
+        }
+        t.slot = UNSCHEDULED;
+    }
+
+    /**
+     * Moves to the next slot and removes the jobs that came due.
+     */
+    List<JobStatusTracker.Tracked> advance() {
+        cursor++;
+        Set<JobStatusTracker.Tracked> slot = slots.get((int) (cursor % slots.size()));
+
+        List<JobStatusTracker.Tracked> due = new ArrayList<>();
+        for (JobStatusTracker.Tracked t : slot) {
+            if (t.rounds > 0) {
+                t.rounds--;
+            } else {
+                due.add(t);
+            }
+        }
+        for (JobStatusTracker.Tracked t : due) {
+            slot.remove(t);
+            t.slot = UNSCHEDULED;
+        }
+        size -= due.size();
+        return due;
+    }
+
+    int size() {
+        return size;
+    }
+}
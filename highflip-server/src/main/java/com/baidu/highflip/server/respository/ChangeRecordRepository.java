@@ -0,0 +1,14 @@
+package com.baidu.highflip.server.respository;
+
+import com.baidu.highflip.core.entity.runtime.ChangeRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ChangeRecordRepository extends JpaRepository<ChangeRecord, Long> {
+
+    List<ChangeRecord> findAllBySeqGreaterThanOrderBySeq(Long seq, Pageable pageable);
+}
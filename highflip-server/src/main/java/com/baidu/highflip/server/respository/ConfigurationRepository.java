@@ -1,10 +1,17 @@
 package com.baidu.highflip.server.respository;
 
 import com.baidu.highflip.core.entity.runtime.Config;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface ConfigurationRepository extends JpaRepository<Config, String> {
 
+    @Query("SELECT c.key FROM Config c WHERE c.key > :after ORDER BY c.key")
+    List<String> findKeysAfter(@Param("after") String after, Pageable pageable);
 }
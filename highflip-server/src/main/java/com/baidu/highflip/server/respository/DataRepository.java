@@ -1,9 +1,22 @@
 package com.baidu.highflip.server.respository;
 
 import com.baidu.highflip.core.entity.runtime.Data;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface DataRepository extends JpaRepository<Data, String> {
+
+    boolean existsByBingingId(String bindingId);
+
+    @Query("SELECT d.bingingId FROM Data d WHERE d.bingingId > :after ORDER BY d.bingingId")
+    List<String> findBindingIdsAfter(@Param("after") String after, Pageable pageable);
+
+    @Query("SELECT d.dataId FROM Data d WHERE d.dataId > :after ORDER BY d.dataId")
+    List<String> findDataIdsAfter(@Param("after") String after, Pageable pageable);
 }
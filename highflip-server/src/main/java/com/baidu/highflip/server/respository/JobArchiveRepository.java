@@ -0,0 +1,17 @@
+package com.baidu.highflip.server.respository;
+
+import com.baidu.highflip.core.entity.runtime.ArchivedJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface JobArchiveRepository extends JpaRepository<ArchivedJob, String> {
+
+    @Query("SELECT a.bindingId FROM ArchivedJob a WHERE a.bindingId IN :bindingIds")
+    List<String> findBindingIdsIn(@Param("bindingIds") Collection<String> bindingIds);
+}
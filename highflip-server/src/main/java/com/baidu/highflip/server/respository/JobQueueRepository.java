@@ -0,0 +1,9 @@
+package com.baidu.highflip.server.respository;
+
+import com.baidu.highflip.core.entity.runtime.QueuedJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface JobQueueRepository extends JpaRepository<QueuedJob, String> {
+}
@@ -1,15 +1,60 @@
 package com.baidu.highflip.server.respository;
 
 import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import org.joda.time.DateTime;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface JobRepository extends JpaRepository<Job, String> {
 
-    @Query("SELECT j.jobId FROM Job j")
-    Iterator<String> findAllJobId();
+    @Query("SELECT j.jobId FROM Job j WHERE j.jobId > :after ORDER BY j.jobId")
+    List<String> findJobIdsAfter(@Param("after") String after, Pageable pageable);
+
+    Optional<JobStatusView> findStatusByJobId(String jobId);
+
+    List<Job> findAllByBingingIdIn(Collection<String> bindingIds);
+
+    List<Job> findAllByStatusAndBingingIdIsNull(Status status);
+
+    boolean existsByBingingId(String bindingId);
+
+    @Query("SELECT j.bingingId FROM Job j WHERE j.bingingId > :after ORDER BY j.bingingId")
+    List<String> findBindingIdsAfter(@Param("after") String after, Pageable pageable);
+
+    /**
+     * Pages through the jobs not in any of the given statuses, ordered by id.
+     */
+    @Query("SELECT j FROM Job j WHERE j.jobId > :after"
+            + " AND (j.status IS NULL OR j.status NOT IN :statuses) ORDER BY j.jobId")
+    List<Job> findAllByStatusNotInAfter(@Param("after") String after,
+                                        @Param("statuses") Collection<Status> statuses,
+                                        Pageable pageable);
+
+    /**
+     * Pages through the jobs in any of the given statuses that were last
+     * updated before the time, ordered by id.
+     */
+    @Query("SELECT j FROM Job j WHERE j.jobId > :after"
+            + " AND j.status IN :statuses AND j.updateTime < :before ORDER BY j.jobId")
+    List<Job> findAllByStatusInUpdatedBefore(@Param("after") String after,
+                                             @Param("statuses") Collection<Status> statuses,
+                                             @Param("before") DateTime before,
+                                             Pageable pageable);
+
+    /**
+     * Deletes the jobs without loading them, so no change is journaled.
+     */
+    @Modifying
+    @Query("DELETE FROM Job j WHERE j.jobId IN :jobIds")
+    int deleteAllByJobIdIn(@Param("jobIds") Collection<String> jobIds);
 }
@@ -0,0 +1,54 @@
+package com.baidu.highflip.server.respository;
+
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import org.joda.time.DateTime;
+
+/**
+ * The columns of a job read when polling its status, without its JSON
+ * attributes and graph.
+ */
+public interface JobStatusView {
+
+    String getJobId();
+
+    Status getStatus();
+
+    String getMessage();
+
+    DateTime getUpdateTime();
+
+    DateTime getFinishTime();
+
+    /**
+     * @return the view of a loaded job
+     */
+    static JobStatusView of(Job job) {
+        return new JobStatusView() {
+            @Override
+            public String getJobId() {
+                return job.getJobId();
+            }
+
+            @Override
+            public Status getStatus() {
+                return job.getStatus();
+            }
+
+            @Override
+            public String getMessage() {
+                return job.getMessage();
+            }
+
+            @Override
+            public DateTime getUpdateTime() {
+                return job.getUpdateTime();
+            }
+
+            @Override
+            public DateTime getFinishTime() {
+                return job.getFinishTime();
+            }
+        };
+    }
+}
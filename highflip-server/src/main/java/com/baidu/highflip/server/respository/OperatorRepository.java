@@ -1,9 +1,17 @@
 package com.baidu.highflip.server.respository;
 
 import com.baidu.highflip.core.entity.runtime.Operator;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface OperatorRepository extends JpaRepository<Operator, String> {
+
+    @Query("SELECT o.operatorId FROM Operator o WHERE o.operatorId > :after ORDER BY o.operatorId")
+    List<String> findOperatorIdsAfter(@Param("after") String after, Pageable pageable);
 }
@@ -1,9 +1,17 @@
 package com.baidu.highflip.server.respository;
 
 import com.baidu.highflip.core.entity.runtime.Partner;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface PartnerRepository extends JpaRepository<Partner, String> {
+
+    @Query("SELECT p.partnerId FROM Partner p WHERE p.partnerId > :after ORDER BY p.partnerId")
+    List<String> findPartnerIdsAfter(@Param("after") String after, Pageable pageable);
 }
@@ -0,0 +1,28 @@
+package com.baidu.highflip.server.respository;
+
+import com.baidu.highflip.core.entity.runtime.ArchivedTask;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TaskArchiveRepository extends JpaRepository<ArchivedTask, String> {
+
+    List<ArchivedTask> findAllByJobId(String jobId);
+
+    @Query("SELECT a.taskId FROM ArchivedTask a WHERE a.jobId = :jobId AND a.taskId > :after ORDER BY a.taskId")
+    List<String> findTaskIdsAfter(@Param("jobId") String jobId, @Param("after") String after, Pageable pageable);
+
+    @Query("SELECT a.bindingId FROM ArchivedTask a WHERE a.bindingId IN :bindingIds")
+    List<String> findBindingIdsIn(@Param("bindingIds") Collection<String> bindingIds);
+
+    @Modifying
+    @Query("DELETE FROM ArchivedTask a WHERE a.jobId = :jobId")
+    int deleteAllByJobId(@Param("jobId") String jobId);
+}
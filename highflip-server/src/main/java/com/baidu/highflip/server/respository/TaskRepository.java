@@ -1,13 +1,40 @@
 package com.baidu.highflip.server.respository;
 
 import com.baidu.highflip.core.entity.runtime.Task;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface TaskRepository extends JpaRepository<Task, String> {
 
     List<Task> findAllByJobid(String jobid);
+
+    List<Task> findAllByJobidIn(Collection<String> jobids);
+
+    boolean existsByJobid(String jobid);
+
+    Optional<TaskStatusView> findStatusByTaskid(String taskid);
+
+    List<TaskStatusView> findStatusesByJobid(String jobid);
+
+    List<Task> findAllByBingingIdIn(Collection<String> bindingIds);
+
+    @Query("SELECT t.taskid FROM Task t WHERE t.jobid = :jobid AND t.taskid > :after ORDER BY t.taskid")
+    List<String> findTaskIdsAfter(@Param("jobid") String jobid, @Param("after") String after, Pageable pageable);
+
+    /**
+     * Deletes the tasks of the jobs without loading them, so no change is
+     * journaled.
+     */
+    @Modifying
+    @Query("DELETE FROM Task t WHERE t.jobid IN :jobids")
+    int deleteAllByJobidIn(@Param("jobids") Collection<String> jobids);
 }
@@ -0,0 +1,60 @@
+package com.baidu.highflip.server.respository;
+
+import com.baidu.highflip.core.entity.runtime.Task;
+import org.joda.time.DateTime;
+
+/**
+ * The columns of a task read when checking its status, without its JSON
+ * attributes.
+ */
+public interface TaskStatusView {
+
+    String getTaskid();
+
+    String getJobid();
+
+    String getStatus();
+
+    String getMessage();
+
+    DateTime getUpdateTime();
+
+    DateTime getFinishTime();
+
+    /**
+     * @return the view of a loaded task
+     */
+    static TaskStatusView of(Task task) {
+        return new TaskStatusView() {
+            @Override
+            public String getTaskid() {
+                return task.getTaskid();
+            }
+
+            @Override
+            public String getJobid() {
+                return task.getJobid();
+            }
+
+            @Override
+            public String getStatus() {
+                return task.getStatus();
+            }
+
+            @Override
+            public String getMessage() {
+                return task.getMessage();
+            }
+
+            @Override
+            public DateTime getUpdateTime() {
+                return task.getUpdateTime();
+            }
+
+            @Override
+            public DateTime getFinishTime() {
+                return task.getFinishTime();
+            }
+        };
+    }
+}
@@ -1,9 +1,17 @@
 package com.baidu.highflip.server.respository;
 
 import com.baidu.highflip.core.entity.runtime.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface UserRepository extends JpaRepository<User, String> {
+
+    @Query("SELECT u.userId FROM User u WHERE u.userId > :after ORDER BY u.userId")
+    List<String> findUserIdsAfter(@Param("after") String after, Pageable pageable);
 }
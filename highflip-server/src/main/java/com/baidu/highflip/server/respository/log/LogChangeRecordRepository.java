@@ -0,0 +1,66 @@
+package com.baidu.highflip.server.respository.log;
+
+import com.baidu.highflip.core.entity.runtime.ChangeRecord;
+import com.baidu.highflip.server.engine.journal.ChangeRecorder;
+import com.baidu.highflip.server.respository.ChangeRecordRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.NavigableSet;
+
+/**
+ * The change journal in the metadata log, appended to by the job and task
+ * repositories of the log, as Hibernate does for the database.
+ */
+@Primary
+@Repository
+@ConditionalOnProperty(value = "highflip.server.metadata.store", havingValue = "log")
+public class LogChangeRecordRepository extends LogRepository<ChangeRecord, Long>
+        implements ChangeRecordRepository {
+
+    @Autowired
+    ChangeRecorder recorder;
+
+    public LogChangeRecordRepository() {
+        super("change", ChangeRecord.class);
+    }
+
+    /**
+     * Keys of the same length, so they sort by sequence number.
+     */
+    @Override
+    protected String toKey(Object id) {
+        return String.format("%019d", ((Number) id).longValue());
+    }
+
+    /**
+     * Appends a change of a job or task and notifies the subscribers of the
+     * journal.
+     */
+    public void record(Object entity, String operation) {
+        ChangeRecord record = ChangeRecorder.toRecord(entity, operation);
+        if (record == null) {
+            return;
+        }
+        recorder.append(last -> {
+            long seq = getLastSeq() + 1;
+            record.setSeq(seq);
+            save(record);
+            return seq;
+        });
+    }
+
+    long getLastSeq() {
+        NavigableSet<String> keys = store.keys(type);
+        return keys.isEmpty() ? 0 : Long.parseLong(keys.last());
+    }
+
+    @Override
+    public List<ChangeRecord> findAllBySeqGreaterThanOrderBySeq(Long seq, Pageable pageable) {
+        return findAll(keysAfter(store.keys(type).tailSet(toKey(seq), false), pageable));
+    }
+}
@@ -0,0 +1,66 @@
+package com.baidu.highflip.server.respository.log;
+
+import com.baidu.highflip.core.entity.runtime.Data;
+import com.baidu.highflip.server.engine.binding.BindingIdIndex;
+import com.baidu.highflip.server.respository.DataRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+@Primary
+@Repository
+@ConditionalOnProperty(value = "highflip.server.metadata.store", havingValue = "log")
+public class LogDataRepository extends LogRepository<Data, String> implements DataRepository {
+
+    @Autowired
+    BindingIdIndex bindings;
+
+    /**
+     * Data ids by binding id.
+     */
+    final ConcurrentSkipListMap<String, String> byBindingId = new ConcurrentSkipListMap<>();
+
+    public LogDataRepository() {
+        super("data", Data.class);
+    }
+
+    @Override
+    protected boolean hasIndexes() {
+        return true;
+    }
+
+    @Override
+    protected void reindex(Data previous, Data current) {
+        if (previous != null && previous.getBingingId() != null) {
+            byBindingId.remove(previous.getBingingId(), previous.getDataId());
+        }
+        if (current != null && current.getBingingId() != null) {
+            byBindingId.put(current.getBingingId(), current.getDataId());
+        }
+    }
+
+    @Override
+    protected void saved(Data data, boolean created) {
+        bindings.getData().put(data.getBingingId());
+    }
+
+    @Override
+    public boolean existsByBingingId(String bindingId) {
+        return bindingId != null && byBindingId.containsKey(bindingId);
+    }
+
+    @Override
+    public List<String> findBindingIdsAfter(String after, Pageable pageable) {
+        return keysAfter(byBindingId.navigableKeySet().tailSet(after, false), pageable);
+    }
+
+    @Override
+    public List<String> findDataIdsAfter(String after, Pageable pageable) {
+        return keysAfter(store.keys(type).tailSet(after, false), pageable);
+    }
+}
@@ -0,0 +1,17 @@
+package com.baidu.highflip.server.respository.log;
+
+import com.baidu.highflip.core.entity.runtime.QueuedJob;
+import com.baidu.highflip.server.respository.JobQueueRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+@Primary
+@Repository
+@ConditionalOnProperty(value = "highflip.server.metadata.store", havingValue = "log")
+public class LogJobQueueRepository extends LogRepository<QueuedJob, String> implements JobQueueRepository {
+
+    public LogJobQueueRepository() {
+        super("queue", QueuedJob.class);
+    }
+}
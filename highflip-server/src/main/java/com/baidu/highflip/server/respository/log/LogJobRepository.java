@@ -0,0 +1,199 @@
+package com.baidu.highflip.server.respository.log;
+
+import com.baidu.highflip.core.entity.dag.Graph;
+import com.baidu.highflip.core.entity.runtime.ChangeRecord;
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.core.utils.GraphCodec;
+import com.baidu.highflip.server.engine.binding.BindingIdIndex;
+import com.baidu.highflip.server.respository.JobRepository;
+import com.baidu.highflip.server.respository.JobStatusView;
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Jobs in the metadata log. Graphs are kept as rows of their own, shared by
+ * equal graphs, and loaded on first access like from the database.
+ */
+@Primary
+@Repository
+@ConditionalOnProperty(value = "highflip.server.metadata.store", havingValue = "log")
+public class LogJobRepository extends LogRepository<Job, String> implements JobRepository {
+
+    static final String GRAPH = "graph";
+
+    @Autowired
+    LogChangeRecordRepository changes;
+
+    @Autowired
+    BindingIdIndex bindings;
+
+    /**
+     * Job ids by binding id.
+     */
+    final ConcurrentSkipListMap<String, String> byBindingId = new ConcurrentSkipListMap<>();
+
+    /**
+     * Status of each job that has one.
+     */
+    final Map<String, Status> statuses = new ConcurrentHashMap<>();
+
+    public LogJobRepository() {
+        super("job", Job.class);
+    }
+
+    @Override
+    protected boolean hasIndexes() {
+        return true;
+    }
+
+    @Override
+    protected void reindex(Job previous, Job current) {
+        if (previous != null) {
+            if (previous.getBingingId() != null) {
+                byBindingId.remove(previous.getBingingId(), previous.getJobId());
+            }
+            statuses.remove(previous.getJobId());
+        }
+        if (current != null) {
+            if (current.getBingingId() != null) {
+                byBindingId.put(current.getBingingId(), current.getJobId());
+            }
+            if (current.getStatus() != null) {
+                statuses.put(current.getJobId(), current.getStatus());
+            }
+        }
+    }
+
+    @Override
+    public <S extends Job> S save(S job) {
+        // before the job, which must never point to a missing graph
+        if (job.getGraphHash() != null && job.getGraphContent() != null
+                && !store.contains(GRAPH, job.getGraphHash())) {
+            store.put(GRAPH, job.getGraphHash(), job.getGraphContent());
+        }
+        return super.save(job);
+    }
+
+    @Override
+    protected void saved(Job job, boolean created) {
+        bindings.getJobs().put(job.getBingingId());
+        changes.record(job, created ? ChangeRecord.OPERATION_CREATE : ChangeRecord.OPERATION_UPDATE);
+    }
+
+    @Override
+    protected void deleted(Job job) {
+        changes.record(job, ChangeRecord.OPERATION_DELETE);
+    }
+
+    @Override
+    protected Job decode(byte[] row) {
+        Job job = super.decode(row);
+        job.setGraphLoader(this::loadGraph);
+        return job;
+    }
+
+    Graph loadGraph(String hash) {
+        byte[] content = store.get(GRAPH, hash);
+        return content == null ? null : GraphCodec.fromBytes(GraphCodec.decompress(content));
+    }
+
+    @Override
+    public List<String> findJobIdsAfter(String after, Pageable pageable) {
+        return keysAfter(store.keys(type).tailSet(after, false), pageable);
+    }
+
+    @Override
+    public Optional<JobStatusView> findStatusByJobId(String jobId) {
+        return find(jobId).map(JobStatusView::of);
+    }
+
+    @Override
+    public List<Job> findAllByBingingIdIn(Collection<String> bindingIds) {
+        List<String> keys = new ArrayList<>(bindingIds.size());
+        for (String bindingId : bindingIds) {
+            String jobId = bindingId == null ? null : byBindingId.get(bindingId);
+            if (jobId != null) {
+                keys.add(jobId);
+            }
+        }
+        return findAll(keys);
+    }
+
+    @Override
+    public List<Job> findAllByStatusAndBingingIdIsNull(Status status) {
+        List<Job> jobs = new ArrayList<>();
+        statuses.forEach((jobId, s) -> {
+            if (s == status) {
+                find(jobId).filter(job -> job.getBingingId() == null).ifPresent(jobs::add);
+            }
+        });
+        return jobs;
+    }
+
+    @Override
+    public boolean existsByBingingId(String bindingId) {
+        return bindingId != null && byBindingId.containsKey(bindingId);
+    }
+
+    @Override
+    public List<String> findBindingIdsAfter(String after, Pageable pageable) {
+        return keysAfter(byBindingId.navigableKeySet().tailSet(after, false), pageable);
+    }
+
+    @Override
+    public List<Job> findAllByStatusNotInAfter(String after, Collection<Status> statuses, Pageable pageable) {
+        int limit = limit(pageable);
+        List<String> keys = new ArrayList<>();
+        for (String jobId : store.keys(type).tailSet(after, false)) {
+            if (keys.size() >= limit) {
+                break;
+            }
+            Status status = this.statuses.get(jobId);
+            if (status == null || !statuses.contains(status)) {
+                keys.add(jobId);
+            }
+        }
+        return findAll(keys);
+    }
+
+    @Override
+    public List<Job> findAllByStatusInUpdatedBefore(String after, Collection<Status> statuses,
+                                                    DateTime before, Pageable pageable) {
+        int limit = limit(pageable);
+        List<Job> jobs = new ArrayList<>();
+        for (String jobId : store.keys(type).tailSet(after, false)) {
+            if (jobs.size() >= limit) {
+                break;
+            }
+            Status status = this.statuses.get(jobId);
+            if (status != null && statuses.contains(status)) {
+                find(jobId)
+                        .filter(job -> job.getUpdateTime() != null && job.getUpdateTime().isBefore(before))
+                        .ifPresent(jobs::add);
+            }
+        }
+        return jobs;
+    }
+
+    @Override
+    public int deleteAllByJobIdIn(Collection<String> jobIds) {
+        int count = 0;
+        for (String jobId : jobIds) {
+            count += delete(jobId, false) ? 1 : 0;
+        }
+        return count;
+    }
+}
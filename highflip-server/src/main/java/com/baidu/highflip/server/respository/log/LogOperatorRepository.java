@@ -0,0 +1,25 @@
+package com.baidu.highflip.server.respository.log;
+
+import com.baidu.highflip.core.entity.runtime.Operator;
+import com.baidu.highflip.server.respository.OperatorRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Primary
+@Repository
+@ConditionalOnProperty(value = "highflip.server.metadata.store", havingValue = "log")
+public class LogOperatorRepository extends LogRepository<Operator, String> implements OperatorRepository {
+
+    public LogOperatorRepository() {
+        super("operator", Operator.class);
+    }
+
+    @Override
+    public List<String> findOperatorIdsAfter(String after, Pageable pageable) {
+        return keysAfter(store.keys(type).tailSet(after, false), pageable);
+    }
+}
@@ -0,0 +1,37 @@
+package com.baidu.highflip.server.respository.log;
+
+import com.baidu.highflip.core.entity.runtime.Platform;
+import com.baidu.highflip.server.respository.PlatformRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Objects;
+
+@Primary
+@Repository
+@ConditionalOnProperty(value = "highflip.server.metadata.store", havingValue = "log")
+public class LogPlatformRepository extends LogRepository<Platform, String> implements PlatformRepository {
+
+    public LogPlatformRepository() {
+        super("platform", Platform.class);
+    }
+
+    @Override
+    public Platform findLocal() {
+        List<Platform> platforms = scan("", p -> Boolean.TRUE.equals(p.getIsLocal()), 1);
+        return platforms.isEmpty() ? null : platforms.get(0);
+    }
+
+    @Override
+    public void deleteLocal() {
+        deleteAll(scan("", p -> Boolean.TRUE.equals(p.getIsLocal()), Integer.MAX_VALUE));
+    }
+
+    @Override
+    public Iterable<Platform> findAllByCompanyAndProduct(String company, String product) {
+        return scan("", p -> Objects.equals(company, p.getCompany())
+                && Objects.equals(product, p.getProduct()), Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,577 @@
+package com.baidu.highflip.server.respository.log;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.query.FluentQuery;
+import org.springframework.data.support.ExampleMatcherAccessor;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityNotFoundException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Base of the repositories kept in the {@link MetadataLog}, for the
+ * repository contracts of the server.
+ * <p>
+ * Saves and deletes in a Spring transaction join it, see
+ * {@link LogTransaction}: they are read back by id in the transaction,
+ * applied when it commits and dropped when it rolls back. Listings and
+ * queries by index see them once applied. Outside of a transaction they are
+ * applied right away. Reads decode a fresh copy, so changes to an entity are
+ * only stored by saving it again. Entities are listed in id order unless
+ * sorted. Sorts and queries by example are done in memory over all the
+ * entities of the type, by the properties mapped to columns. Versioned entities
+ * are saved only over the version they were read with, like the optimistic
+ * locking of JPA.
+ * <p>
+ * Subclasses keep the indexes their queries need in memory by overriding
+ * {@link #reindex(Object, Object)}, which is called with each change and for
+ * every stored entity on start.
+ */
+public abstract class LogRepository<T, ID> implements JpaRepository<T, ID> {
+
+    @Autowired
+    MetadataLog store;
+
+    final String type;
+
+    final RowCodec<T> codec;
+
+    /**
+     * Serializes the writes of this repository with the upkeep of its
+     * indexes.
+     */
+    final Object writes = new Object();
+
+    protected LogRepository(String type, Class<T> entityClass) {
+        this.type = type;
+        this.codec = new RowCodec<>(entityClass);
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (hasIndexes()) {
+            store.forEach(type, (key, row) -> reindex(null, decode(row)));
+        }
+    }
+
+    /**
+     * @return whether {@link #reindex(Object, Object)} is to be called
+     */
+    protected boolean hasIndexes() {
+        return false;
+    }
+
+    /**
+     * Updates the indexes for a change, previous is null for a new entity
+     * and current is null for a deleted one.
+     */
+    protected void reindex(T previous, T current) {
+    }
+
+    /**
+     * Called after an entity was saved, created tells whether it was new.
+     */
+    protected void saved(T entity, boolean created) {
+    }
+
+    /**
+     * Called after an entity was deleted.
+     */
+    protected void deleted(T entity) {
+    }
+
+    protected String toKey(Object id) {
+        return String.valueOf(id);
+    }
+
+    protected T decode(byte[] row) {
+        return codec.decode(row);
+    }
+
+    protected Optional<T> find(String key) {
+        LogTransaction transaction = LogTransaction.peek(store);
+        LogTransaction.Write write = transaction == null ? null : transaction.get(type, key);
+        byte[] row = write != null ? write.row : store.get(type, key);
+        return row == null ? Optional.empty() : Optional.of(decode(row));
+    }
+
+    protected boolean contains(String key) {
+        LogTransaction transaction = LogTransaction.peek(store);
+        LogTransaction.Write write = transaction == null ? null : transaction.get(type, key);
+        return write != null ? write.row != null : store.contains(type, key);
+    }
+
+    /**
+     * @return the entities with the keys, skipping those deleted meanwhile
+     */
+    protected List<T> findAll(Collection<String> keys) {
+        List<T> entities = new ArrayList<>();
+        for (String key : keys) {
+            find(key).ifPresent(entities::add);
+        }
+        return entities;
+    }
+
+    /**
+     * @return up to limit entities matching the filter, in id order from the
+     * first id after the given one
+     */
+    protected List<T> scan(String after, Predicate<T> filter, int limit) {
+        List<T> entities = new ArrayList<>();
+        for (String key : store.keys(type).tailSet(after, false)) {
+            if (entities.size() >= limit) {
+                break;
+            }
+            find(key).filter(filter).ifPresent(entities::add);
+        }
+        return entities;
+    }
+
+    /**
+     * @return the first keys, up to the size of the page
+     */
+    protected List<String> keysAfter(Collection<String> keys, Pageable pageable) {
+        int limit = limit(pageable);
+        List<String> page = new ArrayList<>(Math.min(limit, 1024));
+        for (String key : keys) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(key);
+        }
+        return page;
+    }
+
+    static int limit(Pageable pageable) {
+        return pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return the entities in the order, the properties compared by their
+     * natural order
+     */
+    protected <S extends T> List<S> sort(List<S> entities, Sort sort) {
+        if (sort.isSorted()) {
+            entities.sort(comparator(sort));
+        }
+        return entities;
+    }
+
+    Comparator<T> comparator(Sort sort) {
+        Comparator<T> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<Object> values = order.isIgnoreCase()
+                    ? LogRepository::compareIgnoreCase
+                    : LogRepository::compare;
+            if (order.isDescending()) {
+                values = values.reversed();
+            }
+            values = order.getNullHandling() == Sort.NullHandling.NULLS_LAST
+                    ? Comparator.nullsLast(values)
+                    : Comparator.nullsFirst(values);
+            Comparator<T> next = Comparator.comparing(entity -> codec.getProperty(entity, order.getProperty()), values);
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compare(Object a, Object b) {
+        return ((Comparable) a).compareTo(b);
+    }
+
+    static int compareIgnoreCase(Object a, Object b) {
+        return a instanceof String && b instanceof String
+                ? ((String) a).compareToIgnoreCase((String) b)
+                : compare(a, b);
+    }
+
+    static <S> Page<S> page(List<S> entities, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(entities);
+        }
+        int from = (int) Math.min(pageable.getOffset(), entities.size());
+        int to = Math.min(from + pageable.getPageSize(), entities.size());
+        return new PageImpl<>(entities.subList(from, to), pageable, entities.size());
+    }
+
+    @Override
+    public <S extends T> S save(S entity) {
+        LogTransaction transaction = LogTransaction.current(store);
+        boolean created;
+        synchronized (writes) {
+            Object id = codec.getId(entity);
+            if (id == null || String.valueOf(id).isEmpty()) {
+                if (!codec.isGenerated()) {
+                    throw new IllegalArgumentException("Id of " + type + " is not set.");
+                }
+                id = UUID.randomUUID().toString();
+                codec.setId(entity, id);
+            }
+
+            String key = toKey(id);
+            created = !contains(key);
+            T previous = hasIndexes() || (codec.isVersioned() && !created) ? find(key).orElse(null) : null;
+            Long version = previous != null && codec.isVersioned() ? codec.getVersion(previous) : null;
+            if (codec.isVersioned()) {
+                checkVersion(id, previous, entity);
+            }
+            codec.audit(entity);
+            byte[] row = codec.encode(entity);
+            if (transaction != null) {
+                transaction.add(new LogTransaction.Write(this, key, row, version, true));
+                return entity;
+            }
+            store.put(type, key, row);
+            reindex(previous, entity);
+        }
+        saved(entity, created);
+        return entity;
+    }
+
+    /**
+     * Applies a write of a transaction, checking the version again against
+     * the writes committed meanwhile.
+     */
+    void apply(LogTransaction.Write write) {
+        T previous;
+        T current = write.row == null ? null : decode(write.row);
+        synchronized (writes) {
+            previous = find(write.key).orElse(null);
+            if (current == null) {
+                if (previous == null || !store.delete(type, write.key)) {
+                    return;
+                }
+            } else {
+                if (codec.isVersioned() && previous != null
+                        && !Objects.equals(codec.getVersion(previous), write.version)) {
+                    throw new ObjectOptimisticLockingFailureException(codec.getType(), codec.getId(current));
+                }
+                store.put(type, write.key, write.row);
+            }
+            reindex(previous, current);
+        }
+        if (!write.notify) {
+            return;
+        }
+        if (current == null) {
+            deleted(previous);
+        } else {
+            saved(current, previous == null);
+        }
+    }
+
+    void checkVersion(Object id, T previous, T entity) {
+        Long version = codec.getVersion(entity);
+        if (previous != null && !Objects.equals(codec.getVersion(previous), version)) {
+            throw new ObjectOptimisticLockingFailureException(codec.getType(), id);
+        }
+        codec.setVersion(entity, version == null ? 0 : version + 1);
+    }
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> entities) {
+        List<S> result = new ArrayList<>();
+        for (S entity : entities) {
+            result.add(save(entity));
+        }
+        return result;
+    }
+
+    @Override
+    public <S extends T> S saveAndFlush(S entity) {
+        return save(entity);
+    }
+
+    @Override
+    public <S extends T> List<S> saveAllAndFlush(Iterable<S> entities) {
+        return saveAll(entities);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public Optional<T> findById(ID id) {
+        return find(toKey(id));
+    }
+
+    @Override
+    public boolean existsById(ID id) {
+        return contains(toKey(id));
+    }
+
+    @Override
+    public List<T> findAll() {
+        return findAll(store.keys(type));
+    }
+
+    @Override
+    public List<T> findAll(Sort sort) {
+        return sort(findAll(), sort);
+    }
+
+    @Override
+    public Page<T> findAll(Pageable pageable) {
+        if (pageable.getSort().isSorted()) {
+            return page(findAll(pageable.getSort()), pageable);
+        }
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(findAll());
+        }
+        List<String> keys = new ArrayList<>(pageable.getPageSize());
+        long skip = pageable.getOffset();
+        for (String key : store.keys(type)) {
+            if (skip-- > 0) {
+                continue;
+            }
+            if (keys.size() >= pageable.getPageSize()) {
+                break;
+            }
+            keys.add(key);
+        }
+        return new PageImpl<>(findAll(keys), pageable, count());
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<ID> ids) {
+        List<T> entities = new ArrayList<>();
+        for (ID id : ids) {
+            findById(id).ifPresent(entities::add);
+        }
+        return entities;
+    }
+
+    @Override
+    public long count() {
+        return store.count(type);
+    }
+
+    @Override
+    public void deleteById(ID id) {
+        if (!delete(toKey(id))) {
+            throw new EmptyResultDataAccessException(
+                    String.format("No %s entity with id %s exists!", type, id), 1);
+        }
+    }
+
+    @Override
+    public void delete(T entity) {
+        Object id = codec.getId(entity);
+        if (id != null) {
+            delete(toKey(id));
+        }
+    }
+
+    protected boolean delete(String key) {
+        return delete(key, true);
+    }
+
+    /**
+     * @param notify whether to call {@link #deleted(Object)}
+     */
+    protected boolean delete(String key, boolean notify) {
+        LogTransaction transaction = LogTransaction.current(store);
+        T previous;
+        synchronized (writes) {
+            previous = find(key).orElse(null);
+            if (previous != null && transaction != null) {
+                Long version = codec.isVersioned() ? codec.getVersion(previous) : null;
+                transaction.add(new LogTransaction.Write(this, key, null, version, notify));
+                return true;
+            }
+            if (previous == null || !store.delete(type, key)) {
+                return false;
+            }
+            reindex(previous, null);
+        }
+        if (notify) {
+            deleted(previous);
+        }
+        return true;
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends ID> ids) {
+        for (ID id : ids) {
+            delete(toKey(id));
+        }
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> entities) {
+        for (T entity : entities) {
+            delete(entity);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        for (String key : store.keys(type)) {
+            delete(key);
+        }
+    }
+
+    @Override
+    public void deleteAllInBatch(Iterable<T> entities) {
+        deleteAll(entities);
+    }
+
+    @Override
+    public void deleteAllByIdInBatch(Iterable<ID> ids) {
+        deleteAllById(ids);
+    }
+
+    @Override
+    public void deleteAllInBatch() {
+        deleteAll();
+    }
+
+    @Override
+    public T getOne(ID id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    public T getById(ID id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    public T getReferenceById(ID id) {
+        return findById(id).orElseThrow(() ->
+                new EntityNotFoundException(String.format("Unable to find %s with id %s", type, id)));
+    }
+
+    @Override
+    public <S extends T> Optional<S> findOne(Example<S> example) {
+        List<S> entities = findAll(example);
+        if (entities.size() > 1) {
+            throw new IncorrectResultSizeDataAccessException(1, entities.size());
+        }
+        return entities.stream().findFirst();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S extends T> List<S> findAll(Example<S> example) {
+        Predicate<T> filter = matcher(example);
+        List<S> entities = new ArrayList<>();
+        for (String key : store.keys(type)) {
+            find(key).filter(filter).ifPresent(entity -> entities.add((S) entity));
+        }
+        return entities;
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example, Sort sort) {
+        return sort(findAll(example), sort);
+    }
+
+    @Override
+    public <S extends T> Page<S> findAll(Example<S> example, Pageable pageable) {
+        return page(findAll(example, pageable.getSort()), pageable);
+    }
+
+    @Override
+    public <S extends T> long count(Example<S> example) {
+        return findAll(example).size();
+    }
+
+    @Override
+    public <S extends T> boolean exists(Example<S> example) {
+        Predicate<T> filter = matcher(example);
+        for (String key : store.keys(type)) {
+            if (find(key).filter(filter).isPresent()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public <S extends T, R> R findBy(Example<S> example,
+                                    Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction) {
+        throw new UnsupportedOperationException("Fluent queries are not supported by the metadata log.");
+    }
+
+    /**
+     * @return the filter of the entities matching the example on its
+     * properties, nested properties are not matched
+     */
+    <S extends T> Predicate<T> matcher(Example<S> example) {
+        ExampleMatcher matcher = example.getMatcher();
+        ExampleMatcherAccessor accessor = new ExampleMatcherAccessor(matcher);
+        List<Predicate<T>> filters = new ArrayList<>();
+        for (String property : codec.getProperties()) {
+            if (accessor.isIgnoredPath(property)) {
+                continue;
+            }
+            Optional<Object> probe = accessor.getValueTransformerForPath(property)
+                    .apply(Optional.ofNullable(codec.getProperty(example.getProbe(), property)));
+            if (probe.isEmpty()) {
+                if (accessor.getNullHandler() == ExampleMatcher.NullHandler.INCLUDE) {
+                    filters.add(entity -> codec.getProperty(entity, property) == null);
+                }
+                continue;
+            }
+            Object expected = probe.get();
+            if (expected instanceof String) {
+                ExampleMatcher.StringMatcher strings = accessor.getStringMatcherForPath(property);
+                boolean ignoreCase = accessor.isIgnoreCaseForPath(property);
+                filters.add(entity -> matches((String) expected,
+                        codec.getProperty(entity, property), strings, ignoreCase));
+            } else {
+                filters.add(entity -> Objects.equals(expected, codec.getProperty(entity, property)));
+            }
+        }
+        Predicate<T> all = entity -> filters.stream().allMatch(filter -> filter.test(entity));
+        Predicate<T> any = entity -> filters.stream().anyMatch(filter -> filter.test(entity));
+        return matcher.isAllMatching() || filters.isEmpty() ? all : any;
+    }
+
+    static boolean matches(String expected, Object value, ExampleMatcher.StringMatcher matcher, boolean ignoreCase) {
+        if (!(value instanceof String)) {
+            return false;
+        }
+        String actual = (String) value;
+        if (ignoreCase && matcher != ExampleMatcher.StringMatcher.REGEX) {
+            expected = expected.toLowerCase();
+            actual = actual.toLowerCase();
+        }
+        switch (matcher) {
+            case STARTING:
+                return actual.startsWith(expected);
+            case ENDING:
+                return actual.endsWith(expected);
+            case CONTAINING:
+                return actual.contains(expected);
+            case REGEX:
+                return Pattern.compile(expected, ignoreCase ? Pattern.CASE_INSENSITIVE : 0)
+                        .matcher(actual)
+                        .matches();
+            default:
+                return actual.equals(expected);
+        }
+    }
+}
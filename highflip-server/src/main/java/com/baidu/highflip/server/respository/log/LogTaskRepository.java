@@ -0,0 +1,151 @@
+package com.baidu.highflip.server.respository.log;
+
+import com.baidu.highflip.core.entity.runtime.ChangeRecord;
+import com.baidu.highflip.core.entity.runtime.Task;
+import com.baidu.highflip.server.respository.TaskRepository;
+import com.baidu.highflip.server.respository.TaskStatusView;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+
+/**
+ * Tasks in the metadata log, indexed by job and by binding id.
+ */
+@Primary
+@Repository
+@ConditionalOnProperty(value = "highflip.server.metadata.store", havingValue = "log")
+public class LogTaskRepository extends LogRepository<Task, String> implements TaskRepository {
+
+    @Autowired
+    LogChangeRecordRepository changes;
+
+    /**
+     * Task ids of each job, in order.
+     */
+    final Map<String, NavigableSet<String>> byJobId = new ConcurrentHashMap<>();
+
+    /**
+     * Task ids by binding id.
+     */
+    final Map<String, String> byBindingId = new ConcurrentHashMap<>();
+
+    public LogTaskRepository() {
+        super("task", Task.class);
+    }
+
+    @Override
+    protected boolean hasIndexes() {
+        return true;
+    }
+
+    @Override
+    protected void reindex(Task previous, Task current) {
+        if (previous != null) {
+            if (previous.getJobid() != null) {
+                byJobId.computeIfPresent(previous.getJobid(), (jobId, tasks) -> {
+                    tasks.remove(previous.getTaskid());
+                    return tasks.isEmpty() ? null : tasks;
+                });
+            }
+            if (previous.getBingingId() != null) {
+                byBindingId.remove(previous.getBingingId(), previous.getTaskid());
+            }
+        }
+        if (current != null) {
+            if (current.getJobid() != null) {
+                byJobId.computeIfAbsent(current.getJobid(), jobId -> new ConcurrentSkipListSet<>())
+                        .add(current.getTaskid());
+            }
+            if (current.getBingingId() != null) {
+                byBindingId.put(current.getBingingId(), current.getTaskid());
+            }
+        }
+    }
+
+    @Override
+    protected void saved(Task task, boolean created) {
+        changes.record(task, created ? ChangeRecord.OPERATION_CREATE : ChangeRecord.OPERATION_UPDATE);
+    }
+
+    @Override
+    protected void deleted(Task task) {
+        changes.record(task, ChangeRecord.OPERATION_DELETE);
+    }
+
+    NavigableSet<String> tasksOf(String jobid) {
+        NavigableSet<String> tasks = jobid == null ? null : byJobId.get(jobid);
+        return tasks == null ? Collections.emptyNavigableSet() : tasks;
+    }
+
+    @Override
+    public List<Task> findAllByJobid(String jobid) {
+        return findAll(tasksOf(jobid));
+    }
+
+    @Override
+    public List<Task> findAllByJobidIn(Collection<String> jobids) {
+        List<Task> tasks = new ArrayList<>();
+        for (String jobid : jobids) {
+            tasks.addAll(findAllByJobid(jobid));
+        }
+        return tasks;
+    }
+
+    @Override
+    public boolean existsByJobid(String jobid) {
+        return !tasksOf(jobid).isEmpty();
+    }
+
+    @Override
+    public Optional<TaskStatusView> findStatusByTaskid(String taskid) {
+        return find(taskid).map(TaskStatusView::of);
+    }
+
+    @Override
+    public List<TaskStatusView> findStatusesByJobid(String jobid) {
+        return findAllByJobid(jobid).stream()
+                .map(TaskStatusView::of)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Task> findAllByBingingIdIn(Collection<String> bindingIds) {
+        List<String> keys = new ArrayList<>(bindingIds.size());
+        for (String bindingId : bindingIds) {
+            String taskid = bindingId == null ? null : byBindingId.get(bindingId);
+            if (taskid != null) {
+                keys.add(taskid);
+            }
+        }
+        return findAll(keys);
+    }
+
+    @Override
+    public List<String> findTaskIdsAfter(String jobid, String after, Pageable pageable) {
+        return keysAfter(tasksOf(jobid).tailSet(after, false), pageable);
+    }
+
+    @Override
+    public int deleteAllByJobidIn(Collection<String> jobids) {
+        int count = 0;
+        for (String jobid : jobids) {
+            for (String taskid : List.copyOf(tasksOf(jobid))) {
+                count += delete(taskid, false) ? 1 : 0;
+            }
+        }
+        return count;
+    }
+}
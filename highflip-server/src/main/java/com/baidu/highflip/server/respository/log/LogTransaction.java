@@ -0,0 +1,128 @@
+package com.baidu.highflip.server.respository.log;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes of the log repositories in a Spring transaction.
+ * <p>
+ * The writes are kept apart and read back by the transaction. They are
+ * applied to the {@link MetadataLog} before the transaction commits, so a
+ * version conflict found then rolls the transaction back, and are dropped if
+ * it rolls back. Writes applied before a conflict stay, the log has no
+ * rollback of its own.
+ */
+class LogTransaction implements TransactionSynchronization {
+
+    static class Write {
+
+        final LogRepository<?, ?> repository;
+
+        final String key;
+
+        /**
+         * Row to store, null to delete the key.
+         */
+        final byte[] row;
+
+        /**
+         * Version the stored row must still have, null if there was none.
+         */
+        final Long version;
+
+        /**
+         * Whether the repository is told of the change once applied.
+         */
+        final boolean notify;
+
+        Write(LogRepository<?, ?> repository, String key, byte[] row, Long version, boolean notify) {
+            this.repository = repository;
+            this.key = key;
+            this.row = row;
+            this.version = version;
+            this.notify = notify;
+        }
+    }
+
+    /**
+     * Set while the writes are applied, so the writes they cause, e.g. to
+     * the change journal, go to the log at once.
+     */
+    static final ThreadLocal<Boolean> APPLYING = new ThreadLocal<>();
+
+    final MetadataLog store;
+
+    final List<Write> writes = new ArrayList<>();
+
+    /**
+     * Last write of each key, by type and key.
+     */
+    final Map<String, Write> latest = new HashMap<>();
+
+    LogTransaction(MetadataLog store) {
+        this.store = store;
+    }
+
+    /**
+     * @return the transaction of the thread, null outside of one
+     */
+    static LogTransaction current(MetadataLog store) {
+        if (!isActive()) {
+            return null;
+        }
+        LogTransaction transaction = (LogTransaction) TransactionSynchronizationManager.getResource(store);
+        if (transaction == null) {
+            transaction = new LogTransaction(store);
+            TransactionSynchronizationManager.bindResource(store, transaction);
+            TransactionSynchronizationManager.registerSynchronization(transaction);
+        }
+        return transaction;
+    }
+
+    /**
+     * @return the transaction of the thread if it wrote already, else null
+     */
+    static LogTransaction peek(MetadataLog store) {
+        return isActive() ? (LogTransaction) TransactionSynchronizationManager.getResource(store) : null;
+    }
+
+    static boolean isActive() {
+        return APPLYING.get() == null
+                && TransactionSynchronizationManager.isSynchronizationActive()
+                && TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    void add(Write write) {
+        writes.add(write);
+        latest.put(write.repository.type + "/" + write.key, write);
+    }
+
+    /**
+     * @return the last write of the key, null if the transaction did not write it
+     */
+    Write get(String type, String key) {
+        return latest.get(type + "/" + key);
+    }
+
+    @Override
+    public void beforeCommit(boolean readOnly) {
+        APPLYING.set(Boolean.TRUE);
+        try {
+            for (Write write : writes) {
+                write.repository.apply(write);
+            }
+        } finally {
+            APPLYING.remove();
+        }
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(store);
+    }
+}
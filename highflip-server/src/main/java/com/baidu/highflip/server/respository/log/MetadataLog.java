@@ -0,0 +1,457 @@
+package com.baidu.highflip.server.respository.log;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only, memory-mapped log of rows keyed by type and id, the store
+ * of the {@link LogRepository repositories} of single-node deployments.
+ * <p>
+ * Every write appends a record, the latest record of a key wins. An index in
+ * memory points each live key to its record, so a read is a lookup and a copy
+ * out of the mapped file. On start the log is scanned to rebuild the index,
+ * stopping at the first record that is incomplete or fails its checksum,
+ * which is what a crash in the middle of a write leaves behind. When enough
+ * of the log is taken by overwritten and deleted rows, the live records are
+ * copied to a new file that replaces it.
+ * <p>
+ * Record layout: length of the body and CRC32 of the body as ints, then the
+ * body, an operation byte, the type and the key as UTF-8 with short lengths,
+ * and the row.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "highflip.server.metadata.store", havingValue = "log")
+public class MetadataLog {
+
+    static final String FILE_NAME = "metadata.log";
+
+    static final String COMPACT_SUFFIX = ".compact";
+
+    static final int MAGIC = 0x48464d4c;
+
+    static final int VERSION = 1;
+
+    static final int FILE_HEADER = 8;
+
+    static final int RECORD_HEADER = 8;
+
+    static final byte OP_PUT = 1;
+
+    static final byte OP_DELETE = 2;
+
+    static final byte[] EMPTY = new byte[0];
+
+    @Value("${highflip.server.metadata.log.path:${user.home}/.highflip/metadata}")
+    String path;
+
+    @Value("${highflip.server.metadata.log.map-size-mb:64}")
+    int mapSize;
+
+    @Value("${highflip.server.metadata.log.sync:false}")
+    boolean sync;
+
+    @Value("${highflip.server.metadata.log.flush-interval-ms:1000}")
+    long flushInterval;
+
+    @Value("${highflip.server.metadata.log.compact-interval-ms:60000}")
+    long compactInterval;
+
+    @Value("${highflip.server.metadata.log.compact-min-mb:16}")
+    int compactMinSize;
+
+    @Value("${highflip.server.metadata.log.compact-garbage-ratio:0.5}")
+    double compactGarbageRatio;
+
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Position of the record of each live key, by type.
+     */
+    final Map<String, ConcurrentSkipListMap<String, Integer>> index = new ConcurrentHashMap<>();
+
+    final CRC32 checksum = new CRC32();
+
+    FileChannel channel;
+
+    MappedByteBuffer buffer;
+
+    /**
+     * End of the last record, where the next one is written.
+     */
+    int position;
+
+    /**
+     * Bytes of the records that are still pointed to by the index.
+     */
+    long liveBytes;
+
+    ScheduledExecutorService pool;
+
+    @PostConstruct
+    public void initialize() throws IOException {
+        Path directory = Paths.get(path);
+        Files.createDirectories(directory);
+        // left by a compaction that did not finish
+        Files.deleteIfExists(directory.resolve(FILE_NAME + COMPACT_SUFFIX));
+
+        open(directory.resolve(FILE_NAME));
+        recover();
+        log.info("Open metadata log {} with {} live of {} bytes.",
+                directory.resolve(FILE_NAME), liveBytes, position - FILE_HEADER);
+
+        pool = Executors.newSingleThreadScheduledExecutor();
+        if (!sync) {
+            pool.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+        pool.scheduleWithFixedDelay(this::compactIfNeeded, compactInterval, compactInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close metadata log.", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the row of the key, null if there is none
+     */
+    public byte[] get(String type, String key) {
+        lock.readLock().lock();
+        try {
+            Integer at = index(type).get(key);
+            return at == null ? null : row(at);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String type, String key) {
+        return index(type).containsKey(key);
+    }
+
+    /**
+     * @return the live keys of the type in order, a view that follows later
+     * writes
+     */
+    public NavigableSet<String> keys(String type) {
+        return index(type).keySet();
+    }
+
+    public int count(String type) {
+        return index(type).size();
+    }
+
+    /**
+     * Calls the consumer with every live row of the type, in key order.
+     */
+    public void forEach(String type, BiConsumer<String, byte[]> consumer) {
+        lock.readLock().lock();
+        try {
+            index(type).forEach((key, at) -> consumer.accept(key, row(at)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(String type, String key, byte[] row) {
+        lock.writeLock().lock();
+        try {
+            append(OP_PUT, type, key, row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return false if there was no row to delete
+     */
+    public boolean delete(String type, String key) {
+        lock.writeLock().lock();
+        try {
+            if (!contains(type, key)) {
+                return false;
+            }
+            append(OP_DELETE, type, key, EMPTY);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the mapped pages to disk.
+     */
+    public void flush() {
+        lock.readLock().lock();
+        try {
+            buffer.force();
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush metadata log.", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return bytes of the log taken by overwritten and deleted rows
+     */
+    public long getGarbageBytes() {
+        return position - FILE_HEADER - liveBytes;
+    }
+
+    void compactIfNeeded() {
+        long total = position - FILE_HEADER;
+        if (total < ((long) compactMinSize << 20) || getGarbageBytes() < total * compactGarbageRatio) {
+            return;
+        }
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to compact metadata log.", e);
+        }
+    }
+
+    /**
+     * Copies the live records to a new file and replaces the log with it.
+     * Reads and writes wait until it is done.
+     */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            Path file = Paths.get(path).resolve(FILE_NAME);
+            Path compacted = Paths.get(path).resolve(FILE_NAME + COMPACT_SUFFIX);
+            long before = position;
+
+            Map<String, Map<String, Integer>> moved = new HashMap<>();
+            int end = FILE_HEADER;
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                write(out, header);
+
+                for (Map.Entry<String, ConcurrentSkipListMap<String, Integer>> type : index.entrySet()) {
+                    Map<String, Integer> positions = moved.computeIfAbsent(type.getKey(), t -> new HashMap<>());
+                    for (Map.Entry<String, Integer> entry : type.getValue().entrySet()) {
+                        int at = entry.getValue();
+                        int size = size(at);
+                        ByteBuffer record = buffer.duplicate();
+                        record.position(at).limit(at + size);
+                        write(out, record);
+                        positions.put(entry.getKey(), end);
+                        end += size;
+                    }
+                }
+                out.force(true);
+            }
+
+            channel.close();
+            try {
+                Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // keep on with the log as it was
+                open(file);
+                throw e;
+            }
+            open(file);
+
+            moved.forEach((type, positions) -> index(type).putAll(positions));
+            position = end;
+            liveBytes = end - FILE_HEADER;
+            log.info("Compact metadata log from {} to {} bytes.", before, end);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static void write(FileChannel out, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+    }
+
+    void open(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        map(Math.max(size, (long) mapSize << 20));
+
+        if (size == 0) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+        } else if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a metadata log: " + file);
+        }
+    }
+
+    void map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Metadata log can not grow beyond 2 GB.");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    void recover() {
+        index.clear();
+        liveBytes = 0;
+
+        int at = FILE_HEADER;
+        while (isValid(at)) {
+            ByteBuffer body = body(at);
+            byte op = body.get();
+            String type = string(body);
+            String key = string(body);
+            apply(op, type, key, at);
+            at += size(at);
+        }
+        position = at;
+
+        if (at + 4 <= buffer.capacity() && buffer.getInt(at) != 0) {
+            log.warn("Discard incomplete record at {} of metadata log.", at);
+            for (int i = at; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    boolean isValid(int at) {
+        if (at + RECORD_HEADER > buffer.capacity()) {
+            return false;
+        }
+        int length = buffer.getInt(at);
+        if (length <= 0 || length > buffer.capacity() - at - RECORD_HEADER) {
+            return false;
+        }
+        checksum.reset();
+        checksum.update(body(at));
+        return (int) checksum.getValue() == buffer.getInt(at + 4);
+    }
+
+    void append(byte op, String type, String key, byte[] row) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.UTF_8);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (typeBytes.length > Short.MAX_VALUE || keyBytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Key of metadata log is too long: " + key);
+        }
+
+        long length = 1L + 2 + typeBytes.length + 2 + keyBytes.length + row.length;
+        // room for an empty length after the record, which marks the end
+        ensure(position + RECORD_HEADER + length + 4);
+
+        int at = position;
+        ByteBuffer out = buffer.duplicate();
+        out.position(at + RECORD_HEADER);
+        out.put(op)
+                .putShort((short) typeBytes.length).put(typeBytes)
+                .putShort((short) keyBytes.length).put(keyBytes)
+                .put(row);
+
+        buffer.putInt(at, (int) length);
+        checksum.reset();
+        checksum.update(body(at));
+        buffer.putInt(at + 4, (int) checksum.getValue());
+
+        apply(op, type, key, at);
+        position = at + (int) (RECORD_HEADER + length);
+
+        if (sync) {
+            buffer.force();
+        }
+    }
+
+    void ensure(long required) {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        try {
+            map(Math.max(required, 2L * buffer.capacity()));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to grow metadata log.", e);
+        }
+    }
+
+    void apply(byte op, String type, String key, int at) {
+        Integer previous;
+        if (op == OP_PUT) {
+            previous = index(type).put(key, at);
+            liveBytes += size(at);
+        } else {
+            previous = index(type).remove(key);
+        }
+        if (previous != null) {
+            liveBytes -= size(previous);
+        }
+    }
+
+    ConcurrentSkipListMap<String, Integer> index(String type) {
+        return index.computeIfAbsent(type, t -> new ConcurrentSkipListMap<>());
+    }
+
+    int size(int at) {
+        return RECORD_HEADER + buffer.getInt(at);
+    }
+
+    ByteBuffer body(int at) {
+        ByteBuffer body = buffer.duplicate();
+        body.position(at + RECORD_HEADER).limit(at + size(at));
+        return body;
+    }
+
+    byte[] row(int at) {
+        ByteBuffer body = body(at);
+        body.position(body.position() + 1);
+        skip(body);
+        skip(body);
+        byte[] row = new byte[body.remaining()];
+        body.get(row);
+        return row;
+    }
+
+    static String string(ByteBuffer body) {
+        byte[] bytes = new byte[body.getShort()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void skip(ByteBuffer body) {
+        short length = body.getShort();
+        body.position(body.position() + length);
+    }
+}
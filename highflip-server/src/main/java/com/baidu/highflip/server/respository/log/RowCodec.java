@@ -0,0 +1,314 @@
+package com.baidu.highflip.server.respository.log;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.vladmihalcea.hibernate.type.util.ObjectMapperWrapper;
+import org.joda.time.DateTime;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+
+import javax.persistence.Column;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Version;
+import java.beans.Introspector;
+import java.io.IOException;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converts entities to the rows of the {@link MetadataLog} and back, as JSON
+ * objects of their columns.
+ * <p>
+ * The columns are read from the JPA mapping, the fields and property getters
+ * annotated with {@link Column} or {@link Id}, so an entity keeps the same
+ * columns it has in the database. JSON columns mapped through property access
+ * are copied as strings, without being parsed. Date times are stored as epoch
+ * milliseconds and enums by ordinal unless mapped by name, like Hibernate
+ * does.
+ */
+public class RowCodec<T> {
+
+    static final ObjectMapper MAPPER = ObjectMapperWrapper.INSTANCE.getObjectMapper();
+
+    static class Mapping {
+
+        final String name;
+
+        /**
+         * Name of the field or of the property of the getter.
+         */
+        final String property;
+
+        final Class<?> raw;
+
+        final JavaType type;
+
+        final boolean ordinal;
+
+        final Field field;
+
+        final Method getter;
+
+        final Method setter;
+
+        Mapping(String name, Type type, AccessibleObject member, Field field, Method getter, Method setter) {
+            Enumerated enumerated = member.getAnnotation(Enumerated.class);
+            this.name = name;
+            this.property = field != null
+                    ? field.getName()
+                    : Introspector.decapitalize(getter.getName().substring(3));
+            this.type = MAPPER.getTypeFactory().constructType(type);
+            this.raw = this.type.getRawClass();
+            this.ordinal = enumerated == null || enumerated.value() == EnumType.ORDINAL;
+            this.field = field;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        Object get(Object entity) {
+            try {
+                return field != null ? field.get(entity) : getter.invoke(entity);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to read column " + name, e);
+            }
+        }
+
+        void set(Object entity, Object value) {
+            try {
+                if (field != null) {
+                    field.set(entity, value);
+                } else {
+                    setter.invoke(entity, value);
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to write column " + name, e);
+            }
+        }
+    }
+
+    final Constructor<T> constructor;
+
+    final List<Mapping> columns = new ArrayList<>();
+
+    final List<Mapping> created = new ArrayList<>();
+
+    final List<Mapping> modified = new ArrayList<>();
+
+    final Map<String, Mapping> properties = new LinkedHashMap<>();
+
+    Mapping id;
+
+    Mapping version;
+
+    boolean generated;
+
+    public RowCodec(Class<T> type) {
+        try {
+            constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type + " has no constructor without arguments.", e);
+        }
+
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                Column column = field.getAnnotation(Column.class);
+                if (Modifier.isStatic(field.getModifiers())
+                        || (column == null && field.getAnnotation(Id.class) == null)) {
+                    continue;
+                }
+                field.setAccessible(true);
+                add(field, new Mapping(column == null || column.name().isEmpty() ? field.getName() : column.name(),
+                        field.getGenericType(), field, field, null, null));
+            }
+            for (Method getter : c.getDeclaredMethods()) {
+                Column column = getter.getAnnotation(Column.class);
+                if (column == null || getter.getParameterCount() != 0 || !getter.getName().startsWith("get")) {
+                    continue;
+                }
+                Method setter;
+                try {
+                    setter = c.getDeclaredMethod("set" + getter.getName().substring(3), getter.getReturnType());
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalArgumentException("Column " + column.name() + " of " + type + " has no setter.", e);
+                }
+                getter.setAccessible(true);
+                setter.setAccessible(true);
+                add(getter, new Mapping(column.name(), getter.getGenericReturnType(), getter, null, getter, setter));
+            }
+        }
+
+        if (id == null) {
+            throw new IllegalArgumentException(type + " has no id.");
+        }
+    }
+
+    void add(AccessibleObject member, Mapping mapping) {
+        columns.add(mapping);
+        properties.put(mapping.property, mapping);
+        if (member.getAnnotation(Id.class) != null) {
+            id = mapping;
+            generated = member.getAnnotation(GeneratedValue.class) != null;
+        }
+        if (member.getAnnotation(Version.class) != null) {
+            version = mapping;
+        }
+        if (member.getAnnotation(CreatedDate.class) != null && mapping.raw == DateTime.class) {
+            created.add(mapping);
+        }
+        if (member.getAnnotation(LastModifiedDate.class) != null && mapping.raw == DateTime.class) {
+            modified.add(mapping);
+        }
+    }
+
+    public Object getId(T entity) {
+        return id.get(entity);
+    }
+
+    public void setId(T entity, Object value) {
+        id.set(entity, value);
+    }
+
+    /**
+     * @return whether the id is generated when an entity is saved without one
+     */
+    public boolean isGenerated() {
+        return generated;
+    }
+
+    /**
+     * @return the properties mapped to columns, in column order
+     */
+    public Set<String> getProperties() {
+        return properties.keySet();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the property is not mapped to a column
+     */
+    public Object getProperty(T entity, String property) {
+        Mapping mapping = properties.get(property);
+        if (mapping == null) {
+            throw new IllegalArgumentException(
+                    "No column for property " + property + " of " + constructor.getDeclaringClass());
+        }
+        return mapping.get(entity);
+    }
+
+    public Class<T> getType() {
+        return constructor.getDeclaringClass();
+    }
+
+    /**
+     * @return whether the entity has a {@link Version} column
+     */
+    public boolean isVersioned() {
+        return version != null;
+    }
+
+    public Long getVersion(T entity) {
+        Object value = version.get(entity);
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    public void setVersion(T entity, long value) {
+        version.set(entity, value);
+    }
+
+    /**
+     * Sets the creation time unless set already and the modification time,
+     * like the auditing listener of the entities does.
+     */
+    public void audit(T entity) {
+        DateTime now = DateTime.now();
+        for (Mapping mapping : created) {
+            if (mapping.get(entity) == null) {
+                mapping.set(entity, now);
+            }
+        }
+        for (Mapping mapping : modified) {
+            mapping.set(entity, now);
+        }
+    }
+
+    public byte[] encode(T entity) {
+        ObjectNode row = MAPPER.createObjectNode();
+        for (Mapping mapping : columns) {
+            row.set(mapping.name, toNode(mapping, mapping.get(entity)));
+        }
+        try {
+            return MAPPER.writeValueAsBytes(row);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to encode " + constructor.getDeclaringClass(), e);
+        }
+    }
+
+    public T decode(byte[] bytes) {
+        T entity;
+        JsonNode row;
+        try {
+            entity = constructor.newInstance();
+            row = MAPPER.readTree(bytes);
+        } catch (ReflectiveOperationException | IOException e) {
+            throw new IllegalArgumentException("Failed to decode " + constructor.getDeclaringClass(), e);
+        }
+
+        for (Mapping mapping : columns) {
+            JsonNode node = row.get(mapping.name);
+            // columns added after the row was written keep their defaults
+            if (node == null || (node.isNull() && mapping.raw.isPrimitive())) {
+                continue;
+            }
+            mapping.set(entity, fromNode(mapping, node));
+        }
+        return entity;
+    }
+
+    static JsonNode toNode(Mapping mapping, Object value) {
+        if (value == null) {
+            return NullNode.instance;
+        } else if (value instanceof String) {
+            return TextNode.valueOf((String) value);
+        } else if (value instanceof DateTime) {
+            return LongNode.valueOf(((DateTime) value).getMillis());
+        } else if (value instanceof Enum) {
+            Enum<?> constant = (Enum<?>) value;
+            return mapping.ordinal ? IntNode.valueOf(constant.ordinal()) : TextNode.valueOf(constant.name());
+        }
+        return MAPPER.valueToTree(value);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object fromNode(Mapping mapping, JsonNode node) {
+        if (node.isNull()) {
+            return null;
+        } else if (mapping.raw == String.class) {
+            return node.asText();
+        } else if (mapping.raw == DateTime.class) {
+            return new DateTime(node.asLong());
+        } else if (mapping.raw.isEnum()) {
+            return mapping.ordinal
+                    ? mapping.raw.getEnumConstants()[node.asInt()]
+                    : Enum.valueOf((Class) mapping.raw, node.asText());
+        }
+        return MAPPER.convertValue(node, mapping.type);
+    }
+}
@@ -0,0 +1,21 @@
+package com.baidu.highflip.server.respository.routing;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method that only reads, so its queries may go to a replica within
+ * the staleness budget. Inside a read-write transaction it reads the primary.
+ * Results of such methods must not be cached, as a stale read would be kept
+ * beyond the budget.
+ *
+ * @see ReplicaRoutingDataSource
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface ReadReplica {
+}
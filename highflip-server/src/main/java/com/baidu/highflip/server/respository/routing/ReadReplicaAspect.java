@@ -0,0 +1,22 @@
+package com.baidu.highflip.server.respository.routing;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+@Aspect
+@Component
+public class ReadReplicaAspect {
+
+    @Around("@annotation(com.baidu.highflip.server.respository.routing.ReadReplica) "
+            + "|| @within(com.baidu.highflip.server.respository.routing.ReadReplica)")
+    public Object read(ProceedingJoinPoint point) throws Throwable {
+        ReplicaRoutingDataSource.enter();
+        try {
+            return point.proceed();
+        } finally {
+            ReplicaRoutingDataSource.exit();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.baidu.highflip.server.respository.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Routes the connections of reads to the replicas and all others to the
+ * primary.
+ * <p>
+ * A read is a method annotated with {@link ReadReplica} or a call in
+ * {@link #read(Supplier)}, outside a read-write transaction. It takes the
+ * next replica, round robin, whose lag is within the staleness budget, or the
+ * primary when there is none.
+ * <p>
+ * The lag is the age of a heartbeat row the primary updates every interval
+ * and the replicas receive through replication, so it is at least the
+ * interval and the budget must be larger. A replica may not have an entity
+ * created just before, so lookups by id retry a miss on the primary, see
+ * {@link #find(Supplier)}.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    static final String CREATE_HEARTBEAT =
+            "CREATE TABLE IF NOT EXISTS hf_heartbeat (id INT PRIMARY KEY, beat_time BIGINT NOT NULL)";
+
+    static final String UPDATE_HEARTBEAT = "UPDATE hf_heartbeat SET beat_time = ? WHERE id = 1";
+
+    static final String INSERT_HEARTBEAT = "INSERT INTO hf_heartbeat (id, beat_time) VALUES (1, ?)";
+
+    static final String SELECT_HEARTBEAT = "SELECT beat_time FROM hf_heartbeat WHERE id = 1";
+
+    /**
+     * Depth of the reads the current thread is in.
+     */
+    static final ThreadLocal<int[]> READS = ThreadLocal.withInitial(() -> new int[1]);
+
+    final DataSource primary;
+
+    final Map<String, DataSource> replicas;
+
+    final long maxStaleness;
+
+    final long heartbeatInterval;
+
+    final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Replicas within the staleness budget as of the last check.
+     */
+    volatile List<String> available = List.of();
+
+    ScheduledExecutorService pool;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                    long maxStaleness, long heartbeatInterval) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.maxStaleness = maxStaleness;
+        this.heartbeatInterval = heartbeatInterval;
+
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        if (replicas.isEmpty() || heartbeatInterval <= 0) {
+            return;
+        }
+        pool = Executors.newSingleThreadScheduledExecutor();
+        pool.scheduleWithFixedDelay(this::run, 0, heartbeatInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+        close(primary);
+        replicas.values().forEach(ReplicaRoutingDataSource::close);
+    }
+
+    static void close(DataSource dataSource) {
+        if (dataSource instanceof Closeable) {
+            try {
+                ((Closeable) dataSource).close();
+            } catch (IOException e) {
+                log.warn("Failed to close data source.", e);
+            }
+        }
+    }
+
+    /**
+     * Runs the reader with its queries routed like an annotated read, for
+     * results that query lazily, after the method returned.
+     */
+    public static <T> T read(Supplier<T> reader) {
+        enter();
+        try {
+            return reader.get();
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Runs the reader on the primary, also inside a read.
+     */
+    public static <T> T primary(Supplier<T> reader) {
+        int depth = READS.get()[0];
+        READS.remove();
+        try {
+            return reader.get();
+        } finally {
+            if (depth > 0) {
+                READS.get()[0] = depth;
+            }
+        }
+    }
+
+    /**
+     * Looks an entity up, inside a read once more on the primary when the
+     * replica has none.
+     */
+    public static <T> Optional<T> find(Supplier<Optional<T>> finder) {
+        Optional<T> found = finder.get();
+        if (found.isPresent() || !isReading()) {
+            return found;
+        }
+        return primary(finder);
+    }
+
+    static void enter() {
+        READS.get()[0]++;
+    }
+
+    static void exit() {
+        int[] depth = READS.get();
+        if (--depth[0] <= 0) {
+            READS.remove();
+        }
+    }
+
+    public static boolean isReading() {
+        return READS.get()[0] > 0;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!isReading()) {
+            return PRIMARY;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        List<String> names = available;
+        if (names.isEmpty()) {
+            return PRIMARY;
+        }
+        return names.get(Math.floorMod(next.getAndIncrement(), names.size()));
+    }
+
+    void run() {
+        try {
+            check();
+        } catch (RuntimeException e) {
+            log.warn("Failed to check the replicas.", e);
+        }
+    }
+
+    /**
+     * Writes the heartbeat to the primary, then keeps the replicas whose
+     * heartbeat is within the staleness budget.
+     */
+    void check() {
+        long now = System.currentTimeMillis();
+        try {
+            beat(now);
+        } catch (SQLException e) {
+            log.warn("Failed to write the replica heartbeat.", e);
+        }
+
+        List<String> names = new ArrayList<>(replicas.size());
+        replicas.forEach((name, replica) -> {
+            if (now - lastBeat(name, replica) <= maxStaleness) {
+                names.add(name);
+            }
+        });
+        if (!names.equals(available)) {
+            log.info("Route reads to replicas {}.", names);
+        }
+        available = List.copyOf(names);
+    }
+
+    void beat(long now) throws SQLException {
+        try (Connection connection = primary.getConnection()) {
+            connection.setAutoCommit(true);
+            try (Statement create = connection.createStatement()) {
+                create.execute(CREATE_HEARTBEAT);
+            }
+            try (PreparedStatement update = connection.prepareStatement(UPDATE_HEARTBEAT)) {
+                update.setLong(1, now);
+                if (update.executeUpdate() > 0) {
+                    return;
+                }
+            }
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_HEARTBEAT)) {
+                insert.setLong(1, now);
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * @return time of the last heartbeat the replica received, 0 if unknown
+     */
+    long lastBeat(String name, DataSource replica) {
+        try (Connection connection = replica.getConnection();
+             Statement select = connection.createStatement();
+             ResultSet result = select.executeQuery(SELECT_HEARTBEAT)) {
+            return result.next() ? result.getLong(1) : 0;
+        } catch (SQLException e) {
+            log.debug("Failed to read the heartbeat of replica {}.", name, e);
+            return 0;
+        }
+    }
+}
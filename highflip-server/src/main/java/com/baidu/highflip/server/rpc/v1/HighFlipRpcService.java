@@ -2,6 +2,7 @@ package com.baidu.highflip.server.rpc.v1;
 
 import com.baidu.highflip.core.adaptor.ServiceAdaptor;
 import com.baidu.highflip.core.entity.dag.Graph;
+import com.baidu.highflip.core.entity.runtime.ChangeRecord;
 import com.baidu.highflip.core.entity.runtime.Config;
 import com.baidu.highflip.core.entity.runtime.Data;
 import com.baidu.highflip.core.entity.runtime.Job;
@@ -11,19 +12,27 @@ import com.baidu.highflip.core.entity.runtime.Platform;
 import com.baidu.highflip.core.entity.runtime.Task;
 import com.baidu.highflip.core.entity.runtime.basic.Action;
 import com.baidu.highflip.core.entity.runtime.basic.Column;
+import com.baidu.highflip.core.entity.runtime.basic.ColumnStats;
 import com.baidu.highflip.core.entity.runtime.basic.DataMode;
 import com.baidu.highflip.core.entity.runtime.basic.KeyPair;
 import com.baidu.highflip.core.entity.runtime.version.PlatformVersion;
 import com.baidu.highflip.core.utils.ActionUtils;
 import com.baidu.highflip.server.engine.HighFlipEngine;
+import com.baidu.highflip.server.engine.batch.JobBatchCreator;
+import com.baidu.highflip.server.engine.common.KeysetPager;
 import com.baidu.highflip.server.engine.dataio.PushContext;
+import com.baidu.highflip.server.engine.journal.ChangeJournal;
+import com.baidu.highflip.server.engine.log.LogTailer;
+import com.baidu.highflip.server.engine.tracker.JobStatusTracker;
 import com.baidu.highflip.server.exception.HighFlipException;
+import com.baidu.highflip.server.respository.TaskStatusView;
 import com.baidu.highflip.server.utils.PullProtoUtils;
 import com.google.common.collect.Streams;
 import highflip.HighflipMeta;
 import highflip.v1.HighFlipGrpc.HighFlipImplBase;
 import highflip.v1.Highflip;
 import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -35,6 +44,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.baidu.highflip.server.utils.GrpcServiceUtils.returnMore;
@@ -71,10 +81,12 @@ public class HighFlipRpcService extends HighFlipImplBase {
                            StreamObserver<Highflip.ConfigListResponse> responseObserver) {
 
         Iterator<Highflip.ConfigListResponse> response = Streams
-                .stream(getEngine().listConfig())
+                .stream(getEngine().listConfig(request.getPageToken(),
+                        request.getOffset(), request.getLimit()))
                 .map(k -> Highflip.ConfigListResponse
                         .newBuilder()
                         .setKey(k)
+                        .setPageToken(KeysetPager.encode(k))
                         .build())
                 .iterator();
 
@@ -177,16 +189,105 @@ public class HighFlipRpcService extends HighFlipImplBase {
     public void createJob(Highflip.JobCreateRequest request,
                           StreamObserver<Highflip.JobId> responseObserver) {
 
-        Job job = getEngine().createJob(
-                request.getName(),
-                request.getDescription(),
-                Graph.fromProto(request.getDag()));
+        if (getEngine().isAdmissionEnabled()) {
+            Job job = getEngine().enqueueJob(
+                    request.getName(),
+                    request.getDescription(),
+                    Graph.fromProto(request.getDag()),
+                    request.getOwner(),
+                    request.getPriority());
+            returnOne(responseObserver, toJobId(job.getJobId()));
+            return;
+        }
+
+        Job job = request.getAsync()
+                ? getEngine().createJobAsync(
+                        request.getName(),
+                        request.getDescription(),
+                        Graph.fromProto(request.getDag()))
+                : getEngine().createJob(
+                        request.getName(),
+                        request.getDescription(),
+                        Graph.fromProto(request.getDag()));
 
         Highflip.JobId response = toJobId(job.getJobId());
 
         returnOne(responseObserver, response);
     }
 
+    /**
+     * Streams one response per job as soon as it is created or has failed.
+     *
+     * @param request
+     * @param responseObserver
+     */
+    @Override
+    public void createJobs(Highflip.JobBatchCreateRequest request,
+                           StreamObserver<Highflip.JobBatchCreateResponse> responseObserver) {
+
+        if (getEngine().isAdmissionEnabled()) {
+            // queued jobs are only stored, one by one is fast enough
+            for (int i = 0; i < request.getJobsCount(); i++) {
+                Highflip.JobCreateRequest one = request.getJobs(i);
+                try {
+                    Job job = getEngine().enqueueJob(
+                            one.getName(),
+                            one.getDescription(),
+                            Graph.fromProto(one.getDag()),
+                            one.getOwner(),
+                            one.getPriority());
+                    responseObserver.onNext(toBatchCreateResponse(i, job, null));
+                } catch (RuntimeException e) {
+                    responseObserver.onNext(toBatchCreateResponse(i, null, e));
+                }
+            }
+            responseObserver.onCompleted();
+            return;
+        }
+
+        List<Job> jobs = new ArrayList<>(request.getJobsCount());
+        List<Integer> indexes = new ArrayList<>(request.getJobsCount());
+        for (int i = 0; i < request.getJobsCount(); i++) {
+            Highflip.JobCreateRequest one = request.getJobs(i);
+            try {
+                Job job = new Job();
+                job.setJobName(one.getName());
+                job.setDescription(one.getDescription());
+                job.setGraph(Graph.fromProto(one.getDag()));
+                jobs.add(job);
+                indexes.add(i);
+            } catch (RuntimeException e) {
+                responseObserver.onNext(toBatchCreateResponse(i, null, e));
+            }
+        }
+
+        getEngine().createJobs(jobs, new JobBatchCreator.Listener() {
+            @Override
+            public void onCreated(int index, Job job) {
+                responseObserver.onNext(toBatchCreateResponse(indexes.get(index), job, null));
+            }
+
+            @Override
+            public void onFailed(int index, Throwable error) {
+                responseObserver.onNext(toBatchCreateResponse(indexes.get(index), null, error));
+            }
+        });
+        responseObserver.onCompleted();
+    }
+
+    static Highflip.JobBatchCreateResponse toBatchCreateResponse(int index, Job job, Throwable error) {
+        Highflip.JobBatchCreateResponse.Builder builder = Highflip.JobBatchCreateResponse
+                .newBuilder()
+                .setIndex(index);
+        if (job != null) {
+            builder.setJobId(job.getJobId());
+        }
+        if (error != null) {
+            builder.setError(String.valueOf(error.getMessage()));
+        }
+        return builder.build();
+    }
+
     /******************************************************************************
      * JOB
      ******************************************************************************/
@@ -200,7 +301,28 @@ public class HighFlipRpcService extends HighFlipImplBase {
                        StreamObserver<Highflip.JobGetResponse> responseObserver) {
         Job job = getEngine().getJob(request.getJobId());
 
-        Highflip.JobGetResponse response = Highflip.JobGetResponse
+        returnOne(responseObserver, toJobGetResponse(job));
+    }
+
+    /**
+     * @param request
+     * @param responseObserver
+     */
+    @Override
+    public void batchGetJobs(Highflip.JobBatchGetRequest request,
+                             StreamObserver<Highflip.JobGetResponse> responseObserver) {
+
+        Iterator<Highflip.JobGetResponse> response = getEngine()
+                .getJobs(request.getJobIdsList())
+                .stream()
+                .map(HighFlipRpcService::toJobGetResponse)
+                .iterator();
+
+        returnMore(responseObserver, response);
+    }
+
+    static Highflip.JobGetResponse toJobGetResponse(Job job) {
+        return Highflip.JobGetResponse
                 .newBuilder()
                 .setJobId(job.getJobId())
                 .setName(job.getJobName())
@@ -209,8 +331,6 @@ public class HighFlipRpcService extends HighFlipImplBase {
                 .setUpdateTime(job.getUpdateTime().toString())
                 .setFinishTime(job.getUpdateTime().toString())
                 .build();
-
-        returnOne(responseObserver, response);
     }
 
     /**
@@ -221,21 +341,85 @@ public class HighFlipRpcService extends HighFlipImplBase {
     public void checkJob(Highflip.JobId request,
                          StreamObserver<Highflip.JobCheckResponse> responseObserver) {
 
-        Job job = getEngine().getJob(request.getJobId());
-        com.baidu.highflip.core.entity.runtime.basic.Status jobStatus =
-                getEngine().getContext()
-                           .getJobAdaptor()
-                           .getJobStatus(job);
-        // check and update job
-        getEngine().updateJob();
-
-        Highflip.JobCheckResponse response = Highflip.JobCheckResponse
+        Job job = getEngine().checkJob(request.getJobId());
+
+        returnOne(responseObserver, toQueuedJobCheckResponse(job));
+    }
+
+    /**
+     * Statuses come from the tracker, the adaptor is not called per job.
+     *
+     * @param request
+     * @param responseObserver
+     */
+    @Override
+    public void batchCheckJobs(Highflip.JobBatchGetRequest request,
+                               StreamObserver<Highflip.JobCheckResponse> responseObserver) {
+
+        Iterator<Highflip.JobCheckResponse> response = getEngine()
+                .checkJobs(request.getJobIdsList())
+                .stream()
+                .map(this::toQueuedJobCheckResponse)
+                .iterator();
+
+        returnMore(responseObserver, response);
+    }
+
+    Highflip.JobCheckResponse toQueuedJobCheckResponse(Job job) {
+        Highflip.JobCheckResponse response = toJobCheckResponse(job);
+
+        int position = getEngine().getQueuePosition(job.getJobId());
+        if (position > 0) {
+            response = response.toBuilder()
+                    .setQueuePosition(position)
+                    .build();
+        }
+        return response;
+    }
+
+    /**
+     * Streams the job status now and on every change, completes once the job finishes.
+     *
+     * @param request
+     * @param responseObserver
+     */
+    @Override
+    public void watchJob(Highflip.JobId request,
+                         StreamObserver<Highflip.JobCheckResponse> responseObserver) {
+
+        ServerCallStreamObserver<Highflip.JobCheckResponse> observer =
+                (ServerCallStreamObserver<Highflip.JobCheckResponse>) responseObserver;
+
+        JobStatusTracker.Listener listener = new JobStatusTracker.Listener() {
+
+            boolean closed = false;
+
+            @Override
+            public synchronized void onChange(Job job) {
+                if (closed || observer.isCancelled()) {
+                    return;
+                }
+                observer.onNext(toJobCheckResponse(job));
+                if (JobStatusTracker.isTerminal(job.getStatus())) {
+                    closed = true;
+                    observer.onCompleted();
+                }
+            }
+        };
+        observer.setOnCancelHandler(() -> getEngine().unwatchJob(request.getJobId(), listener));
+        getEngine().watchJob(request.getJobId(), listener);
+    }
+
+    static Highflip.JobCheckResponse toJobCheckResponse(Job job) {
+        Highflip.JobCheckResponse.Builder builder = Highflip.JobCheckResponse
                 .newBuilder()
                 .setJobId(job.getJobId())
                 .setStatus(Highflip.JobCheckResponse.JobStatus.valueOf(
-                        jobStatus.toString().toUpperCase()))
-                .build();
-        returnOne(responseObserver, response);
+                        job.getStatus() == null ? "UNKNOWN" : job.getStatus().toString().toUpperCase()));
+        if (job.getMessage() != null) {
+            builder.setMessage(job.getMessage());
+        }
+        return builder.build();
     }
 
     /**
@@ -259,13 +443,15 @@ public class HighFlipRpcService extends HighFlipImplBase {
     public void listJob(Highflip.JobListRequest request,
                         StreamObserver<Highflip.JobListResponse> responseObserver) {
 
-        Iterator<String> ids = getEngine().listJobIds();
+        Iterable<String> ids = getEngine().listJobIds(request.getPageToken(),
+                request.getOffset(), request.getLimit());
 
         Iterator<Highflip.JobListResponse> responses = Streams
                 .stream(ids)
                 .map(id -> Highflip.JobListResponse
                         .newBuilder()
                         .setJobId(id)
+                        .setPageToken(KeysetPager.encode(id))
                         .build())
                 .iterator();
 
@@ -292,6 +478,45 @@ public class HighFlipRpcService extends HighFlipImplBase {
     public void getJobLog(Highflip.JobLogRequest request,
                           StreamObserver<Highflip.JobLogResponse> responseObserver) {
 
+        ServerCallStreamObserver<Highflip.JobLogResponse> observer =
+                (ServerCallStreamObserver<Highflip.JobLogResponse>) responseObserver;
+
+        getEngine().tailJobLog(request.getJobId(),
+                request.hasOffset() ? request.getOffset() : 0,
+                request.hasLimit() ? request.getLimit() : 0,
+                request.getFollow(),
+                toLogSink(observer, lines -> Highflip.JobLogResponse
+                        .newBuilder()
+                        .addAllLines(lines)
+                        .build()));
+    }
+
+    static <T> LogTailer.Sink toLogSink(ServerCallStreamObserver<T> observer,
+                                        Function<List<String>, T> converter) {
+        return new LogTailer.Sink() {
+            @Override
+            public boolean isCancelled() {
+                return observer.isCancelled();
+            }
+
+            @Override
+            public void onLines(List<String> lines) {
+                observer.onNext(converter.apply(lines));
+            }
+
+            @Override
+            public void onCompleted() {
+                observer.onCompleted();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                observer.onError(Status.INTERNAL
+                        .withDescription(error.getMessage())
+                        .withCause(error)
+                        .asRuntimeException());
+            }
+        };
     }
 
     /******************************************************************************
@@ -304,14 +529,15 @@ public class HighFlipRpcService extends HighFlipImplBase {
     @Override
     public void listTask(Highflip.TaskListRequest request,
                          StreamObserver<Highflip.TaskListResponse> responseObserver) {
-        final Job job = getEngine().getJob(request.getJobId());
-        log.info("job id: {}, job binging id: {}", job.getJobId(),
-                 job.getBingingId());
+        // fails for unknown jobs
+        getEngine().getJobStatus(request.getJobId());
         Iterator<Highflip.TaskListResponse> response = Streams
-                .stream(getEngine().listTask(request.getJobId()))
-                .map(t -> Highflip.TaskListResponse
+                .stream(getEngine().listTaskIds(request.getJobId(), request.getPageToken(),
+                        request.getOffset(), request.getLimit()))
+                .map(id -> Highflip.TaskListResponse
                         .newBuilder()
-                        .setTaskId(t.getTaskid())
+                        .setTaskId(id)
+                        .setPageToken(KeysetPager.encode(id))
                         .build())
                 .iterator();
 
@@ -328,7 +554,28 @@ public class HighFlipRpcService extends HighFlipImplBase {
 
         Task task = getEngine().getTask(request.getTaskId());
 
-        Highflip.TaskGetResponse response = Highflip.TaskGetResponse
+        returnOne(responseObserver, toTaskGetResponse(task));
+    }
+
+    /**
+     * @param request
+     * @param responseObserver
+     */
+    @Override
+    public void batchGetTasks(Highflip.TaskBatchGetRequest request,
+                              StreamObserver<Highflip.TaskGetResponse> responseObserver) {
+
+        Iterator<Highflip.TaskGetResponse> response = getEngine()
+                .getTasks(request.getTaskIdsList())
+                .stream()
+                .map(HighFlipRpcService::toTaskGetResponse)
+                .iterator();
+
+        returnMore(responseObserver, response);
+    }
+
+    static Highflip.TaskGetResponse toTaskGetResponse(Task task) {
+        return Highflip.TaskGetResponse
                 .newBuilder()
                 .setTaskId(task.getTaskid())
                 .setJobId(task.getJobid())
@@ -337,8 +584,6 @@ public class HighFlipRpcService extends HighFlipImplBase {
                 .setUpdateTime(task.getUpdateTime().toString())
                 .addAllOutputDataIds(task.getOutputData())
                 .build();
-
-        returnOne(responseObserver, response);
     }
 
     /**
@@ -349,7 +594,7 @@ public class HighFlipRpcService extends HighFlipImplBase {
     public void checkTask(Highflip.TaskId request,
                           StreamObserver<Highflip.TaskCheckResponse> responseObserver) {
 
-        Task task = getEngine().getTask(request.getTaskId());
+        TaskStatusView task = getEngine().checkTask(request.getTaskId());
 
         Highflip.TaskCheckResponse response = Highflip.TaskCheckResponse
                 .newBuilder()
@@ -386,6 +631,17 @@ public class HighFlipRpcService extends HighFlipImplBase {
     public void getTaskLog(Highflip.TaskLogRequest request,
                            StreamObserver<Highflip.TaskLogResponse> responseObserver) {
 
+        ServerCallStreamObserver<Highflip.TaskLogResponse> observer =
+                (ServerCallStreamObserver<Highflip.TaskLogResponse>) responseObserver;
+
+        getEngine().tailTaskLog(request.getTaskId(),
+                request.hasOffset() ? request.getOffset() : 0,
+                request.hasLimit() ? request.getLimit() : 0,
+                request.getFollow(),
+                toLogSink(observer, lines -> Highflip.TaskLogResponse
+                        .newBuilder()
+                        .addAllLines(lines)
+                        .build()));
     }
 
     /******************************************************************************
@@ -401,8 +657,13 @@ public class HighFlipRpcService extends HighFlipImplBase {
                          StreamObserver<Highflip.DataListResponse> responseObserver) {
 
         Iterator<Highflip.DataListResponse> itor = Streams
-                .stream(getEngine().listData())
-                .map(r -> Highflip.DataListResponse.newBuilder().setDataId(r).build())
+                .stream(getEngine().listData(request.getPageToken(),
+                        request.getOffset(), request.getLimit()))
+                .map(r -> Highflip.DataListResponse
+                        .newBuilder()
+                        .setDataId(r)
+                        .setPageToken(KeysetPager.encode(r))
+                        .build())
                 .iterator();
 
         returnMore(responseObserver, itor);
@@ -418,6 +679,27 @@ public class HighFlipRpcService extends HighFlipImplBase {
 
         Data data = getEngine().getData(request.getDataId());
 
+        returnOne(responseObserver, toDataGetResponse(data));
+    }
+
+    /**
+     * @param request
+     * @param responseObserver
+     */
+    @Override
+    public void batchGetData(Highflip.DataBatchGetRequest request,
+                             StreamObserver<Highflip.DataGetResponse> responseObserver) {
+
+        Iterator<Highflip.DataGetResponse> response = getEngine()
+                .getDataList(request.getDataIdsList())
+                .stream()
+                .map(HighFlipRpcService::toDataGetResponse)
+                .iterator();
+
+        returnMore(responseObserver, response);
+    }
+
+    static Highflip.DataGetResponse toDataGetResponse(Data data) {
         HighflipMeta.DataProto schema = HighflipMeta.DataProto
                 .newBuilder()
                 .setName(data.getName())
@@ -428,15 +710,44 @@ public class HighFlipRpcService extends HighFlipImplBase {
                         .collect(Collectors.toList()))
                 .build();
 
-        Highflip.DataGetResponse response = Highflip.DataGetResponse
+        Highflip.DataGetResponse.Builder builder = Highflip.DataGetResponse
                 .newBuilder()
                 .setDataId(data.getDataId())
                 .setSchema(schema)
                 .setCreateTime(data.getCreateTime().toString())
-                .setUpdateTime(data.getUpdateTime().toString())
-                .build();
+                .setUpdateTime(data.getUpdateTime().toString());
 
-        returnOne(responseObserver, response);
+        if (data.getDimension() != null && !data.getDimension().isEmpty()) {
+            builder.setRowCount(data.getDimension().get(0));
+        }
+        if (data.getRawSize() != null) {
+            builder.setByteSize(data.getRawSize());
+        }
+        if (data.getStatistics() != null) {
+            builder.addAllColumnStats(data.getStatistics()
+                    .stream()
+                    .map(HighFlipRpcService::toColumnStats)
+                    .collect(Collectors.toList()));
+        }
+        return builder.build();
+    }
+
+    static Highflip.ColumnStats toColumnStats(ColumnStats stats) {
+        Highflip.ColumnStats.Builder builder = Highflip.ColumnStats
+                .newBuilder()
+                .setIndex(stats.getIndex())
+                .setNullCount(stats.getNullCount())
+                .setDistinctCount(stats.getDistinctCount());
+        if (stats.getName() != null) {
+            builder.setName(stats.getName());
+        }
+        if (stats.getMin() != null) {
+            builder.setMin(stats.getMin());
+        }
+        if (stats.getMax() != null) {
+            builder.setMax(stats.getMax());
+        }
+        return builder.build();
     }
 
     /**
@@ -589,10 +900,12 @@ public class HighFlipRpcService extends HighFlipImplBase {
     public void listOperator(Highflip.OperatorListRequest request,
                              StreamObserver<Highflip.OperatorListResponse> responseObserver) {
         Iterator<Highflip.OperatorListResponse> response = Streams
-                .stream(getEngine().listOperator())
+                .stream(getEngine().listOperator(request.getPageToken(),
+                        request.getOffset(), request.getLimit()))
                 .map(o -> Highflip.OperatorListResponse
                         .newBuilder()
                         .setOperatorId(o)
+                        .setPageToken(KeysetPager.encode(o))
                         .build())
                 .iterator();
 
@@ -677,10 +990,12 @@ public class HighFlipRpcService extends HighFlipImplBase {
                             StreamObserver<Highflip.PartnerListResponse> responseObserver) {
 
         Iterator<Highflip.PartnerListResponse> response = Streams
-                .stream(getEngine().listPartner(0, 0))
+                .stream(getEngine().listPartner(request.getPageToken(),
+                        request.getOffset(), request.getLimit()))
                 .map(p -> Highflip.PartnerListResponse
                         .newBuilder()
                         .setPartnerId(p)
+                        .setPageToken(KeysetPager.encode(p))
                         .build())
                 .iterator();
 
@@ -696,4 +1011,66 @@ public class HighFlipRpcService extends HighFlipImplBase {
                                StreamObserver<Highflip.Void> responseObserver) {
 
     }
+
+    /******************************************************************************
+     * CHANGE
+     ******************************************************************************/
+
+    /**
+     * Streams the journal from the sequence number, then follows it until
+     * the call is cancelled.
+     *
+     * @param request
+     * @param responseObserver
+     */
+    @Override
+    public void subscribeChanges(Highflip.ChangeSubscribeRequest request,
+                                 StreamObserver<Highflip.ChangeSubscribeResponse> responseObserver) {
+
+        ServerCallStreamObserver<Highflip.ChangeSubscribeResponse> observer =
+                (ServerCallStreamObserver<Highflip.ChangeSubscribeResponse>) responseObserver;
+
+        getEngine().subscribeChanges(request.getFromSeq(), new ChangeJournal.Sink() {
+            @Override
+            public boolean isCancelled() {
+                return observer.isCancelled();
+            }
+
+            @Override
+            public void onChanges(List<ChangeRecord> changes) {
+                observer.onNext(Highflip.ChangeSubscribeResponse
+                        .newBuilder()
+                        .addAllChanges(changes
+                                .stream()
+                                .map(HighFlipRpcService::toChangeEvent)
+                                .collect(Collectors.toList()))
+                        .build());
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                observer.onError(Status.INTERNAL
+                        .withDescription(error.getMessage())
+                        .withCause(error)
+                        .asRuntimeException());
+            }
+        });
+    }
+
+    static Highflip.ChangeEvent toChangeEvent(ChangeRecord record) {
+        Highflip.ChangeEvent.Builder builder = Highflip.ChangeEvent
+                .newBuilder()
+                .setSeq(record.getSeq())
+                .setEntityType(record.getEntityType())
+                .setEntityId(record.getEntityId())
+                .setOperation(record.getOperation())
+                .setChangeTime(record.getChangeTime().toString());
+        if (record.getJobId() != null) {
+            builder.setJobId(record.getJobId());
+        }
+        if (record.getStatus() != null) {
+            builder.setStatus(record.getStatus());
+        }
+        return builder.build();
+    }
 }
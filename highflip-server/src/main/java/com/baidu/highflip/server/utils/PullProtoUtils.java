@@ -41,7 +41,7 @@ public class PullProtoUtils {
         return Highflip.DenseData.Row
                 .newBuilder()
                 .addAllValue(row.stream()
-                        .map(Object::toString)
+                        .map(value -> value == null ? "" : value.toString())
                         .collect(Collectors.toList()))
                 .build();
     }
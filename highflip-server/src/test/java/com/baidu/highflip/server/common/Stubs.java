@@ -0,0 +1,93 @@
+package com.baidu.highflip.server.common;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+/**
+ * Stubs of interfaces that answer the named methods only.
+ * <p>
+ * equals and hashCode are by identity, and close does nothing unless it is
+ * answered, so stubs can be map keys and closed by try-with-resources.
+ */
+public final class Stubs {
+
+    public interface Answer {
+
+        Object apply(Object[] args) throws Exception;
+    }
+
+    private Stubs() {
+    }
+
+    /**
+     * Calls of methods without an answer fail with an
+     * {@link UnsupportedOperationException}.
+     */
+    public static <T> T stub(Class<T> type, Map<String, Answer> answers) {
+        return create(type, answers, true);
+    }
+
+    /**
+     * Calls of methods without an answer return null, false or zero.
+     */
+    public static <T> T lenient(Class<T> type, Map<String, Answer> answers) {
+        return create(type, answers, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T create(Class<T> type, Map<String, Answer> answers, boolean strict) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            Answer answer = answers.get(method.getName());
+            if (answer != null) {
+                return answer.apply(args);
+            }
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Stub of " + type.getSimpleName();
+                case "close":
+                    return null;
+                default:
+                    if (strict) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return defaultOf(method);
+            }
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    static Object defaultOf(Method method) {
+        Class<?> type = method.getReturnType();
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+}
@@ -1,5 +1,142 @@
 package com.baidu.highflip.server.engine;
 
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.Task;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.server.engine.archive.JobArchiver;
+import com.baidu.highflip.server.engine.batch.TaskUpdateBuffer;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import com.baidu.highflip.server.respository.JobRepository;
+import com.baidu.highflip.server.respository.TaskRepository;
+import com.baidu.highflip.server.respository.routing.ReplicaRoutingDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.baidu.highflip.server.common.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
 public class HighFlipEngineTest {
 
+    HighFlipEngine engine;
+
+    static Job job(String jobId) {
+        Job job = new Job();
+        job.setJobId(jobId);
+        job.setStatus(Status.SUCCEEDED);
+        return job;
+    }
+
+    static Task task(String taskId) {
+        Task task = new Task();
+        task.setTaskid(taskId);
+        task.setStatus(Status.SUCCEEDED.name());
+        return task;
+    }
+
+    @BeforeEach
+    public void initialize() {
+        // nothing stored apart from the archive
+        JobRepository jobs = stub(JobRepository.class, Map.of(
+                "findById", args -> Optional.empty(),
+                "findStatusByJobId", args -> Optional.empty()));
+        TaskRepository tasks = stub(TaskRepository.class, Map.of(
+                "findById", args -> Optional.empty(),
+                "findStatusByTaskid", args -> Optional.empty()));
+
+        engine = new HighFlipEngine();
+        engine.context = new HighFlipContext() {
+            @Override
+            public JobRepository getJobRepository() {
+                return jobs;
+            }
+
+            @Override
+            public TaskRepository getTaskRepository() {
+                return tasks;
+            }
+        };
+        engine.updates = new TaskUpdateBuffer();
+        engine.archive = new JobArchiver() {
+            final Map<String, Job> jobs = Map.of("archived", job("archived"));
+
+            final Map<String, Task> tasks = Map.of("archived", task("archived"));
+
+            @Override
+            public Optional<Job> findJob(String jobId) {
+                return Optional.ofNullable(jobs.get(jobId));
+            }
+
+            @Override
+            public Optional<Task> findTask(String taskId) {
+                return Optional.ofNullable(tasks.get(taskId));
+            }
+        };
+    }
+
+    @Test
+    public void testFallBackToArchive() {
+        assertEquals("archived", engine.getJob("archived").getJobId());
+        assertEquals(Status.SUCCEEDED, engine.getJobStatus("archived").getStatus());
+        assertEquals("archived", engine.getTask("archived").getTaskid());
+        assertEquals(Status.SUCCEEDED.name(), engine.checkTask("archived").getStatus());
+
+        assertThrows(NoSuchElementException.class, () -> engine.getJob("missing"));
+        assertThrows(NoSuchElementException.class, () -> engine.checkTask("missing"));
+    }
+
+    @Test
+    public void testFindAllById() {
+        engine.batchGetChunkSize = 2;
+        Set<String> stored = Set.of("a", "b", "c", "d", "e");
+        List<List<String>> chunks = new ArrayList<>();
+
+        List<Job> found = engine.findAllById(List.of("c", "a", "missing", "b", "a", "d", "e", "c"), ids -> {
+            chunks.add(ids);
+            return ids.stream()
+                    .filter(stored::contains)
+                    .sorted()
+                    .map(HighFlipEngineTest::job)
+                    .collect(Collectors.toList());
+        }, Job::getJobId);
+
+        // each distinct id asked once, missing ones skipped, in request order
+        assertEquals(List.of(List.of("c", "a"), List.of("missing", "b"), List.of("d", "e")), chunks);
+        assertEquals(List.of("c", "a", "b", "d", "e"), found.stream()
+                .map(Job::getJobId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testFindAllByIdRetriesMissOnPrimary() {
+        engine.batchGetChunkSize = 2;
+        List<List<String>> primaryChunks = new ArrayList<>();
+        Function<List<String>, List<Job>> finder = ids -> {
+            if (!ReplicaRoutingDataSource.isReading()) {
+                // created just before, not replicated yet
+                primaryChunks.add(ids);
+                return List.of(job("new"));
+            }
+            return ids.contains("old") ? List.of(job("old")) : List.of();
+        };
+
+        List<Job> found = ReplicaRoutingDataSource.read(() ->
+                engine.findAllById(List.of("new", "old"), finder, Job::getJobId));
+
+        assertEquals(List.of(List.of("new")), primaryChunks);
+        assertEquals(List.of("new", "old"), found.stream()
+                .map(Job::getJobId)
+                .collect(Collectors.toList()));
+        assertFalse(ReplicaRoutingDataSource.isReading());
+    }
 }
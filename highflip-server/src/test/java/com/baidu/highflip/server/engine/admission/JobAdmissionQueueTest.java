@@ -0,0 +1,62 @@
+package com.baidu.highflip.server.engine.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class JobAdmissionQueueTest {
+
+    static void add(JobAdmissionQueue queue, JobAdmissionQueue.Owner owner, String jobId, int priority, long time) {
+        JobAdmissionQueue.Entry entry = new JobAdmissionQueue.Entry(jobId, owner.name, priority, time);
+        owner.waiting.add(entry);
+        queue.waiting.put(jobId, entry);
+    }
+
+    @Test
+    public void testWeightedOrder() {
+        JobAdmissionQueue queue = new JobAdmissionQueue();
+        JobAdmissionQueue.Owner a = new JobAdmissionQueue.Owner("a", 1);
+        JobAdmissionQueue.Owner b = new JobAdmissionQueue.Owner("b", 2);
+        queue.owners.put("a", a);
+        queue.owners.put("b", b);
+
+        for (int i = 1; i <= 4; i++) {
+            add(queue, a, "a" + i, 0, i);
+            add(queue, b, "b" + i, 0, 4 + i);
+        }
+
+        Map<String, Integer> order = queue.order();
+        assertEquals(1, order.get("a1"));
+        assertEquals(2, order.get("b1"));
+        assertEquals(3, order.get("b2"));
+        assertEquals(4, order.get("a2"));
+        assertEquals(5, order.get("b3"));
+        assertEquals(6, order.get("b4"));
+        assertEquals(7, order.get("a3"));
+        assertEquals(8, order.get("a4"));
+
+        assertEquals(2, queue.getPosition("b1"));
+        assertEquals(0, queue.getPosition("unknown"));
+    }
+
+    @Test
+    public void testPriorityAndInFlight() {
+        JobAdmissionQueue queue = new JobAdmissionQueue();
+        JobAdmissionQueue.Owner a = new JobAdmissionQueue.Owner("a", 1);
+        JobAdmissionQueue.Owner b = new JobAdmissionQueue.Owner("b", 1);
+        a.inFlight = 2;
+        queue.owners.put("a", a);
+        queue.owners.put("b", b);
+
+        add(queue, a, "a1", 0, 1);
+        add(queue, a, "a2", 5, 2);
+        add(queue, b, "b1", 0, 3);
+
+        Map<String, Integer> order = queue.order();
+        assertEquals(1, order.get("b1"));
+        assertEquals(2, order.get("a2"));
+        assertEquals(3, order.get("a1"));
+    }
+}
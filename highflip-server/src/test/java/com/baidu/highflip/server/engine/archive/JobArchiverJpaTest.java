@@ -0,0 +1,133 @@
+package com.baidu.highflip.server.engine.archive;
+
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.Task;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.server.engine.batch.TaskUpdateBuffer;
+import com.baidu.highflip.server.engine.graph.GraphStore;
+import com.baidu.highflip.server.engine.journal.ChangeRecorder;
+import com.baidu.highflip.server.respository.JobArchiveRepository;
+import com.baidu.highflip.server.respository.JobRepository;
+import com.baidu.highflip.server.respository.TaskArchiveRepository;
+import com.baidu.highflip.server.respository.TaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Moves jobs between the hot and the archive tables of the database.
+ */
+@DataJpaTest
+public class JobArchiverJpaTest {
+
+    @Autowired
+    JobRepository jobs;
+
+    @Autowired
+    TaskRepository tasks;
+
+    @Autowired
+    JobArchiveRepository archivedJobs;
+
+    @Autowired
+    TaskArchiveRepository archivedTasks;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    TestEntityManager entities;
+
+    JobArchiver archiver;
+
+    final List<String> recorded = new ArrayList<>();
+
+    Job save(String name, Status status) {
+        Job job = new Job();
+        job.setJobName(name);
+        job.setBingingId("bound-" + name);
+        job.setStatus(status);
+        job = jobs.save(job);
+
+        Task task = new Task();
+        task.setJobid(job.getJobId());
+        task.setName(name + "-task");
+        task.setBingingId("bound-" + name + "-task");
+        task.setStatus(status.name());
+        tasks.save(task);
+        return job;
+    }
+
+    @BeforeEach
+    public void initialize() {
+        archiver = new JobArchiver();
+        archiver.jobs = jobs;
+        archiver.tasks = tasks;
+        archiver.archivedJobs = archivedJobs;
+        archiver.archivedTasks = archivedTasks;
+        archiver.transactionManager = transactionManager;
+        archiver.graphs = new GraphStore();
+        archiver.entityManager = entities.getEntityManager();
+        archiver.recorder = new ChangeRecorder() {
+            @Override
+            public void record(EntityManager entityManager, Object entity, String operation) {
+                recorded.add(toRecord(entity, operation).getEntityId());
+            }
+        };
+        archiver.updates = new TaskUpdateBuffer() {
+            @Override
+            public synchronized int flush() {
+                return 0;
+            }
+        };
+        archiver.batchSize = 1;
+        // everything finished up to now is old enough
+        archiver.maxAgeDays = -1;
+    }
+
+    @Test
+    public void testArchiveThenLookup() {
+        Job finished = save("finished", Status.SUCCEEDED);
+        Job running = save("running", Status.RUNNING);
+        entities.flush();
+        entities.clear();
+
+        assertEquals(1, archiver.archive());
+        // the archive rows are written on flush, in the transaction of the test
+        entities.flush();
+        entities.clear();
+
+        assertTrue(jobs.findById(finished.getJobId()).isEmpty());
+        assertTrue(tasks.findAllByJobid(finished.getJobId()).isEmpty());
+        assertEquals(1, tasks.findAllByJobid(running.getJobId()).size());
+        assertEquals(2, recorded.size());
+        assertTrue(recorded.contains(finished.getJobId()));
+
+        Job archived = archiver.findJob(finished.getJobId()).orElseThrow();
+        assertEquals("finished", archived.getJobName());
+        assertEquals(Status.SUCCEEDED, archived.getStatus());
+        assertEquals(List.of("finished-task"), archiver.findTasksOfJob(finished.getJobId())
+                .stream()
+                .map(Task::getName)
+                .collect(Collectors.toList()));
+        assertEquals(Set.of("bound-finished"),
+                archiver.findJobBindingIds(List.of("bound-finished", "bound-running")));
+        assertEquals(List.of(running.getJobId()), archiver.withArchived(
+                List.of(running.getJobId()), jobs.findAllById(List.of(running.getJobId())))
+                .stream()
+                .map(Job::getJobId)
+                .collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,214 @@
+package com.baidu.highflip.server.engine.archive;
+
+import com.baidu.highflip.core.entity.runtime.ArchivedJob;
+import com.baidu.highflip.core.entity.runtime.ArchivedTask;
+import com.baidu.highflip.core.entity.runtime.ChangeRecord;
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.Task;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.server.engine.batch.TaskUpdateBuffer;
+import com.baidu.highflip.server.engine.graph.GraphStore;
+import com.baidu.highflip.server.engine.journal.ChangeRecorder;
+import com.baidu.highflip.server.respository.JobArchiveRepository;
+import com.baidu.highflip.server.respository.JobRepository;
+import com.baidu.highflip.server.respository.TaskArchiveRepository;
+import com.baidu.highflip.server.respository.TaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.baidu.highflip.server.common.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JobArchiverTest {
+
+    final Map<String, Job> hotJobs = new TreeMap<>();
+
+    final Map<String, Task> hotTasks = new TreeMap<>();
+
+    final Map<String, ArchivedJob> archivedJobs = new TreeMap<>();
+
+    final Map<String, ArchivedTask> archivedTasks = new TreeMap<>();
+
+    /**
+     * The archived job ids and the hot task ids at each commit.
+     */
+    final List<String> commits = new ArrayList<>();
+
+    final List<String> recorded = new ArrayList<>();
+
+    boolean active = false;
+
+    JobArchiver archiver;
+
+    static Job job(String jobId, Status status) {
+        Job job = new Job();
+        job.setJobId(jobId);
+        job.setJobName("name-" + jobId);
+        job.setBingingId("bound-" + jobId);
+        job.setStatus(status);
+        return job;
+    }
+
+    static Task task(String taskId, String jobId) {
+        Task task = new Task();
+        task.setTaskid(taskId);
+        task.setJobid(jobId);
+        task.setBingingId("bound-" + taskId);
+        task.setStatus(Status.SUCCEEDED.name());
+        return task;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> Object save(Map<String, T> rows, Function<T, String> idOf, Object entities) {
+        assertTrue(active, "written outside of a transaction");
+        for (T row : (Iterable<T>) entities) {
+            rows.put(idOf.apply(row), row);
+        }
+        return entities;
+    }
+
+    int delete(Map<String, ?> rows, Collection<String> ids, Function<Object, String> jobIdOf) {
+        assertTrue(active, "deleted outside of a transaction");
+        int size = rows.size();
+        rows.values().removeIf(row -> ids.contains(jobIdOf.apply(row)));
+        return size - rows.size();
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void initialize() {
+        archiver = new JobArchiver();
+        archiver.jobs = stub(JobRepository.class, Map.of(
+                "findAllByStatusInUpdatedBefore", args -> hotJobs.values().stream()
+                        .filter(j -> j.getJobId().compareTo((String) args[0]) > 0)
+                        .filter(j -> ((Collection<?>) args[1]).contains(j.getStatus()))
+                        .limit(((Pageable) args[3]).getPageSize())
+                        .collect(Collectors.toList()),
+                "deleteAllByJobIdIn", args -> delete(hotJobs, (Collection<String>) args[0],
+                        j -> ((Job) j).getJobId())));
+        archiver.tasks = stub(TaskRepository.class, Map.of(
+                "findAllByJobidIn", args -> hotTasks.values().stream()
+                        .filter(t -> ((Collection<?>) args[0]).contains(t.getJobid()))
+                        .collect(Collectors.toList()),
+                "deleteAllByJobidIn", args -> delete(hotTasks, (Collection<String>) args[0],
+                        t -> ((Task) t).getJobid())));
+        archiver.archivedJobs = stub(JobArchiveRepository.class, Map.of(
+                "saveAll", args -> save(archivedJobs, ArchivedJob::getJobId, args[0]),
+                "findById", args -> Optional.ofNullable(archivedJobs.get((String) args[0])),
+                "findAllById", args -> ((Collection<String>) args[0]).stream()
+                        .map(archivedJobs::get)
+                        .filter(j -> j != null)
+                        .collect(Collectors.toList()),
+                "findBindingIdsIn", args -> archivedJobs.values().stream()
+                        .map(ArchivedJob::getBindingId)
+                        .filter(((Collection<?>) args[0])::contains)
+                        .collect(Collectors.toList())));
+        archiver.archivedTasks = stub(TaskArchiveRepository.class, Map.of(
+                "saveAll", args -> save(archivedTasks, ArchivedTask::getTaskId, args[0]),
+                "findById", args -> Optional.ofNullable(archivedTasks.get((String) args[0])),
+                "findAllByJobId", args -> archivedTasks.values().stream()
+                        .filter(t -> t.getJobId().equals(args[0]))
+                        .collect(Collectors.toList())));
+        archiver.graphs = new GraphStore();
+        archiver.recorder = new ChangeRecorder() {
+            @Override
+            public void record(EntityManager entityManager, Object entity, String operation) {
+                assertTrue(active, "recorded outside of a transaction");
+                ChangeRecord record = toRecord(entity, operation);
+                recorded.add(record.getEntityId() + " " + record.getOperation());
+            }
+        };
+        archiver.updates = new TaskUpdateBuffer() {
+            @Override
+            public synchronized int flush() {
+                return 0;
+            }
+        };
+        archiver.transactionManager = new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                active = true;
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+                active = false;
+                commits.add(archivedJobs.keySet() + " " + hotTasks.keySet());
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+                active = false;
+            }
+        };
+        archiver.batchSize = 1;
+    }
+
+    @Test
+    public void testArchiveThenLookup() {
+        hotJobs.put("a", job("a", Status.SUCCEEDED));
+        hotJobs.put("b", job("b", Status.FAILED));
+        hotJobs.put("c", job("c", Status.RUNNING));
+        hotTasks.put("a1", task("a1", "a"));
+        hotTasks.put("a2", task("a2", "a"));
+        hotTasks.put("b1", task("b1", "b"));
+        hotTasks.put("c1", task("c1", "c"));
+
+        assertEquals(2, archiver.archive());
+
+        // each job moved with its tasks in one transaction
+        assertEquals(List.of("[a] [b1, c1]", "[a, b] [c1]", "[a, b] [c1]"), commits);
+        assertEquals(Set.of("c"), hotJobs.keySet());
+        assertEquals(Set.of("a1", "a2", "b1"), archivedTasks.keySet());
+        // journaled as archived, the bulk deletes are not seen by Hibernate
+        assertEquals(List.of("a1 ARCHIVE", "a2 ARCHIVE", "a ARCHIVE", "b1 ARCHIVE", "b ARCHIVE"), recorded);
+
+        Job job = archiver.findJob("a").orElseThrow();
+        assertEquals("name-a", job.getJobName());
+        assertEquals("bound-a", job.getBingingId());
+        assertEquals(Status.SUCCEEDED, job.getStatus());
+        Task task = archiver.findTask("b1").orElseThrow();
+        assertEquals("b", task.getJobid());
+        assertEquals(Status.SUCCEEDED.name(), task.getStatus());
+        assertEquals(Set.of("a1", "a2"), archiver.findTasksOfJob("a").stream()
+                .map(Task::getTaskid)
+                .collect(Collectors.toSet()));
+        assertEquals(Set.of("bound-b"), archiver.findJobBindingIds(List.of("bound-b", "bound-c")));
+        assertTrue(archiver.findJob("c").isEmpty());
+    }
+
+    @Test
+    public void testWithArchived() {
+        hotJobs.put("a", job("a", Status.SUCCEEDED));
+        hotTasks.put("a1", task("a1", "a"));
+        archiver.archive();
+
+        // all loaded, the archive is not asked
+        List<Job> loaded = List.of(job("b", Status.RUNNING));
+        assertSame(loaded, archiver.withArchived(List.of("b"), loaded));
+
+        List<Job> all = archiver.withArchived(List.of("b", "a", "missing"), loaded);
+        assertEquals(List.of("b", "a"), all.stream()
+                .map(Job::getJobId)
+                .collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,98 @@
+package com.baidu.highflip.server.engine.batch;
+
+import com.baidu.highflip.core.adaptor.JobAdaptor;
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.server.engine.common.StatusMerger;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import com.baidu.highflip.server.respository.JobRepository;
+import com.baidu.highflip.server.respository.TaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.baidu.highflip.server.common.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncJobSubmitterTest {
+
+    final List<String> submissions = new ArrayList<>();
+
+    final List<Job> saved = new ArrayList<>();
+
+    int saveFailures = 0;
+
+    AsyncJobSubmitter submitter;
+
+    @BeforeEach
+    public void initialize() {
+        JobAdaptor adaptor = stub(JobAdaptor.class, Map.of(
+                "translateJob", args -> null,
+                "createJob", args -> {
+                    Job job = (Job) args[0];
+                    submissions.add(job.getJobId());
+                    job.setBingingId("bound-" + submissions.size());
+                    return job;
+                },
+                "getTaskCount", args -> 0));
+        JobRepository jobs = stub(JobRepository.class, Map.of(
+                // a fresh copy of the stored row, not bound yet
+                "findById", args -> {
+                    Job job = new Job();
+                    job.setJobId((String) args[0]);
+                    job.setStatus(Status.CREATED);
+                    return Optional.of(job);
+                }));
+        TaskRepository tasks = stub(TaskRepository.class, Map.of(
+                "existsByJobid", args -> false));
+
+        submitter = new AsyncJobSubmitter();
+        submitter.context = new HighFlipContext() {
+            @Override
+            public JobAdaptor getJobAdaptor() {
+                return adaptor;
+            }
+
+            @Override
+            public JobRepository getJobRepository() {
+                return jobs;
+            }
+
+            @Override
+            public TaskRepository getTaskRepository() {
+                return tasks;
+            }
+        };
+        submitter.merger = new StatusMerger() {
+            @Override
+            public Job saveJob(Job job) {
+                if (saveFailures > 0) {
+                    saveFailures--;
+                    throw new DataAccessResourceFailureException("database down");
+                }
+                saved.add(job);
+                return job;
+            }
+        };
+    }
+
+    @Test
+    public void testRetryStoresBindingWithoutResubmit() {
+        saveFailures = 2;
+        assertThrows(DataAccessResourceFailureException.class, () -> submitter.process("job"));
+        assertThrows(DataAccessResourceFailureException.class, () -> submitter.process("job"));
+
+        Job job = submitter.process("job");
+        assertEquals(List.of("job"), submissions);
+        assertEquals("bound-1", job.getBingingId());
+        assertEquals(1, saved.size());
+        assertTrue(submitter.submitted.isEmpty());
+    }
+}
@@ -0,0 +1,156 @@
+package com.baidu.highflip.server.engine.batch;
+
+import com.baidu.highflip.core.adaptor.JobAdaptor;
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import com.baidu.highflip.server.respository.JobRepository;
+import com.baidu.highflip.server.respository.TaskRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static com.baidu.highflip.server.common.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JobBatchCreatorTest {
+
+    final List<Job> saved = new ArrayList<>();
+
+    final Set<String> deleted = ConcurrentHashMap.newKeySet();
+
+    final Map<Integer, Job> created = new ConcurrentHashMap<>();
+
+    final Map<Integer, Throwable> failed = new ConcurrentHashMap<>();
+
+    boolean failPersist = false;
+
+    JobBatchCreator creator;
+
+    static Job job(String name) {
+        Job job = new Job();
+        job.setJobName(name);
+        return job;
+    }
+
+    @BeforeEach
+    public void initialize() {
+        JobAdaptor adaptor = stub(JobAdaptor.class, Map.of(
+                "translateJob", args -> null,
+                // the backend returns its own copy, bound to the backend job
+                "createJob", args -> {
+                    Job submitted = job(((Job) args[0]).getJobName());
+                    submitted.setBingingId("bound-" + submitted.getJobName());
+                    return submitted;
+                },
+                "getTaskCount", args -> 0,
+                "deleteJob", args -> {
+                    deleted.add(((Job) args[0]).getBingingId());
+                    return null;
+                }));
+        JobRepository jobs = stub(JobRepository.class, Map.of(
+                "saveAll", args -> {
+                    if (failPersist) {
+                        throw new IllegalStateException("database down");
+                    }
+                    List<Job> batch = new ArrayList<>();
+                    ((Iterable<Job>) args[0]).forEach(batch::add);
+                    synchronized (saved) {
+                        saved.addAll(batch);
+                    }
+                    return batch;
+                }));
+        TaskRepository tasks = stub(TaskRepository.class, Map.of(
+                "saveAll", args -> List.of()));
+
+        creator = new JobBatchCreator();
+        creator.context = new HighFlipContext() {
+            @Override
+            public JobAdaptor getJobAdaptor() {
+                return adaptor;
+            }
+
+            @Override
+            public JobRepository getJobRepository() {
+                return jobs;
+            }
+
+            @Override
+            public TaskRepository getTaskRepository() {
+                return tasks;
+            }
+        };
+        creator.transactionManager = new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+        creator.translateThreads = 2;
+        creator.submitConcurrency = 2;
+        creator.persistSize = 2;
+        creator.persistWait = 10;
+        creator.initialize();
+    }
+
+    @AfterEach
+    public void destroy() {
+        creator.destroy();
+    }
+
+    JobBatchCreator.Listener listener() {
+        return new JobBatchCreator.Listener() {
+            @Override
+            public void onCreated(int index, Job job) {
+                created.put(index, job);
+            }
+
+            @Override
+            public void onFailed(int index, Throwable error) {
+                failed.put(index, error);
+            }
+        };
+    }
+
+    @Test
+    public void testPersistSubmittedJobs() {
+        creator.createJobs(List.of(job("a"), job("b"), job("c")), listener());
+
+        assertEquals(3, created.size());
+        assertTrue(failed.isEmpty());
+        assertEquals(Set.of("bound-a", "bound-b", "bound-c"), saved.stream()
+                .map(Job::getBingingId)
+                .collect(Collectors.toSet()));
+        assertEquals("bound-b", created.get(1).getBingingId());
+        assertTrue(deleted.isEmpty());
+    }
+
+    @Test
+    public void testDiscardUnpersistedJobs() {
+        failPersist = true;
+        creator.createJobs(List.of(job("a"), job("b"), job("c")), listener());
+
+        assertTrue(created.isEmpty());
+        assertEquals(3, failed.size());
+        assertEquals(Set.of("bound-a", "bound-b", "bound-c"), deleted);
+    }
+}
@@ -0,0 +1,97 @@
+package com.baidu.highflip.server.engine.batch;
+
+import com.baidu.highflip.core.entity.runtime.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TaskUpdateBufferTest {
+
+    final List<List<Task>> written = new ArrayList<>();
+
+    TaskUpdateBuffer buffer;
+
+    static Task task(String taskId, String status) {
+        Task task = new Task();
+        task.setTaskid(taskId);
+        task.setStatus(status);
+        return task;
+    }
+
+    @BeforeEach
+    public void open() {
+        buffer = new TaskUpdateBuffer() {
+            @Override
+            void write(List<Task> tasks) {
+                // a BAD task fails its batch, and itself when written alone
+                if (tasks.stream().anyMatch(t -> "BAD".equals(t.getStatus()))) {
+                    throw new IllegalStateException(tasks.toString());
+                }
+                written.add(List.copyOf(tasks));
+            }
+        };
+        buffer.batchSize = 100;
+        // flushed by hand only
+        buffer.pool = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    public void close() {
+        buffer.pool.shutdownNow();
+    }
+
+    @Test
+    public void testCoalesceAndReadYourWrites() {
+        Task running = task("a", "RUNNING");
+        Task succeeded = task("a", "SUCCEEDED");
+        buffer.update(running);
+        buffer.update(succeeded);
+        buffer.update(task("b", "RUNNING"));
+
+        assertTrue(written.isEmpty());
+        assertSame(succeeded, buffer.find("a").orElseThrow());
+        List<Task> loaded = buffer.overlay(List.of(task("a", "RUNNING"), task("c", "RUNNING")));
+        assertSame(succeeded, loaded.get(0));
+        assertEquals("c", loaded.get(1).getTaskid());
+
+        assertEquals(2, buffer.flush());
+        assertEquals(1, written.size());
+        assertTrue(written.get(0).contains(succeeded));
+        assertFalse(written.get(0).contains(running));
+        assertFalse(buffer.find("a").isPresent());
+        assertEquals(0, buffer.flush());
+    }
+
+    @Test
+    public void testFailedBatchWrittenOneByOne() {
+        buffer.update(task("a", "SUCCEEDED"));
+        buffer.update(task("b", "BAD"));
+        buffer.update(task("c", "FAILED"));
+
+        assertEquals(2, buffer.flush());
+        assertEquals(2, written.size());
+        assertFalse(buffer.find("b").isPresent());
+        assertTrue(buffer.flushing.isEmpty());
+    }
+
+    @Test
+    public void testFlushOnShutdown() {
+        buffer.update(task("a", "SUCCEEDED"));
+        buffer.destroy();
+
+        assertEquals(1, written.size());
+
+        buffer.update(task("b", "SUCCEEDED"));
+        assertEquals(2, written.size());
+        assertFalse(buffer.find("b").isPresent());
+    }
+}
@@ -0,0 +1,58 @@
+package com.baidu.highflip.server.engine.binding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BindingIdFilterTest {
+
+    @Test
+    public void testLookups() {
+        Set<String> stored = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            stored.add("job-" + i);
+        }
+
+        BindingIdFilter filter = new BindingIdFilter(100000, 0.01, 100);
+        AtomicInteger lookups = new AtomicInteger();
+
+        // not ready yet, every query is looked up
+        assertTrue(filter.contains("job-1", id -> {
+            lookups.incrementAndGet();
+            return stored.contains(id);
+        }));
+        assertEquals(1, lookups.get());
+
+        stored.forEach(filter::put);
+        filter.ready();
+        lookups.set(0);
+
+        for (int i = 0; i < 10000; i++) {
+            assertFalse(filter.contains("new-" + i, id -> {
+                lookups.incrementAndGet();
+                return stored.contains(id);
+            }));
+        }
+        assertTrue(lookups.get() < 500, "lookups " + lookups.get());
+
+        lookups.set(0);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(filter.contains("job-7", id -> {
+                lookups.incrementAndGet();
+                return stored.contains(id);
+            }));
+        }
+        assertEquals(1, lookups.get());
+
+        filter.evict("job-7");
+        stored.remove("job-7");
+        assertFalse(filter.contains("job-7", stored::contains));
+        assertFalse(filter.contains(null, stored::contains));
+    }
+}
@@ -0,0 +1,64 @@
+package com.baidu.highflip.server.engine.common;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeysetPagerTest {
+
+    final TreeSet<String> ids = IntStream.range(0, 25)
+            .mapToObj(i -> String.format("id-%02d", i))
+            .collect(Collectors.toCollection(TreeSet::new));
+
+    int queries = 0;
+
+    final BiFunction<String, Pageable, List<String>> pager = (after, page) -> {
+        queries++;
+        return ids.tailSet(after, false)
+                .stream()
+                .limit(page.getPageSize())
+                .collect(Collectors.toList());
+    };
+
+    List<String> collect(Iterable<String> iterable) {
+        List<String> result = new ArrayList<>();
+        iterable.forEach(result::add);
+        return result;
+    }
+
+    @Test
+    public void testListAll() {
+        List<String> all = collect(KeysetPager.list(null, 0, 0, 10, pager));
+        assertEquals(new ArrayList<>(ids), all);
+        assertEquals(3, queries);
+    }
+
+    @Test
+    public void testResumeFromToken() {
+        List<String> first = collect(KeysetPager.list("", 0, 7, 10, pager));
+        assertEquals(7, first.size());
+        assertEquals("id-06", first.get(6));
+
+        String token = KeysetPager.encode(first.get(6));
+        List<String> second = collect(KeysetPager.list(token, 0, 7, 10, pager));
+        assertEquals("id-07", second.get(0));
+        assertEquals("id-13", second.get(6));
+    }
+
+    @Test
+    public void testOffset() {
+        List<String> page = collect(KeysetPager.list(null, 20, 10, 4, pager));
+        assertEquals(List.of("id-20", "id-21", "id-22", "id-23", "id-24"), page);
+
+        assertTrue(collect(KeysetPager.list(null, 30, 10, 4, pager)).isEmpty());
+    }
+}
@@ -0,0 +1,188 @@
+package com.baidu.highflip.server.engine.common;
+
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.Task;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.baidu.highflip.server.common.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StatusMergerTest {
+
+    static Job job(Status status) {
+        Job job = new Job();
+        job.setJobId("job");
+        job.setStatus(status);
+        return job;
+    }
+
+    static Task task(Status status) {
+        Task task = new Task();
+        task.setTaskid("task");
+        task.setStatus(status.name());
+        return task;
+    }
+
+    static Task copy(Task task) {
+        Task copy = task(Status.valueOf(task.getStatus()));
+        copy.setMessage(task.getMessage());
+        copy.setVersion(task.getVersion());
+        return copy;
+    }
+
+    /**
+     * Keeps copies of tasks and, like JPA, refuses to save an outdated one.
+     */
+    @SuppressWarnings("unchecked")
+    static JpaRepository<Task, String> repository(Map<String, Task> rows, AtomicInteger saves) {
+        return stub(JpaRepository.class, Map.of(
+                "findById", args -> Optional.ofNullable(rows.get((String) args[0])).map(StatusMergerTest::copy),
+                "save", args -> {
+                    saves.incrementAndGet();
+                    Task task = (Task) args[0];
+                    Task stored = rows.get(task.getTaskid());
+                    if (stored != null && !stored.getVersion().equals(task.getVersion())) {
+                        throw new OptimisticLockingFailureException("outdated " + task.getVersion());
+                    }
+                    Task saved = copy(task);
+                    saved.setVersion(stored == null ? 0 : stored.getVersion() + 1);
+                    rows.put(saved.getTaskid(), saved);
+                    return copy(saved);
+                }));
+    }
+
+    static StatusMerger merger() {
+        StatusMerger merger = new StatusMerger();
+        merger.maxAttempts = 3;
+        return merger;
+    }
+
+    @Test
+    public void testSaveMergesOnConflict() {
+        Map<String, Task> rows = new HashMap<>();
+        AtomicInteger saves = new AtomicInteger();
+        JpaRepository<Task, String> repository = repository(rows, saves);
+        Task stored = task(Status.RUNNING);
+        stored.setVersion(2L);
+        stored.setMessage("running");
+        rows.put("task", stored);
+
+        // read at version 1, before the message changed
+        Task change = task(Status.SUCCEEDED);
+        change.setVersion(1L);
+        Task saved = merger().save(change, Task::getTaskid, Task::getVersion,
+                repository, StatusMerger::mergeTask);
+
+        assertEquals(2, saves.get());
+        assertEquals(3L, saved.getVersion());
+        assertEquals(Status.SUCCEEDED.name(), rows.get("task").getStatus());
+        assertEquals("running", rows.get("task").getMessage());
+    }
+
+    @Test
+    public void testSaveSkipsStaleChange() {
+        Map<String, Task> rows = new HashMap<>();
+        AtomicInteger saves = new AtomicInteger();
+        Task stored = task(Status.SUCCEEDED);
+        stored.setVersion(2L);
+        rows.put("task", stored);
+
+        // a late poll of a finished task is dropped
+        Task change = task(Status.RUNNING);
+        change.setVersion(1L);
+        Task saved = merger().save(change, Task::getTaskid, Task::getVersion,
+                repository(rows, saves), StatusMerger::mergeTask);
+
+        assertEquals(1, saves.get());
+        assertEquals(2L, saved.getVersion());
+        assertEquals(Status.SUCCEEDED.name(), rows.get("task").getStatus());
+    }
+
+    @Test
+    public void testSaveGivesUp() {
+        AtomicInteger saves = new AtomicInteger();
+        Map<String, Task> rows = new HashMap<>() {
+            @Override
+            public Task get(Object key) {
+                // changed by another writer before every save
+                Task stored = super.get(key);
+                stored.setVersion(stored.getVersion() + 1);
+                return stored;
+            }
+        };
+        Task stored = task(Status.RUNNING);
+        stored.setVersion(0L);
+        rows.put("task", stored);
+
+        Task change = task(Status.SUCCEEDED);
+        change.setVersion(0L);
+        assertThrows(OptimisticLockingFailureException.class, () -> merger().save(change,
+                Task::getTaskid, Task::getVersion, repository(rows, saves), StatusMerger::mergeTask));
+        assertEquals(3, saves.get());
+    }
+
+    @Test
+    public void testMergeJob() {
+        Job stored = job(Status.RUNNING);
+        Job change = job(Status.SUCCEEDED);
+        change.setBingingId("bound");
+        assertTrue(StatusMerger.mergeJob(stored, change));
+        assertEquals(Status.SUCCEEDED, stored.getStatus());
+        assertEquals("bound", stored.getBingingId());
+
+        // a late poll neither reopens the job nor rebinds it
+        Job late = job(Status.RUNNING);
+        late.setBingingId("other");
+        assertFalse(StatusMerger.mergeJob(stored, late));
+        assertEquals(Status.SUCCEEDED, stored.getStatus());
+        assertEquals("bound", stored.getBingingId());
+    }
+
+    @Test
+    public void testMergeTask() {
+        Task stored = task(Status.FAILED);
+        assertFalse(StatusMerger.mergeTask(stored, task(Status.RUNNING)));
+        // a finished status is final, even for another finished one
+        assertFalse(StatusMerger.mergeTask(stored, task(Status.SUCCEEDED)));
+        assertEquals(Status.FAILED.name(), stored.getStatus());
+
+        Task running = task(Status.RUNNING);
+        assertTrue(StatusMerger.mergeTask(running, task(Status.SUCCEEDED)));
+        assertEquals(Status.SUCCEEDED.name(), running.getStatus());
+
+        Task created = new Task();
+        assertTrue(StatusMerger.mergeTask(created, task(Status.RUNNING)));
+    }
+
+    @Test
+    public void testRetry() {
+        StatusMerger merger = new StatusMerger();
+        merger.maxAttempts = 3;
+
+        AtomicInteger attempts = new AtomicInteger();
+        assertEquals(3, (int) merger.retry(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new OptimisticLockingFailureException("conflict");
+            }
+            return attempts.get();
+        }));
+
+        attempts.set(0);
+        assertThrows(OptimisticLockingFailureException.class, () -> merger.retry(() -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("conflict");
+        }));
+        assertEquals(3, attempts.get());
+    }
+}
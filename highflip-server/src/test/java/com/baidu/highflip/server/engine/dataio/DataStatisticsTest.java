@@ -0,0 +1,156 @@
+package com.baidu.highflip.server.engine.dataio;
+
+import com.baidu.highflip.core.entity.runtime.Data;
+import com.baidu.highflip.core.entity.runtime.basic.Column;
+import com.baidu.highflip.core.entity.runtime.basic.ColumnStats;
+import com.baidu.highflip.core.entity.runtime.basic.KeyPair;
+import com.baidu.highflip.core.entity.runtime.basic.Type;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DataStatisticsTest {
+
+    static List<Column> schema() {
+        return List.of(
+                new Column(0, "id", Type.INT, ""),
+                new Column(1, "name", Type.STRING, ""),
+                new Column(2, "score", Type.FLOAT, ""));
+    }
+
+    @Test
+    public void testDense() {
+        DataStatistics statistics = new DataStatistics(schema());
+        statistics.addDense(Arrays.asList("1", "b", "9.5"));
+        statistics.addDense(Arrays.asList("2", "a", "10"));
+        statistics.addDense(Arrays.asList("3", "", null));
+        statistics.addDense(Arrays.asList("3", "c"));
+
+        Data data = new Data();
+        statistics.apply(data);
+
+        assertEquals(List.of(4L, 3L), data.getDimension());
+        assertEquals(4 + 3 + 5, data.getRawSize());
+
+        ColumnStats id = data.getStatistics().get(0);
+        assertEquals("id", id.getName());
+        assertEquals(0, id.getNullCount());
+        assertEquals("1", id.getMin());
+        assertEquals("3", id.getMax());
+        assertEquals(3, id.getDistinctCount());
+
+        ColumnStats name = data.getStatistics().get(1);
+        assertEquals(1, name.getNullCount());
+        assertEquals("a", name.getMin());
+        assertEquals("c", name.getMax());
+
+        // numbers, not strings, where "10" < "9.5"
+        ColumnStats score = data.getStatistics().get(2);
+        assertEquals(2, score.getNullCount());
+        assertEquals("9.5", score.getMin());
+        assertEquals("10", score.getMax());
+    }
+
+    @Test
+    public void testSparse() {
+        DataStatistics statistics = new DataStatistics(schema());
+        statistics.addSparse(List.of(KeyPair.of("id", "1"), KeyPair.of("x", "y")));
+        statistics.addSparse(List.of(KeyPair.of("id", "2"), KeyPair.of("score", "0.5")));
+
+        Data data = new Data();
+        statistics.apply(data);
+
+        assertEquals(List.of(2L, 3L), data.getDimension());
+        assertEquals(16, data.getRawSize());
+        assertEquals(0, data.getStatistics().get(0).getNullCount());
+        assertEquals(2, data.getStatistics().get(1).getNullCount());
+        assertNull(data.getStatistics().get(1).getMin());
+        assertEquals(1, data.getStatistics().get(2).getNullCount());
+    }
+
+    @Test
+    public void testColumnsByIndex() {
+        DataStatistics statistics = new DataStatistics(List.of(
+                new Column(2, "score", Type.FLOAT, ""),
+                new Column(0, "id", Type.INT, "")));
+        statistics.addDense(Arrays.asList("1", "x", "0.5"));
+
+        Data data = new Data();
+        statistics.apply(data);
+
+        assertEquals(List.of(1L, 3L), data.getDimension());
+        assertEquals(List.of("id", "score"), List.of(
+                data.getStatistics().get(0).getName(),
+                data.getStatistics().get(2).getName()));
+        assertEquals("1", data.getStatistics().get(0).getMin());
+        assertNull(data.getStatistics().get(1).getName());
+        assertEquals("0.5", data.getStatistics().get(2).getMin());
+    }
+
+    @Test
+    public void testSparseWidthIsLargestIndex() {
+        DataStatistics statistics = new DataStatistics(schema());
+        statistics.addSparse(List.of(KeyPair.of("0", "1"), KeyPair.of("9", "1")));
+        statistics.addSparse(List.of(KeyPair.of("name", "a")));
+
+        Data data = new Data();
+        statistics.apply(data);
+
+        assertEquals(List.of(2L, 10L), data.getDimension());
+        assertEquals(1, data.getStatistics().get(0).getNullCount());
+        assertEquals(3, data.getStatistics().size());
+    }
+
+    @Test
+    public void testNonFiniteValuesAreStrings() {
+        DataStatistics statistics = new DataStatistics(schema());
+        for (String score : List.of("2", "10", "Infinity", "0x1p3", "1e400", "1d")) {
+            statistics.addDense(Arrays.asList("1", "a", score));
+        }
+        DataStatistics finite = new DataStatistics(schema());
+        for (String score : List.of("2", "10", "-1.5e2", ".5")) {
+            finite.addDense(Arrays.asList("1", "a", score));
+        }
+
+        Data data = new Data();
+        statistics.apply(data);
+        assertEquals("0x1p3", data.getStatistics().get(2).getMin());
+        assertEquals("Infinity", data.getStatistics().get(2).getMax());
+
+        finite.apply(data);
+        assertEquals("-1.5e2", data.getStatistics().get(2).getMin());
+        assertEquals("10", data.getStatistics().get(2).getMax());
+    }
+
+    @Test
+    public void testRaw() {
+        DataStatistics statistics = new DataStatistics(schema());
+        statistics.addRaw("a,b\n1,".getBytes(StandardCharsets.UTF_8));
+        statistics.addRaw("2\n3,4".getBytes(StandardCharsets.UTF_8));
+
+        Data data = new Data();
+        statistics.apply(data);
+
+        assertEquals(List.of(3L), data.getDimension());
+        assertEquals(11, data.getRawSize());
+        assertNull(data.getStatistics());
+    }
+
+    @Test
+    public void testDistinctEstimate() {
+        HyperLogLog distinct = new HyperLogLog(DataStatistics.PRECISION);
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 100_000; i++) {
+                distinct.add("value-" + i);
+            }
+        }
+        long estimate = distinct.estimate();
+        assertTrue(Math.abs(estimate - 100_000) < 5_000, "estimate " + estimate);
+    }
+}
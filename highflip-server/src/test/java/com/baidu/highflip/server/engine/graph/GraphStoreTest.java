@@ -0,0 +1,92 @@
+package com.baidu.highflip.server.engine.graph;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class GraphStoreTest {
+
+    JdbcDataSource dataSource;
+
+    GraphStore store;
+
+    static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    @BeforeEach
+    public void initialize() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:graphs;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        try (Connection connection = dataSource.getConnection()) {
+            execute(connection, "CREATE TABLE hf_graph (graph_hash VARCHAR(64) PRIMARY KEY,"
+                    + " content BLOB, create_time TIMESTAMP)");
+        }
+        store = new GraphStore();
+        store.dataSource = dataSource;
+        store.initialize();
+    }
+
+    @AfterEach
+    public void destroy() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            execute(connection, "DROP ALL OBJECTS");
+        }
+    }
+
+    @Test
+    public void testConcurrentInsert() throws Exception {
+        byte[] content = {1, 2, 3};
+        try (Connection first = dataSource.getConnection();
+             Connection second = dataSource.getConnection()) {
+            first.setAutoCommit(false);
+            second.setAutoCommit(false);
+
+            store.store(first, "hash", content);
+            // blocks on the uncommitted row of the first, then finds it a duplicate
+            CompletableFuture<Void> concurrent = CompletableFuture.runAsync(() -> {
+                try {
+                    store.store(second, "hash", content);
+                    execute(second, "INSERT INTO hf_graph (graph_hash) VALUES ('other')");
+                    second.commit();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(200);
+            first.commit();
+            concurrent.get(10, TimeUnit.SECONDS);
+        }
+
+        // the transaction of the second job went on
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM hf_graph")) {
+            result.next();
+            assertEquals(2, result.getInt(1));
+        }
+        assertEquals(3, store.jdbc.queryForObject(
+                "SELECT LENGTH(content) FROM hf_graph WHERE graph_hash = 'hash'", Integer.class));
+    }
+
+    @Test
+    public void testStoreTwice() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            store.store(connection, "hash", new byte[]{1});
+            store.store(connection, "hash", new byte[]{1});
+        }
+        assertEquals(1, store.jdbc.queryForObject("SELECT COUNT(*) FROM hf_graph", Integer.class));
+    }
+}
@@ -0,0 +1,110 @@
+package com.baidu.highflip.server.engine.journal;
+
+import com.baidu.highflip.core.entity.runtime.ChangeRecord;
+import com.baidu.highflip.server.respository.ChangeRecordRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.baidu.highflip.server.common.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChangeJournalTest {
+
+    final List<ChangeRecord> records = new CopyOnWriteArrayList<>();
+
+    final BlockingQueue<Long> received = new LinkedBlockingQueue<>();
+
+    ChangeJournal journal;
+
+    ChangeRecorder recorder;
+
+    static ChangeRecord record(long seq) {
+        ChangeRecord record = new ChangeRecord();
+        record.setSeq(seq);
+        record.setEntityType(ChangeRecord.ENTITY_JOB);
+        record.setEntityId("job-" + seq);
+        return record;
+    }
+
+    @BeforeEach
+    public void initialize() {
+        recorder = new ChangeRecorder();
+        journal = new ChangeJournal();
+        journal.recorder = recorder;
+        journal.repository = stub(ChangeRecordRepository.class, Map.of(
+                "findAllBySeqGreaterThanOrderBySeq", args -> {
+                    long after = (Long) args[0];
+                    return records.stream()
+                            .filter(r -> r.getSeq() > after)
+                            .limit(((Pageable) args[1]).getPageSize())
+                            .collect(Collectors.toList());
+                }));
+        journal.pageSize = 2;
+        journal.threads = 2;
+        // only woken by commits
+        journal.wakeInterval = 60_000;
+        journal.initialize();
+    }
+
+    @AfterEach
+    public void destroy() {
+        journal.destroy();
+    }
+
+    ChangeJournal.Sink sink() {
+        return new ChangeJournal.Sink() {
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+
+            @Override
+            public void onChanges(List<ChangeRecord> changes) {
+                changes.forEach(r -> received.add(r.getSeq()));
+            }
+
+            @Override
+            public void onError(Throwable error) {
+            }
+        };
+    }
+
+    void commit(int count) {
+        recorder.append(last -> {
+            long seq = Math.max(0, last);
+            for (int i = 0; i < count; i++) {
+                records.add(record(++seq));
+            }
+            return seq;
+        });
+    }
+
+    @Test
+    public void testCatchUpThenWake() throws Exception {
+        commit(3);
+        journal.subscribe(1, sink());
+
+        assertEquals(2L, received.poll(5, TimeUnit.SECONDS));
+        assertEquals(3L, received.poll(5, TimeUnit.SECONDS));
+        long start = System.currentTimeMillis();
+        while (journal.waiting.isEmpty()) {
+            assertTrue(System.currentTimeMillis() - start < 5000, "never waiting");
+            Thread.sleep(5);
+        }
+
+        commit(1);
+        assertEquals(4L, received.poll(5, TimeUnit.SECONDS));
+        assertTrue(received.isEmpty());
+    }
+}
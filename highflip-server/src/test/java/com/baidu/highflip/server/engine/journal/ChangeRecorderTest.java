@@ -0,0 +1,174 @@
+package com.baidu.highflip.server.engine.journal;
+
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import org.hibernate.HibernateException;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jdbc.Work;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static com.baidu.highflip.server.common.Stubs.lenient;
+import static com.baidu.highflip.server.common.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ChangeRecorderTest {
+
+    /**
+     * Sequence numbers of the committed journal rows, in commit order.
+     */
+    final List<Long> journal = new CopyOnWriteArrayList<>();
+
+    final List<Long> published = new CopyOnWriteArrayList<>();
+
+    ChangeRecorder recorder;
+
+    /**
+     * A transaction on a connection that keeps its journal rows until commit.
+     */
+    class Transaction {
+
+        final List<Long> pending = new ArrayList<>();
+
+        boolean failInsert = false;
+
+        final SessionImplementor session = stub(SessionImplementor.class, Map.of(
+                "doWork", args -> {
+                    ((Work) args[0]).execute(connection());
+                    return null;
+                }));
+
+        final ChangeRecorder.Batch batch = recorder.new Batch(session);
+
+        Transaction(int changes) {
+            for (int i = 0; i < changes; i++) {
+                Job job = new Job();
+                job.setJobId("job-" + i);
+                job.setStatus(Status.RUNNING);
+                batch.records.add(ChangeRecorder.toRecord(job, "UPDATE"));
+            }
+        }
+
+        Connection connection() {
+            return lenient(Connection.class, Map.of(
+                    "prepareStatement", args ->
+                            args[0].equals(ChangeRecorder.SELECT_LAST) ? selectLast() : insert()));
+        }
+
+        PreparedStatement selectLast() {
+            ResultSet result = lenient(ResultSet.class, Map.of(
+                    "next", args -> true,
+                    "getLong", args -> journal.isEmpty() ? 0L : journal.get(journal.size() - 1)));
+            return lenient(PreparedStatement.class, Map.of(
+                    "executeQuery", args -> result));
+        }
+
+        PreparedStatement insert() {
+            long[] seq = new long[1];
+            return lenient(PreparedStatement.class, Map.of(
+                    "setLong", args -> {
+                        seq[0] = (Long) args[1];
+                        return null;
+                    },
+                    "addBatch", args -> {
+                        pending.add(seq[0]);
+                        return null;
+                    },
+                    "executeBatch", args -> {
+                        if (failInsert) {
+                            throw new SQLException("duplicate key", "23505");
+                        }
+                        return new int[pending.size()];
+                    }));
+        }
+
+        void commit() {
+            batch.doBeforeTransactionCompletion(session);
+            journal.addAll(pending);
+            batch.doAfterTransactionCompletion(true, session);
+        }
+
+        void rollback() {
+            try {
+                batch.doBeforeTransactionCompletion(session);
+            } finally {
+                batch.doAfterTransactionCompletion(false, session);
+            }
+        }
+    }
+
+    @BeforeEach
+    public void initialize() {
+        recorder = new ChangeRecorder();
+        recorder.addListener(published::add);
+    }
+
+    @Test
+    public void testConcurrentCommits() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<Void>> commits = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                Transaction transaction = new Transaction(1 + i % 3);
+                commits.add(CompletableFuture.runAsync(transaction::commit, pool));
+            }
+            CompletableFuture.allOf(commits.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // committed in sequence order, without gaps or duplicates
+        assertEquals(LongStream.rangeClosed(1, journal.size()).boxed().collect(Collectors.toList()), journal);
+        assertEquals(journal.get(journal.size() - 1), recorder.getSequence());
+        assertEquals(200, published.size());
+        assertFalse(recorder.lock.isLocked());
+    }
+
+    @Test
+    public void testRollback() {
+        new Transaction(2).commit();
+
+        new Transaction(3).rollback();
+        assertFalse(recorder.lock.isLocked());
+
+        Transaction failed = new Transaction(1);
+        failed.failInsert = true;
+        assertThrows(HibernateException.class, failed::rollback);
+        assertFalse(recorder.lock.isLocked());
+
+        // the sequence numbers of the rolled back rows are taken again
+        new Transaction(1).commit();
+        assertEquals(List.of(1L, 2L, 3L), journal);
+        assertEquals(List.of(2L, 3L), published);
+        assertEquals(3, recorder.getSequence());
+    }
+
+    @Test
+    public void testAppendAfterOtherServer() {
+        new Transaction(1).commit();
+        // appended by another server meanwhile
+        journal.add(2L);
+        journal.add(3L);
+
+        new Transaction(2).commit();
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), journal);
+        assertEquals(5, recorder.getSequence());
+    }
+}
@@ -0,0 +1,67 @@
+package com.baidu.highflip.server.engine.log;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LogCacheTest {
+
+    LogCache cache;
+
+    static LogSource source(int count) {
+        return new LogSource() {
+            @Override
+            public int count() {
+                return count;
+            }
+
+            @Override
+            public Iterator<String> read(int offset, int limit) {
+                return lines(Math.min(offset, count), Math.min(offset + limit, count)).iterator();
+            }
+        };
+    }
+
+    static List<String> lines(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> "line " + i)
+                .collect(Collectors.toList());
+    }
+
+    @BeforeEach
+    public void initialize() {
+        cache = new LogCache();
+        cache.bufferLines = 100;
+        cache.maxLogs = 10;
+        cache.refreshInterval = 60_000;
+        cache.fetchLines = 10;
+    }
+
+    @Test
+    public void testReadAheadOfColdBuffer() {
+        assertEquals(lines(50, 55), cache.read("log", source(80), 50, 5));
+        // filled up to the lines read, so the next ones come from the buffer
+        assertEquals(lines(55, 60), cache.read("log", source(0), 55, 5));
+    }
+
+    @Test
+    public void testReadAheadOfShortBuffer() {
+        LogSource source = source(80);
+        assertEquals(lines(0, 5), cache.read("log", source, 0, 5));
+        assertEquals(lines(40, 45), cache.read("log", source, 40, 5));
+        assertEquals(lines(75, 80), cache.read("log", source, 75, 10));
+        assertEquals(List.of(), cache.read("log", source, 80, 10));
+    }
+
+    @Test
+    public void testReadFarAhead() {
+        assertEquals(lines(500, 505), cache.read("log", source(1000), 500, 5));
+        assertEquals(0, cache.getBuffer("log").getEnd());
+    }
+}
@@ -0,0 +1,215 @@
+package com.baidu.highflip.server.engine.scheduler;
+
+import com.baidu.highflip.core.entity.dag.Graph;
+import com.baidu.highflip.core.entity.dag.Node;
+import com.baidu.highflip.core.entity.dag.common.NodeInputRef;
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.Task;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import com.baidu.highflip.server.respository.TaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static com.baidu.highflip.server.common.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DAGSchedulerTest {
+
+    /**
+     * Tasks handed to the executor, by node, completed by hand.
+     */
+    final Map<String, CompletableFuture<Status>> dispatched = new ConcurrentHashMap<>();
+
+    final List<Status> finished = new ArrayList<>();
+
+    String message;
+
+    DAGScheduler scheduler;
+
+    static Node node(String name, String... from) {
+        Node node = new Node();
+        node.setName(name);
+        node.setInputs(Arrays.stream(from)
+                .collect(Collectors.toMap(f -> f, f -> NodeInputRef.builder()
+                        .setName(f)
+                        .setFromNode(f)
+                        .build())));
+        return node;
+    }
+
+    /**
+     * reader feeds train and test, which both feed evaluate.
+     */
+    static Job job() {
+        Graph graph = new Graph();
+        graph.setNodes(new LinkedHashMap<>());
+        for (Node node : List.of(node("reader"), node("train", "reader"),
+                node("test", "reader"), node("evaluate", "train", "test"))) {
+            graph.getNodes().put(node.getName(), node);
+        }
+        Job job = new Job() {
+            @Override
+            public Graph getGraph() {
+                return graph;
+            }
+        };
+        job.setJobId("job");
+        return job;
+    }
+
+    @BeforeEach
+    public void initialize() {
+        TaskRepository tasks = stub(TaskRepository.class, Map.of(
+                "findAllByJobid", args -> List.of(),
+                "saveAll", args -> {
+                    List<Task> saved = new ArrayList<>();
+                    for (Object task : (Iterable<?>) args[0]) {
+                        ((Task) task).setTaskid(((Task) task).getNodeName());
+                        saved.add((Task) task);
+                    }
+                    return saved;
+                }));
+
+        scheduler = new DAGScheduler() {
+            @Override
+            void mark(String jobId) {
+            }
+
+            @Override
+            void finish(String jobId, Status status, String message) {
+                finished.add(status);
+                DAGSchedulerTest.this.message = message;
+            }
+        };
+        scheduler.context = new HighFlipContext() {
+            @Override
+            public TaskRepository getTaskRepository() {
+                return tasks;
+            }
+        };
+        scheduler.executor = new TaskExecutor() {
+            @Override
+            public CompletableFuture<Status> execute(Task task) {
+                CompletableFuture<Status> future = new CompletableFuture<>();
+                dispatched.put(task.getNodeName(), future);
+                return future;
+            }
+
+            @Override
+            public void cancel(Task task) {
+                CompletableFuture<Status> future = dispatched.get(task.getNodeName());
+                if (future != null) {
+                    future.complete(Status.FAILED);
+                }
+            }
+        };
+    }
+
+    void complete(String node, Status status) {
+        dispatched.get(node).complete(status);
+    }
+
+    @Test
+    public void testSort() {
+        Map<String, List<String>> predecessors = new LinkedHashMap<>();
+        predecessors.put("evaluate", List.of("train", "test"));
+        predecessors.put("train", List.of("reader"));
+        predecessors.put("test", List.of("reader"));
+        predecessors.put("reader", List.of());
+
+        List<String> sorted = DAGScheduler.sort(predecessors);
+        assertEquals(4, sorted.size());
+        assertEquals("reader", sorted.get(0));
+        assertEquals("evaluate", sorted.get(3));
+
+        Map<String, List<String>> successors = DAGScheduler.successors(predecessors);
+        assertEquals(List.of("train", "test"), successors.get("reader"));
+        assertTrue(successors.get("evaluate").isEmpty());
+    }
+
+    @Test
+    public void testCycle() {
+        Map<String, List<String>> predecessors = new LinkedHashMap<>();
+        predecessors.put("reader", List.of());
+        predecessors.put("a", List.of("reader", "b"));
+        predecessors.put("b", List.of("a"));
+
+        assertThrows(IllegalArgumentException.class, () -> DAGScheduler.sort(predecessors));
+    }
+
+    @Test
+    public void testDispatchAndRelease() {
+        scheduler.dispatch(job());
+        assertEquals(List.of("reader"), List.copyOf(dispatched.keySet()));
+        assertTrue(scheduler.isRunning("job"));
+
+        complete("reader", Status.SUCCEEDED);
+        assertTrue(dispatched.containsKey("train"));
+        assertTrue(dispatched.containsKey("test"));
+        assertFalse(dispatched.containsKey("evaluate"));
+
+        // released only after both of its predecessors succeeded
+        complete("train", Status.SUCCEEDED);
+        assertFalse(dispatched.containsKey("evaluate"));
+        complete("test", Status.SUCCEEDED);
+        assertTrue(dispatched.containsKey("evaluate"));
+        assertTrue(finished.isEmpty());
+
+        complete("evaluate", Status.SUCCEEDED);
+        assertEquals(List.of(Status.SUCCEEDED), finished);
+        assertNull(message);
+        assertFalse(scheduler.isRunning("job"));
+    }
+
+    @Test
+    public void testFailure() {
+        scheduler.dispatch(job());
+        complete("reader", Status.SUCCEEDED);
+
+        complete("train", Status.FAILED);
+        // the job waits for the task in flight
+        assertTrue(finished.isEmpty());
+
+        complete("test", Status.SUCCEEDED);
+        assertFalse(dispatched.containsKey("evaluate"));
+        assertEquals(List.of(Status.FAILED), finished);
+        assertTrue(message.contains("train"));
+        assertFalse(scheduler.isRunning("job"));
+    }
+
+    @Test
+    public void testCancelStopsTasksInFlight() {
+        scheduler.dispatch(job());
+        complete("reader", Status.SUCCEEDED);
+
+        scheduler.cancel("job");
+        assertFalse(dispatched.containsKey("evaluate"));
+        assertEquals(List.of(Status.FAILED), finished);
+        assertEquals("Cancelled.", message);
+        assertFalse(scheduler.isRunning("job"));
+    }
+
+    @Test
+    public void testExecutorError() {
+        scheduler.dispatch(job());
+        dispatched.get("reader").completeExceptionally(new IllegalStateException("lost"));
+
+        assertEquals(Set.of("reader"), dispatched.keySet());
+        assertEquals(List.of(Status.FAILED), finished);
+    }
+}
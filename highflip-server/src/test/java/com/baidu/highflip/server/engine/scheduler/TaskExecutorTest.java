@@ -0,0 +1,140 @@
+package com.baidu.highflip.server.engine.scheduler;
+
+import com.baidu.highflip.core.adaptor.TaskAdaptor;
+import com.baidu.highflip.core.entity.runtime.Task;
+import com.baidu.highflip.core.entity.runtime.basic.Action;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.server.engine.common.StatusMerger;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static com.baidu.highflip.server.common.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TaskExecutorTest {
+
+    /**
+     * Statuses the adaptor reports in turn, the last one repeated.
+     */
+    final Deque<Status> statuses = new ConcurrentLinkedDeque<>();
+
+    final List<String> updates = new ArrayList<>();
+
+    final List<Action> actions = new CopyOnWriteArrayList<>();
+
+    TaskExecutor executor;
+
+    @BeforeEach
+    public void initialize() {
+        TaskAdaptor adaptor = stub(TaskAdaptor.class, Map.of(
+                "invokeTask", args -> null,
+                "getTaskStatus", args -> statuses.size() > 1 ? statuses.poll() : statuses.peek(),
+                "controlTask", args -> {
+                    actions.add((Action) args[1]);
+                    return args[0];
+                }));
+
+        executor = new TaskExecutor() {
+            @Override
+            void update(Task task, Status status, String message) {
+                synchronized (updates) {
+                    updates.add(status.name());
+                }
+            }
+        };
+        executor.context = new HighFlipContext() {
+            @Override
+            public TaskAdaptor getTaskAdaptor() {
+                return adaptor;
+            }
+        };
+        executor.threads = 2;
+        executor.pollInterval = 5;
+        executor.unknownStatusTimeout = 100;
+        executor.initialize();
+    }
+
+    @AfterEach
+    public void destroy() {
+        executor.destroy();
+    }
+
+    @Test
+    public void testUnknownIsNotFinished() throws Exception {
+        statuses.add(Status.UNKNOWN);
+        statuses.add(Status.RUNNING);
+        statuses.add(Status.UNKNOWN);
+        statuses.add(Status.SUCCEEDED);
+
+        Status status = executor.execute(new Task()).get(5, TimeUnit.SECONDS);
+        assertEquals(Status.SUCCEEDED, status);
+        assertEquals(List.of("RUNNING", "SUCCEEDED"), updates);
+    }
+
+    @Test
+    public void testUnknownTimesOut() throws Exception {
+        statuses.add(Status.UNKNOWN);
+
+        long start = System.currentTimeMillis();
+        Status status = executor.execute(new Task()).get(5, TimeUnit.SECONDS);
+        assertEquals(Status.FAILED, status);
+        assertTrue(System.currentTimeMillis() - start >= 100);
+        assertEquals(List.of("RUNNING", "FAILED"), updates);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        statuses.add(Status.RUNNING);
+
+        Task task = new Task();
+        CompletableFuture<Status> future = executor.execute(task);
+        Thread.sleep(20);
+        assertFalse(future.isDone());
+
+        executor.cancel(task);
+        assertEquals(Status.FAILED, future.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(Action.STOP), actions);
+        // no longer polled, nor completed again
+        Thread.sleep(20);
+        assertEquals(List.of("RUNNING", "FAILED"), updates);
+
+        executor.cancel(task);
+        assertEquals(List.of(Action.STOP), actions);
+    }
+
+    @Test
+    public void testUpdateKeepsSavedVersion() {
+        List<Long> versions = new ArrayList<>();
+        TaskExecutor saving = new TaskExecutor();
+        saving.merger = new StatusMerger() {
+            @Override
+            public Task saveTask(Task task) {
+                versions.add(task.getVersion());
+                // a merged copy, as saved after a conflict
+                Task saved = new Task();
+                saved.setVersion(task.getVersion() + 2);
+                return saved;
+            }
+        };
+
+        Task task = new Task();
+        task.setVersion(0L);
+        saving.update(task, Status.RUNNING, null);
+        saving.update(task, Status.SUCCEEDED, null);
+        assertEquals(List.of(0L, 2L), versions);
+        assertEquals(4L, task.getVersion());
+    }
+}
@@ -0,0 +1,87 @@
+package com.baidu.highflip.server.engine.sync;
+
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.server.engine.archive.JobArchiver;
+import com.baidu.highflip.server.engine.binding.BindingIdFilter;
+import com.baidu.highflip.server.engine.binding.BindingIdIndex;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import com.baidu.highflip.server.respository.JobRepository;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.baidu.highflip.server.common.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class IncrementalSynchronizerTest {
+
+    static Job job(String bindingId, Status status) {
+        Job job = new Job();
+        job.setBingingId(bindingId);
+        job.setStatus(status);
+        return job;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSkipArchivedJobs() {
+        Job stored = job("stored", Status.RUNNING);
+        stored.bindJobId();
+        List<Job> saved = new ArrayList<>();
+        JobRepository jobs = stub(JobRepository.class, Map.of(
+                "findAllByBingingIdIn", args ->
+                        ((Collection<String>) args[0]).contains("stored") ? List.of(stored) : List.of(),
+                "saveAll", args -> {
+                    ((Iterable<Job>) args[0]).forEach(saved::add);
+                    return args[0];
+                }));
+
+        Set<String> asked = new HashSet<>();
+        IncrementalSynchronizer synchronizer = new IncrementalSynchronizer();
+        synchronizer.context = new HighFlipContext() {
+            @Override
+            public JobRepository getJobRepository() {
+                return jobs;
+            }
+        };
+        // not loaded yet, so every id might be known
+        BindingIdFilter filter = new BindingIdFilter(100, 0.01, 10);
+        synchronizer.bindings = new BindingIdIndex() {
+            @Override
+            public BindingIdFilter getJobs() {
+                return filter;
+            }
+        };
+        synchronizer.archive = new JobArchiver() {
+            @Override
+            public Set<String> findJobBindingIds(Collection<String> bindingIds) {
+                asked.addAll(bindingIds);
+                return bindingIds.contains("archived") ? Set.of("archived") : Set.of();
+            }
+        };
+
+        Job changed = job("stored", Status.SUCCEEDED);
+        changed.setUpdateTime(new DateTime(2022, 9, 1, 12, 0));
+        int count = synchronizer.saveJobs(List.of(
+                job("new", Status.RUNNING),
+                changed,
+                job("archived", Status.RUNNING)));
+
+        assertEquals(2, count);
+        assertEquals(List.of("new", "stored"), saved.stream()
+                .map(Job::getBingingId)
+                .collect(Collectors.toList()));
+        assertEquals(Status.SUCCEEDED, stored.getStatus());
+        assertEquals(changed.getUpdateTime(), stored.getUpdateTime());
+        // only ids not stored are looked up in the archive
+        assertEquals(Set.of("new", "archived"), asked);
+    }
+}
@@ -0,0 +1,97 @@
+package com.baidu.highflip.server.engine.sync;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ParallelLoaderTest {
+
+    ParallelLoader loader;
+
+    @BeforeEach
+    public void initialize() {
+        loader = new ParallelLoader();
+        loader.transactionManager = new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+        loader.pageSize = 100;
+        loader.threads = 4;
+        loader.initialize();
+    }
+
+    @AfterEach
+    public void destroy() {
+        loader.destroy();
+    }
+
+    /**
+     * Pages by number like the FATE adaptor, which is only right for full
+     * pages.
+     */
+    static List<Integer> page(List<Integer> rows, int offset, int limit) {
+        int from = (offset / limit) * limit;
+        return new ArrayList<>(rows.subList(Math.min(from, rows.size()), Math.min(from + limit, rows.size())));
+    }
+
+    @Test
+    public void testLastPartialPage() {
+        // grown since counted, the extra rows are left to the next load
+        List<Integer> rows = IntStream.range(0, 260).boxed().collect(Collectors.toList());
+        int count = 250;
+
+        Set<Integer> saved = ConcurrentHashMap.newKeySet();
+        List<Integer> duplicates = new ArrayList<>();
+        int loaded = loader.load("rows", count,
+                (offset, limit) -> page(rows, offset, limit),
+                page -> {
+                    for (Integer row : page) {
+                        if (!saved.add(row)) {
+                            synchronized (duplicates) {
+                                duplicates.add(row);
+                            }
+                        }
+                    }
+                    return page.size();
+                });
+
+        assertEquals(count, loaded);
+        assertEquals(List.of(), duplicates);
+        assertEquals(IntStream.range(0, count).boxed().collect(Collectors.toSet()), saved);
+    }
+
+    @Test
+    public void testLoadByIndex() {
+        Set<Integer> fetched = ConcurrentHashMap.newKeySet();
+        int loaded = loader.loadByIndex("rows", 150, index -> {
+            fetched.add(index);
+            return index;
+        }, List::size);
+
+        assertEquals(150, loaded);
+        assertEquals(150, fetched.size());
+    }
+}
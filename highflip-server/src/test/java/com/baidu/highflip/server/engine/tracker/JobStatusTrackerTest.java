@@ -0,0 +1,116 @@
+package com.baidu.highflip.server.engine.tracker;
+
+import com.baidu.highflip.core.adaptor.JobAdaptor;
+import com.baidu.highflip.core.entity.runtime.Job;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import com.baidu.highflip.server.engine.common.StatusMerger;
+import com.baidu.highflip.server.engine.component.HighFlipContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.baidu.highflip.server.common.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JobStatusTrackerTest {
+
+    final CountDownLatch release = new CountDownLatch(1);
+
+    final AtomicInteger steadyPolls = new AtomicInteger();
+
+    JobStatusTracker tracker;
+
+    static Job job(String jobId) {
+        Job job = new Job();
+        job.setJobId(jobId);
+        job.setStatus(Status.RUNNING);
+        return job;
+    }
+
+    @BeforeEach
+    public void initialize() {
+        JobAdaptor adaptor = stub(JobAdaptor.class, Map.of(
+                "getJobStatus", args -> {
+                    if ("slow".equals(((Job) args[0]).getJobId())) {
+                        release.await();
+                        return Status.RUNNING;
+                    }
+                    if ("steady".equals(((Job) args[0]).getJobId())) {
+                        steadyPolls.incrementAndGet();
+                        return Status.RUNNING;
+                    }
+                    return Status.SUCCEEDED;
+                },
+                "updateJob", args -> null));
+
+        tracker = new JobStatusTracker();
+        tracker.context = new HighFlipContext() {
+            @Override
+            public JobAdaptor getJobAdaptor() {
+                return adaptor;
+            }
+        };
+        tracker.merger = new StatusMerger() {
+            @Override
+            public Job saveJob(Job job) {
+                return job;
+            }
+        };
+        tracker.tick = 5;
+        tracker.wheelSize = 64;
+        tracker.minInterval = 10;
+        tracker.maxInterval = 10;
+        tracker.backoff = 2.0;
+        tracker.threads = 1;
+        tracker.fetchThreads = 2;
+        tracker.initialize();
+    }
+
+    @AfterEach
+    public void destroy() {
+        release.countDown();
+        tracker.destroy();
+    }
+
+    @Test
+    public void testSlowBackendDoesNotStallShard() throws Exception {
+        tracker.track(job("slow"));
+        Thread.sleep(50);
+
+        // same single shard as the blocked poll
+        CompletableFuture<Job> finished = new CompletableFuture<>();
+        Job fast = job("fast");
+        tracker.watch(fast, job -> {
+            if (job.getStatus() == Status.SUCCEEDED) {
+                finished.complete(job);
+            }
+        });
+
+        assertEquals(Status.SUCCEEDED, finished.get(5, TimeUnit.SECONDS).getStatus());
+        assertFalse(tracker.isTracked("fast"));
+        assertTrue(tracker.isTracked("slow"));
+        // changed on a copy, the tracked job may be read meanwhile
+        assertEquals(Status.RUNNING, fast.getStatus());
+    }
+
+    @Test
+    public void testUnchangedJobKeepsPolling() throws Exception {
+        tracker.track(job("steady"));
+
+        // every tick may fire while a poll is in flight, none may drop the job
+        long start = System.currentTimeMillis();
+        while (steadyPolls.get() < 20) {
+            assertTrue(System.currentTimeMillis() - start < 5000, "no longer polled");
+            Thread.sleep(5);
+        }
+        assertTrue(tracker.isTracked("steady"));
+    }
+}
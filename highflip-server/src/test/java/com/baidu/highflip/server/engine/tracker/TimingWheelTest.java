@@ -0,0 +1,77 @@
+package com.baidu.highflip.server.engine.tracker;
+
+import com.baidu.highflip.core.entity.runtime.Job;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimingWheelTest {
+
+    static JobStatusTracker.Tracked tracked(String jobId) {
+        Job job = new Job();
+        job.setJobId(jobId);
+        return new JobStatusTracker.Tracked(job, 0);
+    }
+
+    /**
+     * @return the tick at which the job came due
+     */
+    static int dueAt(TimingWheel wheel, JobStatusTracker.Tracked t, int limit) {
+        for (int i = 1; i <= limit; i++) {
+            if (wheel.advance().contains(t)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void testDelays() {
+        TimingWheel wheel = new TimingWheel(8, 100);
+
+        for (long delay : new long[]{0, 1, 100, 250, 800, 801, 2000}) {
+            JobStatusTracker.Tracked t = tracked("job-" + delay);
+            wheel.schedule(t, delay);
+            int expected = (int) Math.max(1, (delay + 99) / 100);
+            assertEquals(expected, dueAt(wheel, t, 100), "delay " + delay);
+            assertEquals(0, wheel.size());
+        }
+    }
+
+    @Test
+    public void testReschedule() {
+        TimingWheel wheel = new TimingWheel(8, 100);
+        JobStatusTracker.Tracked t = tracked("job");
+
+        wheel.schedule(t, 100);
+        wheel.schedule(t, 500);
+        assertEquals(1, wheel.size());
+        assertEquals(5, dueAt(wheel, t, 100));
+
+        wheel.schedule(t, 100);
+        wheel.cancel(t);
+        assertEquals(0, wheel.size());
+        for (int i = 0; i < 20; i++) {
+            assertTrue(wheel.advance().isEmpty());
+        }
+    }
+
+    @Test
+    public void testManyJobs() {
+        TimingWheel wheel = new TimingWheel(64, 10);
+        for (int i = 0; i < 10000; i++) {
+            wheel.schedule(tracked("job-" + i), (i % 1000) * 10L);
+        }
+
+        int due = 0;
+        for (int i = 0; i < 1000; i++) {
+            List<JobStatusTracker.Tracked> jobs = wheel.advance();
+            due += jobs.size();
+        }
+        assertEquals(10000, due);
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,329 @@
+package com.baidu.highflip.server.respository;
+
+import com.baidu.highflip.core.entity.runtime.basic.DataCategory;
+import com.baidu.highflip.core.entity.runtime.basic.Status;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Latencies of the query shapes of the engine on a large repository, before
+ * and after the indexes declared on Job, Task and Data.
+ * <p>
+ * Seeds hf_job, hf_task and hf_data through plain JDBC, so the same run works
+ * on H2 and on PostgreSQL. A seeded database is reused by later runs, only
+ * the indexes are dropped and created again. Run with
+ * -Dhighflip.benchmark=true and optionally:
+ * <ul>
+ *     <li>highflip.benchmark.url, user and password, H2 under target by default</li>
+ *     <li>highflip.benchmark.jobs, 1,000,000 by default</li>
+ *     <li>highflip.benchmark.tasks-per-job, 20 by default</li>
+ *     <li>highflip.benchmark.data, 100,000 by default</li>
+ *     <li>highflip.benchmark.runs, executions measured per query</li>
+ * </ul>
+ */
+@EnabledIfSystemProperty(named = "highflip.benchmark", matches = "true")
+public class RepositoryIndexBenchmark {
+
+    static final String[] TABLES = {
+            "CREATE TABLE IF NOT EXISTS hf_job (job_id VARCHAR(36) PRIMARY KEY, name VARCHAR(255),"
+                    + " status INTEGER, binding_id VARCHAR(255), create_time TIMESTAMP,"
+                    + " update_time TIMESTAMP, graph_hash VARCHAR(64), binding VARCHAR(255))",
+            "CREATE TABLE IF NOT EXISTS hf_task (task_id VARCHAR(36) PRIMARY KEY, job_id VARCHAR(255),"
+                    + " name VARCHAR(255), node VARCHAR(255), status VARCHAR(255), binding_id VARCHAR(255),"
+                    + " create_time TIMESTAMP, update_time TIMESTAMP, previous VARCHAR(255), next VARCHAR(255))",
+            "CREATE TABLE IF NOT EXISTS hf_data (data_id VARCHAR(36) PRIMARY KEY, name VARCHAR(255),"
+                    + " category INTEGER, binding_id VARCHAR(255), create_time TIMESTAMP)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS binding_id_index ON hf_job (binding_id)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS task_binding_id_index ON hf_task (binding_id)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS data_binding_id_index ON hf_data (binding_id)",
+    };
+
+    /**
+     * Same as the indexes declared on the entities.
+     */
+    static final Map<String, String> INDEXES = new LinkedHashMap<>();
+
+    static {
+        INDEXES.put("task_job_id_index", "CREATE INDEX task_job_id_index ON hf_task (job_id, task_id)");
+        INDEXES.put("job_status_index", "CREATE INDEX job_status_index ON hf_job (status, job_id)");
+        INDEXES.put("job_create_time_index", "CREATE INDEX job_create_time_index ON hf_job (create_time)");
+        INDEXES.put("data_category_index", "CREATE INDEX data_category_index ON hf_data (category)");
+        INDEXES.put("data_create_time_index", "CREATE INDEX data_create_time_index ON hf_data (create_time)");
+    }
+
+    // enums are stored by ordinal
+    static final int RUNNING = Status.RUNNING.ordinal();
+
+    static final int SUCCEEDED = Status.SUCCEEDED.ordinal();
+
+    static final int FAILED = Status.FAILED.ordinal();
+
+    static final int USER_DATA = DataCategory.USER_DATA.ordinal();
+
+    static final int INTERMEDIATE_DATA = DataCategory.INTERMEDIATE_DATA.ordinal();
+
+    static final int RESULT_DATA = DataCategory.RESULT_DATA.ordinal();
+
+    static final int WARMUP = 10;
+
+    static final int BATCH = 10_000;
+
+    interface Binder {
+
+        void bind(PreparedStatement statement, Random random) throws SQLException;
+    }
+
+    static class Shape {
+
+        final String name;
+
+        final String sql;
+
+        final Binder binder;
+
+        Shape(String name, String sql, Binder binder) {
+            this.name = name;
+            this.sql = sql;
+            this.binder = binder;
+        }
+    }
+
+    final String url = System.getProperty("highflip.benchmark.url",
+            "jdbc:h2:file:./target/index-benchmark/highflip");
+
+    final int jobs = Integer.getInteger("highflip.benchmark.jobs", 1_000_000);
+
+    final int tasksPerJob = Integer.getInteger("highflip.benchmark.tasks-per-job", 20);
+
+    final int data = Integer.getInteger("highflip.benchmark.data", 100_000);
+
+    final int runs = Integer.getInteger("highflip.benchmark.runs", 100);
+
+    static String jobId(int i) {
+        return UUID.nameUUIDFromBytes(("job-" + i).getBytes()).toString();
+    }
+
+    static String taskId(int job, int i) {
+        return UUID.nameUUIDFromBytes(("task-" + job + "-" + i).getBytes()).toString();
+    }
+
+    static String dataId(int i) {
+        return UUID.nameUUIDFromBytes(("data-" + i).getBytes()).toString();
+    }
+
+    List<Shape> shapes() {
+        return List.of(
+                new Shape("tasks of a job",
+                        "SELECT * FROM hf_task WHERE job_id = ?",
+                        (s, r) -> s.setString(1, jobId(r.nextInt(jobs)))),
+                new Shape("task ids of a job, keyset page",
+                        "SELECT task_id FROM hf_task WHERE job_id = ? AND task_id > ? ORDER BY task_id LIMIT 100",
+                        (s, r) -> {
+                            s.setString(1, jobId(r.nextInt(jobs)));
+                            s.setString(2, "");
+                        }),
+                new Shape("running jobs of the native scheduler",
+                        "SELECT job_id, status FROM hf_job WHERE status = ? AND binding_id IS NULL",
+                        (s, r) -> s.setInt(1, RUNNING)),
+                new Shape("unfinished jobs, keyset page",
+                        "SELECT job_id, status FROM hf_job WHERE job_id > ?"
+                                + " AND (status IS NULL OR status NOT IN (?, ?)) ORDER BY job_id LIMIT 500",
+                        (s, r) -> {
+                            s.setString(1, jobId(r.nextInt(jobs)));
+                            s.setInt(2, SUCCEEDED);
+                            s.setInt(3, FAILED);
+                        }),
+                new Shape("latest jobs",
+                        "SELECT job_id FROM hf_job ORDER BY create_time DESC LIMIT 50",
+                        (s, r) -> {
+                        }),
+                new Shape("result data",
+                        "SELECT data_id FROM hf_data WHERE category = ? LIMIT 100",
+                        (s, r) -> s.setInt(1, RESULT_DATA)),
+                new Shape("latest data",
+                        "SELECT data_id FROM hf_data ORDER BY create_time DESC LIMIT 50",
+                        (s, r) -> {
+                        }),
+                new Shape("job by binding id",
+                        "SELECT job_id FROM hf_job WHERE binding_id = ?",
+                        (s, r) -> s.setString(1, "binding-" + r.nextInt(jobs))));
+    }
+
+    @Test
+    public void testQueryLatency() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url,
+                System.getProperty("highflip.benchmark.user", "highflip"),
+                System.getProperty("highflip.benchmark.password", ""))) {
+            execute(connection, TABLES);
+            for (String name : INDEXES.keySet()) {
+                execute(connection, "DROP INDEX IF EXISTS " + name);
+            }
+            seed(connection);
+            execute(connection, "ANALYZE");
+
+            Map<String, double[]> before = measure(connection);
+
+            execute(connection, INDEXES.values().toArray(new String[0]));
+            execute(connection, "ANALYZE");
+
+            Map<String, double[]> after = measure(connection);
+
+            System.out.printf("%s, %,d jobs, %,d tasks, %,d data%n",
+                    connection.getMetaData().getDatabaseProductName(),
+                    jobs, (long) jobs * tasksPerJob, data);
+            System.out.printf("%-40s %12s %12s %12s %12s%n",
+                    "query", "p50 before", "p50 after", "p99 before", "p99 after");
+            for (String name : before.keySet()) {
+                System.out.printf("%-40s %10.3fms %10.3fms %10.3fms %10.3fms%n", name,
+                        before.get(name)[0], after.get(name)[0],
+                        before.get(name)[1], after.get(name)[1]);
+            }
+        }
+    }
+
+    void seed(Connection connection) throws SQLException {
+        if (count(connection, "hf_job") >= jobs
+                && count(connection, "hf_task") >= (long) jobs * tasksPerJob
+                && count(connection, "hf_data") >= data) {
+            return;
+        }
+        execute(connection, "DELETE FROM hf_task", "DELETE FROM hf_job", "DELETE FROM hf_data");
+
+        Random random = new Random(7);
+        long start = System.currentTimeMillis() - 365L * 24 * 3600 * 1000;
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement job = connection.prepareStatement(
+                "INSERT INTO hf_job (job_id, name, status, binding_id, create_time, update_time)"
+                        + " VALUES (?, ?, ?, ?, ?, ?)");
+             PreparedStatement task = connection.prepareStatement(
+                     "INSERT INTO hf_task (task_id, job_id, name, node, status, binding_id,"
+                             + " create_time, update_time, previous, next) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement item = connection.prepareStatement(
+                     "INSERT INTO hf_data (data_id, name, category, binding_id, create_time)"
+                             + " VALUES (?, ?, ?, ?, ?)")) {
+
+            int pending = 0;
+            for (int i = 0; i < jobs; i++) {
+                int roll = random.nextInt(100);
+                int status = roll < 2 ? RUNNING : roll < 10 ? FAILED : SUCCEEDED;
+                // jobs of the native scheduler have no binding
+                boolean native_ = status == RUNNING && random.nextBoolean();
+                Timestamp time = new Timestamp(start + (long) i * 31_536L);
+
+                job.setString(1, jobId(i));
+                job.setString(2, "job-" + i);
+                job.setInt(3, status);
+                job.setString(4, native_ ? null : "binding-" + i);
+                job.setTimestamp(5, time);
+                job.setTimestamp(6, time);
+                job.addBatch();
+
+                for (int t = 0; t < tasksPerJob; t++) {
+                    task.setString(1, taskId(i, t));
+                    task.setString(2, jobId(i));
+                    task.setString(3, "task-" + t);
+                    task.setString(4, "node-" + t);
+                    task.setString(5, status == RUNNING && t == tasksPerJob - 1 ? "RUNNING" : "SUCCEEDED");
+                    task.setString(6, native_ ? null : "binding-" + i + "-" + t);
+                    task.setTimestamp(7, time);
+                    task.setTimestamp(8, time);
+                    task.setString(9, "[\"node-" + (t - 1) + "\"]");
+                    task.setString(10, "[\"node-" + (t + 1) + "\"]");
+                    task.addBatch();
+                }
+
+                pending += 1 + tasksPerJob;
+                if (pending >= BATCH) {
+                    job.executeBatch();
+                    task.executeBatch();
+                    connection.commit();
+                    pending = 0;
+                }
+            }
+            job.executeBatch();
+            task.executeBatch();
+
+            for (int i = 0; i < data; i++) {
+                int roll = random.nextInt(100);
+                item.setString(1, dataId(i));
+                item.setString(2, "data-" + i);
+                item.setInt(3, roll < 80 ? USER_DATA : roll < 95 ? INTERMEDIATE_DATA : RESULT_DATA);
+                item.setString(4, "data-binding-" + i);
+                item.setTimestamp(5, new Timestamp(start + (long) i * 315_360L));
+                item.addBatch();
+                if ((i + 1) % BATCH == 0) {
+                    item.executeBatch();
+                }
+            }
+            item.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * @return p50 and p99 in milliseconds by query
+     */
+    Map<String, double[]> measure(Connection connection) throws SQLException {
+        Map<String, double[]> latencies = new LinkedHashMap<>();
+        for (Shape shape : shapes()) {
+            Random random = new Random(11);
+            try (PreparedStatement statement = connection.prepareStatement(shape.sql)) {
+                for (int i = 0; i < WARMUP; i++) {
+                    run(statement, shape, random);
+                }
+                double[] samples = new double[runs];
+                for (int i = 0; i < runs; i++) {
+                    samples[i] = run(statement, shape, random) / 1e6;
+                }
+                Arrays.sort(samples);
+                latencies.put(shape.name, new double[]{
+                        samples[samples.length / 2],
+                        samples[Math.min(samples.length - 1, (int) Math.ceil(samples.length * 0.99) - 1)]});
+            }
+        }
+        return latencies;
+    }
+
+    static long run(PreparedStatement statement, Shape shape, Random random) throws SQLException {
+        shape.binder.bind(statement, random);
+        long start = System.nanoTime();
+        try (ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                result.getString(1);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    static long count(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return result.next() ? result.getLong(1) : 0;
+        }
+    }
+
+    static void execute(Connection connection, String... sqls) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : sqls) {
+                statement.execute(sql);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.baidu.highflip.server.respository;
+
+import com.baidu.highflip.core.entity.runtime.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bytes allocated by reading the statuses of the tasks of a job, as whole
+ * tasks that never touch their JSON attributes, as whole tasks that do, which
+ * is what every load cost while those were parsed eagerly, and as
+ * {@link TaskStatusView}.
+ * <p>
+ * Run with -Dhighflip.benchmark=true, -Dhighflip.benchmark.tasks sets the
+ * number of tasks.
+ */
+@DataJpaTest
+@EnabledIfSystemProperty(named = "highflip.benchmark", matches = "true")
+public class TaskProjectionBenchmark {
+
+    static final String JOB_ID = "benchmark-job";
+
+    static final int WARMUP = 5;
+
+    static final int ROUNDS = 20;
+
+    @Autowired
+    TaskRepository tasks;
+
+    @Autowired
+    TestEntityManager entities;
+
+    @BeforeEach
+    public void seed() {
+        int count = Integer.getInteger("highflip.benchmark.tasks", 2000);
+        List<Task> seeded = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Task task = new Task();
+            task.setJobid(JOB_ID);
+            task.setName("task-" + i);
+            task.setNodeName("node-" + i);
+            task.setStatus("RUNNING");
+            task.setPrevious(List.of("node-" + (i - 1)));
+            task.setNext(List.of("node-" + (i + 1)));
+            task.setOutputData(List.of("data-" + i, "model-" + i));
+            task.setBinding(Map.of("component", "hetero_lr_" + i, "role", "guest", "party", 9999));
+            seeded.add(task);
+        }
+        tasks.saveAll(seeded);
+        entities.flush();
+        entities.clear();
+    }
+
+    @Test
+    public void testAllocationPerQuery() {
+        long entity = measure(() -> tasks.findAllByJobid(JOB_ID).forEach(Task::getStatus));
+        long parsed = measure(() -> tasks.findAllByJobid(JOB_ID).forEach(t -> {
+            t.getPrevious();
+            t.getNext();
+            t.getOutputData();
+            t.getBinding();
+        }));
+        long view = measure(() -> tasks.findStatusesByJobid(JOB_ID).forEach(TaskStatusView::getStatus));
+
+        System.out.printf("tasks with parsed JSON: %,d bytes/query%n", parsed);
+        System.out.printf("tasks with lazy JSON:   %,d bytes/query%n", entity);
+        System.out.printf("task status view:       %,d bytes/query%n", view);
+
+        assertTrue(entity < parsed);
+        assertTrue(view < entity);
+    }
+
+    long measure(Runnable query) {
+        for (int i = 0; i < WARMUP; i++) {
+            entities.clear();
+            query.run();
+        }
+
+        long total = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            entities.clear();
+            long before = allocated();
+            query.run();
+            total += allocated() - before;
+        }
+        return total / ROUNDS;
+    }
+
+    static long allocated() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,158 @@
+package com.baidu.highflip.server.respository.log;
+
+import com.baidu.highflip.core.entity.runtime.Partner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LogRepositoryTest {
+
+    /**
+     * Transactions without a resource, for the synchronization only.
+     */
+    static class SynchronizationOnly extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+
+    @TempDir
+    Path directory;
+
+    MetadataLog store;
+
+    LogPartnerRepository partners;
+
+    final TransactionTemplate transactions = new TransactionTemplate(new SynchronizationOnly());
+
+    @BeforeEach
+    public void initialize() throws IOException {
+        store = new MetadataLog();
+        store.path = directory.toString();
+        store.mapSize = 1;
+        store.sync = false;
+        store.flushInterval = 60_000;
+        store.compactInterval = 60_000;
+        store.compactMinSize = 16;
+        store.compactGarbageRatio = 0.5;
+        store.initialize();
+
+        partners = new LogPartnerRepository();
+        partners.store = store;
+        partners.initialize();
+    }
+
+    @AfterEach
+    public void close() {
+        store.destroy();
+    }
+
+    static Partner partner(String id, String name) {
+        Partner partner = new Partner();
+        partner.setPartnerId(id);
+        partner.setName(name);
+        return partner;
+    }
+
+    static List<String> ids(List<Partner> partners) {
+        return partners.stream()
+                .map(Partner::getPartnerId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testCommit() {
+        transactions.executeWithoutResult(status -> {
+            partners.save(partner("a", "alice"));
+            // read back in the transaction, stored on commit
+            assertEquals("alice", partners.findById("a").orElseThrow().getName());
+            assertTrue(partners.existsById("a"));
+            assertFalse(store.contains("partner", "a"));
+        });
+        assertTrue(store.contains("partner", "a"));
+
+        transactions.executeWithoutResult(status -> {
+            partners.deleteById("a");
+            assertTrue(partners.findById("a").isEmpty());
+            assertTrue(store.contains("partner", "a"));
+        });
+        assertFalse(partners.existsById("a"));
+    }
+
+    @Test
+    public void testRollback() {
+        partners.save(partner("a", "alice"));
+
+        assertThrows(IllegalStateException.class, () -> transactions.executeWithoutResult(status -> {
+            partners.save(partner("a", "anna"));
+            partners.save(partner("b", "bob"));
+            throw new IllegalStateException("failed");
+        }));
+        assertEquals("alice", partners.findById("a").orElseThrow().getName());
+        assertFalse(partners.existsById("b"));
+    }
+
+    @Test
+    public void testSort() {
+        partners.save(partner("a", "carol"));
+        partners.save(partner("b", "Alice"));
+        partners.save(partner("c", null));
+        partners.save(partner("d", "bob"));
+
+        assertEquals(List.of("c", "b", "d", "a"), ids(partners.findAll(Sort.by("name"))));
+        assertEquals(List.of("c", "b", "d", "a"), ids(partners.findAll(Sort.by(Sort.Order.asc("name").ignoreCase()))));
+        assertEquals(List.of("a", "d", "b", "c"), ids(partners.findAll(Sort.by(Sort.Order.desc("name").nullsLast()))));
+        assertEquals(List.of("d", "a"), ids(partners.findAll(PageRequest.of(1, 2, Sort.by("name"))).getContent()));
+        assertThrows(IllegalArgumentException.class, () -> partners.findAll(Sort.by("unknown")));
+    }
+
+    @Test
+    public void testExample() {
+        partners.save(partner("a", "alice"));
+        partners.save(partner("b", "Albert"));
+        partners.save(partner("c", "bob"));
+
+        assertEquals(List.of("c"), ids(partners.findAll(Example.of(partner(null, "bob")))));
+        assertEquals(List.of("a", "b"), ids(partners.findAll(Example.of(partner(null, "al"), ExampleMatcher.matching()
+                .withStringMatcher(ExampleMatcher.StringMatcher.STARTING)
+                .withIgnoreCase()))));
+        assertEquals(List.of("b", "a"), ids(partners.findAll(Example.of(partner(null, "AL"), ExampleMatcher.matching()
+                .withMatcher("name", matcher -> matcher.startsWith().ignoreCase())), Sort.by("name"))));
+        assertEquals(3, partners.count(Example.of(new Partner())));
+        assertFalse(partners.exists(Example.of(partner(null, "carol"))));
+        assertEquals("a", partners.findOne(Example.of(partner("a", null))).orElseThrow().getPartnerId());
+    }
+}
@@ -0,0 +1,139 @@
+package com.baidu.highflip.server.respository.log;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetadataLogTest {
+
+    @TempDir
+    Path directory;
+
+    MetadataLog store;
+
+    MetadataLog open() throws IOException {
+        MetadataLog log = new MetadataLog();
+        log.path = directory.toString();
+        log.mapSize = 1;
+        log.sync = false;
+        log.flushInterval = 60_000;
+        log.compactInterval = 60_000;
+        log.compactMinSize = 16;
+        log.compactGarbageRatio = 0.5;
+        log.initialize();
+        return log;
+    }
+
+    void reopen() throws IOException {
+        store.destroy();
+        store = open();
+    }
+
+    @AfterEach
+    public void close() {
+        if (store != null) {
+            store.destroy();
+        }
+    }
+
+    static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testPutGetDelete() throws IOException {
+        store = open();
+        store.put("job", "a", bytes("1"));
+        store.put("job", "b", bytes("2"));
+        store.put("task", "a", bytes("3"));
+        store.put("job", "a", bytes("4"));
+
+        assertArrayEquals(bytes("4"), store.get("job", "a"));
+        assertArrayEquals(bytes("3"), store.get("task", "a"));
+        assertEquals(List.of("a", "b"), List.copyOf(store.keys("job")));
+
+        assertTrue(store.delete("job", "b"));
+        assertFalse(store.delete("job", "b"));
+        assertNull(store.get("job", "b"));
+        assertEquals(1, store.count("job"));
+        assertTrue(store.getGarbageBytes() > 0);
+    }
+
+    @Test
+    public void testRecover() throws IOException {
+        store = open();
+        store.put("job", "a", bytes("1"));
+        store.put("job", "b", bytes("2"));
+        store.put("job", "a", bytes("3"));
+        store.delete("job", "b");
+
+        reopen();
+
+        assertArrayEquals(bytes("3"), store.get("job", "a"));
+        assertNull(store.get("job", "b"));
+        assertEquals(1, store.count("job"));
+
+        store.put("job", "c", bytes("4"));
+        reopen();
+        assertEquals(List.of("a", "c"), List.copyOf(store.keys("job")));
+    }
+
+    @Test
+    public void testDiscardIncompleteRecord() throws IOException {
+        store = open();
+        store.put("job", "a", bytes("1"));
+        int end = store.position;
+        store.put("job", "b", bytes("2"));
+        // as if the crash happened while the row was written
+        store.buffer.put(store.position - 1, (byte) 'x');
+
+        reopen();
+
+        assertArrayEquals(bytes("1"), store.get("job", "a"));
+        assertNull(store.get("job", "b"));
+        assertEquals(end, store.position);
+
+        store.put("job", "c", bytes("3"));
+        reopen();
+        assertEquals(List.of("a", "c"), List.copyOf(store.keys("job")));
+    }
+
+    @Test
+    public void testGrowAndCompact() throws IOException {
+        store = open();
+        byte[] row = new byte[4096];
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 200; i++) {
+                row[0] = (byte) round;
+                store.put("data", "d" + i, row);
+            }
+        }
+        for (int i = 100; i < 200; i++) {
+            store.delete("data", "d" + i);
+        }
+        int before = store.position;
+
+        store.compact();
+
+        assertTrue(store.position < before / 4);
+        assertEquals(0, store.getGarbageBytes());
+        assertEquals(100, store.count("data"));
+        assertEquals(2, store.get("data", "d42")[0]);
+
+        reopen();
+        assertEquals(100, store.count("data"));
+        assertEquals(2, store.get("data", "d99")[0]);
+        assertNull(store.get("data", "d100"));
+    }
+}
@@ -0,0 +1,117 @@
+package com.baidu.highflip.server.respository.routing;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routes between two local H2 databases, with replication done by hand.
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    DataSource primary;
+
+    DataSource replica;
+
+    ReplicaRoutingDataSource routing;
+
+    static DataSource open(String name) throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        execute(dataSource, "CREATE TABLE node (name VARCHAR(16))");
+        execute(dataSource, "INSERT INTO node VALUES ('" + name + "')");
+        return dataSource;
+    }
+
+    static void execute(DataSource dataSource, String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    static String node(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT name FROM node")) {
+            result.next();
+            return result.getString(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    void replicate(long beatTime) throws SQLException {
+        execute(replica, ReplicaRoutingDataSource.CREATE_HEARTBEAT);
+        execute(replica, "MERGE INTO hf_heartbeat KEY (id) VALUES (1, " + beatTime + ")");
+    }
+
+    @BeforeEach
+    public void initialize() throws SQLException {
+        primary = open("primary");
+        replica = open("replica");
+        // checked by hand, without the heartbeat thread
+        routing = new ReplicaRoutingDataSource(primary, Map.of("replica-0", replica), 5000, 0);
+        routing.afterPropertiesSet();
+    }
+
+    @AfterEach
+    public void destroy() throws SQLException {
+        execute(primary, "DROP ALL OBJECTS");
+        execute(replica, "DROP ALL OBJECTS");
+    }
+
+    @Test
+    public void testReadPrimaryWithoutHeartbeat() {
+        routing.check();
+
+        assertEquals("primary", ReplicaRoutingDataSource.read(() -> node(routing)));
+        assertEquals("primary", node(routing));
+    }
+
+    @Test
+    public void testReadReplicaWithinBudget() throws SQLException {
+        routing.check();
+        replicate(System.currentTimeMillis());
+        routing.check();
+
+        assertEquals("replica", ReplicaRoutingDataSource.read(() -> node(routing)));
+        assertEquals("primary", node(routing));
+    }
+
+    @Test
+    public void testReadPrimaryWhenReplicaLags() throws SQLException {
+        replicate(System.currentTimeMillis() - 10_000);
+        routing.check();
+
+        assertEquals("primary", ReplicaRoutingDataSource.read(() -> node(routing)));
+    }
+
+    @Test
+    public void testFindMissOnPrimary() throws SQLException {
+        routing.check();
+        replicate(System.currentTimeMillis());
+        routing.check();
+        // created on the primary, not yet replicated
+        execute(primary, "INSERT INTO node VALUES ('created')");
+
+        Optional<String> found = ReplicaRoutingDataSource.read(() -> ReplicaRoutingDataSource.find(() ->
+                Optional.of(node(routing)).filter(n -> !n.equals("replica"))));
+        assertEquals(Optional.of("primary"), found);
+        assertEquals("replica", ReplicaRoutingDataSource.read(() -> {
+            ReplicaRoutingDataSource.primary(() -> node(routing));
+            return node(routing);
+        }));
+    }
+}
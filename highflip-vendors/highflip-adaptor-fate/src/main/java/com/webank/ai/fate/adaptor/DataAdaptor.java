@@ -7,6 +7,7 @@ import com.baidu.highflip.core.entity.runtime.basic.DataCategory;
 import com.baidu.highflip.core.entity.runtime.basic.KeyPair;
 import com.baidu.highflip.core.utils.Foreach;
 import com.webank.ai.fate.client.form.ResultForm;
+import com.webank.ai.fate.common.CsvRowIterator;
 import com.webank.ai.fate.common.DataMultipartFile;
 import com.webank.ai.fate.common.DecompressUtils;
 import com.webank.ai.fate.context.FateContext;
@@ -19,7 +20,6 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -79,35 +79,33 @@ public class DataAdaptor implements com.baidu.highflip.core.adaptor.DataAdaptor
             log.info("jobId: {}, componentName: {}, role: {}, partyId: {}",
                      jobId, componentName, role, partyId);
 
-            try (Response response = getContext().getClient()
-                                                 .downloadComponentResultData(jobId, componentName,
-                                                                              role, partyId)) {
-                String content = DecompressUtils.decompressTarGzToStringMap(
-                        response.body().asInputStream(),
-                        s -> s.contains("csv")).get("data.csv");
-                return Arrays.stream(content.split("\n"))
-                             .map(s -> Arrays.stream(s.split(DEFAULT_DELIMITER))
-                                             .map(d -> (Object) d)
-                                             .collect(Collectors.toList()))
-                             .collect(Collectors.toList()).iterator();
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
+            Response response = getContext().getClient()
+                                            .downloadComponentResultData(jobId, componentName,
+                                                                         role, partyId);
+            return readCsv(response, "data.csv", data);
         } else {
-            try (Response response = getContext().getClient()
-                                                 .downloadData(data.getName(),
-                                                               DEFAULT_NAMESPACES)) {
-                String content = DecompressUtils.decompressTarGzToStringMap(
-                        response.body().asInputStream(),
-                        s -> s.contains("csv")).get("table.csv");
-                return Arrays.stream(content.split("\n"))
-                             .map(s -> Arrays.stream(s.split(DEFAULT_DELIMITER))
-                                             .map(d -> (Object) d)
-                                             .collect(Collectors.toList()))
-                             .collect(Collectors.toList()).iterator();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+            Response response = getContext().getClient()
+                                            .downloadData(data.getName(), DEFAULT_NAMESPACES);
+            return readCsv(response, "table.csv", data);
+        }
+    }
+
+    /**
+     * Streams the csv out of a downloaded archive. The response stays open
+     * until the returned iterator has been read to the end or closed.
+     */
+    CsvRowIterator readCsv(Response response, String fileName, Data data) {
+        try {
+            InputStream csv = DecompressUtils.openTarGzEntry(
+                    response.body().asInputStream(), fileName::equals);
+            if (csv == null) {
+                response.close();
+                throw new RuntimeException(String.format("%s not found for data %s.", fileName, data.getDataId()));
             }
+            return new CsvRowIterator(csv, data.getColumns());
+        } catch (IOException e) {
+            response.close();
+            throw new RuntimeException(e);
         }
     }
 
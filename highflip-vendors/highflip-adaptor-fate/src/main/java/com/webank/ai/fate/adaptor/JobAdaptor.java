@@ -10,15 +10,16 @@ import com.baidu.highflip.core.entity.runtime.basic.Status;
 import com.webank.ai.fate.client.form.ResultForm;
 import com.webank.ai.fate.client.form.job.FateJob;
 import com.webank.ai.fate.client.form.job.QueryJob;
-import com.webank.ai.fate.client.form.task.FFateTask;
+import com.webank.ai.fate.client.form.log.LogLine;
 import com.webank.ai.fate.client.form.task.FateTask;
 import com.webank.ai.fate.context.FateContext;
 import com.webank.ai.fate.translator.DSLTranslator;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
-import org.springframework.util.CollectionUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +30,8 @@ import java.util.stream.Collectors;
 @Getter
 public class JobAdaptor implements com.baidu.highflip.core.adaptor.JobAdaptor {
 
+    static final String JOB_LOG_TYPE = "jobSchedule";
+
     FateContext context;
 
     public JobAdaptor(FateContext context) {
@@ -42,10 +45,20 @@ public class JobAdaptor implements com.baidu.highflip.core.adaptor.JobAdaptor {
 
     @Override
     public com.baidu.highflip.core.entity.runtime.Job createJob(com.baidu.highflip.core.entity.runtime.Job job) {
+        return submitJob(job, translateJob(job));
+    }
 
-        DSLTranslator.FateDAG dag = getContext()
+    @Override
+    public DSLTranslator.FateDAG translateJob(com.baidu.highflip.core.entity.runtime.Job job) {
+        return getContext()
                 .getTranslator()
                 .translate(job.getGraph());
+    }
+
+    @Override
+    public com.baidu.highflip.core.entity.runtime.Job submitJob(com.baidu.highflip.core.entity.runtime.Job job,
+                                                                Object translated) {
+        DSLTranslator.FateDAG dag = (DSLTranslator.FateDAG) translated;
 
         String bindId = getContext()
                 .getClient()
@@ -58,20 +71,27 @@ public class JobAdaptor implements com.baidu.highflip.core.adaptor.JobAdaptor {
     @Override
     public com.baidu.highflip.core.entity.runtime.Job updateJob(com.baidu.highflip.core.entity.runtime.Job job) {
 
-        String bindId = job.getJobId();
         final Iterable<Task> tasks =
-                getContext().getHighFlipRuntime().listTask(bindId);
+                getContext().getHighFlipRuntime().listTask(job.getJobId());
+
+        // one listTask call for the whole job instead of a taskQuery per task
+        Map<String, FateTask> fateTasks = getContext().getClient()
+                .listTask(job.getBingingId(), 1, Integer.MAX_VALUE)
+                .getData()
+                .getTasks()
+                .stream()
+                .collect(Collectors.toMap(FateTask::getTask_id, t -> t, (first, second) -> first));
+
+        List<Task> changed = new ArrayList<>();
         for (Task task : tasks) {
-            ResultForm<List<FFateTask>> result =
-                    getContext().getClient().taskQuery(task.getBingingId());
-            if (CollectionUtils.isEmpty(result.getData())) {
-                throw new RuntimeException("task not found, task: " + task);
+            final FateTask fateTask = fateTasks.get(task.getBingingId());
+            if (fateTask == null) {
+                log.warn("task not found in fate, task: {}", task.getBingingId());
+                continue;
             }
-            final FFateTask fFateTask = result.getData().get(0);
-            final String f_status = fFateTask.getF_status();
-            final Status taskStatus = convertToHighFlipStatus(f_status);
 
-            if (task.getStatus().equals(taskStatus)) {
+            final Status taskStatus = convertToHighFlipStatus(fateTask.getStatus());
+            if (taskStatus.name().equals(task.getStatus())) {
                 // task status has not changed
                 continue;
             }
@@ -83,8 +103,8 @@ public class JobAdaptor implements com.baidu.highflip.core.adaptor.JobAdaptor {
                                        "taskId", task.getTaskid(),
                                        "taskBingingId", task.getBingingId(),
                                        "componentName", task.getName(),
-                                       "role",fFateTask.getF_role(),
-                                       "partyId",fFateTask.getF_party_id()));
+                                       "role", fateTask.getRole(),
+                                       "partyId", fateTask.getParty_id()));
                 data.setFormat(DataMode.DENSE);
                 data.setCategory(DataCategory.RESULT_DATA);
                 getContext().getHighFlipRuntime().registerData(data);
@@ -92,12 +112,20 @@ public class JobAdaptor implements com.baidu.highflip.core.adaptor.JobAdaptor {
                 task.setOutputData(List.of(data.getDataId()));
             }
             task.setStatus(taskStatus.name());
-            getContext().getHighFlipRuntime().updateTask(task);
+            changed.add(task);
+        }
+
+        if (!changed.isEmpty()) {
+            getContext().getHighFlipRuntime().updateTasks(changed);
+            log.info("updated {} tasks of job {}", changed.size(), job.getJobId());
         }
         return job;
     }
 
     private Status convertToHighFlipStatus(String fateStatus) {
+        if (fateStatus == null) {
+            return Status.UNKNOWN;
+        }
         switch (fateStatus) {
             case "success":
                 return Status.SUCCEEDED;
@@ -153,7 +181,7 @@ public class JobAdaptor implements com.baidu.highflip.core.adaptor.JobAdaptor {
     @Override
     public int getJobCount() {
         log.info("client get job count");
-        return getContext().getClient().listJob(1, Integer.MAX_VALUE).getData().getCount();
+        return getContext().getClient().listJob(1, 1).getData().getCount();
     }
 
     @Override
@@ -163,6 +191,23 @@ public class JobAdaptor implements com.baidu.highflip.core.adaptor.JobAdaptor {
         return FateJob.convertToEntity(response);
     }
 
+    /**
+     * FATE pages are 1-based, so the offset is expected to be a multiple of the limit.
+     */
+    @Override
+    public List<com.baidu.highflip.core.entity.runtime.Job> getJobPage(int offset, int limit) {
+        List<FateJob> jobs = getContext().getClient()
+                .listJob(offset / limit + 1, limit)
+                .getData()
+                .getJobs();
+        if (jobs == null) {
+            return List.of();
+        }
+        return jobs.stream()
+                .map(FateJob::convertToEntity)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public Optional<com.baidu.highflip.core.entity.runtime.Job> moreJob(com.baidu.highflip.core.entity.runtime.Job job, HighFlipRuntime runtime) {
         return Optional.empty();
@@ -170,7 +215,7 @@ public class JobAdaptor implements com.baidu.highflip.core.adaptor.JobAdaptor {
 
     @Override
     public int getTaskCount(com.baidu.highflip.core.entity.runtime.Job job) {
-        return getContext().getClient().listTask(job.getBingingId(), 1, Integer.MAX_VALUE).getData().getCount();
+        return getContext().getClient().listTask(job.getBingingId(), 1, 1).getData().getCount();
     }
 
     @Override
@@ -184,18 +229,36 @@ public class JobAdaptor implements com.baidu.highflip.core.adaptor.JobAdaptor {
             // task bind job id in highflip
             queryTask.setJobid(job.getJobId());
             queryTask.setTaskid(ret.getTaskid());
-            BeanUtils.copyProperties(queryTask, ret);
+            // ret may be saved already, keep its version
+            BeanUtils.copyProperties(queryTask, ret, "version");
         }
         return tasks;
     }
 
+    /**
+     * The job log is the schedule log of FATE Flow.
+     */
     @Override
     public int getJobLogCount(com.baidu.highflip.core.entity.runtime.Job job) {
-        return 0;
+        Integer size = getContext().getClient()
+                .logSize(job.getBingingId(), JOB_LOG_TYPE, null, null, null)
+                .getData();
+        return size == null ? 0 : size;
     }
 
     @Override
     public Iterator<String> getJobLog(com.baidu.highflip.core.entity.runtime.Job job, int offset, int limit) {
-        return null;
+        if (limit <= 0) {
+            return Collections.emptyIterator();
+        }
+        List<LogLine> lines = getContext().getClient()
+                .logCat(job.getBingingId(), JOB_LOG_TYPE, null, null, null, offset + 1, offset + limit)
+                .getData();
+        if (lines == null) {
+            return Collections.emptyIterator();
+        }
+        return lines.stream()
+                .map(LogLine::getContent)
+                .iterator();
     }
 }
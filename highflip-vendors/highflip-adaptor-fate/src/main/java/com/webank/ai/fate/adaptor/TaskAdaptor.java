@@ -4,13 +4,16 @@ import com.baidu.highflip.core.entity.runtime.Task;
 import com.baidu.highflip.core.entity.runtime.basic.Action;
 import com.baidu.highflip.core.entity.runtime.basic.Status;
 import com.baidu.highflip.core.exception.HighFlipException;
+import com.webank.ai.fate.client.form.log.LogLine;
 import com.webank.ai.fate.client.form.task.FFateTask;
 import com.webank.ai.fate.client.form.task.FateTask;
 import com.webank.ai.fate.context.FateContext;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -21,8 +24,24 @@ import org.springframework.util.CollectionUtils;
 @Getter
 public class TaskAdaptor implements com.baidu.highflip.core.adaptor.TaskAdaptor {
 
+    static final String TASK_LOG_TYPE = "componentInfo";
+
+    static final int LOG_SOURCE_CACHE_SIZE = 1024;
+
     FateContext context;
 
+    /**
+     * FATE tasks by binding id, for the identifiers of their logs, which do
+     * not change, so reading a log takes one call.
+     */
+    final Map<String, FFateTask> logSources = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, FFateTask> eldest) {
+                    return size() > LOG_SOURCE_CACHE_SIZE;
+                }
+            });
+
     public TaskAdaptor(FateContext context) {
         this.context = context;
     }
@@ -72,7 +91,7 @@ public class TaskAdaptor implements com.baidu.highflip.core.adaptor.TaskAdaptor
 
     @Override
     public int getTaskCount() {
-        return getContext().getClient().listTask(null, 1, Integer.MAX_VALUE).getData().getCount();
+        return getContext().getClient().listTask(null, 1, 1).getData().getCount();
     }
 
     @Override
@@ -81,18 +100,84 @@ public class TaskAdaptor implements com.baidu.highflip.core.adaptor.TaskAdaptor
         return FateTask.convertToEntity(getContext().getClient().listTask(null, index+1, 1).getData().getTasks().get(0));
     }
 
+    /**
+     * FATE pages are 1-based, so the offset is expected to be a multiple of the limit.
+     */
+    @Override
+    public List<Task> getTaskPage(int offset, int limit) {
+        List<FateTask> tasks = getContext().getClient()
+                .listTask(null, offset / limit + 1, limit)
+                .getData()
+                .getTasks();
+        if (tasks == null) {
+            return List.of();
+        }
+        return tasks.stream()
+                .map(t -> {
+                    Task task = FateTask.convertToEntity(t);
+                    task.setJobid(t.getJob_id());
+                    return task;
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * FATE runs whole jobs only, so native scheduling is refused, see
+     * {@link #canInvokeTask()}.
+     */
     @Override
     public void invokeTask(Task task) {
 
     }
 
+    /**
+     * The task log is the component info log of the party running the task.
+     */
     @Override
     public int getTaskLogCount(Task task) {
-        return 0;
+        FFateTask fateTask = getLogSource(task);
+        Integer size = getContext().getClient()
+                .logSize(fateTask.getF_job_id(), TASK_LOG_TYPE,
+                        fateTask.getF_role(), fateTask.getF_party_id(), fateTask.getF_component_name())
+                .getData();
+        return size == null ? 0 : size;
     }
 
     @Override
     public Iterator<String> getTaskLog(Task task, int offset, int limit) {
-        return null;
+        if (limit <= 0) {
+            return Collections.emptyIterator();
+        }
+        FFateTask fateTask = getLogSource(task);
+        List<LogLine> lines = getContext().getClient()
+                .logCat(fateTask.getF_job_id(), TASK_LOG_TYPE,
+                        fateTask.getF_role(), fateTask.getF_party_id(), fateTask.getF_component_name(),
+                        offset + 1, offset + limit)
+                .getData();
+        if (lines == null) {
+            return Collections.emptyIterator();
+        }
+        return lines.stream()
+                .map(LogLine::getContent)
+                .iterator();
+    }
+
+    FFateTask getLogSource(Task task) {
+        FFateTask fateTask = logSources.get(task.getBingingId());
+        if (fateTask == null) {
+            fateTask = queryTask(task);
+            logSources.put(task.getBingingId(), fateTask);
+        }
+        return fateTask;
+    }
+
+    FFateTask queryTask(Task task) {
+        List<FFateTask> tasks = getContext().getClient()
+                .taskQuery(task.getBingingId())
+                .getData();
+        if (CollectionUtils.isEmpty(tasks)) {
+            throw new RuntimeException("task not found: " + task);
+        }
+        return tasks.get(0);
     }
 }
@@ -8,6 +8,7 @@ import com.webank.ai.fate.client.form.dsl.DslConf;
 import com.webank.ai.fate.client.form.job.FateJob;
 import com.webank.ai.fate.client.form.job.JobData;
 import com.webank.ai.fate.client.form.job.QueryJob;
+import com.webank.ai.fate.client.form.log.LogLine;
 import com.webank.ai.fate.client.form.task.FFateTask;
 import com.webank.ai.fate.client.form.task.TaskData;
 import com.webank.ai.fate.common.deserializer.FeignSpringFormEncoder;
@@ -90,4 +91,25 @@ public interface FateClient {
             @Param(value = "role") String role,
             @Param(value = "party_id") String party_id);
 
+    @RequestLine("POST /v1/log/size")
+    @Headers("Content-Type: application/json")
+    ResultForm<Integer> logSize(@Param(value = "job_id") String jobId,
+            @Param(value = "log_type") String logType,
+            @Param(value = "role") @Nullable String role,
+            @Param(value = "party_id") @Nullable String partyId,
+            @Param(value = "component_name") @Nullable String componentName);
+
+    /**
+     * Lines are numbered from 1, begin and end are both included.
+     */
+    @RequestLine("POST /v1/log/cat")
+    @Headers("Content-Type: application/json")
+    ResultForm<List<LogLine>> logCat(@Param(value = "job_id") String jobId,
+            @Param(value = "log_type") String logType,
+            @Param(value = "role") @Nullable String role,
+            @Param(value = "party_id") @Nullable String partyId,
+            @Param(value = "component_name") @Nullable String componentName,
+            @Param(value = "begin") int begin,
+            @Param(value = "end") int end);
+
 }
@@ -0,0 +1,11 @@
+package com.webank.ai.fate.client.form.log;
+
+import lombok.Data;
+
+@Data
+public class LogLine {
+
+    private int line_num;
+
+    private String content;
+}
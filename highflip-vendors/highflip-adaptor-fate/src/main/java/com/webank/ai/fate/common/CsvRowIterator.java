@@ -0,0 +1,137 @@
+package com.webank.ai.fate.common;
+
+import com.baidu.highflip.core.entity.runtime.basic.Column;
+import com.baidu.highflip.core.entity.runtime.basic.Type;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates the rows of a csv table with a header line, converting every
+ * cell to the type of its column.
+ * <p>
+ * The header row is returned first as strings. Header names are matched
+ * against the column names, then against the column indexes; cells of
+ * unmatched columns stay strings. The stream is closed once the last row
+ * has been read.
+ */
+public class CsvRowIterator implements Iterator<List<Object>>, Closeable {
+
+    private final CsvTokenizer tokenizer;
+
+    private final List<Column> columns;
+
+    private Type[] types = null;
+
+    private boolean ready = false;
+
+    private boolean finished = false;
+
+    public CsvRowIterator(InputStream input, List<Column> columns) {
+        this(new CsvTokenizer(input), columns);
+    }
+
+    public CsvRowIterator(CsvTokenizer tokenizer, List<Column> columns) {
+        this.tokenizer = tokenizer;
+        this.columns = columns == null ? Collections.emptyList() : columns;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!ready && !finished) {
+            try {
+                ready = tokenizer.nextRow();
+                if (!ready) {
+                    close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return ready;
+    }
+
+    @Override
+    public List<Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object[] row = new Object[tokenizer.getFieldCount()];
+        next(row);
+        return Arrays.asList(row);
+    }
+
+    /**
+     * Reads the next row into the given array, which callers may reuse
+     * between rows. Fields beyond the array length are dropped, fields
+     * beyond the header width are read as strings.
+     *
+     * @return number of fields written, -1 at the end
+     */
+    public int next(Object[] row) {
+        if (!hasNext()) {
+            return -1;
+        }
+        ready = false;
+
+        int size = Math.min(row.length, tokenizer.getFieldCount());
+        if (types == null) {
+            types = resolveTypes();
+            for (int i = 0; i < size; i++) {
+                row[i] = tokenizer.getString(i);
+            }
+            return size;
+        }
+        for (int i = 0; i < size; i++) {
+            row[i] = tokenizer.getValue(i, i < types.length ? types[i] : Type.STRING);
+        }
+        return size;
+    }
+
+    Type[] resolveTypes() {
+        Type[] resolved = new Type[tokenizer.getFieldCount()];
+        List<String> names = new ArrayList<>(resolved.length);
+        for (int i = 0; i < resolved.length; i++) {
+            names.add(tokenizer.getString(i).trim());
+        }
+
+        for (int i = 0; i < resolved.length; i++) {
+            resolved[i] = Type.STRING;
+            for (Column column : columns) {
+                if (names.get(i).equals(column.getName())) {
+                    resolved[i] = column.getType();
+                    break;
+                }
+            }
+        }
+        for (Column column : columns) {
+            int index = column.getIndex();
+            if (index >= 0 && index < resolved.length && !names.contains(column.getName())) {
+                resolved[index] = column.getType();
+            }
+        }
+        return resolved;
+    }
+
+    @Override
+    public void close() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        ready = false;
+        try {
+            tokenizer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package com.webank.ai.fate.common;
+
+import com.baidu.highflip.core.entity.runtime.basic.Type;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming csv tokenizer working on bytes.
+ * <p>
+ * Rows are read one at a time into a reused buffer, fields are kept as
+ * offsets into it and only turned into objects when asked for, so numbers
+ * are parsed straight from the bytes without an intermediate String.
+ * Quoted fields may contain delimiters, line breaks and doubled quotes;
+ * an escape byte can be enabled for producers that escape quotes instead.
+ * <p>
+ * Not thread safe. The field accessors refer to the last row read.
+ */
+public class CsvTokenizer implements Closeable {
+
+    public static final byte DEFAULT_DELIMITER = ',';
+
+    public static final byte DEFAULT_QUOTE = '"';
+
+    /**
+     * Escapes are disabled by default.
+     */
+    public static final byte NO_ESCAPE = 0;
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    static final int MAX_EXACT_FLOAT_MANTISSA = 1 << 24;
+
+    static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+            1e21, 1e22};
+
+    static final float[] FLOAT_POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    private final InputStream input;
+
+    private final byte delimiter;
+
+    private final byte quote;
+
+    private final byte escape;
+
+    private final byte[] buffer;
+
+    private int position = 0;
+
+    private int limit = 0;
+
+    private byte[] row = new byte[1024];
+
+    private int length = 0;
+
+    private int[] starts = new int[16];
+
+    private int[] ends = new int[16];
+
+    private int count = 0;
+
+    private long rowNumber = 0;
+
+    public CsvTokenizer(InputStream input) {
+        this(input, DEFAULT_DELIMITER, DEFAULT_QUOTE, NO_ESCAPE);
+    }
+
+    public CsvTokenizer(InputStream input, byte delimiter, byte quote, byte escape) {
+        this.input = input;
+        this.delimiter = delimiter;
+        this.quote = quote;
+        this.escape = escape;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Reads the next row, skipping blank lines.
+     *
+     * @return false at the end of input
+     */
+    public boolean nextRow() throws IOException {
+        count = 0;
+        length = 0;
+
+        int b = read();
+        while (b == '\n' || b == '\r') {
+            b = read();
+        }
+        if (b < 0) {
+            return false;
+        }
+        rowNumber++;
+
+        while (true) {
+            int start = length;
+            if (b == quote) {
+                b = readQuoted();
+            } else {
+                unread();
+                b = readUnquoted();
+            }
+            addField(start, length);
+
+            if (b == delimiter) {
+                b = read();
+                if (b == '\n' || b == '\r' || b < 0) {
+                    // a trailing delimiter ends with an empty field
+                    addField(length, length);
+                    break;
+                }
+                continue;
+            }
+            break;
+        }
+
+        if (b == '\r' && peek() == '\n') {
+            read();
+        }
+        return true;
+    }
+
+    /**
+     * Reads an unquoted field and returns the byte that ended it.
+     */
+    int readUnquoted() throws IOException {
+        while (true) {
+            int i = position;
+            while (i < limit) {
+                byte c = buffer[i];
+                if (c == delimiter || c == '\n' || c == '\r') {
+                    break;
+                }
+                i++;
+            }
+            append(buffer, position, i - position);
+            position = i;
+
+            if (i < limit) {
+                return buffer[position++];
+            }
+            if (!fill()) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Reads a quoted field after its opening quote and returns the byte
+     * following the closing quote.
+     */
+    int readQuoted() throws IOException {
+        while (true) {
+            int b = read();
+            if (b < 0) {
+                throw new IOException("Unterminated quoted field in row " + rowNumber);
+            }
+            if (escape != NO_ESCAPE && b == escape) {
+                b = read();
+                if (b < 0) {
+                    throw new IOException("Dangling escape in row " + rowNumber);
+                }
+                append((byte) b);
+            } else if (b == quote) {
+                if (peek() != quote) {
+                    break;
+                }
+                append((byte) read());
+            } else {
+                append((byte) b);
+            }
+        }
+
+        // text between the closing quote and the delimiter is kept as is
+        int b = read();
+        if (b < 0 || b == delimiter || b == '\n' || b == '\r') {
+            return b;
+        }
+        unread();
+        return readUnquoted();
+    }
+
+    int read() throws IOException {
+        if (position < limit || fill()) {
+            return buffer[position++] & 0xff;
+        }
+        return -1;
+    }
+
+    int peek() throws IOException {
+        if (position < limit || fill()) {
+            return buffer[position] & 0xff;
+        }
+        return -1;
+    }
+
+    /**
+     * Steps back over the byte just read, which is always still in the buffer.
+     */
+    void unread() {
+        if (position > 0) {
+            position--;
+        }
+    }
+
+    boolean fill() throws IOException {
+        int read = input.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            position = 0;
+            limit = 0;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    void append(byte b) {
+        if (length == row.length) {
+            row = Arrays.copyOf(row, row.length * 2);
+        }
+        row[length++] = b;
+    }
+
+    void append(byte[] source, int offset, int size) {
+        if (length + size > row.length) {
+            row = Arrays.copyOf(row, Math.max(row.length * 2, length + size));
+        }
+        System.arraycopy(source, offset, row, length, size);
+        length += size;
+    }
+
+    void addField(int start, int end) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    public int getFieldCount() {
+        return count;
+    }
+
+    /**
+     * @return 1-based number of the last row read, blank lines not counted
+     */
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    public boolean isEmpty(int field) {
+        return starts[field] == ends[field];
+    }
+
+    public String getString(int field) {
+        return new String(row, starts[field], ends[field] - starts[field], StandardCharsets.UTF_8);
+    }
+
+    public boolean getBoolean(int field) {
+        String value = getString(field).trim();
+        if ("1".equals(value) || "true".equalsIgnoreCase(value)) {
+            return true;
+        }
+        if ("0".equals(value) || "false".equalsIgnoreCase(value)) {
+            return false;
+        }
+        throw invalid(field, Type.BOOLEAN);
+    }
+
+    public int getInt(int field) {
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = false;
+        if (i < end && (row[i] == '-' || row[i] == '+')) {
+            negative = row[i] == '-';
+            i++;
+        }
+        // more than 9 digits may overflow, leave those to the jdk
+        if (i == end || end - i > 9) {
+            return parseInt(field);
+        }
+
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = row[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return parseInt(field);
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    int parseInt(int field) {
+        try {
+            return Integer.parseInt(getString(field).trim());
+        } catch (NumberFormatException e) {
+            throw invalid(field, Type.INT);
+        }
+    }
+
+    public long getLong(int field) {
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = false;
+        if (i < end && (row[i] == '-' || row[i] == '+')) {
+            negative = row[i] == '-';
+            i++;
+        }
+        // more than 18 digits may overflow, leave those to the jdk
+        if (i == end || end - i > 18) {
+            return parseLong(field);
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = row[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return parseLong(field);
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    long parseLong(int field) {
+        try {
+            return Long.parseLong(getString(field).trim());
+        } catch (NumberFormatException e) {
+            throw invalid(field, Type.LONG);
+        }
+    }
+
+    /**
+     * Plain decimals whose digits fit in 53 bits are computed with a single
+     * division of two exact doubles, which is correctly rounded. Anything
+     * else, exponents included, goes through the jdk parser.
+     */
+    public double getDouble(int field) {
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = false;
+        if (i < end && (row[i] == '-' || row[i] == '+')) {
+            negative = row[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        boolean any = false;
+        for (; i < end; i++) {
+            byte c = row[i];
+            if (c == '.' && fraction < 0) {
+                fraction = 0;
+                continue;
+            }
+            int digit = c - '0';
+            if (digit < 0 || digit > 9 || digits >= 18) {
+                return parseDouble(field);
+            }
+            any = true;
+            mantissa = mantissa * 10 + digit;
+            if (mantissa > 0) {
+                digits++;
+            }
+            if (fraction >= 0) {
+                fraction++;
+            }
+        }
+
+        if (!any || mantissa > MAX_EXACT_MANTISSA || fraction >= POWERS_OF_TEN.length) {
+            return parseDouble(field);
+        }
+        double value = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+        return negative ? -value : value;
+    }
+
+    double parseDouble(int field) {
+        try {
+            return Double.parseDouble(getString(field).trim());
+        } catch (NumberFormatException e) {
+            throw invalid(field, Type.DOUBLE);
+        }
+    }
+
+    public float getFloat(int field) {
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = false;
+        if (i < end && (row[i] == '-' || row[i] == '+')) {
+            negative = row[i] == '-';
+            i++;
+        }
+
+        int mantissa = 0;
+        int fraction = -1;
+        boolean any = false;
+        for (; i < end; i++) {
+            byte c = row[i];
+            if (c == '.' && fraction < 0) {
+                fraction = 0;
+                continue;
+            }
+            int digit = c - '0';
+            if (digit < 0 || digit > 9 || mantissa > MAX_EXACT_FLOAT_MANTISSA) {
+                return parseFloat(field);
+            }
+            any = true;
+            mantissa = mantissa * 10 + digit;
+            if (fraction >= 0) {
+                fraction++;
+            }
+        }
+
+        if (!any || mantissa > MAX_EXACT_FLOAT_MANTISSA || fraction >= FLOAT_POWERS_OF_TEN.length) {
+            return parseFloat(field);
+        }
+        float value = fraction > 0 ? mantissa / FLOAT_POWERS_OF_TEN[fraction] : mantissa;
+        return negative ? -value : value;
+    }
+
+    float parseFloat(int field) {
+        try {
+            return Float.parseFloat(getString(field).trim());
+        } catch (NumberFormatException e) {
+            throw invalid(field, Type.FLOAT);
+        }
+    }
+
+    /**
+     * Converts a field to the java type of a column type. Empty fields are
+     * null, bytes columns keep their text as it is written downstream.
+     */
+    public Object getValue(int field, Type type) {
+        if (isEmpty(field)) {
+            return null;
+        }
+        switch (type == null ? Type.STRING : type) {
+            case BOOLEAN:
+                return getBoolean(field);
+            case INT:
+                return getInt(field);
+            case LONG:
+                return getLong(field);
+            case FLOAT:
+                return getFloat(field);
+            case DOUBLE:
+                return getDouble(field);
+            case BYTES:
+            case STRING:
+            default:
+                return getString(field);
+        }
+    }
+
+    IllegalArgumentException invalid(int field, Type type) {
+        return new IllegalArgumentException(String.format(
+                "Invalid %s value '%s' at row %d, field %d.", type, getString(field), rowNumber, field));
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
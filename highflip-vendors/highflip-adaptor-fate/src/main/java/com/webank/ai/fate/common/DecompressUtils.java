@@ -36,4 +36,23 @@ public class DecompressUtils {
         }
         return result;
     }
+
+    /**
+     * Opens the first entry of a tar.gz stream accepted by the filter without
+     * reading it into memory. Closing the returned stream closes the source.
+     *
+     * @return null if no entry matched
+     */
+    public static InputStream openTarGzEntry(InputStream tarGzInputStream, Function<String, Boolean> fileNameFilter)
+            throws IOException {
+        TarArchiveInputStream tais = new TarArchiveInputStream(new GZIPInputStream(tarGzInputStream));
+        TarArchiveEntry entry;
+        while ((entry = tais.getNextTarEntry()) != null) {
+            if (entry.isFile() && fileNameFilter.apply(entry.getName())) {
+                return tais;
+            }
+        }
+        tais.close();
+        return null;
+    }
 }
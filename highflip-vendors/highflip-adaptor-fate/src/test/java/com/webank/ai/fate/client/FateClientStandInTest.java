@@ -0,0 +1,126 @@
+package com.webank.ai.fate.client;
+
+import com.webank.ai.fate.client.form.ResultForm;
+import com.webank.ai.fate.client.form.data.Data;
+import com.webank.ai.fate.client.form.dsl.Dsl;
+import com.webank.ai.fate.client.form.dsl.DslConf;
+import com.webank.ai.fate.client.form.job.FateJob;
+import com.webank.ai.fate.client.form.job.JobData;
+import com.webank.ai.fate.client.form.job.QueryJob;
+import com.webank.ai.fate.client.form.task.TaskData;
+import com.webank.ai.fate.common.DataMultipartFile;
+import com.webank.ai.fate.common.DecompressUtils;
+import com.webank.ai.fate.standin.FateFlowStandIn;
+import com.webank.ai.fate.standin.StandInSettings;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.Response;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+public class FateClientStandInTest {
+
+    static FateFlowStandIn flow;
+
+    static FateClient client;
+
+    @BeforeAll
+    public static void startFlow() throws IOException {
+        StandInSettings settings = new StandInSettings();
+        settings.setInitialJobs(20);
+        settings.setJobDuration(300);
+        settings.setTableRows(100);
+        settings.setTableColumns(4);
+
+        flow = FateFlowStandIn.start(settings);
+        client = FateClient.connect(flow.getUrl());
+    }
+
+    @AfterAll
+    public static void stopFlow() {
+        flow.close();
+    }
+
+    @Test
+    public void testJobLifecycle() throws InterruptedException {
+        ResultForm<FateJob> submitted = client.jobSubmit(new Dsl(), new DslConf());
+        String jobId = submitted.getData().getJob_id();
+        assertEquals("running", submitted.getData().getStatus());
+
+        assertTrue(flow.awaitJob(jobId, 10_000));
+
+        List<QueryJob> queried = client.jobQuery(jobId).getData();
+        assertEquals(1, queried.size());
+        assertEquals("success", queried.get(0).getF_status());
+
+        ResultForm<TaskData> tasks = client.listTask(jobId, 1, 10);
+        assertEquals(flow.getSettings().getComponentsPerJob(), tasks.getData().getCount());
+        tasks.getData().getTasks().forEach(t -> assertEquals("success", t.getStatus()));
+    }
+
+    @Test
+    public void testFailedRequest() throws IOException, InterruptedException {
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create(flow.getUrl() + "/v1/job/query"))
+                        .POST(HttpRequest.BodyPublishers.ofString("not json"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(500, response.statusCode());
+        JsonNode result = new ObjectMapper().readTree(response.body());
+        assertEquals(FateFlowStandIn.RETCODE_ERROR, result.path("retcode").asInt());
+        assertTrue(result.has("retmsg"));
+    }
+
+    @Test
+    public void testJobPaging() {
+        ResultForm<JobData> first = client.listJob(1, 8);
+        ResultForm<JobData> third = client.listJob(3, 8);
+
+        assertTrue(first.getData().getCount() >= 20);
+        assertEquals(8, first.getData().getJobs().size());
+        assertTrue(first.getData().getJobs().get(0).getCreate_time()
+                .after(third.getData().getJobs().get(0).getCreate_time()));
+    }
+
+    @Test
+    public void testPushAndDownload() throws IOException {
+        String content = "id,y,x0\n1,0,0.5\n2,1,0.25";
+        ResultForm<Data> pushed = client.pushData(
+                new DataMultipartFile("standin.csv", content.getBytes(StandardCharsets.UTF_8)),
+                ",", "1", "4", "standin_table", "experiment", "", "", "", "1");
+        assertEquals(0, pushed.getRetcode());
+
+        Response response = client.downloadData("standin_table", "experiment");
+        try (InputStream input = response.body().asInputStream()) {
+            String table = DecompressUtils.decompressTarGzToStringMap(input, s -> s.contains("csv")).get("table.csv");
+            assertEquals(content, table);
+        }
+    }
+
+    @Test
+    public void testSyntheticComponentOutput() throws IOException {
+        String jobId = client.listJob(1, 1).getData().getJobs().get(0).getJob_id();
+
+        Response response = client.downloadComponentResultData(jobId, "component_0", "guest", "9999");
+        try (InputStream input = response.body().asInputStream()) {
+            String data = DecompressUtils.decompressTarGzToStringMap(input, s -> s.contains("csv")).get("data.csv");
+            assertEquals(flow.getSettings().getTableRows() + 1, data.split("\n").length);
+        }
+    }
+}
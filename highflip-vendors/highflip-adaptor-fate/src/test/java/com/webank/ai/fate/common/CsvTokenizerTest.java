@@ -0,0 +1,162 @@
+package com.webank.ai.fate.common;
+
+import com.baidu.highflip.core.entity.runtime.basic.Column;
+import com.baidu.highflip.core.entity.runtime.basic.Type;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CsvTokenizerTest {
+
+    static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Hands out one byte per read, so every field crosses a buffer refill.
+     */
+    static InputStream trickle(String content) {
+        return new FilterInputStream(stream(content)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+    }
+
+    static List<List<String>> tokenize(InputStream input) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        try (CsvTokenizer tokenizer = new CsvTokenizer(input)) {
+            while (tokenizer.nextRow()) {
+                List<String> row = new ArrayList<>();
+                for (int i = 0; i < tokenizer.getFieldCount(); i++) {
+                    row.add(tokenizer.getString(i));
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    public void testQuotedFields() throws IOException {
+        String content = "id,name,note\r\n"
+                + "1,\"Smith, John\",\"said \"\"hi\"\"\"\r\n"
+                + "2,\"multi\nline\",\n"
+                + "\n"
+                + "3,,plain";
+        List<List<String>> expected = List.of(
+                List.of("id", "name", "note"),
+                List.of("1", "Smith, John", "said \"hi\""),
+                List.of("2", "multi\nline", ""),
+                List.of("3", "", "plain"));
+
+        assertEquals(expected, tokenize(stream(content)));
+        assertEquals(expected, tokenize(trickle(content)));
+    }
+
+    @Test
+    public void testEscape() throws IOException {
+        String content = "\"a\\\"b\",c\n";
+        try (CsvTokenizer tokenizer = new CsvTokenizer(stream(content),
+                CsvTokenizer.DEFAULT_DELIMITER, CsvTokenizer.DEFAULT_QUOTE, (byte) '\\')) {
+            assertTrue(tokenizer.nextRow());
+            assertEquals("a\"b", tokenizer.getString(0));
+            assertEquals("c", tokenizer.getString(1));
+            assertFalse(tokenizer.nextRow());
+        }
+    }
+
+    @Test
+    public void testUnterminatedQuote() {
+        assertThrows(IOException.class, () -> tokenize(stream("1,\"open\n")));
+    }
+
+    @Test
+    public void testTypedRows() {
+        List<Column> columns = List.of(
+                new Column(0, "id", Type.LONG, ""),
+                new Column(1, "y", Type.INT, ""),
+                new Column(2, "x0", Type.DOUBLE, ""),
+                new Column(3, "x1", Type.FLOAT, ""),
+                new Column(4, "flag", Type.BOOLEAN, ""),
+                new Column(5, "tag", Type.BYTES, ""));
+        CsvRowIterator rows = new CsvRowIterator(
+                stream("id,y,x0,x1,flag,tag,extra\n9007199254740993,-1,0.963102,1.5,true,t1,a\n2,0,-1e-3,,0,,b\n"),
+                columns);
+
+        assertEquals(List.of("id", "y", "x0", "x1", "flag", "tag", "extra"), rows.next());
+        assertEquals(Arrays.asList(9007199254740993L, -1, 0.963102, 1.5f, true, "t1", "a"), rows.next());
+
+        Object[] reused = new Object[7];
+        assertEquals(7, rows.next(reused));
+        assertArrayEquals(new Object[]{2L, 0, -0.001, null, false, null, "b"}, reused);
+        assertEquals(-1, rows.next(reused));
+        assertFalse(rows.hasNext());
+    }
+
+    @Test
+    public void testInvalidNumber() {
+        CsvRowIterator rows = new CsvRowIterator(stream("y\nNA\n"), List.of(new Column(0, "y", Type.INT, "")));
+        rows.next();
+        assertThrows(IllegalArgumentException.class, rows::next);
+    }
+
+    @Test
+    public void testInts() throws IOException {
+        try (CsvTokenizer tokenizer = new CsvTokenizer(stream("7,-2147483648,+2147483647,2147483648,1.5\n"))) {
+            assertTrue(tokenizer.nextRow());
+            assertEquals(7, tokenizer.getInt(0));
+            assertEquals(Integer.MIN_VALUE, tokenizer.getInt(1));
+            assertEquals(Integer.MAX_VALUE, tokenizer.getInt(2));
+            IllegalArgumentException overflow = assertThrows(IllegalArgumentException.class, () -> tokenizer.getInt(3));
+            assertTrue(overflow.getMessage().startsWith("Invalid INT value '2147483648'"), overflow.getMessage());
+            assertThrows(IllegalArgumentException.class, () -> tokenizer.getInt(4));
+        }
+    }
+
+    @Test
+    public void testDoublesMatchJdk() throws IOException {
+        Random random = new Random(7);
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            values.add(String.format(Locale.ROOT, "%.6f", random.nextGaussian() * Math.pow(10, random.nextInt(12) - 6)));
+            values.add(Long.toString(random.nextLong() >> random.nextInt(64)));
+        }
+        values.addAll(List.of("0", "-0.0", "123456789012345678", "1.7976931348623157E308", "NaN", ".5", "5."));
+
+        try (CsvTokenizer tokenizer = new CsvTokenizer(stream(String.join(",", values)))) {
+            assertTrue(tokenizer.nextRow());
+            for (int i = 0; i < values.size(); i++) {
+                String value = values.get(i);
+                assertEquals(Double.parseDouble(value), tokenizer.getDouble(i), value);
+                assertEquals(Float.parseFloat(value), tokenizer.getFloat(i), value);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyCellIsNull() throws IOException {
+        try (CsvTokenizer tokenizer = new CsvTokenizer(stream("1,,3\n"))) {
+            assertTrue(tokenizer.nextRow());
+            assertNull(tokenizer.getValue(1, Type.DOUBLE));
+            assertEquals(3L, tokenizer.getValue(2, Type.LONG));
+        }
+    }
+}
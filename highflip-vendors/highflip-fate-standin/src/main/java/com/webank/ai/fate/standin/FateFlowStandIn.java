@@ -0,0 +1,585 @@
+package com.webank.ai.fate.standin;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-process stand-in of the FATE Flow http api, covering the endpoints
+ * used by FateClient. Jobs progress with the clock, tables are kept in memory
+ * or generated on download, and every request can be delayed or failed on
+ * purpose, so the FATE adaptor can be load tested without a cluster.
+ * <p>
+ * Usage:
+ * <pre>
+ *     try (FateFlowStandIn flow = FateFlowStandIn.start(settings)) {
+ *         FateClient client = FateClient.connect(flow.getUrl());
+ *         ...
+ *     }
+ * </pre>
+ */
+@Slf4j
+public class FateFlowStandIn implements AutoCloseable {
+
+    public static final int RETCODE_SUCCESS = 0;
+
+    public static final int RETCODE_ERROR = 100;
+
+    public static final int RETCODE_NOT_FOUND = 101;
+
+    public static final String DEFAULT_ROLE = "guest";
+
+    public static final int DEFAULT_PARTY_ID = 9999;
+
+    static final DateTimeFormatter JOB_ID_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS").withZone(ZoneId.systemDefault());
+
+    interface JsonEndpoint {
+
+        Map<String, Object> handle(Map<String, Object> params, long now) throws IOException;
+    }
+
+    interface StreamEndpoint {
+
+        void handle(HttpExchange exchange, long now) throws IOException;
+    }
+
+    private final StandInSettings settings;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Map<String, JsonEndpoint> jsonEndpoints = new HashMap<>();
+
+    private final Map<String, StreamEndpoint> streamEndpoints = new HashMap<>();
+
+    private final Map<String, LongAdder> requestCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Job ids start with the create time, so the descending map lists the newest first.
+     */
+    private final ConcurrentNavigableMap<String, StandInJob> jobs = new ConcurrentSkipListMap<>();
+
+    private final AtomicInteger taskCount = new AtomicInteger();
+
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    private final Map<String, byte[]> tables = new ConcurrentHashMap<>();
+
+    private final Map<String, Map<String, Object>> uploads = new ConcurrentHashMap<>();
+
+    private final Random random;
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    public FateFlowStandIn(StandInSettings settings) {
+        this.settings = settings;
+        this.random = new Random(settings.getSeed());
+
+        jsonEndpoints.put("/v1/job/submit", this::submitJob);
+        jsonEndpoints.put("/v1/job/stop", this::stopJob);
+        jsonEndpoints.put("/v1/job/query", this::queryJob);
+        jsonEndpoints.put("/v1/job/list/job", this::listJob);
+        jsonEndpoints.put("/v1/job/task/query", this::queryTask);
+        jsonEndpoints.put("/v1/job/list/task", this::listTask);
+        jsonEndpoints.put("/v1/table/delete", this::deleteTable);
+        jsonEndpoints.put("/v1/data/upload/history", this::uploadHistory);
+        jsonEndpoints.put("/v1/log/size", this::logSize);
+        jsonEndpoints.put("/v1/log/cat", this::logCat);
+        streamEndpoints.put("/v1/data/upload", this::uploadData);
+        streamEndpoints.put("/v1/table/download", this::downloadTable);
+        streamEndpoints.put("/v1/tracking/component/output/data/download", this::downloadComponentOutput);
+    }
+
+    public static FateFlowStandIn start(StandInSettings settings) throws IOException {
+        FateFlowStandIn flow = new FateFlowStandIn(settings);
+        flow.start();
+        return flow;
+    }
+
+    public synchronized void start() throws IOException {
+        long now = System.currentTimeMillis();
+        long span = settings.getJobQueueTime() + settings.getJobDuration();
+        for (int i = settings.getInitialJobs(); i > 0; i--) {
+            createJob(null, null, now - span - i * 1000L, false);
+        }
+
+        executor = Executors.newFixedThreadPool(settings.getThreads());
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), settings.getPort()), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::dispatch);
+        server.start();
+        log.info("FATE Flow stand-in listening at {} with {} jobs.", getUrl(), jobs.size());
+    }
+
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public StandInSettings getSettings() {
+        return settings;
+    }
+
+    public int getJobCount() {
+        return jobs.size();
+    }
+
+    /**
+     * Waits until the job finished, as seen by the next request.
+     *
+     * @return false if it did not finish within the timeout
+     */
+    public boolean awaitJob(String jobId, long timeoutMillis) throws InterruptedException {
+        StandInJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new IllegalArgumentException("No such job " + jobId);
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (long now = System.currentTimeMillis(); !job.isFinished(now); now = System.currentTimeMillis()) {
+            if (now >= deadline) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(Math.min(job.timeToFinish(now), deadline - now));
+        }
+        return true;
+    }
+
+    public long getRequestCount(String path) {
+        LongAdder count = requestCounts.get(path);
+        return count == null ? 0 : count.sum();
+    }
+
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        requestCounts.forEach((path, count) -> counts.put(path, count.sum()));
+        return counts;
+    }
+
+    void dispatch(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            requestCounts.computeIfAbsent(path, p -> new LongAdder()).increment();
+
+            delay();
+            if (settings.getErrorRate() > 0 && ThreadLocalRandom.current().nextDouble() < settings.getErrorRate()) {
+                writeJson(exchange, 500, result(RETCODE_ERROR, "injected failure", null));
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            JsonEndpoint json = jsonEndpoints.get(path);
+            if (json != null) {
+                writeJson(exchange, 200, json.handle(readParams(exchange), now));
+                return;
+            }
+
+            StreamEndpoint stream = streamEndpoints.get(path);
+            if (stream != null) {
+                stream.handle(exchange, now);
+                return;
+            }
+
+            writeJson(exchange, 404, result(RETCODE_NOT_FOUND, "no such endpoint " + path, null));
+        } catch (Exception e) {
+            log.warn("Stand-in request failed: {}", exchange.getRequestURI(), e);
+            writeError(exchange, e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    void delay() {
+        long millis = settings.getLatency();
+        if (settings.getLatencyJitter() > 0) {
+            millis += ThreadLocalRandom.current().nextLong(settings.getLatencyJitter());
+        }
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    StandInJob createJob(JsonNode dsl, JsonNode conf, long createTime, boolean mayFail) {
+        List<String> components = new ArrayList<>();
+        List<String> modules = new ArrayList<>();
+        if (dsl != null && dsl.path("components").isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = dsl.path("components").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                components.add(field.getKey());
+                modules.add(field.getValue().path("module").asText("Unknown"));
+            }
+        }
+        if (components.isEmpty()) {
+            for (int i = 0; i < Math.max(1, settings.getComponentsPerJob()); i++) {
+                components.add("component_" + i);
+                modules.add("Synthetic");
+            }
+        }
+
+        String role = DEFAULT_ROLE;
+        int partyId = DEFAULT_PARTY_ID;
+        if (conf != null && conf.path("initiator").isObject()) {
+            role = conf.path("initiator").path("role").asText(role);
+            partyId = conf.path("initiator").path("party_id").asInt(partyId);
+        }
+
+        boolean failing;
+        synchronized (random) {
+            failing = mayFail && random.nextDouble() < settings.getJobFailureRate();
+        }
+
+        String jobId = JOB_ID_FORMAT.format(Instant.ofEpochMilli(createTime))
+                + String.format("%04d", sequence.getAndIncrement() % 10000);
+        StandInJob job = new StandInJob(jobId, "job_" + jobId, role, partyId, components, modules,
+                createTime, settings.getJobQueueTime(), settings.getJobDuration(), failing);
+        jobs.put(jobId, job);
+        taskCount.addAndGet(components.size());
+        return job;
+    }
+
+    Map<String, Object> submitJob(Map<String, Object> params, long now) {
+        JsonNode dsl = mapper.valueToTree(params.get("job_dsl"));
+        JsonNode conf = mapper.valueToTree(params.get("job_runtime_conf"));
+        StandInJob job = createJob(dsl, conf, now, true);
+
+        Map<String, Object> data = job.toJob(now);
+        data.put("board_url", "");
+        data.put("logs_directory", "");
+        return result(RETCODE_SUCCESS, "success", data);
+    }
+
+    Map<String, Object> stopJob(Map<String, Object> params, long now) {
+        StandInJob job = jobs.get(String.valueOf(params.get("job_id")));
+        if (job == null) {
+            return result(RETCODE_NOT_FOUND, "no job found", null);
+        }
+        if (!job.stop(now)) {
+            return result(RETCODE_ERROR, "job " + job.getJobId() + " has finished", null);
+        }
+        return result(RETCODE_SUCCESS, "success", null);
+    }
+
+    Map<String, Object> queryJob(Map<String, Object> params, long now) {
+        StandInJob job = jobs.get(String.valueOf(params.get("job_id")));
+        if (job == null) {
+            return result(RETCODE_NOT_FOUND, "no job found", Collections.emptyList());
+        }
+        return result(RETCODE_SUCCESS, "success", List.of(StandInJob.toRow(job.toJob(now))));
+    }
+
+    Map<String, Object> listJob(Map<String, Object> params, long now) {
+        int limit = intParam(params, "limit", 10);
+        int offset = (intParam(params, "page", 1) - 1) * limit;
+
+        List<Map<String, Object>> page = new ArrayList<>();
+        int index = 0;
+        for (StandInJob job : jobs.descendingMap().values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            if (index++ >= offset) {
+                page.add(job.toJob(now));
+            }
+        }
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("count", jobs.size());
+        data.put("jobs", page);
+        return result(RETCODE_SUCCESS, "success", data);
+    }
+
+    Map<String, Object> queryTask(Map<String, Object> params, long now) {
+        String taskId = String.valueOf(params.get("task_id"));
+        int split = taskId.indexOf('_');
+        StandInJob job = split > 0 ? jobs.get(taskId.substring(0, split)) : null;
+        int index = job == null ? -1 : job.indexOfTask(taskId);
+        if (index < 0) {
+            return result(RETCODE_NOT_FOUND, "no task found", Collections.emptyList());
+        }
+        return result(RETCODE_SUCCESS, "success", List.of(StandInJob.toRow(job.toTask(index, now))));
+    }
+
+    Map<String, Object> listTask(Map<String, Object> params, long now) {
+        int limit = intParam(params, "limit", 10);
+        int offset = (intParam(params, "page", 1) - 1) * limit;
+        Object jobId = params.get("job_id");
+
+        Iterable<StandInJob> scope;
+        int count;
+        if (jobId == null) {
+            scope = jobs.descendingMap().values();
+            count = taskCount.get();
+        } else {
+            StandInJob job = jobs.get(jobId.toString());
+            scope = job == null ? Collections.emptyList() : List.of(job);
+            count = job == null ? 0 : job.getComponents().size();
+        }
+
+        List<Map<String, Object>> page = new ArrayList<>();
+        int index = 0;
+        for (StandInJob job : scope) {
+            int size = job.getComponents().size();
+            if (index + size <= offset) {
+                index += size;
+                continue;
+            }
+            for (int i = 0; i < size && page.size() < limit; i++, index++) {
+                if (index >= offset) {
+                    page.add(job.toTask(i, now));
+                }
+            }
+            if (page.size() >= limit) {
+                break;
+            }
+        }
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("count", count);
+        data.put("tasks", page);
+        return result(RETCODE_SUCCESS, "success", data);
+    }
+
+    Map<String, Object> deleteTable(Map<String, Object> params, long now) {
+        String name = String.valueOf(params.get("table_name"));
+        String namespace = String.valueOf(params.get("namespace"));
+        if (tables.remove(tableKey(name, namespace)) == null) {
+            return result(RETCODE_NOT_FOUND, "no find table", null);
+        }
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("table_name", name);
+        data.put("namespace", namespace);
+        return result(RETCODE_SUCCESS, "success", data);
+    }
+
+    /**
+     * Component logs when a component name is given, the schedule log otherwise.
+     */
+    Map<String, Object> logSize(Map<String, Object> params, long now) {
+        StandInJob job = jobs.get(String.valueOf(params.get("job_id")));
+        if (job == null) {
+            return result(RETCODE_NOT_FOUND, "no job found", 0);
+        }
+        return result(RETCODE_SUCCESS, "success", job.logSize(componentParam(params), now));
+    }
+
+    Map<String, Object> logCat(Map<String, Object> params, long now) {
+        StandInJob job = jobs.get(String.valueOf(params.get("job_id")));
+        if (job == null) {
+            return result(RETCODE_NOT_FOUND, "no job found", Collections.emptyList());
+        }
+        String component = componentParam(params);
+        int size = job.logSize(component, now);
+        int begin = Math.max(1, intParam(params, "begin", 1));
+        int end = Math.min(size, intParam(params, "end", size));
+
+        List<Map<String, Object>> lines = new ArrayList<>();
+        for (int i = begin; i <= end; i++) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("line_num", i);
+            line.put("content", job.logLine(component, i));
+            lines.add(line);
+        }
+        return result(RETCODE_SUCCESS, "success", lines);
+    }
+
+    static String componentParam(Map<String, Object> params) {
+        Object value = params.get("component_name");
+        return value == null || value.toString().isEmpty() ? null : value.toString();
+    }
+
+    Map<String, Object> uploadHistory(Map<String, Object> params, long now) {
+        Map<String, Object> data = uploads.get(String.valueOf(params.get("job_id")));
+        if (data == null) {
+            return result(RETCODE_NOT_FOUND, "no upload found", null);
+        }
+        return result(RETCODE_SUCCESS, "success", data);
+    }
+
+    void uploadData(HttpExchange exchange, long now) throws IOException {
+        MultipartForm form = MultipartForm.parse(
+                exchange.getRequestHeaders().getFirst("Content-Type"),
+                exchange.getRequestBody().readAllBytes());
+
+        byte[] file = form.getBytes("file");
+        String name = partText(form, "table_name");
+        String namespace = partText(form, "namespace");
+        if (file == null || name == null || namespace == null) {
+            writeJson(exchange, 200, result(RETCODE_ERROR, "file, table_name and namespace are required", null));
+            return;
+        }
+
+        tables.put(tableKey(name, namespace), file);
+        StandInJob job = createJob(null, null, now, false);
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("job_id", job.getJobId());
+        data.put("table_name", name);
+        data.put("namespace", namespace);
+        data.put("board_url", "");
+        data.put("logs_directory", "");
+        uploads.put(job.getJobId(), data);
+        writeJson(exchange, 200, result(RETCODE_SUCCESS, "success", data));
+    }
+
+    void downloadTable(HttpExchange exchange, long now) throws IOException {
+        Map<String, Object> params = readParams(exchange);
+        String name = String.valueOf(params.get("name"));
+        String namespace = String.valueOf(params.get("namespace"));
+        byte[] content = tables.get(tableKey(name, namespace));
+
+        exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream output = exchange.getResponseBody()) {
+            if (content != null) {
+                SyntheticTables.writeArchive(output, "table.csv", content);
+            } else {
+                SyntheticTables.writeArchive(output, "table.csv",
+                        settings.getTableRows(), settings.getTableColumns(),
+                        settings.getSeed() ^ tableKey(name, namespace).hashCode());
+            }
+        }
+    }
+
+    void downloadComponentOutput(HttpExchange exchange, long now) throws IOException {
+        Map<String, Object> params = readParams(exchange);
+        String jobId = String.valueOf(params.get("job_id"));
+        String component = String.valueOf(params.get("component_name"));
+        StandInJob job = jobs.get(jobId);
+        if (job == null || !job.getComponents().contains(component)) {
+            writeJson(exchange, 200, result(RETCODE_NOT_FOUND, "no component output found", null));
+            return;
+        }
+
+        exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream output = exchange.getResponseBody()) {
+            SyntheticTables.writeArchive(output, "data.csv",
+                    settings.getTableRows(), settings.getTableColumns(),
+                    settings.getSeed() ^ (jobId + component).hashCode());
+        }
+    }
+
+    Map<String, Object> readParams(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        if (body.length == 0) {
+            return Collections.emptyMap();
+        }
+        return mapper.readValue(body, new TypeReference<Map<String, Object>>() {
+        });
+    }
+
+    /**
+     * Answers a failed request like FATE Flow does, unless the response
+     * was already started.
+     */
+    void writeError(HttpExchange exchange, Exception e) {
+        if (exchange.getResponseCode() != -1) {
+            return;
+        }
+        try {
+            writeJson(exchange, 500, result(RETCODE_ERROR, String.valueOf(e.getMessage()), null));
+        } catch (IOException ex) {
+            log.debug("Failed to send the error of {}", exchange.getRequestURI(), ex);
+        }
+    }
+
+    void writeJson(HttpExchange exchange, int code, Object value) throws IOException {
+        byte[] body = mapper.writeValueAsBytes(value);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    /**
+     * Json parts of the upload form carry json encoded strings.
+     */
+    String partText(MultipartForm form, String name) throws IOException {
+        byte[] bytes = form.getBytes(name);
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        String text = new String(bytes, StandardCharsets.UTF_8).trim();
+        if (text.startsWith("\"")) {
+            return mapper.readValue(text, String.class);
+        }
+        return text;
+    }
+
+    static int intParam(Map<String, Object> params, String name, int defaultValue) {
+        Object value = params.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        return value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString());
+    }
+
+    static String tableKey(String name, String namespace) {
+        return namespace + "." + name;
+    }
+
+    static Map<String, Object> result(int retcode, String retmsg, Object data) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("retcode", retcode);
+        result.put("retmsg", retmsg);
+        result.put("data", data);
+        return result;
+    }
+
+    /**
+     * Runs a stand-alone stand-in, e.g. for a server configured with the FATE adaptor.
+     * Arguments: [port] [initial jobs].
+     */
+    public static void main(String[] args) throws IOException {
+        StandInSettings settings = new StandInSettings();
+        settings.setPort(args.length > 0 ? Integer.parseInt(args[0]) : 9380);
+        settings.setInitialJobs(args.length > 1 ? Integer.parseInt(args[1]) : 0);
+        start(settings);
+    }
+}
@@ -0,0 +1,75 @@
+package com.webank.ai.fate.standin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Just enough of multipart/form-data to read what the FATE client uploads.
+ */
+public class MultipartForm {
+
+    static final Pattern BOUNDARY = Pattern.compile("boundary=\"?([^\";]+)\"?");
+
+    static final Pattern NAME = Pattern.compile("name=\"([^\"]*)\"");
+
+    static final byte[] HEADER_END = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final Map<String, byte[]> parts = new HashMap<>();
+
+    public static MultipartForm parse(String contentType, byte[] body) {
+        MultipartForm form = new MultipartForm();
+        Matcher matcher = BOUNDARY.matcher(contentType == null ? "" : contentType);
+        if (!matcher.find()) {
+            return form;
+        }
+
+        byte[] delimiter = ("--" + matcher.group(1)).getBytes(StandardCharsets.US_ASCII);
+        int pos = indexOf(body, delimiter, 0);
+        while (pos >= 0) {
+            int start = pos + delimiter.length;
+            // the closing delimiter is followed by "--"
+            if (start + 1 < body.length && body[start] == '-' && body[start + 1] == '-') {
+                break;
+            }
+            int next = indexOf(body, delimiter, start);
+            if (next < 0) {
+                break;
+            }
+
+            int headerEnd = indexOf(body, HEADER_END, start);
+            if (headerEnd > 0 && headerEnd < next) {
+                String headers = new String(body, start, headerEnd - start, StandardCharsets.UTF_8);
+                Matcher name = NAME.matcher(headers);
+                if (name.find()) {
+                    // the part content ends with the CRLF in front of the next delimiter
+                    int contentStart = headerEnd + HEADER_END.length;
+                    int contentEnd = Math.max(contentStart, next - 2);
+                    form.parts.put(name.group(1), Arrays.copyOfRange(body, contentStart, contentEnd));
+                }
+            }
+            pos = next;
+        }
+        return form;
+    }
+
+    public byte[] getBytes(String name) {
+        return parts.get(name);
+    }
+
+    static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
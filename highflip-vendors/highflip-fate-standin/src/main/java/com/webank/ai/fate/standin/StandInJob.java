@@ -0,0 +1,302 @@
+package com.webank.ai.fate.standin;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A job of the stand-in server. Its state is derived from the clock, so a
+ * job needs no background thread to make progress: it waits for the queue
+ * time, then runs its components one after the other for equal slices of the
+ * job duration.
+ */
+public class StandInJob {
+
+    public static final String STATUS_WAITING = "waiting";
+
+    public static final String STATUS_RUNNING = "running";
+
+    public static final String STATUS_SUCCESS = "success";
+
+    public static final String STATUS_FAILED = "failed";
+
+    public static final String STATUS_CANCELED = "canceled";
+
+    public static final long LOG_LINE_INTERVAL = 100;
+
+    private final String jobId;
+
+    private final String name;
+
+    private final String role;
+
+    private final int partyId;
+
+    private final List<String> components;
+
+    private final List<String> modules;
+
+    private final long createTime;
+
+    private final long startTime;
+
+    private final long endTime;
+
+    private final boolean failing;
+
+    private volatile long stopTime = 0;
+
+    public StandInJob(String jobId,
+                      String name,
+                      String role,
+                      int partyId,
+                      List<String> components,
+                      List<String> modules,
+                      long createTime,
+                      long queueTime,
+                      long duration,
+                      boolean failing) {
+        this.jobId = jobId;
+        this.name = name;
+        this.role = role;
+        this.partyId = partyId;
+        this.components = components;
+        this.modules = modules;
+        this.createTime = createTime;
+        this.startTime = createTime + queueTime;
+        this.endTime = this.startTime + duration;
+        this.failing = failing;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public List<String> getComponents() {
+        return components;
+    }
+
+    public int getPartyId() {
+        return partyId;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getTaskId(int index) {
+        return jobId + "_" + components.get(index);
+    }
+
+    public int indexOfTask(String taskId) {
+        for (int i = 0; i < components.size(); i++) {
+            if (getTaskId(i).equals(taskId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return false if the job had already finished
+     */
+    public synchronized boolean stop(long now) {
+        if (isFinished(now)) {
+            return false;
+        }
+        stopTime = now;
+        return true;
+    }
+
+    public boolean isFinished(long now) {
+        return stopTime > 0 || now >= endTime;
+    }
+
+    /**
+     * @return milliseconds until the job finishes, 0 once it has
+     */
+    public long timeToFinish(long now) {
+        return isFinished(now) ? 0 : endTime - now;
+    }
+
+    public String status(long now) {
+        if (stopTime > 0) {
+            return STATUS_CANCELED;
+        }
+        if (now < startTime) {
+            return STATUS_WAITING;
+        }
+        if (now < endTime) {
+            return STATUS_RUNNING;
+        }
+        return failing ? STATUS_FAILED : STATUS_SUCCESS;
+    }
+
+    long componentStart(int index) {
+        return startTime + (endTime - startTime) * index / components.size();
+    }
+
+    long componentEnd(int index) {
+        return startTime + (endTime - startTime) * (index + 1) / components.size();
+    }
+
+    public String componentStatus(int index, long now) {
+        long start = componentStart(index);
+        long end = componentEnd(index);
+        if (stopTime > 0 && stopTime < end) {
+            return stopTime < start ? STATUS_WAITING : STATUS_CANCELED;
+        }
+        if (now < start) {
+            return STATUS_WAITING;
+        }
+        if (now < end) {
+            return STATUS_RUNNING;
+        }
+        if (failing && index == components.size() - 1) {
+            return STATUS_FAILED;
+        }
+        return STATUS_SUCCESS;
+    }
+
+    /**
+     * FATE touches update_time on every state change, not on every query.
+     */
+    long updateTime(long now) {
+        if (stopTime > 0) {
+            return stopTime;
+        }
+        if (now < startTime) {
+            return createTime;
+        }
+        if (now >= endTime) {
+            return endTime;
+        }
+        for (int i = components.size() - 1; i >= 0; i--) {
+            long start = componentStart(i);
+            if (now >= start) {
+                return start;
+            }
+        }
+        return startTime;
+    }
+
+    Long finishTime(long now) {
+        if (stopTime > 0) {
+            return stopTime;
+        }
+        return now >= endTime ? endTime : null;
+    }
+
+    int progress(long now) {
+        int done = 0;
+        for (int i = 0; i < components.size(); i++) {
+            if (now >= componentEnd(i)) {
+                done++;
+            }
+        }
+        return done * 100 / components.size();
+    }
+
+    /**
+     * One log line is written per interval while the job or component runs.
+     *
+     * @param component null for the schedule log of the job
+     */
+    public int logSize(String component, long now) {
+        long from = startTime;
+        long to = endTime;
+        if (component != null) {
+            int index = components.indexOf(component);
+            if (index < 0) {
+                return 0;
+            }
+            from = componentStart(index);
+            to = componentEnd(index);
+        }
+        long at = Math.min(now, stopTime > 0 ? Math.min(stopTime, to) : to);
+        return at < from ? 0 : (int) ((at - from) / LOG_LINE_INTERVAL) + 1;
+    }
+
+    public String logLine(String component, int number) {
+        return String.format("[INFO] %s %s line %d", jobId, component == null ? "schedule" : component, number);
+    }
+
+    /**
+     * @return the fields of a job of /v1/job/list/job
+     */
+    public Map<String, Object> toJob(long now) {
+        long at = Math.min(now, stopTime > 0 ? stopTime : now);
+        Map<String, Object> job = new LinkedHashMap<>();
+        job.put("job_id", jobId);
+        job.put("name", name);
+        job.put("description", name);
+        job.put("status", status(now));
+        job.put("progress", progress(at));
+        job.put("role", role);
+        job.put("party_id", partyId);
+        job.put("roles", Map.of(role, List.of(partyId)));
+        job.put("initiator_role", role);
+        job.put("initiator_party_id", String.valueOf(partyId));
+        job.put("is_initiator", true);
+        job.put("create_time", createTime);
+        job.put("update_time", updateTime(now));
+        job.put("start_time", now >= startTime ? startTime : null);
+        job.put("end_time", finishTime(now));
+        job.put("elapsed", now >= startTime ? Math.min(at, endTime) - startTime : 0);
+        return job;
+    }
+
+    /**
+     * @return the fields of a task of /v1/job/list/task
+     */
+    public Map<String, Object> toTask(int index, long now) {
+        long start = componentStart(index);
+        long end = componentEnd(index);
+        String status = componentStatus(index, now);
+
+        Map<String, Object> task = new LinkedHashMap<>();
+        task.put("job_id", jobId);
+        task.put("task_id", getTaskId(index));
+        task.put("task_version", 0);
+        task.put("component_name", components.get(index));
+        task.put("component_module", modules.get(index));
+        task.put("role", role);
+        task.put("party_id", String.valueOf(partyId));
+        task.put("initiator_role", role);
+        task.put("initiator_party_id", String.valueOf(partyId));
+        task.put("federated_mode", "MULTIPLE");
+        task.put("run_on_this_party", true);
+        task.put("status", status);
+        task.put("party_status", status);
+        task.put("create_time", createTime);
+        task.put("start_time", STATUS_WAITING.equals(status) ? null : start);
+        switch (status) {
+            case STATUS_WAITING:
+                task.put("update_time", createTime);
+                task.put("end_time", null);
+                break;
+            case STATUS_RUNNING:
+                task.put("update_time", start);
+                task.put("end_time", null);
+                break;
+            case STATUS_CANCELED:
+                task.put("update_time", stopTime);
+                task.put("end_time", stopTime);
+                break;
+            default:
+                task.put("update_time", end);
+                task.put("end_time", end);
+        }
+        return task;
+    }
+
+    /**
+     * /v1/job/query and /v1/job/task/query return the raw table rows,
+     * whose columns carry an "f_" prefix.
+     */
+    public static Map<String, Object> toRow(Map<String, Object> fields) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        fields.forEach((key, value) -> row.put("f_" + key, value));
+        return row;
+    }
+}
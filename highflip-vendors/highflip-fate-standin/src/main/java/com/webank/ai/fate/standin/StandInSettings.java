@@ -0,0 +1,69 @@
+package com.webank.ai.fate.standin;
+
+import lombok.Data;
+
+/**
+ * Knobs of the stand-in server. All durations are in milliseconds.
+ */
+@Data
+public class StandInSettings {
+
+    /**
+     * 0 binds a free port.
+     */
+    private int port = 0;
+
+    private int threads = 16;
+
+    /**
+     * Fixed delay added to every request.
+     */
+    private long latency = 0;
+
+    /**
+     * Uniform random delay in [0, latencyJitter) added on top of latency.
+     */
+    private long latencyJitter = 0;
+
+    /**
+     * Share of requests answered with http 500, in [0, 1].
+     */
+    private double errorRate = 0.0;
+
+    /**
+     * Time a submitted job stays waiting before it starts running.
+     */
+    private long jobQueueTime = 0;
+
+    /**
+     * Running time of a job, split evenly over its components.
+     */
+    private long jobDuration = 1000;
+
+    /**
+     * Share of submitted jobs whose last component fails, in [0, 1].
+     */
+    private double jobFailureRate = 0.0;
+
+    /**
+     * Components of a job whose dsl does not declare any.
+     */
+    private int componentsPerJob = 3;
+
+    /**
+     * Finished jobs created at startup, so list and sync paths have history.
+     */
+    private int initialJobs = 0;
+
+    /**
+     * Rows of generated tables and component outputs.
+     */
+    private int tableRows = 1000;
+
+    /**
+     * Feature columns of generated tables, besides id and y.
+     */
+    private int tableColumns = 10;
+
+    private long seed = 42;
+}
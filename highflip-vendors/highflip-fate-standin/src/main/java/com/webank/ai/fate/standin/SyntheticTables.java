@@ -0,0 +1,98 @@
+package com.webank.ai.fate.standin;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes tables the way FATE Flow downloads them: a tar.gz archive holding a
+ * single csv file.
+ * <p>
+ * Generated rows have a fixed width, so the tar entry size is known up front
+ * and rows are streamed without holding the table in memory.
+ */
+public class SyntheticTables {
+
+    static final int VALUE_WIDTH = 8;
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    public static void writeArchive(OutputStream output, String fileName, byte[] content)
+            throws IOException {
+        try (TarArchiveOutputStream tar = open(output)) {
+            TarArchiveEntry entry = new TarArchiveEntry(fileName);
+            entry.setSize(content.length);
+            tar.putArchiveEntry(entry);
+            tar.write(content);
+            tar.closeArchiveEntry();
+        }
+    }
+
+    /**
+     * Writes a table with header "id,y,x0,...", 0/1 labels and features in [0, 1)
+     * with six decimals. The same seed always gives the same table.
+     */
+    public static void writeArchive(OutputStream output, String fileName, int rows, int columns, long seed)
+            throws IOException {
+        int idWidth = Math.max(1, String.valueOf(Math.max(0, rows - 1)).length());
+        byte[] header = header(columns);
+        long rowLength = idWidth + 2 + (long) columns * (VALUE_WIDTH + 1) + 1;
+
+        try (TarArchiveOutputStream tar = open(output)) {
+            TarArchiveEntry entry = new TarArchiveEntry(fileName);
+            entry.setSize(header.length + rowLength * rows);
+            tar.putArchiveEntry(entry);
+            tar.write(header);
+
+            Random random = new Random(seed);
+            byte[] row = new byte[(int) rowLength];
+            for (int r = 0; r < rows; r++) {
+                int pos = writeDigits(row, 0, r, idWidth);
+                row[pos++] = ',';
+                row[pos++] = (byte) (random.nextBoolean() ? '1' : '0');
+                for (int c = 0; c < columns; c++) {
+                    row[pos++] = ',';
+                    row[pos++] = '0';
+                    row[pos++] = '.';
+                    pos = writeDigits(row, pos, random.nextInt(1000000), VALUE_WIDTH - 2);
+                }
+                row[pos] = '\n';
+                tar.write(row);
+            }
+            tar.closeArchiveEntry();
+        }
+    }
+
+    static TarArchiveOutputStream open(OutputStream output) throws IOException {
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(output, BUFFER_SIZE), BUFFER_SIZE));
+        tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+        return tar;
+    }
+
+    static byte[] header(int columns) {
+        StringBuilder builder = new StringBuilder("id,y");
+        for (int c = 0; c < columns; c++) {
+            builder.append(",x").append(c);
+        }
+        return builder.append('\n').toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Writes a zero padded number and returns the position after it.
+     */
+    static int writeDigits(byte[] buffer, int pos, long value, int width) {
+        for (int i = pos + width - 1; i >= pos; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + width;
+    }
+}